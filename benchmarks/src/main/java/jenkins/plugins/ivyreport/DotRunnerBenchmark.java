@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Launcher;
+import hudson.util.StreamTaskListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import jenkins.plugins.ivyreport.graph.ResolveReport;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The round trip through the <tt>dot</tt> executable: writing the graph,
+ * starting <tt>dot</tt> and waiting for the svg. Needs <tt>dot</tt> on the
+ * path, or its location in the <tt>dot</tt> system property.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DotRunnerBenchmark {
+    // dot itself does not scale to the largest synthetic graphs
+    @Param({ "10", "100", "1000" })
+    public int modules;
+
+    @Param({ "3" })
+    public int fanOut;
+
+    @Param({ "false", "true" })
+    public boolean batch;
+
+    private File dir;
+    private File[] dotFiles;
+    private DotRunner runner;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = File.createTempFile("dot-benchmark", "");
+        dir.delete();
+        dir.mkdirs();
+        ResolveReport report = ResolveReport.parse(new ByteArrayInputStream(
+                new SyntheticReport(modules, fanOut, 0.1, 0.01, 42).toBytes()));
+        // batch mode only differs with several graphs, as for a module with
+        // several configurations
+        dotFiles = new File[batch ? 4 : 1];
+        for (int i = 0; i < dotFiles.length; i++) {
+            dotFiles[i] = new File(dir, SyntheticReport.getResolveId() + "-c"
+                    + i + ".dot");
+            Writer out = new OutputStreamWriter(new FileOutputStream(
+                    dotFiles[i]), "UTF-8");
+            try {
+                report.toDotGraph(SyntheticReport.getResolveId()).write(out);
+            } finally {
+                out.close();
+            }
+        }
+        runner = new DotRunner(new Launcher.LocalLauncher(
+                StreamTaskListener.fromStderr()), System.getProperty("dot",
+                "dot"), batch, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public File[] render() throws IOException, InterruptedException {
+        return runner.render(dotFiles);
+    }
+}
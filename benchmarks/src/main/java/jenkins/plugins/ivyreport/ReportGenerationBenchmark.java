@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import jenkins.plugins.ivyreport.graph.DotGraph;
+import jenkins.plugins.ivyreport.graph.HtmlReportWriter;
+import jenkins.plugins.ivyreport.graph.LayeredLayout;
+import jenkins.plugins.ivyreport.graph.ResolveReport;
+import jenkins.plugins.ivyreport.graph.SvgWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The steps of the generation of the report of one configuration, as done by
+ * {@link IvyReportGenerator}, on synthetic resolve reports held in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportGenerationBenchmark {
+    @Param({ "10", "1000", "10000", "50000" })
+    public int modules;
+
+    @Param({ "3" })
+    public int fanOut;
+
+    @Param({ "0.1" })
+    public double evictionRatio;
+
+    @Param({ "0.01" })
+    public double errorRatio;
+
+    private byte[] xml;
+    private ResolveReport report;
+    private DotGraph graph;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        xml = new SyntheticReport(modules, fanOut, evictionRatio, errorRatio,
+                42).toBytes();
+        report = parse();
+        graph = report.toDotGraph(SyntheticReport.getResolveId());
+    }
+
+    @Benchmark
+    public ResolveReport parse() throws IOException {
+        return ResolveReport.parse(new ByteArrayInputStream(xml));
+    }
+
+    @Benchmark
+    public long html() throws IOException {
+        CountingWriter out = new CountingWriter();
+        new HtmlReportWriter(out, SyntheticReport.getResolveId(),
+                SyntheticReport.CONF, "html").write(report);
+        return out.count;
+    }
+
+    @Benchmark
+    public long dot() throws IOException {
+        CountingWriter out = new CountingWriter();
+        report.toDotGraph(SyntheticReport.getResolveId()).write(out);
+        return out.count;
+    }
+
+    @Benchmark
+    public long svgInJvm() throws IOException {
+        CountingWriter out = new CountingWriter();
+        new SvgWriter(out).write(LayeredLayout.compute(graph));
+        return out.count;
+    }
+
+    /**
+     * Drops what is written, only counting it so that the writing is not
+     * optimized away.
+     */
+    static final class CountingWriter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(int c) {
+            count++;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Generates resolve reports, in the format written by ivy, of a made up
+ * dependency graph of the given size and shape.
+ * <p>
+ * Module <tt>i</tt> is called by <tt>fanOut</tt> modules picked among the
+ * modules before it, the first ones being called by the resolved module, so
+ * that the graph has no cycle. A share of the modules also have an older
+ * revision evicted by the selected one, and a share of the revisions are in
+ * error. The same arguments always give the same report.
+ */
+final class SyntheticReport {
+    static final String ORGANISATION = "org.example";
+    static final String MODULE = "synthetic";
+    static final String CONF = "default";
+
+    private final int modules;
+    private final int fanOut;
+    private final double evictionRatio;
+    private final double errorRatio;
+    private final long seed;
+
+    SyntheticReport(int modules, int fanOut, double evictionRatio,
+            double errorRatio, long seed) {
+        this.modules = modules;
+        this.fanOut = Math.max(1, fanOut);
+        this.evictionRatio = evictionRatio;
+        this.errorRatio = errorRatio;
+        this.seed = seed;
+    }
+
+    /**
+     * @return the resolve id of the report, the prefix of its file name
+     */
+    static String getResolveId() {
+        return ORGANISATION + "-" + MODULE;
+    }
+
+    byte[] toBytes() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out);
+        return out.toByteArray();
+    }
+
+    void write(OutputStream stream) throws IOException {
+        Random random = new Random(seed);
+        Writer out = new OutputStreamWriter(stream, "UTF-8");
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<ivy-report version=\"1.0\">\n");
+        out.write("\t<info organisation=\"" + ORGANISATION + "\" module=\""
+                + MODULE + "\" revision=\"1.0\" conf=\"" + CONF
+                + "\" confs=\"" + CONF + "\" date=\"20120101000000\"/>\n");
+        out.write("\t<dependencies>\n");
+        for (int i = 0; i < modules; i++) {
+            out.write("\t\t<module organisation=\"" + organisation(i)
+                    + "\" name=\"" + name(i) + "\">\n");
+            boolean evicting = random.nextDouble() < evictionRatio;
+            writeRevision(out, random, i, "1." + (i % 10), null);
+            if (evicting) {
+                writeRevision(out, random, i, "0." + (i % 10), "1."
+                        + (i % 10));
+            }
+            out.write("\t\t</module>\n");
+        }
+        out.write("\t</dependencies>\n");
+        out.write("</ivy-report>\n");
+        out.flush();
+    }
+
+    private void writeRevision(Writer out, Random random, int module,
+            String revision, String evictedBy) throws IOException {
+        boolean error = random.nextDouble() < errorRatio;
+        out.write("\t\t\t<revision name=\"" + revision
+                + "\" status=\"release\" pubdate=\"20120101000000\""
+                + " resolver=\"default\" artresolver=\"default\"");
+        if (evictedBy != null) {
+            out.write(" evicted=\"latest-revision\" evicted-reason=\"\"");
+        }
+        if (error) {
+            out.write(" error=\"synthetic failure\"");
+        }
+        out.write(" downloaded=\"false\" searched=\"false\" default=\"false\""
+                + " conf=\"" + CONF + "\" position=\"" + module + "\">\n");
+        out.write("\t\t\t\t<license name=\"Apache License, Version 2.0\""
+                + " url=\"http://www.apache.org/licenses/LICENSE-2.0.txt\"/>\n");
+        if (evictedBy != null) {
+            out.write("\t\t\t\t<evicted-by rev=\"" + evictedBy + "\"/>\n");
+        }
+        for (int caller : callers(random, module)) {
+            String organisation = caller < 0 ? ORGANISATION
+                    : organisation(caller);
+            String name = caller < 0 ? MODULE : name(caller);
+            String callerRev = caller < 0 ? "1.0" : "1." + (caller % 10);
+            out.write("\t\t\t\t<caller organisation=\"" + organisation
+                    + "\" name=\"" + name + "\" conf=\"" + CONF
+                    + "\" rev=\"" + revision + "\" rev-constraint-default=\""
+                    + revision + "\" rev-constraint-dynamic=\"" + revision
+                    + "\" callerrev=\"" + callerRev + "\"/>\n");
+        }
+        out.write("\t\t\t\t<artifacts>\n");
+        if (evictedBy == null) {
+            out.write("\t\t\t\t\t<artifact name=\"" + name(module)
+                    + "\" type=\"jar\" ext=\"jar\" status=\""
+                    + (error ? "failed" : "no") + "\" details=\"\" size=\""
+                    + (1024 + random.nextInt(1024 * 1024))
+                    + "\" time=\"0\"/>\n");
+        }
+        out.write("\t\t\t\t</artifacts>\n");
+        out.write("\t\t\t</revision>\n");
+    }
+
+    /**
+     * @return the modules calling the given one, -1 for the resolved module
+     */
+    private int[] callers(Random random, int module) {
+        if (module < fanOut) {
+            return new int[] { -1 };
+        }
+        int[] callers = new int[fanOut];
+        for (int i = 0; i < callers.length; i++) {
+            callers[i] = random.nextInt(module);
+        }
+        return callers;
+    }
+
+    private static String organisation(int module) {
+        return "org.example.group" + (module % 50);
+    }
+
+    private static String name(int module) {
+        return "module" + module;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.ivy.IvyModuleSetBuild;
+import hudson.model.Hudson;
+import hudson.util.DaemonThreadFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Renders the reports of the builds published in asynchronous mode, off the
+ * critical path of the builds.
+ * <p>
+ * The publisher only keeps the resolve reports, as in lazy mode, and queues
+ * the rendering of the modules here. A single queue serves the whole
+ * controller, and a bounded number of modules are rendered at the same time
+ * whatever the number of builds publishing. Each module is rendered in a
+ * work directory then moved next to its resolve reports; once all the
+ * modules of a build are rendered, the reports are moved to the
+ * {@link BlobStore} and the build is saved with its rendered reports. A
+ * module which cannot be rendered, or is still queued when Jenkins stops,
+ * is left to be rendered when first viewed.
+ */
+final class BackgroundRenderQueue {
+    private static final Logger LOGGER = Logger
+            .getLogger(BackgroundRenderQueue.class.getName());
+
+    private static final String WORK_DIR = "ivyreport-rendering";
+
+    private static BackgroundRenderQueue instance;
+
+    /**
+     * Home of the Jenkins whose builds are rendered.
+     */
+    private final File home;
+
+    private final ThreadPoolExecutor executor;
+
+    BackgroundRenderQueue(File home, int threads) {
+        this.home = home;
+        executor = new ThreadPoolExecutor(threads, threads, 60,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new DaemonThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the queue of the controller, with as many threads as
+     *         configured; a new one if Jenkins was started again on another
+     *         home in the same JVM
+     */
+    static synchronized BackgroundRenderQueue getInstance() {
+        int threads = IvyReportPublisher.DESCRIPTOR.getRenderThreadsOrDefault();
+        File home = Hudson.getInstance().getRootDir();
+        if (instance == null || !instance.home.equals(home)) {
+            if (instance != null) {
+                // the builds of the previous Jenkins are gone
+                instance.executor.shutdownNow();
+            }
+            instance = new BackgroundRenderQueue(home, threads);
+        } else {
+            instance.setThreads(threads);
+        }
+        return instance;
+    }
+
+    private void setThreads(int threads) {
+        // the core size may never exceed the maximum size
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+
+    /**
+     * Queues the rendering of the reports of the build which are not
+     * rendered yet. The action shows them as being rendered until they all
+     * are.
+     * 
+     * @return the number of modules queued
+     */
+    int submit(IvyModuleSetBuild build, IvyReportBuildAction action) {
+        List<IvyReport> lazy = new ArrayList<IvyReport>();
+        for (IvyReport report : action.getReports()) {
+            if (report.isLazy()) {
+                lazy.add(report);
+            }
+        }
+        if (lazy.isEmpty()) {
+            return 0;
+        }
+        action.setRendering(true);
+        BuildRendering rendering = new BuildRendering(build, action,
+                lazy.size());
+        for (IvyReport report : lazy) {
+            executor.execute(new ModuleRendering(rendering, report));
+        }
+        return lazy.size();
+    }
+
+    /**
+     * Waits for the queued renderings, for tests.
+     */
+    void waitForIdle(long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while ((executor.getActiveCount() > 0 || !executor.getQueue()
+                .isEmpty()) && System.currentTimeMillis() < end) {
+            Thread.sleep(100);
+        }
+    }
+
+    /**
+     * The renderings of the modules of a build.
+     */
+    private static final class BuildRendering {
+        private final IvyModuleSetBuild build;
+        private final IvyReportBuildAction action;
+        private final AtomicInteger pending;
+
+        BuildRendering(IvyModuleSetBuild build, IvyReportBuildAction action,
+                int modules) {
+            this.build = build;
+            this.action = action;
+            this.pending = new AtomicInteger(modules);
+        }
+
+        File getWorkDir(IvyReport report) {
+            return new File(new File(build.getRootDir(), WORK_DIR),
+                    report.getResolveId());
+        }
+
+        /**
+         * Stores the reports and saves the build once the last module is
+         * rendered.
+         */
+        void done() {
+            if (pending.decrementAndGet() > 0) {
+                return;
+            }
+            FileUtils.deleteQuietly(new File(build.getRootDir(), WORK_DIR));
+            try {
+                BlobStore.getInstance().store(action.getDir(),
+                        Collections.<String, String> emptyMap());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot store the ivy reports of "
+                        + build, e);
+            }
+            action.setRendering(false);
+            try {
+                build.save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot save " + build, e);
+            }
+            LOGGER.fine("Rendered the ivy reports of " + build
+                    + " in the background");
+        }
+    }
+
+    private static final class ModuleRendering implements Runnable {
+        private final BuildRendering rendering;
+        private final IvyReport report;
+
+        ModuleRendering(BuildRendering rendering, IvyReport report) {
+            this.rendering = rendering;
+            this.report = report;
+        }
+
+        public void run() {
+            File work = rendering.getWorkDir(report);
+            try {
+                FileUtils.deleteQuietly(work);
+                work.mkdirs();
+                File dir = report.getDir();
+                RenderedReportCache.renderInto(work, dir, report
+                        .getResolveId(), report.getConfs(), ReportSettings
+                        .of(IvyReportPublisher.DESCRIPTOR).withGraphReduction(
+                                report.getGraphReduction()));
+                File[] files = work.listFiles();
+                for (File file : files == null ? new File[0] : files) {
+                    File target = new File(dir, file.getName());
+                    target.delete();
+                    if (!file.renameTo(target)) {
+                        FileUtils.copyFile(file, target);
+                    }
+                }
+                rendering.action.replaceReport(report, report.toRendered());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot render the ivy report of "
+                        + report.getModule() + " in the background", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Cannot render the ivy report of "
+                        + report.getModule() + " in the background", e);
+            } finally {
+                FileUtils.deleteQuietly(work);
+                rendering.done();
+            }
+        }
+    }
+}
@@ -0,0 +1,487 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.ivy.IvyModuleSet;
+import hudson.ivy.IvyModuleSetBuild;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Hudson;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.util.DaemonThreadFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Content-addressed store of the rendered reports, shared by all the builds
+ * of all the jobs.
+ * <p>
+ * A rendered report is stored once under <tt>JENKINS_HOME</tt>, named after
+ * the SHA-1 of its content followed by its extensions, e.g.
+ * <tt>3f/3f2a..9c.svg.gz</tt>. The reports directory of a build only keeps
+ * a manifest of the names of its reports and the blobs holding them, which
+ * {@link ReportFiles#resolve(File, String)} reads.
+ * <p>
+ * The blobs are reference counted once the references of all the builds
+ * were counted by a sweep. A blob is deleted in the background when the
+ * last build referring to it is deleted; the sweep, run daily, recounts the
+ * references and deletes the blobs nothing refers to, e.g. after builds were
+ * deleted while the counts were unknown. Blobs written or reused in the last
+ * hour are never deleted, as the build about to refer to them may not have
+ * written its manifest yet.
+ */
+final class BlobStore {
+    private static final Logger LOGGER = Logger.getLogger(BlobStore.class
+            .getName());
+
+    static final String DIR_NAME = "ivyreport-blobs";
+
+    /**
+     * Name of the manifest in the reports directory of a build.
+     */
+    static final String MANIFEST = "blobs.properties";
+
+    /**
+     * Extensions of the reports moved to the store, compressed or not.
+     */
+    private static final String[] STORED_EXTENSIONS = { ".html", ".svg",
+            ".css" };
+
+    private static final long GRACE_PERIOD = 60 * 60 * 1000L;
+
+    private static BlobStore instance;
+
+    private final File root;
+
+    /**
+     * References to each blob, <tt>null</tt> until counted by a sweep.
+     */
+    private Map<String, Integer> counts;
+    private int generation;
+
+    private final ExecutorService releases = Executors
+            .newSingleThreadExecutor(new DaemonThreadFactory());
+
+    BlobStore(File root) {
+        this.root = root;
+    }
+
+    /**
+     * @return the store of the current Jenkins home, a new one if Jenkins was
+     *         started again on another home in the same JVM
+     */
+    static synchronized BlobStore getInstance() {
+        File root = new File(Hudson.getInstance().getRootDir(), DIR_NAME);
+        if (instance == null || !instance.root.equals(root)) {
+            if (instance != null) {
+                instance.releases.shutdown();
+            }
+            instance = new BlobStore(root);
+        }
+        return instance;
+    }
+
+    /**
+     * Releases the blobs of the deleted builds.
+     */
+    @Extension
+    public static final class BuildUpdater extends
+            RunListener<IvyModuleSetBuild> {
+        public BuildUpdater() {
+            super(IvyModuleSetBuild.class);
+        }
+
+        @Override
+        public void onDeleted(IvyModuleSetBuild build) {
+            // read now, the reports directory is deleted next
+            final Map<String, String> manifest;
+            try {
+                manifest = readManifest(new File(build.getRootDir(),
+                        "ivyreport"));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot read the blobs of " + build,
+                        e);
+                return;
+            }
+            if (!manifest.isEmpty()) {
+                final BlobStore store = getInstance();
+                final int generation = store.getGeneration();
+                store.releases.submit(new Runnable() {
+                    public void run() {
+                        store.release(manifest.values(), generation);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Sweeps the blobs nothing refers to.
+     */
+    @Extension
+    public static final class Sweeper extends AsyncPeriodicWork {
+        public Sweeper() {
+            super("Ivy report blobs sweep");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return DAY;
+        }
+
+        @Override
+        protected void execute(TaskListener listener) throws IOException,
+                InterruptedException {
+            List<File> reportDirs = new ArrayList<File>();
+            for (IvyModuleSet project : Hudson.getInstance().getAllItems(
+                    IvyModuleSet.class)) {
+                // the builds are not loaded
+                for (File dir : BuildDirs.list(project).values()) {
+                    reportDirs.add(new File(dir, "ivyreport"));
+                }
+            }
+            int deleted = getInstance().sweep(reportDirs);
+            listener.getLogger().println(
+                    "Deleted " + deleted + " unreferenced ivy report blobs");
+        }
+    }
+
+    /**
+     * Moves the rendered reports of a reports directory to the store, and
+     * writes the manifest of the directory. The reports already in the
+     * manifest, e.g. stored before the reports rendered in the background,
+     * stay in it.
+     * 
+     * @param reused
+     *            blobs of the reports reused from another build, by report
+     *            name; they are referenced by the manifest as well
+     * @return the size of the reports whose content was already stored
+     */
+    long store(File dir, Map<String, String> reused) throws IOException {
+        Map<String, String> previous = readManifest(dir);
+        Map<String, String> manifest = new TreeMap<String, String>(previous);
+        manifest.putAll(reused);
+        Map<File, String> blobs = new HashMap<File, String>();
+        File[] files = dir.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            if (isStored(file.getName())) {
+                String blob = digest(file) + getExtensions(file.getName());
+                blobs.put(file, blob);
+                manifest.put(file.getName(), blob);
+            }
+        }
+        long saved = 0;
+        // the manifest and the counts change together, see sweep
+        synchronized (this) {
+            // the manifest only refers to complete blobs, and the reports
+            // are only deleted once it does
+            for (Map.Entry<File, String> blob : blobs.entrySet()) {
+                File file = blob.getKey();
+                File stored = getBlob(blob.getValue());
+                if (stored.exists()) {
+                    saved += file.length();
+                    touch(stored);
+                } else {
+                    copy(file, stored);
+                }
+            }
+            writeManifest(dir, manifest);
+            for (File file : blobs.keySet()) {
+                file.delete();
+            }
+            if (counts != null) {
+                List<String> added = new ArrayList<String>();
+                List<String> replaced = new ArrayList<String>();
+                for (Map.Entry<String, String> entry : manifest.entrySet()) {
+                    String before = previous.get(entry.getKey());
+                    if (!entry.getValue().equals(before)) {
+                        added.add(entry.getValue());
+                        if (before != null) {
+                            replaced.add(before);
+                        }
+                    }
+                }
+                count(counts, added);
+                drop(replaced);
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Copies a report to a blob, which only exists once complete.
+     */
+    private static void copy(File file, File blob) throws IOException {
+        blob.getParentFile().mkdirs();
+        File tmp = new File(blob.getPath() + ".tmp");
+        FileUtils.copyFile(file, tmp);
+        if (!tmp.renameTo(blob)) {
+            tmp.delete();
+            throw new IOException("Unable to rename " + tmp + " to " + blob);
+        }
+    }
+
+    /**
+     * @return the file holding a blob, which may not exist
+     */
+    File getBlob(String blob) {
+        return new File(new File(root, blob.substring(0, 2)), blob);
+    }
+
+    /**
+     * @return the name of the blob held by the file, or <tt>null</tt> if the
+     *         file is not a blob of this store
+     */
+    String getBlobName(File file) {
+        File dir = file.getParentFile();
+        return dir != null && root.equals(dir.getParentFile()) ? file
+                .getName() : null;
+    }
+
+    /**
+     * Keeps a blob out of the sweeps and releases for a while, as a build
+     * about to refer to it may not have written its manifest yet.
+     */
+    void touch(File blob) {
+        blob.setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Drops a reference to each of the blobs, deleting the blobs nothing
+     * refers to any more. Blobs whose references are unknown are left to the
+     * next sweep.
+     * 
+     * @param generation
+     *            the sweep the references were counted by when the blobs
+     *            were released, see {@link #getGeneration()}
+     */
+    synchronized void release(Collection<String> blobs, int generation) {
+        if (counts == null || generation != this.generation) {
+            return;
+        }
+        drop(blobs);
+    }
+
+    /**
+     * Drops a counted reference to each of the blobs.
+     */
+    private synchronized void drop(Collection<String> blobs) {
+        long limit = System.currentTimeMillis() - GRACE_PERIOD;
+        for (String blob : blobs) {
+            Integer count = counts.get(blob);
+            if (count == null) {
+                continue;
+            }
+            if (count > 1) {
+                counts.put(blob, count - 1);
+                continue;
+            }
+            counts.remove(blob);
+            File file = getBlob(blob);
+            if (file.lastModified() < limit) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * @return the number of sweeps so far
+     */
+    synchronized int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Counts the references of the builds to the blobs, then deletes the
+     * blobs which are not referenced and were not used in the grace period.
+     * 
+     * @return the number of deleted blobs
+     */
+    synchronized int sweep(Iterable<File> reportDirs) throws IOException {
+        Map<String, Integer> references = new HashMap<String, Integer>();
+        for (File dir : reportDirs) {
+            count(references, readManifest(dir).values());
+        }
+        int deleted = 0;
+        long limit = System.currentTimeMillis() - GRACE_PERIOD;
+        File[] dirs = root.listFiles();
+        for (File dir : dirs == null ? new File[0] : dirs) {
+            File[] blobs = dir.listFiles();
+            for (File blob : blobs == null ? new File[0] : blobs) {
+                if (!references.containsKey(blob.getName())
+                        && blob.lastModified() < limit && blob.delete()) {
+                    deleted++;
+                }
+            }
+        }
+        counts = references;
+        generation++;
+        return deleted;
+    }
+
+    /**
+     * @return the blobs of the reports of a directory, by report name; empty
+     *         if the reports are not stored as blobs
+     */
+    static Map<String, String> readManifest(File dir) throws IOException {
+        Map<String, String> manifest = new HashMap<String, String>();
+        File file = new File(dir, MANIFEST);
+        if (!file.exists()) {
+            return manifest;
+        }
+        Properties properties = new Properties();
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        for (String name : properties.stringPropertyNames()) {
+            manifest.put(name, properties.getProperty(name));
+        }
+        return manifest;
+    }
+
+    private static void writeManifest(File dir, Map<String, String> manifest)
+            throws IOException {
+        Properties properties = new Properties();
+        properties.putAll(manifest);
+        File file = new File(dir, MANIFEST);
+        File tmp = new File(dir, MANIFEST + ".tmp");
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp));
+        try {
+            properties.store(out, null);
+        } finally {
+            out.close();
+        }
+        // replaced at once where the platform allows it
+        if (!tmp.renameTo(file) && (!file.delete() || !tmp.renameTo(file))) {
+            tmp.delete();
+            throw new IOException("Unable to rename " + tmp + " to " + file);
+        }
+    }
+
+    /**
+     * @return the blob of a report of a directory, compressed or not, or
+     *         <tt>null</tt> if the report is not stored as a blob
+     */
+    static File resolve(File dir, String name) {
+        if (!new File(dir, MANIFEST).exists()) {
+            return null;
+        }
+        Map<String, String> manifest;
+        try {
+            manifest = readManifest(dir);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot read the blobs of " + dir, e);
+            return null;
+        }
+        String blob = manifest.get(name);
+        if (blob == null) {
+            blob = manifest.get(name + ReportFiles.GZIP_EXTENSION);
+        }
+        return blob == null ? null : getInstance().getBlob(blob);
+    }
+
+    /**
+     * @return whether the report is moved to the store when published
+     */
+    static boolean isStored(String name) {
+        if (name.endsWith(ReportFiles.GZIP_EXTENSION)) {
+            name = name.substring(0, name.length()
+                    - ReportFiles.GZIP_EXTENSION.length());
+        }
+        for (String extension : STORED_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the extensions of the name, e.g. <tt>.svg.gz</tt>
+     */
+    private static String getExtensions(String name) {
+        if (name.endsWith(ReportFiles.GZIP_EXTENSION)) {
+            String base = name.substring(0, name.length()
+                    - ReportFiles.GZIP_EXTENSION.length());
+            return getExtensions(base) + ReportFiles.GZIP_EXTENSION;
+        }
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot);
+    }
+
+    private static void count(Map<String, Integer> counts,
+            Collection<String> blobs) {
+        for (String blob : blobs) {
+            Integer count = counts.get(blob);
+            counts.put(blob, count == null ? 1 : count + 1);
+        }
+    }
+
+    private static String digest(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return Util.toHexString(digest.digest());
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.ivy.IvyModuleSetBuild;
+
+import jenkins.plugins.ivyreport.graph.DependencyDiff;
+
+/**
+ * What changed in the dependencies of a build since another build, as shown
+ * by <tt>ivyreport/diff?against=N</tt>.
+ */
+public final class BuildDiff {
+    private final IvyModuleSetBuild build;
+    private final IvyModuleSetBuild against;
+    private final DependencyDiff diff;
+
+    BuildDiff(IvyModuleSetBuild build, IvyModuleSetBuild against,
+            DependencyDiff diff) {
+        this.build = build;
+        this.against = against;
+        this.diff = diff;
+    }
+
+    public IvyModuleSetBuild getBuild() {
+        return build;
+    }
+
+    public IvyModuleSetBuild getAgainst() {
+        return against;
+    }
+
+    public DependencyDiff getDiff() {
+        return diff;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.model.Job;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Lists the build directories of a job straight from the disk, without
+ * loading any build.
+ * <p>
+ * Build directories are either named after the build number, or after the
+ * build timestamp with the number in their <tt>build.xml</tt>; the links
+ * to the builds, such as <tt>lastSuccessfulBuild</tt>, resolve to the same
+ * numbers and are only listed once.
+ */
+final class BuildDirs {
+    private BuildDirs() {
+    }
+
+    /**
+     * @return the directory of each build of the job, by build number
+     */
+    static SortedMap<Integer, File> list(Job<?, ?> job) {
+        SortedMap<Integer, File> dirs = new TreeMap<Integer, File>();
+        File[] files = job.getBuildDir().listFiles();
+        for (File dir : files == null ? new File[0] : files) {
+            if (!dir.isDirectory()) {
+                continue;
+            }
+            int number = getNumber(dir);
+            if (number > 0 && !dirs.containsKey(number)) {
+                dirs.put(number, dir);
+            }
+        }
+        return dirs;
+    }
+
+    /**
+     * @return the number of the build, or 0 if the directory is not the one
+     *         of a build
+     */
+    private static int getNumber(File dir) {
+        try {
+            return Integer.parseInt(dir.getName());
+        } catch (NumberFormatException e) {
+            // named after the timestamp of the build
+        }
+        File buildXml = new File(dir, "build.xml");
+        if (!buildXml.isFile()) {
+            return 0;
+        }
+        try {
+            InputStream in = new BufferedInputStream(new FileInputStream(
+                    buildXml));
+            try {
+                return readNumber(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Only reads the beginning of <tt>build.xml</tt>, up to the number of
+     * the build.
+     */
+    private static int readNumber(InputStream in) {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                int depth = 0;
+                while (reader.hasNext()) {
+                    switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        if (depth == 2
+                                && "number".equals(reader.getLocalName())) {
+                            return Integer.parseInt(reader.getElementText()
+                                    .trim());
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        depth--;
+                        break;
+                    default:
+                        break;
+                    }
+                }
+                return 0;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            return 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.FilePath.FileCallable;
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import hudson.util.io.Archiver;
+import hudson.util.io.ArchiverFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Collects, in a single remote call, everything the reports of a build need
+ * from the node holding the ivy resolution cache: the resolve reports of all
+ * the modules and the ivy files that changed since they were last copied.
+ * <p>
+ * The files are stat'ed, fingerprinted and written as a single compressed
+ * tar stream; the returned modules also tell which configurations have no
+ * resolve report, so that nothing else needs to be asked to the node. The
+ * fingerprint of a resolve report only depends on the resolved dependencies:
+ * the resolution date, the download times and the formatting of the file are
+ * ignored, so that unchanged reports are reused.
+ */
+public class CollectReportFilesCallable implements
+        FileCallable<ArrayList<CollectReportFilesCallable.Module>> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Directory of the resolve reports in the tar stream.
+     */
+    static final String REPORTS_DIR = "reports";
+
+    /**
+     * Directory of the ivy files in the tar stream, where the ivy file of a
+     * module is named after the position of the module.
+     */
+    static final String IVY_FILES_DIR = "ivy";
+
+    /**
+     * The files of a single module: filled in by the controller, completed
+     * by the node.
+     */
+    public static final class Module implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String resolveId;
+        private final String ivyFile;
+        private final long backupLastModified;
+        private final Map<String, String> reports = new LinkedHashMap<String, String>();
+        private long ivyFileLastModified;
+        private boolean ivyFileSent;
+
+        /**
+         * @param ivyFile
+         *            path of the ivy file relative to the workspace, may be
+         *            <tt>null</tt>
+         * @param backupLastModified
+         *            last modification time of the copy of the ivy file
+         *            on the controller, 0 if there is none
+         */
+        public Module(String resolveId, String ivyFile, long backupLastModified) {
+            this.resolveId = resolveId;
+            this.ivyFile = ivyFile;
+            this.backupLastModified = backupLastModified;
+        }
+
+        public String getResolveId() {
+            return resolveId;
+        }
+
+        /**
+         * @return the fingerprint of the content of the resolve report of
+         *         each configuration found, by configuration; configurations
+         *         missing from this map have no resolve report
+         */
+        public Map<String, String> getReports() {
+            return reports;
+        }
+
+        /**
+         * @return last modification time of the ivy file in the workspace,
+         *         0 if it could not be found
+         */
+        public long getIvyFileLastModified() {
+            return ivyFileLastModified;
+        }
+
+        /**
+         * @return whether the ivy file is newer than its copy on the
+         *         controller, and was therefore sent
+         */
+        public boolean isIvyFileSent() {
+            return ivyFileSent;
+        }
+    }
+
+    private final String workspace;
+    private final String[] confs;
+    private final List<Module> modules;
+    private final boolean includeReports;
+    private final OutputStream out;
+
+    /**
+     * @param workspace
+     *            the workspace the ivy files are relative to, may be
+     *            <tt>null</tt>
+     * @param confs
+     *            the requested configurations, possibly with wildcards; with
+     *            wildcards all the resolve reports of a module are collected
+     * @param includeReports
+     *            whether the resolve reports are sent, besides being
+     *            fingerprinted
+     * @param out
+     *            where the tar stream is written, typically a
+     *            {@link hudson.remoting.RemoteOutputStream}
+     */
+    public CollectReportFilesCallable(String workspace, String[] confs,
+            List<Module> modules, boolean includeReports, OutputStream out) {
+        this.workspace = workspace;
+        this.confs = confs;
+        this.modules = new ArrayList<Module>(modules);
+        this.includeReports = includeReports;
+        this.out = out;
+    }
+
+    public ArrayList<Module> invoke(File resolutionCacheRoot,
+            VirtualChannel channel) throws IOException {
+        ArrayList<Module> result = new ArrayList<Module>(modules);
+        Archiver archiver = ArchiverFactory.TARGZ.create(out);
+        try {
+            for (int i = 0; i < result.size(); i++) {
+                Module module = result.get(i);
+                for (File report : listReports(resolutionCacheRoot, module)) {
+                    String name = report.getName();
+                    String conf = getConf(module, report);
+                    module.reports.put(conf, fingerprint(report));
+                    if (includeReports) {
+                        archiver.visit(report, REPORTS_DIR + "/" + name);
+                    }
+                }
+                if (workspace != null && module.ivyFile != null) {
+                    File ivyFile = new File(workspace, module.ivyFile);
+                    module.ivyFileLastModified = ivyFile.lastModified();
+                    if (module.ivyFileLastModified > module.backupLastModified) {
+                        archiver.visit(ivyFile, IVY_FILES_DIR + "/" + i);
+                        module.ivyFileSent = true;
+                    }
+                }
+            }
+        } finally {
+            archiver.close();
+        }
+        return result;
+    }
+
+    /**
+     * Lists the existing resolve reports of the requested configurations.
+     * Reports of other modules whose name starts with the same prefix are
+     * left out, see {@link ResolveReportInfo}.
+     */
+    private List<File> listReports(File resolutionCacheRoot, Module module)
+            throws IOException {
+        final String prefix = module.resolveId + "-";
+        List<File> candidates = new ArrayList<File>();
+        if (hasWildcard()) {
+            File[] reports = resolutionCacheRoot.listFiles(new FileFilter() {
+                public boolean accept(File file) {
+                    return file.getName().startsWith(prefix)
+                            && file.getName().endsWith(".xml")
+                            && file.isFile();
+                }
+            });
+            if (reports != null) {
+                Arrays.sort(reports);
+                candidates.addAll(Arrays.asList(reports));
+            }
+        } else {
+            for (String conf : confs) {
+                candidates.add(new File(resolutionCacheRoot, prefix + conf
+                        + ".xml"));
+            }
+        }
+        List<File> reports = new ArrayList<File>();
+        for (File report : candidates) {
+            if (report.isFile() && isReportOf(report, module)) {
+                reports.add(report);
+            }
+        }
+        return reports;
+    }
+
+    private static String getConf(Module module, File report) {
+        String name = report.getName();
+        return name.substring(module.resolveId.length() + 1, name.length()
+                - ".xml".length());
+    }
+
+    private static boolean isReportOf(File report, Module module)
+            throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(report));
+        try {
+            return ResolveReportInfo.isReportOf(in, module.resolveId,
+                    getConf(module, report));
+        } finally {
+            in.close();
+        }
+    }
+
+    private boolean hasWildcard() {
+        for (String conf : confs) {
+            if (conf.indexOf('*') >= 0 || conf.startsWith("!")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String fingerprint(File report) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(report));
+        try {
+            return fingerprint(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Digests the elements, attributes and text of a resolve report, except
+     * the volatile attributes.
+     */
+    static String fingerprint(InputStream in) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new Error(e);
+        }
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                StringBuilder sb = new StringBuilder();
+                while (reader.hasNext()) {
+                    sb.setLength(0);
+                    switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        String element = reader.getLocalName();
+                        sb.append('<').append(element);
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            String name = reader.getAttributeLocalName(i);
+                            if (!isVolatile(element, name)) {
+                                sb.append(' ').append(name).append('=')
+                                        .append(reader.getAttributeValue(i))
+                                        .append('\u0000');
+                            }
+                        }
+                        sb.append('>');
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        sb.append("</>");
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        if (!reader.isWhiteSpace()) {
+                            sb.append(reader.getText().trim());
+                        }
+                        break;
+                    default:
+                        break;
+                    }
+                    if (sb.length() > 0) {
+                        digest.update(sb.toString().getBytes("UTF-8"));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            IOException ioe = new IOException("Invalid resolve report : "
+                    + e.getMessage());
+            ioe.initCause(e);
+            throw ioe;
+        }
+        return Util.toHexString(digest.digest());
+    }
+
+    private static boolean isVolatile(String element, String attribute) {
+        return "time".equals(attribute)
+                || ("info".equals(element) && "date".equals(attribute));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Extension;
+import hudson.model.Hudson;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.RootAction;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Searches the jobs which resolve a module, from the
+ * {@link DependencyUsageIndex}. <tt>ivy-usage/search?q=org:name[:revision]</tt>
+ * answers in JSON.
+ */
+@Extension
+public class DependencyUsageAction implements RootAction {
+    private static final String ICON_FILENAME = "/plugin/ivy-report/ivyReport.png";
+
+    public String getIconFileName() {
+        return ICON_FILENAME;
+    }
+
+    public String getDisplayName() {
+        return "Ivy dependency usage";
+    }
+
+    public String getUrlName() {
+        return "ivy-usage";
+    }
+
+    /**
+     * @param query
+     *            <tt>organisation</tt>, <tt>organisation:name</tt> or
+     *            <tt>organisation:name:revision</tt>
+     * @return the matching usages by the jobs the current user can see
+     */
+    public List<DependencyUsageIndex.Hit> find(String query)
+            throws IOException {
+        if (query == null || query.trim().length() == 0) {
+            return Collections.emptyList();
+        }
+        List<DependencyUsageIndex.Hit> visible = new ArrayList<DependencyUsageIndex.Hit>();
+        for (DependencyUsageIndex.Hit hit : DependencyUsageIndex.getInstance()
+                .find(query)) {
+            if (getJob(hit) != null) {
+                visible.add(hit);
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * @return the job of a usage, or <tt>null</tt> if it is gone or hidden
+     *         from the current user
+     */
+    public Job<?, ?> getJob(DependencyUsageIndex.Hit hit) {
+        Job<?, ?> job = Hudson.getInstance().getItemByFullName(hit.getJob(),
+                Job.class);
+        return job != null && job.hasPermission(Item.READ) ? job : null;
+    }
+
+    public void doSearch(StaplerRequest req, StaplerResponse rsp,
+            @QueryParameter String q) throws IOException {
+        JSONArray hits = new JSONArray();
+        for (DependencyUsageIndex.Hit hit : find(q)) {
+            JSONObject json = new JSONObject();
+            json.put("job", hit.getJob());
+            json.put("url", getJob(hit).getUrl() + hit.getBuild() + "/");
+            json.put("build", hit.getBuild());
+            json.put("module", hit.getModule());
+            json.put("revisions", hit.getRevisions());
+            hits.add(json);
+        }
+        JSONObject result = new JSONObject();
+        result.put("query", q);
+        result.put("hits", hits);
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().print(result.toString());
+    }
+}
@@ -0,0 +1,538 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Extension;
+import hudson.ivy.IvyModuleSetBuild;
+import hudson.model.Hudson;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.plugins.ivyreport.graph.DependencyIndex;
+
+/**
+ * Tells which jobs resolved a given module, in their newest build with an
+ * ivy report.
+ * <p>
+ * The index is held in memory, from module (<tt>organisation:name</tt>) to
+ * the jobs and the revisions they resolved. It is persisted in
+ * <tt>JENKINS_HOME</tt> as a log of records, one appended whenever the
+ * dependencies of a job change, which is replayed when the index is first
+ * used; the log is compacted once it is mostly made of outdated records.
+ * Builds are never looked through to fill the index.
+ */
+public final class DependencyUsageIndex {
+    private static final Logger LOGGER = Logger
+            .getLogger(DependencyUsageIndex.class.getName());
+
+    static final String FILE_NAME = "ivyreport-usage.bin";
+
+    private static final int MAGIC = 0x49565255; // IVRU
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte UPDATE = 1;
+    private static final byte REMOVE = 2;
+
+    /**
+     * Size of the log under which it is never compacted.
+     */
+    private static final long MIN_COMPACTED_SIZE = 64 * 1024;
+
+    private static DependencyUsageIndex instance;
+
+    /**
+     * The modules resolved by the newest build of a job with a report.
+     */
+    private static final class Usage {
+        final String job;
+        final int build;
+        final String[] modules;
+        final String[][] revisions;
+        final int recordSize;
+
+        Usage(String job, int build, String[] modules, String[][] revisions,
+                int recordSize) {
+            this.job = job;
+            this.build = build;
+            this.modules = modules;
+            this.revisions = revisions;
+            this.recordSize = recordSize;
+        }
+    }
+
+    /**
+     * A job which resolved a searched module.
+     */
+    public static final class Hit {
+        private final String job;
+        private final int build;
+        private final String module;
+        private final List<String> revisions;
+
+        Hit(String job, int build, String module, List<String> revisions) {
+            this.job = job;
+            this.build = build;
+            this.module = module;
+            this.revisions = revisions;
+        }
+
+        /**
+         * @return the full name of the job
+         */
+        public String getJob() {
+            return job;
+        }
+
+        public int getBuild() {
+            return build;
+        }
+
+        /**
+         * @return the module, as <tt>organisation:name</tt>
+         */
+        public String getModule() {
+            return module;
+        }
+
+        public List<String> getRevisions() {
+            return revisions;
+        }
+    }
+
+    /**
+     * Keeps the index up to date when the indexed builds are deleted.
+     */
+    @Extension
+    public static final class BuildUpdater extends
+            RunListener<IvyModuleSetBuild> {
+        public BuildUpdater() {
+            super(IvyModuleSetBuild.class);
+        }
+
+        @Override
+        public void onDeleted(IvyModuleSetBuild build) {
+            getInstance().onDeleted(build);
+        }
+    }
+
+    /**
+     * Keeps the index up to date when jobs are deleted or renamed.
+     */
+    @Extension
+    public static final class JobUpdater extends ItemListener {
+        @Override
+        public void onDeleted(Item item) {
+            getInstance().remove(item.getFullName());
+        }
+
+        @Override
+        public void onRenamed(Item item, String oldName, String newName) {
+            String fullName = item.getFullName();
+            getInstance().rename(
+                    fullName.substring(0, fullName.length() - newName.length())
+                            + oldName, fullName);
+        }
+    }
+
+    private final File file;
+    private boolean loaded;
+
+    private final Map<String, Usage> jobs = new HashMap<String, Usage>();
+    /**
+     * The usages of every module, by job.
+     */
+    private final Map<String, Map<String, Usage>> modules = new HashMap<String, Map<String, Usage>>();
+    /**
+     * Size of the records of the current usages.
+     */
+    private long liveSize;
+
+    DependencyUsageIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the index of the current Jenkins home, a new one if Jenkins was
+     *         started again on another home in the same JVM
+     */
+    static synchronized DependencyUsageIndex getInstance() {
+        File file = new File(Hudson.getInstance().getRootDir(), FILE_NAME);
+        if (instance == null || !instance.file.equals(file)) {
+            instance = new DependencyUsageIndex(file);
+        }
+        return instance;
+    }
+
+    /**
+     * Records the dependencies of a build, unless a newer build of the job is
+     * already indexed.
+     */
+    synchronized void update(String job, int build,
+            DependencyIndex dependencies) throws IOException {
+        load();
+        Usage current = jobs.get(job);
+        if (current != null && current.build > build) {
+            return;
+        }
+        // keyed by organisation:name, which does not sort as org#name
+        SortedMap<String, SortedSet<String>> selected = new TreeMap<String, SortedSet<String>>();
+        for (Map.Entry<String, SortedSet<String>> module : dependencies
+                .getSelectedRevisions().entrySet()) {
+            selected.put(module.getKey().replace('#', ':'), module.getValue());
+        }
+        String[] names = new String[selected.size()];
+        String[][] revisions = new String[selected.size()][];
+        int i = 0;
+        for (Map.Entry<String, SortedSet<String>> module : selected
+                .entrySet()) {
+            names[i] = module.getKey();
+            revisions[i] = module.getValue().toArray(
+                    new String[module.getValue().size()]);
+            i++;
+        }
+        append(job, build, names, revisions);
+    }
+
+    synchronized void remove(String job) {
+        try {
+            load();
+            if (jobs.containsKey(job)) {
+                byte[] record = toRecord(REMOVE, job, 0, null, null);
+                write(record);
+                apply(REMOVE, job, 0, null, null, record.length);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot update " + file, e);
+        }
+    }
+
+    synchronized void rename(String oldJob, String newJob) {
+        try {
+            load();
+            Usage usage = jobs.get(oldJob);
+            if (usage != null) {
+                remove(oldJob);
+                append(newJob, usage.build, usage.modules, usage.revisions);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot update " + file, e);
+        }
+    }
+
+    /**
+     * Forgets a deleted build, falling back on the previous build of the job
+     * with a dependency index.
+     */
+    synchronized void onDeleted(IvyModuleSetBuild build) {
+        String job = build.getProject().getFullName();
+        try {
+            load();
+            Usage usage = jobs.get(job);
+            if (usage == null || usage.build != build.getNumber()) {
+                return;
+            }
+            for (IvyModuleSetBuild b = build.getPreviousBuild(); b != null; b = b
+                    .getPreviousBuild()) {
+                IvyReportBuildAction action = b
+                        .getAction(IvyReportBuildAction.class);
+                DependencyIndex dependencies = action == null ? null : action
+                        .getDependencies();
+                if (dependencies != null) {
+                    // older than the deleted build, so not skipped
+                    remove(job);
+                    update(job, b.getNumber(), dependencies);
+                    return;
+                }
+            }
+            remove(job);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot update " + file, e);
+        }
+    }
+
+    /**
+     * @param query
+     *            <tt>organisation</tt>, <tt>organisation:name</tt> or
+     *            <tt>organisation:name:revision</tt>
+     * @return the jobs which resolved the matching modules, by module then
+     *         job
+     */
+    synchronized List<Hit> find(String query) throws IOException {
+        load();
+        String[] parts = query.trim().split(":", 3);
+        List<String> names = new ArrayList<String>();
+        if (parts.length == 1) {
+            String prefix = parts[0] + ":";
+            for (String module : modules.keySet()) {
+                if (module.startsWith(prefix)) {
+                    names.add(module);
+                }
+            }
+            Collections.sort(names);
+        } else {
+            names.add(parts[0] + ":" + parts[1]);
+        }
+        String revision = parts.length == 3 ? parts[2] : null;
+        List<Hit> hits = new ArrayList<Hit>();
+        for (String name : names) {
+            Map<String, Usage> usages = modules.get(name);
+            if (usages == null) {
+                continue;
+            }
+            List<Hit> moduleHits = new ArrayList<Hit>();
+            for (Usage usage : usages.values()) {
+                // the modules of a usage are sorted
+                String[] revisions = usage.revisions[Arrays.binarySearch(
+                        usage.modules, name)];
+                List<String> matching = new ArrayList<String>();
+                for (String r : revisions) {
+                    if (revision == null || revision.equals(r)) {
+                        matching.add(r);
+                    }
+                }
+                if (!matching.isEmpty()) {
+                    moduleHits.add(new Hit(usage.job, usage.build, name,
+                            matching));
+                }
+            }
+            Collections.sort(moduleHits, new Comparator<Hit>() {
+                public int compare(Hit a, Hit b) {
+                    return a.job.compareTo(b.job);
+                }
+            });
+            hits.addAll(moduleHits);
+        }
+        return hits;
+    }
+
+    private void append(String job, int build, String[] names,
+            String[][] revisions) throws IOException {
+        byte[] record = toRecord(UPDATE, job, build, names, revisions);
+        write(record);
+        apply(UPDATE, job, build, names, revisions, record.length);
+        if (file.length() > Math.max(MIN_COMPACTED_SIZE, 2 * liveSize)) {
+            compact();
+        }
+    }
+
+    private void apply(byte type, String job, int build, String[] names,
+            String[][] revisions, int recordSize) {
+        Usage previous = jobs.remove(job);
+        if (previous != null) {
+            liveSize -= previous.recordSize;
+            for (String module : previous.modules) {
+                Map<String, Usage> usages = modules.get(module);
+                usages.remove(job);
+                if (usages.isEmpty()) {
+                    modules.remove(module);
+                }
+            }
+        }
+        if (type != UPDATE) {
+            return;
+        }
+        Usage usage = new Usage(job, build, names, revisions, recordSize);
+        jobs.put(job, usage);
+        liveSize += recordSize;
+        for (String module : names) {
+            Map<String, Usage> usages = modules.get(module);
+            if (usages == null) {
+                usages = new HashMap<String, Usage>();
+                modules.put(module, usages);
+            }
+            usages.put(job, usage);
+        }
+    }
+
+    /**
+     * A record is its size followed by its content, so that a record
+     * partially written by a crash is detected.
+     */
+    private static byte[] toRecord(byte type, String job, int build,
+            String[] names, String[][] revisions) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeByte(type);
+        out.writeUTF(job);
+        if (type == UPDATE) {
+            out.writeInt(build);
+            out.writeInt(names.length);
+            for (int i = 0; i < names.length; i++) {
+                out.writeUTF(names[i]);
+                out.writeInt(revisions[i].length);
+                for (String revision : revisions[i]) {
+                    out.writeUTF(revision);
+                }
+            }
+        }
+        out.close();
+        byte[] record = bytes.toByteArray();
+        int size = record.length - 4;
+        record[0] = (byte) (size >>> 24);
+        record[1] = (byte) (size >>> 16);
+        record[2] = (byte) (size >>> 8);
+        record[3] = (byte) size;
+        return record;
+    }
+
+    private void write(byte[] record) throws IOException {
+        if (!file.exists()) {
+            writeHeader(file);
+        }
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(record);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeHeader(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Replays the log.
+     */
+    private void load() throws IOException {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        long valid = HEADER_SIZE;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.warning("Ignoring " + file + ", which is not an index");
+                in.close();
+                file.delete();
+                return;
+            }
+            while (true) {
+                int size;
+                try {
+                    size = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] content = new byte[size];
+                in.readFully(content);
+                read(content);
+                valid += 4 + size;
+            }
+        } catch (EOFException e) {
+            LOGGER.warning("Dropping the truncated end of " + file);
+        } finally {
+            in.close();
+        }
+        if (valid < file.length()) {
+            RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+            try {
+                truncated.setLength(valid);
+            } finally {
+                truncated.close();
+            }
+        }
+    }
+
+    private void read(byte[] content) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(content));
+        byte type = in.readByte();
+        String job = in.readUTF();
+        if (type != UPDATE) {
+            apply(type, job, 0, null, null, 4 + content.length);
+            return;
+        }
+        int build = in.readInt();
+        String[] names = new String[in.readInt()];
+        String[][] revisions = new String[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = in.readUTF();
+            revisions[i] = new String[in.readInt()];
+            for (int r = 0; r < revisions[i].length; r++) {
+                revisions[i][r] = in.readUTF();
+            }
+        }
+        apply(type, job, build, names, revisions, 4 + content.length);
+    }
+
+    /**
+     * Rewrites the log with the current usages only.
+     */
+    private void compact() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        writeHeader(tmp);
+        FileOutputStream out = new FileOutputStream(tmp, true);
+        try {
+            for (Usage usage : jobs.values()) {
+                out.write(toRecord(UPDATE, usage.job, usage.build,
+                        usage.modules, usage.revisions));
+            }
+        } finally {
+            out.close();
+        }
+        file.delete();
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Unable to rename " + tmp + " to " + file);
+        }
+    }
+}
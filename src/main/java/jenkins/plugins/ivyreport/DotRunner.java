@@ -0,0 +1,205 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Launcher;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the <tt>dot</tt> executable to convert dot files to svg.
+ * <p>
+ * The number of <tt>dot</tt> processes running at the same time is bounded
+ * JVM-wide. In batch mode all the graphs given to {@link #render(File[])} are
+ * converted by a single <tt>dot -O</tt> process; graphs that this process did
+ * not manage to render (e.g. because <tt>dot</tt> crashed on one of them) are
+ * then converted one by one, so a bad graph only costs its own svg.
+ */
+class DotRunner {
+    private static final Logger LOGGER = Logger.getLogger(DotRunner.class
+            .getName());
+
+    private static Semaphore permits;
+    private static int permitsSize;
+
+    private final Launcher launcher;
+    private final String dotPath;
+    private final boolean batch;
+    private final Semaphore processes;
+
+    /**
+     * @param processes
+     *            maximum number of <tt>dot</tt> processes running at the same
+     *            time in this JVM, 0 for no limit
+     */
+    DotRunner(Launcher launcher, String dotPath, boolean batch, int processes) {
+        this.launcher = launcher;
+        this.dotPath = dotPath;
+        this.batch = batch;
+        this.processes = getPermits(processes);
+    }
+
+    private static synchronized Semaphore getPermits(int size) {
+        if (size <= 0) {
+            return null;
+        }
+        // a resized pool only applies to the processes started afterwards
+        if (permits == null || permitsSize != size) {
+            permits = new Semaphore(size, true);
+            permitsSize = size;
+        }
+        return permits;
+    }
+
+    /**
+     * @return the svg files, in the same order as the dot files
+     */
+    File[] render(File[] dotFiles) throws IOException, InterruptedException {
+        File[] svgFiles = new File[dotFiles.length];
+        if (batch && dotFiles.length > 1) {
+            renderBatch(dotFiles);
+        }
+        for (int i = 0; i < dotFiles.length; i++) {
+            File svgFile = getSvgFile(dotFiles[i]);
+            if (!batch || dotFiles.length == 1 || svgFile.length() == 0) {
+                if (batch && dotFiles.length > 1) {
+                    LOGGER.fine("Rendering " + dotFiles[i]
+                            + " on its own after batch failure");
+                }
+                renderOne(dotFiles[i], svgFile);
+            }
+            svgFiles[i] = svgFile;
+        }
+        return svgFiles;
+    }
+
+    private static File getSvgFile(File dotFile) {
+        return new File(dotFile.getParentFile(), dotFile.getName().replace(
+                ".dot", ".svg"));
+    }
+
+    /**
+     * Renders all the files with <tt>dot -Tsvg -O</tt>, which writes
+     * <tt>x.dot.svg</tt> next to every <tt>x.dot</tt>.
+     */
+    private void renderBatch(File[] dotFiles) throws IOException,
+            InterruptedException {
+        List<String> cmds = new ArrayList<String>();
+        cmds.add(dotPath);
+        cmds.add("-Tsvg");
+        cmds.add("-O");
+        for (File dotFile : dotFiles) {
+            cmds.add(dotFile.getName());
+        }
+        int exitCode;
+        acquire();
+        try {
+            exitCode = launcher.launch().cmds(cmds)
+                    .pwd(dotFiles[0].getParentFile()).start().join();
+        } finally {
+            release();
+        }
+        if (exitCode != 0) {
+            LOGGER.warning("dot exited with code " + exitCode
+                    + " while rendering " + dotFiles.length + " graphs");
+        }
+        for (File dotFile : dotFiles) {
+            File output = new File(dotFile.getParentFile(), dotFile.getName()
+                    + ".svg");
+            File svgFile = getSvgFile(dotFile);
+            svgFile.delete();
+            // when dot failed, the graph it was working on may be truncated
+            boolean rendered = output.length() > 0
+                    && (exitCode == 0 || isComplete(output));
+            if (rendered && !output.renameTo(svgFile)) {
+                throw new IOException("Unable to rename " + output + " to "
+                        + svgFile);
+            }
+            output.delete();
+        }
+    }
+
+    private static boolean isComplete(File svgFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(svgFile, "r");
+        try {
+            byte[] tail = new byte[(int) Math.min(32, file.length())];
+            file.seek(file.length() - tail.length);
+            file.readFully(tail);
+            return new String(tail, "ISO-8859-1").contains("</svg>");
+        } finally {
+            file.close();
+        }
+    }
+
+    private void renderOne(File inputFile, File outputFile)
+            throws IOException, InterruptedException {
+        InputStream input = null;
+        OutputStream output = null;
+        acquire();
+        try {
+            input = new FileInputStream(inputFile);
+            output = new FileOutputStream(outputFile);
+            launcher.launch().cmds(dotPath, "-T" + "svg").stdin(input)
+                    .stdout(output).start().join();
+        } catch (InterruptedException e) {
+            LOGGER.log(Level.SEVERE,
+                    "Interrupted while waiting for dot-file to be created", e);
+            throw e;
+        } finally {
+            try {
+                if (output != null) {
+                    output.close();
+                }
+                if (input != null) {
+                    input.close();
+                }
+            } finally {
+                release();
+            }
+        }
+    }
+
+    private void acquire() throws InterruptedException {
+        if (processes != null) {
+            processes.acquire();
+        }
+    }
+
+    private void release() {
+        if (processes != null) {
+            processes.release();
+        }
+    }
+}
@@ -25,6 +25,10 @@ package jenkins.plugins.ivyreport;
 
 import hudson.EnvVars;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.ivy.core.settings.IvyVariableContainerImpl;
 
 /**
@@ -37,16 +41,33 @@ import org.apache.ivy.core.settings.IvyVariableContainerImpl;
 public class EnvVarsVariableContainer extends IvyVariableContainerImpl {
     private EnvVars envVars;
 
+    /**
+     * Shared with the clones, so that the variables read through any of
+     * them are known.
+     */
+    private final Map<String, String> readVariables = Collections
+            .synchronizedMap(new HashMap<String, String>());
+
     public EnvVarsVariableContainer(EnvVars envVars) {
         this.envVars = envVars;
     }
 
+    /**
+     * @return the environment variables read so far, with the values they
+     *         had; iterate while synchronized on the returned map
+     */
+    public Map<String, String> getReadVariables() {
+        return readVariables;
+    }
+
     @Override
     public String getVariable(String name) {
         String val = null;
         String envPrefix = getEnvironmentPrefix();
         if ((envPrefix != null) && name.startsWith(envPrefix)) {
-            val = envVars.get(name.substring(envPrefix.length()));
+            String envName = name.substring(envPrefix.length());
+            val = envVars.get(envName);
+            readVariables.put(envName, val);
         } else {
             val = super.getVariable(name);
         }
@@ -0,0 +1,267 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.FilePath.FileCallable;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import hudson.util.LogTaskListener;
+import hudson.util.io.Archiver;
+import hudson.util.io.ArchiverFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.plugins.ivyreport.graph.AggregatedGraph;
+import jenkins.plugins.ivyreport.graph.DependencyIndex;
+import jenkins.plugins.ivyreport.graph.ResolveReport;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Generates the reports of all the modules of a build on the node holding
+ * the ivy resolution cache, in a single remote call, so that the controller
+ * only has to unpack the result.
+ * <p>
+ * Each resolve report is parsed once, for its html report and its graph as
+ * well as for the summary, the dependency index and the aggregated graph of
+ * the build, which are computed here too. The compressed reports of the
+ * modules which completed and the files of the build are written as a single
+ * compressed tar stream. The modules whose reports are reused from the
+ * previous build are only summarized.
+ */
+public class GenerateReportsCallable implements
+        FileCallable<ArrayList<String>> {
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger
+            .getLogger(GenerateReportsCallable.class.getName());
+
+    /**
+     * A module whose reports are generated, or only summarized.
+     */
+    public static final class Module implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String resolveId;
+        private final String[] confs;
+        private final boolean render;
+
+        /**
+         * @param confs
+         *            the configurations, without wildcards
+         * @param render
+         *            whether the reports are generated, rather than reused
+         *            from the previous build
+         */
+        public Module(String resolveId, String[] confs, boolean render) {
+            this.resolveId = resolveId;
+            this.confs = confs;
+            this.render = render;
+        }
+    }
+
+    private final List<Module> modules;
+    private final ReportSettings settings;
+    private final int threads;
+    private final int timeout;
+    private final OutputStream out;
+
+    /**
+     * @param threads
+     *            number of modules generated concurrently
+     * @param timeout
+     *            time in seconds given to each module, 0 for no timeout
+     * @param out
+     *            where the tar stream is written, typically a
+     *            {@link hudson.remoting.RemoteOutputStream}
+     */
+    public GenerateReportsCallable(List<Module> modules,
+            ReportSettings settings, int threads, int timeout,
+            OutputStream out) {
+        this.modules = new ArrayList<Module>(modules);
+        this.settings = settings;
+        this.threads = threads;
+        this.timeout = timeout;
+        this.out = out;
+    }
+
+    /**
+     * @return the failure of each module, <tt>null</tt> for the modules which
+     *         completed
+     */
+    public ArrayList<String> invoke(File resolutionCacheRoot,
+            VirtualChannel channel) throws IOException, InterruptedException {
+        File dir = File.createTempFile("ivyreport", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Unable to create directory : " + dir);
+        }
+        try {
+            Launcher launcher = new Launcher.LocalLauncher(
+                    new LogTaskListener(LOGGER, Level.CONFIG));
+            List<ModuleTask> tasks = new ArrayList<ModuleTask>();
+            for (Module module : modules) {
+                tasks.add(new ModuleTask(module, resolutionCacheRoot, dir,
+                        launcher));
+            }
+            List<ModuleExecutor.Outcome<ModuleFigures>> outcomes = ModuleExecutor
+                    .run(tasks, threads, TimeUnit.SECONDS.toMillis(timeout));
+
+            ArrayList<String> failures = new ArrayList<String>();
+            ReportSummary summary = new ReportSummary();
+            DependencyIndex dependencies = new DependencyIndex();
+            AggregatedGraph aggregate = new AggregatedGraph();
+            Archiver archiver = ArchiverFactory.TARGZ.create(out);
+            try {
+                for (int i = 0; i < modules.size(); i++) {
+                    Module module = modules.get(i);
+                    ModuleExecutor.Outcome<ModuleFigures> outcome = outcomes
+                            .get(i);
+                    if (outcome.getResult() == null) {
+                        failures.add(getFailure(module, outcome));
+                        continue;
+                    }
+                    failures.add(null);
+                    outcome.getResult().addTo(summary, dependencies,
+                            aggregate);
+                    if (module.render) {
+                        for (String conf : module.confs) {
+                            String name = module.resolveId + "-" + conf;
+                            archive(archiver, dir, name + ".xml");
+                            archive(archiver, dir, name + ".html"
+                                    + ReportFiles.GZIP_EXTENSION);
+                            archive(archiver, dir, name + ".svg"
+                                    + ReportFiles.GZIP_EXTENSION);
+                        }
+                    }
+                }
+                ReportFiles.writeIndexes(dir, summary, dependencies,
+                        aggregate);
+                archive(archiver, dir, ReportSummary.FILE_NAME);
+                archive(archiver, dir, IvyReportBuildAction.DEPENDENCIES_FILE);
+                archive(archiver, dir, IvyReportBuildAction.AGGREGATE_FILE);
+            } finally {
+                archiver.close();
+            }
+            return failures;
+        } finally {
+            Util.deleteRecursive(dir);
+        }
+    }
+
+    private String getFailure(Module module,
+            ModuleExecutor.Outcome<ModuleFigures> outcome) {
+        if (outcome.isTimedOut()) {
+            return "timed out after " + timeout + " seconds";
+        }
+        Throwable cause = outcome.getFailure();
+        LOGGER.log(Level.FINE, "Ivy report failed for " + module.resolveId,
+                cause);
+        return cause.getMessage();
+    }
+
+    private static void archive(Archiver archiver, File dir, String name)
+            throws IOException {
+        File file = new File(dir, name);
+        if (file.isFile()) {
+            archiver.visit(file, name);
+        }
+    }
+
+    /**
+     * Generates, or only summarizes, the reports of a module.
+     */
+    private final class ModuleTask extends ModuleExecutor.Task<ModuleFigures> {
+        private final Module module;
+        private final File resolutionCacheRoot;
+        private final File dir;
+        private final Launcher launcher;
+
+        ModuleTask(Module module, File resolutionCacheRoot, File dir,
+                Launcher launcher) {
+            this.module = module;
+            this.resolutionCacheRoot = resolutionCacheRoot;
+            this.dir = dir;
+            this.launcher = launcher;
+        }
+
+        @Override
+        protected ModuleFigures run() throws IOException, InterruptedException {
+            ModuleFigures figures = new ModuleFigures();
+            if (!module.render) {
+                for (String conf : module.confs) {
+                    checkInterrupted();
+                    figures.parsed(parse(getReportFile(conf)));
+                }
+                return figures;
+            }
+            for (String conf : module.confs) {
+                File report = getReportFile(conf);
+                FileUtils.copyFile(report, new File(dir, report.getName()));
+            }
+            // the stylesheet is shared by all the modules, copied by the
+            // controller
+            IvyReportGenerator generator = new IvyReportGenerator(launcher,
+                    settings, module.resolveId, module.confs,
+                    resolutionCacheRoot, dir);
+            generator.setListener(figures);
+            generator.generateReports();
+            for (String conf : module.confs) {
+                checkInterrupted();
+                ReportFiles.compress(dir, module.resolveId + "-" + conf);
+            }
+            return figures;
+        }
+
+        private File getReportFile(String conf) throws IOException {
+            File report = new File(resolutionCacheRoot, module.resolveId
+                    + "-" + conf + ".xml");
+            if (!report.isFile()) {
+                throw new IOException("Report file does not exist : "
+                        + report.getAbsolutePath());
+            }
+            return report;
+        }
+
+        private ResolveReport parse(File report) throws IOException {
+            InputStream in = new BufferedInputStream(new FileInputStream(
+                    report));
+            try {
+                return ResolveReport.parse(in);
+            } finally {
+                in.close();
+            }
+        }
+    }
+}
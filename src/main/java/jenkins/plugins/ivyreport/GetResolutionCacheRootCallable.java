@@ -118,20 +118,8 @@ public class GetResolutionCacheRootCallable implements
             }
         }
         try {
-            IvySettings ivySettings = new IvySettings(
-                    new EnvVarsVariableContainer(envVars));
-            for (File file : propertyFiles) {
-                ivySettings.loadProperties(file);
-            }
-            if (settingsLoc != null) {
-                ivySettings.load(settingsLoc);
-            } else {
-                ivySettings.loadDefault();
-            }
-            if (ivyBranch != null) {
-                ivySettings.setDefaultBranch(ivyBranch);
-            }
-            return ivySettings;
+            return IvySettingsCache.INSTANCE.getSettings(settingsLoc,
+                    propertyFiles, ivyBranch, envVars);
         } catch (Exception e) {
             logger.println("Error while reading the default Ivy 2.1 settings: "
                     + e.getMessage());
@@ -27,6 +27,7 @@ import hudson.AbortException;
 import hudson.FilePath;
 import hudson.ivy.IvyMessageImpl;
 import hudson.ivy.IvyModule;
+import hudson.ivy.IvyModuleSet;
 import hudson.ivy.IvyModuleSetBuild;
 
 import java.io.File;
@@ -46,7 +47,6 @@ import org.apache.ivy.Ivy;
 import org.apache.ivy.Ivy.IvyCallback;
 import org.apache.ivy.core.IvyContext;
 import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
-import org.apache.ivy.core.settings.IvySettings;
 import org.apache.ivy.plugins.parser.ModuleDescriptorParserRegistry;
 import org.apache.ivy.util.ConfigurationUtils;
 import org.apache.ivy.util.Message;
@@ -66,11 +66,31 @@ class IvyAccess {
 
     private final IvyModuleSetBuild build;
     private final IvyModule ivyModule;
+    private final boolean backupUpToDate;
     private ModuleDescriptor moduleDescriptor;
 
     IvyAccess(IvyModuleSetBuild build, IvyModule ivyModule) {
+        this(build, ivyModule, false);
+    }
+
+    /**
+     * @param backupUpToDate
+     *            whether the backup ivy file was already refreshed from the
+     *            workspace, so that the workspace is not accessed again
+     */
+    IvyAccess(IvyModuleSetBuild build, IvyModule ivyModule,
+            boolean backupUpToDate) {
         this.build = build;
         this.ivyModule = ivyModule;
+        this.backupUpToDate = backupUpToDate;
+    }
+
+    /**
+     * @return the local backup copy of the ivy file of a module
+     */
+    static File getBackupIvyFile(IvyModuleSet project, IvyModule ivyModule) {
+        return new File(project.getRootDir(), ivyModule.getModuleName()
+                .toFileSystemName() + '$' + BACKUP_IVY_FILE_NAME);
     }
 
     /**
@@ -128,14 +148,12 @@ class IvyAccess {
         if (ivy == null) {
             return;
         }
-        final File ivyF = new File(build.getProject().getRootDir(), ivyModule
-                .getModuleName().toFileSystemName()
-                + '$'
-                + BACKUP_IVY_FILE_NAME);
+        final File ivyF = getBackupIvyFile(build.getProject(), ivyModule);
         try {
-            copyIvyFileFromWorkspaceIfNecessary(
-                    build.getWorkspace().child(ivyModule.getRelativePath()),
-                    ivyF);
+            if (!backupUpToDate)
+                copyIvyFileFromWorkspaceIfNecessary(
+                        build.getWorkspace().child(ivyModule.getRelativePath()),
+                        ivyF);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING,
                     "Failed to access the workspace ivy file", e);
@@ -153,6 +171,12 @@ class IvyAccess {
                     "Cannot read ivy file backup...removing ModuleDescriptor");
             return;
         }
+        moduleDescriptor = ModuleDescriptorCache.INSTANCE.get(ivyF, ivy);
+        if (moduleDescriptor != null) {
+            return;
+        }
+        long lastModified = ivyF.lastModified();
+        long length = ivyF.length();
         moduleDescriptor = (ModuleDescriptor) ivy.execute(new IvyCallback() {
             public Object doInIvyContext(Ivy ivy, IvyContext context) {
                 try {
@@ -176,6 +200,10 @@ class IvyAccess {
                 }
             }
         });
+        if (moduleDescriptor != null) {
+            ModuleDescriptorCache.INSTANCE.put(ivyF, ivy, lastModified, length,
+                    moduleDescriptor);
+        }
     }
 
     /**
@@ -211,19 +239,15 @@ class IvyAccess {
         }
 
         try {
-            IvySettings ivySettings = new IvySettings();
-            for (File file : propertyFiles) {
-                ivySettings.loadProperties(file);
-            }
+            Ivy ivy = IvySettingsCache.INSTANCE.getIvy(settingsLoc,
+                    propertyFiles, null, null);
             if (settingsLoc != null) {
-                ivySettings.load(settingsLoc);
                 LOGGER.fine("Configured Ivy using custom settings "
                         + settingsLoc.getAbsolutePath());
             } else {
-                ivySettings.loadDefault();
                 LOGGER.fine("Configured Ivy using default 2.1 settings");
             }
-            return Ivy.newInstance(ivySettings);
+            return ivy;
         } catch (Exception e) {
             LOGGER.severe("Error while reading the default Ivy 2.1 settings: "
                     + e.getMessage());
@@ -239,6 +263,15 @@ class IvyAccess {
                 return requested;
             }
         }
+        return expandConfs(requested, moduleDescriptor);
+    }
+
+    /**
+     * @return the configurations of the module matched by the requested ones,
+     *         which may hold wildcards, without duplicates
+     */
+    static String[] expandConfs(String[] requested,
+            ModuleDescriptor moduleDescriptor) {
         String[] expanded = ConfigurationUtils.replaceWildcards(requested,
                 moduleDescriptor);
         LinkedHashSet<String> result = new LinkedHashSet<String>();
@@ -27,36 +27,271 @@ import hudson.FilePath;
 import hudson.ivy.ModuleName;
 import hudson.ivy.IvyModule;
 
+import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import javax.servlet.ServletException;
 
+import jenkins.plugins.ivyreport.graph.GraphReduction;
+
 import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
 
+@ExportedBean(defaultVisibility = 2)
 public class IvyReport implements HttpResponse {
     private final ModuleName name;
     private final FilePath path;
 
+    /**
+     * Resolve id and configurations of a report published in lazy mode,
+     * <tt>null</tt> if the report was rendered when published.
+     */
+    private final String resolveId;
+    private final String[] confs;
+
+    /**
+     * How the graphs of a report published in lazy mode are reduced,
+     * <tt>null</tt> for the automatic reduction.
+     */
+    private final GraphReduction graphReduction;
+
+    /**
+     * Digest of the fingerprints of the resolve reports of a report
+     * published in lazy mode, <tt>null</tt> for reports published by older
+     * versions of the plugin.
+     */
+    private final String fingerprint;
+
     public IvyReport(ModuleName name, FilePath path) {
+        this(name, path, null, null);
+    }
+
+    /**
+     * Creates a report rendered when first viewed, from the resolve reports
+     * of the given configurations kept next to <tt>path</tt>.
+     */
+    public IvyReport(ModuleName name, FilePath path, String resolveId,
+            String[] confs) {
+        this(name, path, resolveId, confs, null);
+    }
+
+    public IvyReport(ModuleName name, FilePath path, String resolveId,
+            String[] confs, GraphReduction graphReduction) {
+        this(name, path, resolveId, confs, graphReduction, null);
+    }
+
+    public IvyReport(ModuleName name, FilePath path, String resolveId,
+            String[] confs, GraphReduction graphReduction, String fingerprint) {
         super();
         this.name = name;
         this.path = path;
+        this.resolveId = resolveId;
+        this.confs = confs;
+        this.graphReduction = graphReduction;
+        this.fingerprint = fingerprint;
     }
 
     public ModuleName getName() {
         return name;
     }
 
-    @Override
-    public void generateResponse(StaplerRequest req, StaplerResponse rsp,
-            Object node) throws IOException, ServletException {
+    /**
+     * @return the module, as <tt>organisation:name</tt>
+     */
+    @Exported(name = "module")
+    public String getModule() {
+        return name.toString();
+    }
+
+    /**
+     * @return the prefix of the names of the resolve reports of the module
+     */
+    String getResolveId() {
+        return resolveId != null ? resolveId : name.organisation + "-"
+                + name.name;
+    }
+
+    /**
+     * @return whether the report is rendered when first viewed
+     */
+    public boolean isLazy() {
+        return confs != null;
+    }
+
+    /**
+     * @return the directory of the report
+     */
+    File getDir() {
+        return new File(path.getRemote()).getParentFile();
+    }
+
+    /**
+     * @return the configurations of a report published in lazy mode
+     */
+    String[] getConfs() {
+        return confs;
+    }
+
+    /**
+     * @return how the graphs of a report published in lazy mode are reduced,
+     *         <tt>null</tt> for the automatic reduction
+     */
+    GraphReduction getGraphReduction() {
+        return graphReduction;
+    }
+
+    /**
+     * @return the same report, once its html and svg reports are stored next
+     *         to the resolve reports
+     */
+    IvyReport toRendered() {
+        return new IvyReport(name, path);
+    }
+
+    /**
+     * Sends the stored file, rendered first if needed.
+     * 
+     * @param fileName
+     *            name of the main report or of one of its siblings
+     */
+    void serve(StaplerRequest req, StaplerResponse rsp, String fileName)
+            throws IOException {
+        File dir = getDir();
+        File stored = ReportFiles.resolve(dir, fileName);
+        if (stored != null || !isRendered(fileName)) {
+            serve(req, rsp, stored);
+            return;
+        }
+        RenderedReportCache cache = RenderedReportCache.getInstance();
+        File rendered;
         try {
-            rsp.serveFile(req, path.toURI().toURL());
+            rendered = cache.acquire(dir, resolveId, confs, graphReduction,
+                    getResolveReportsIdentity());
         } catch (InterruptedException e) {
             throw new IOException(e);
         }
+        try {
+            serve(req, rsp, ReportFiles.resolve(rendered, fileName));
+        } finally {
+            cache.release(rendered);
+        }
+    }
+
+    private static void serve(StaplerRequest req, StaplerResponse rsp,
+            File file) throws IOException {
+        if (file == null) {
+            rsp.sendError(StaplerResponse.SC_NOT_FOUND);
+            return;
+        }
+        ReportFiles.serve(req, rsp, file);
+    }
+
+    /**
+     * @return what identifies the content of the resolve reports of a report
+     *         published in lazy mode: their fingerprints, or the size and
+     *         date of the stored resolve reports for reports published by
+     *         older versions of the plugin
+     */
+    private String getResolveReportsIdentity() {
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+        StringBuilder identity = new StringBuilder();
+        for (String conf : confs) {
+            File report = ReportFiles.resolve(getDir(), resolveId + "-" + conf
+                    + ".xml");
+            if (report != null) {
+                identity.append(report.length()).append('@')
+                        .append(report.lastModified());
+            }
+            identity.append(';');
+        }
+        return identity.toString();
+    }
+
+    /**
+     * @return the configurations whose resolve reports are kept with the
+     *         report, sorted
+     */
+    public List<String> getConfigurations() {
+        if (isLazy()) {
+            List<String> configurations = new ArrayList<String>(
+                    Arrays.asList(confs));
+            Collections.sort(configurations);
+            return configurations;
+        }
+        final String prefix = getResolveId() + "-";
+        String[] names = getDir().list(
+                new FilenameFilter() {
+                    public boolean accept(File dir, String name) {
+                        return name.startsWith(prefix)
+                                && (name.endsWith(".xml") || name
+                                        .endsWith(".xml"
+                                                + ReportFiles.GZIP_EXTENSION));
+                    }
+                });
+        List<String> configurations = new ArrayList<String>();
+        if (names != null) {
+            Arrays.sort(names);
+            for (String name : names) {
+                String conf = name.substring(prefix.length(),
+                        name.lastIndexOf(".xml"));
+                // reports of other modules may share the prefix
+                if (isReportOf(new File(getDir(), name), conf)) {
+                    configurations.add(conf);
+                }
+            }
+        }
+        return configurations;
+    }
+
+    /**
+     * @return whether the resolve report is the one of the configuration of
+     *         this module, see {@link ResolveReportInfo}
+     */
+    boolean isReportOf(File resolveReport, String conf) {
+        try {
+            InputStream in = ReportFiles.open(resolveReport);
+            try {
+                return ResolveReportInfo.isReportOf(in, getResolveId(), conf);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return whether the file is one of the reports rendered on demand
+     */
+    boolean isRendered(String fileName) {
+        if (!isLazy()) {
+            return false;
+        }
+        for (String conf : confs) {
+            String prefix = resolveId + "-" + conf;
+            if (fileName.equals(prefix + ".html")
+                    || fileName.equals(prefix + ".svg")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void generateResponse(StaplerRequest req, StaplerResponse rsp,
+            Object node) throws IOException, ServletException {
+        serve(req, rsp, new File(path.getRemote()).getName());
     }
 
 }
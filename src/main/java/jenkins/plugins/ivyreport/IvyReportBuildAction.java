@@ -27,17 +27,33 @@ import hudson.FilePath;
 import hudson.ivy.ModuleName;
 import hudson.ivy.IvyModuleSetBuild;
 import hudson.model.Action;
+import hudson.model.Api;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
 
+import jenkins.plugins.ivyreport.graph.AggregatedGraph;
+import jenkins.plugins.ivyreport.graph.DependencyIndex;
+
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
 
 /**
  * Action used to display the ivy report for the build
@@ -45,20 +61,72 @@ import org.kohsuke.stapler.StaplerResponse;
  * @author Cedric Chabanois (cchabanois at gmail.com)
  * 
  */
+@ExportedBean
 public class IvyReportBuildAction implements Action {
     private static final String ICON_FILENAME = "/plugin/ivy-report/ivyReport.png";
 
+    /**
+     * Name of the dependency index in the reports directory.
+     */
+    static final String DEPENDENCIES_FILE = "dependencies.bin";
+
+    /**
+     * Name of the aggregated graph of the module set in the reports
+     * directory.
+     */
+    static final String AGGREGATE_FILE = "aggregate.bin";
+
+    private static final String GRAPH_SUFFIX = "/graph";
+    private static final String NODES_SUFFIX = "/nodes";
+
     private File dir;
-    private List<IvyReport> reports;
+    private volatile List<IvyReport> reports;
+
+    /**
+     * Fingerprints of the resolve reports the html reports were generated
+     * from, by resolve report file name. <tt>null</tt> for builds made by
+     * older versions of the plugin.
+     */
+    private Map<String, String> fingerprints;
+
+    /**
+     * Time spent publishing the reports. <tt>null</tt> for builds made by
+     * older versions of the plugin.
+     */
+    private PublishTimings timings;
+
+    /**
+     * Whether some reports are still being rendered in the background. Lost
+     * on restart, the reports left to render are then rendered when first
+     * viewed.
+     */
+    private transient volatile boolean rendering;
+
+    /**
+     * The aggregated graph, once read.
+     */
+    private transient volatile SoftReference<AggregatedGraph> aggregate;
 
     // backward compatibility:
     private transient IvyModuleSetBuild build;
     private transient String indexFileName;
 
     public IvyReportBuildAction(File dir, List<IvyReport> reports) {
+        this(dir, reports, Collections.<String, String> emptyMap());
+    }
+
+    public IvyReportBuildAction(File dir, List<IvyReport> reports,
+            Map<String, String> fingerprints) {
+        this(dir, reports, fingerprints, null);
+    }
+
+    public IvyReportBuildAction(File dir, List<IvyReport> reports,
+            Map<String, String> fingerprints, PublishTimings timings) {
         super();
         this.dir = dir;
         this.reports = reports;
+        this.fingerprints = new TreeMap<String, String>(fingerprints);
+        this.timings = timings;
     }
 
     public String getUrlName() {
@@ -73,31 +141,179 @@ public class IvyReportBuildAction implements Action {
         return ICON_FILENAME;
     }
 
+    @Exported(inline = true)
     public List<IvyReport> getReports() {
         return reports;
     }
 
-    public IvyReport doReport(StaplerRequest req, StaplerResponse res)
+    /**
+     * @return whether some reports are still being rendered in the
+     *         background, see {@link BackgroundRenderQueue}
+     */
+    @Exported
+    public boolean isRendering() {
+        return rendering;
+    }
+
+    void setRendering(boolean rendering) {
+        this.rendering = rendering;
+    }
+
+    /**
+     * Replaces a report by its rendered version.
+     */
+    synchronized void replaceReport(IvyReport report, IvyReport rendered) {
+        // copied, so that the reports can be listed or saved meanwhile
+        List<IvyReport> replaced = new ArrayList<IvyReport>(reports);
+        int index = replaced.indexOf(report);
+        if (index >= 0) {
+            replaced.set(index, rendered);
+            reports = replaced;
+        }
+    }
+
+    /**
+     * @return the directory holding the generated reports
+     */
+    public File getDir() {
+        return dir;
+    }
+
+    /**
+     * @param reportFileName
+     *            name of a resolve report, e.g.
+     *            <tt>org-module-compile.xml</tt>
+     * @return the fingerprint of the resolve report, or <tt>null</tt> if
+     *         unknown
+     */
+    public String getFingerprint(String reportFileName) {
+        return fingerprints == null ? null : fingerprints.get(reportFileName);
+    }
+
+    /**
+     * @return the time spent publishing the reports, shown by
+     *         <tt>ivyreport/timings</tt>, or <tt>null</tt> for builds made
+     *         by older versions of the plugin
+     */
+    public PublishTimings getTimings() {
+        return timings;
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    /**
+     * Streams the resolved dependency graph of all the modules as JSON.
+     */
+    public HttpResponse doGraph() {
+        return new ReportGraphExport(dir, getReports());
+    }
+
+    public HttpResponse doReport(StaplerRequest req, StaplerResponse res)
             throws MalformedURLException, ServletException, IOException {
         String moduleName = req.getRestOfPath();
         if (!moduleName.isEmpty()) {
             if (moduleName.charAt(0) == '/') {
                 moduleName = moduleName.substring(1);
             }
+            // report/<module>/graph streams the graph of the module,
+            // report/<module>/nodes serves the neighbours of one of its nodes
+            boolean graph = moduleName.endsWith(GRAPH_SUFFIX);
+            boolean nodes = moduleName.endsWith(NODES_SUFFIX);
+            String name = graph || nodes ? moduleName.substring(0,
+                    moduleName.lastIndexOf('/')) : moduleName;
             for (IvyReport report : getReports()) {
-                if (moduleName.equals(report.getName().toFileSystemName())) {
-                    return report;
+                if (name.equals(report.getName().toFileSystemName())) {
+                    if (nodes) {
+                        return new ReportGraphExplorer(dir, report);
+                    }
+                    return graph ? new ReportGraphExport(dir,
+                            Collections.singletonList(report)) : report;
                 }
             }
         }
         // handle CSS, etc.
-        File siblingFile = new File(dir, moduleName);
-        if (siblingFile.exists()) {
-            res.serveFile(req, siblingFile.toURI().toURL());
+        File siblingFile = ReportFiles.resolve(dir, moduleName);
+        if (siblingFile != null) {
+            ReportFiles.serve(req, res, siblingFile);
+            return null;
+        }
+        for (IvyReport report : getReports()) {
+            if (report.isRendered(moduleName)) {
+                report.serve(req, res, moduleName);
+                return null;
+            }
         }
         return null;
     }
 
+    /**
+     * @return the dependencies of the resolve reports, or <tt>null</tt> for
+     *         builds made by older versions of the plugin
+     */
+    public DependencyIndex getDependencies() throws IOException {
+        File file = dir == null ? null : new File(dir, DEPENDENCIES_FILE);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return DependencyIndex.read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the dependency graph of the whole module set, shown by
+     *         <tt>ivyreport/aggregate</tt>, or <tt>null</tt> for builds made
+     *         by older versions of the plugin
+     */
+    public AggregatedGraph getAggregate() throws IOException {
+        SoftReference<AggregatedGraph> reference = aggregate;
+        AggregatedGraph graph = reference == null ? null : reference.get();
+        if (graph != null) {
+            return graph;
+        }
+        File file = dir == null ? null : new File(dir, AGGREGATE_FILE);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            graph = AggregatedGraph.read(in);
+        } finally {
+            in.close();
+        }
+        aggregate = new SoftReference<AggregatedGraph>(graph);
+        return graph;
+    }
+
+    /**
+     * Shows what changed in the dependencies since another build of the
+     * project.
+     */
+    public void doDiff(StaplerRequest req, StaplerResponse rsp,
+            @QueryParameter int against) throws IOException, ServletException {
+        IvyModuleSetBuild build = req
+                .findAncestorObject(IvyModuleSetBuild.class);
+        IvyModuleSetBuild other = build == null ? null : build.getProject()
+                .getBuildByNumber(against);
+        IvyReportBuildAction otherAction = other == null ? null : other
+                .getAction(IvyReportBuildAction.class);
+        DependencyIndex current = getDependencies();
+        DependencyIndex since = otherAction == null ? null : otherAction
+                .getDependencies();
+        if (current == null || since == null) {
+            rsp.sendError(HttpServletResponse.SC_NOT_FOUND,
+                    "No dependency index for build #" + against);
+            return;
+        }
+        req.getView(new BuildDiff(build, other, current.diff(since)),
+                "index.jelly").forward(req, rsp);
+    }
+
     private Object readResolve() {
         if (indexFileName != null) {
             dir = new File(build.getRootDir(), "ivyreport");
@@ -34,22 +34,22 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
+import jenkins.plugins.ivyreport.PublishTimings.Phase;
+import jenkins.plugins.ivyreport.graph.DotGraph;
+import jenkins.plugins.ivyreport.graph.HtmlReportWriter;
+import jenkins.plugins.ivyreport.graph.LayeredLayout;
+import jenkins.plugins.ivyreport.graph.ResolveReport;
+import jenkins.plugins.ivyreport.graph.SvgWriter;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.ivy.plugins.report.XmlReportOutputter;
-import org.apache.ivy.util.FileUtil;
 import org.apache.tools.ant.BuildException;
-import org.apache.tools.ant.util.JAXPUtils;
 
 /**
  * Generates the ivy report
@@ -57,29 +57,119 @@ import org.apache.tools.ant.util.JAXPUtils;
  * @author Cedric Chabanois (cchabanois at gmail.com)
  */
 public class IvyReportGenerator {
-    private final Logger LOGGER = Logger.getLogger(IvyReportGenerator.class
+    /**
+     * Told about each resolve report once parsed, so that whatever else is
+     * derived from the reports does not parse them again.
+     */
+    public interface ReportListener {
+        void parsed(ResolveReport report);
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(IvyReportGenerator.class
             .getName());
+
+    /**
+     * The stylesheet of the html reports, read from the ivy jar once.
+     */
+    private static byte[] css;
     private final String[] confs;
     private final File targetDir;
     private final String resolveId;
     private final File resolutionCacheRoot;
-    private final Hudson hudson;
+    private final Launcher launcher;
+    private final ReportSettings settings;
+    private PublishTimings timings = new PublishTimings();
+    private String module;
+    private ReportListener listener;
 
     public IvyReportGenerator(Hudson hudson, String resolveId, String[] confs,
             File resolutionCacheRoot, File targetDir) {
-        this.hudson = hudson;
+        this(hudson, ReportSettings.of(hudson
+                .getDescriptorByType(IvyReportPublisher.DescriptorImpl.class)),
+                resolveId, confs, resolutionCacheRoot, targetDir);
+    }
+
+    public IvyReportGenerator(Hudson hudson, ReportSettings settings,
+            String resolveId, String[] confs, File resolutionCacheRoot,
+            File targetDir) {
+        this(hudson.createLauncher(new LogTaskListener(LOGGER, Level.CONFIG)),
+                settings, resolveId, confs, resolutionCacheRoot, targetDir);
+    }
+
+    /**
+     * @param launcher
+     *            used to start <tt>dot</tt>, on the node where the reports
+     *            are generated
+     */
+    public IvyReportGenerator(Launcher launcher, ReportSettings settings,
+            String resolveId, String[] confs, File resolutionCacheRoot,
+            File targetDir) {
+        this.launcher = launcher;
+        this.settings = settings;
         this.confs = confs;
         this.targetDir = targetDir;
         this.resolveId = resolveId;
         this.resolutionCacheRoot = resolutionCacheRoot;
+        this.module = resolveId;
+    }
+
+    /**
+     * @param timings
+     *            where the time spent on each phase is recorded
+     * @param module
+     *            the module the time is recorded for
+     */
+    public void setTimings(PublishTimings timings, String module) {
+        this.timings = timings;
+        this.module = module;
+    }
+
+    /**
+     * @param listener
+     *            told about the resolve report of each configuration
+     */
+    public void setListener(ReportListener listener) {
+        this.listener = listener;
     }
 
     public File generateReports() throws IOException, InterruptedException {
-        File htmlReport = genHtmlReport();
-        File[] dotFiles = genDotFiles();
-        genSvgFiles(dotFiles);
-        delete(dotFiles);
-        return htmlReport;
+        boolean inJvm = settings.getGraphRenderer() == GraphRenderer.JAVA;
+        File[] htmlFiles = new File[confs.length];
+        File[] graphFiles = new File[confs.length];
+        long start = PublishTimings.start();
+        for (int i = 0; i < confs.length; i++) {
+            // stops there once the module timed out
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            // the html report and the graph come from a single parse
+            ResolveReport report = parseReport(getReportFile(confs[i]));
+            if (listener != null) {
+                listener.parsed(report);
+            }
+            start = timings.record(module, Phase.PARSE, start);
+            htmlFiles[i] = genHtmlReport(report, confs[i]);
+            start = timings.record(module, Phase.HTML, start);
+            // the html report above keeps all the dependencies
+            DotGraph graph = settings.getGraphReduction().apply(report,
+                    resolveId);
+            if (inJvm) {
+                graphFiles[i] = getOutputFile(confs[i], "svg");
+                renderInJvm(graph, graphFiles[i]);
+            } else {
+                graphFiles[i] = getOutputFile(confs[i], "dot");
+                writeDotFile(graph, graphFiles[i]);
+            }
+            start = timings.record(module, Phase.GRAPH, start);
+        }
+        copyCss(targetDir);
+        if (!inJvm) {
+            start = PublishTimings.start();
+            genSvgFiles(graphFiles);
+            delete(graphFiles);
+            timings.record(module, Phase.DOT, start);
+        }
+        return htmlFiles[0];
     }
 
     private void delete(File[] files) {
@@ -103,156 +193,91 @@ public class IvyReportGenerator {
         return new File(resolutionCacheRoot, resolveId + "-" + conf + ".xml");
     }
 
-    private File genHtmlReport() throws IOException {
-        File[] generatedHtmlFiles = genStyled(getHtmlXslFile(), "html");
-        File css = new File(targetDir, "ivy-report.css");
-        FileUtil.copy(
-                XmlReportOutputter.class.getResourceAsStream("ivy-report.css"),
-                css, null);
-        return generatedHtmlFiles[0];
-    }
-
-    private File[] genDotFiles() throws IOException {
-        return genStyled(getDotXslFile(), "dot");
-    }
-
-    private File[] genSvgFiles(File[] dotFiles) throws IOException,
-            InterruptedException {
-        File[] svgFiles = new File[dotFiles.length];
-        for (int i = 0; i < dotFiles.length; i++) {
-            svgFiles[i] = runDot(dotFiles[i]);
+    private File getOutputFile(String conf, String ext) {
+        File outFile = new File(targetDir, resolveId + "-" + conf + "." + ext);
+        // make sure the output directory exist
+        File outFileDir = outFile.getParentFile();
+        if (!outFileDir.exists()) {
+            if (!outFileDir.mkdirs()) {
+                throw new BuildException("Unable to create directory: "
+                        + outFileDir.getAbsolutePath());
+            }
         }
-        return svgFiles;
+        return outFile;
     }
 
-    private File getDotXslFile() throws IOException {
-        // style should be a file (and not an url)
-        File style = new File(resolutionCacheRoot, "ivy-report-dot.xsl");
-        FileUtil.copy(
-                this.getClass().getResourceAsStream("ivy-report-dot.xsl"),
-                style, null);
-        return style;
-    }
-
-    private File getHtmlXslFile() throws IOException {
-        // style should be a file (and not an url)
-        File style = new File(resolutionCacheRoot, "ivy-report.xsl");
-        FileUtil.copy(this.getClass().getResourceAsStream("ivy-report.xsl"),
-                style, null);
-        return style;
+    private ResolveReport parseReport(File reportFile) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(
+                reportFile));
+        try {
+            return ResolveReport.parse(in);
+        } finally {
+            in.close();
+        }
     }
 
-    private File runDot(File inputFile) throws IOException,
-            InterruptedException {
-        IvyReportPublisher.DescriptorImpl descriptor = hudson
-                .getDescriptorByType(IvyReportPublisher.DescriptorImpl.class);
-        String dotPath;
-        if (descriptor != null) {
-            dotPath = descriptor.getDotExeOrDefault();
-        } else {
-            dotPath = IvyReportPublisher.DescriptorImpl.getDefaultDotExe();
-        }
-        Launcher launcher = hudson.createLauncher(new LogTaskListener(LOGGER,
-                Level.CONFIG));
-        File outputFile = new File(inputFile.getParentFile(), inputFile
-                .getName().replace(".dot", ".svg"));
-        InputStream input = null;
-        OutputStream output = null;
+    private File genHtmlReport(ResolveReport report, String conf)
+            throws IOException {
+        File htmlFile = getOutputFile(conf, "html");
+        Writer writer = new OutputStreamWriter(new BufferedOutputStream(
+                new FileOutputStream(htmlFile)), "UTF-8");
         try {
-            input = new FileInputStream(inputFile);
-            output = new FileOutputStream(outputFile);
-            launcher.launch().cmds(dotPath, "-T" + "svg").stdin(input)
-                    .stdout(output).start().join();
-            return outputFile;
-        } catch (InterruptedException e) {
-            LOGGER.log(Level.SEVERE,
-                    "Interrupted while waiting for dot-file to be created", e);
-            throw e;
+            new HtmlReportWriter(writer, resolveId,
+                    getConfsAsCommaSeparatedString(), "html").write(report);
         } finally {
-            if (output != null) {
-                output.close();
+            writer.close();
+        }
+        return htmlFile;
+    }
+
+    /**
+     * Copies the stylesheet of the html reports, if not there yet.
+     */
+    static void copyCss(File targetDir) throws IOException {
+        File target = new File(targetDir, "ivy-report.css");
+        // the css is shared by all the modules of a build, which may be
+        // generated concurrently
+        synchronized (IvyReportGenerator.class) {
+            if (target.exists()) {
+                return;
             }
-            if (input != null) {
-                input.close();
+            if (css == null) {
+                InputStream in = XmlReportOutputter.class
+                        .getResourceAsStream("ivy-report.css");
+                try {
+                    css = IOUtils.toByteArray(in);
+                } finally {
+                    in.close();
+                }
             }
+            FileUtils.writeByteArrayToFile(target, css);
         }
     }
 
-    private File[] genStyled(File style, String ext) throws IOException {
-        InputStream xsltStream = null;
+    private void writeDotFile(DotGraph graph, File dotFile) throws IOException {
+        Writer writer = new OutputStreamWriter(new BufferedOutputStream(
+                new FileOutputStream(dotFile)), "UTF-8");
         try {
-            // create stream to stylesheet
-            xsltStream = new BufferedInputStream(new FileInputStream(style));
-            Source xsltSource = new StreamSource(xsltStream,
-                    JAXPUtils.getSystemId(style));
-
-            // create transformer
-            TransformerFactory tFactory = TransformerFactory.newInstance();
-            Transformer transformer = tFactory.newTransformer(xsltSource);
-
-            // add standard parameters
-            transformer.setParameter("confs", getConfsAsCommaSeparatedString());
-            transformer.setParameter("extension", "html");
-            transformer.setParameter("resolveId", resolveId);
-
-            File[] generatedFiles = new File[confs.length];
-            // create the report
-            for (int i = 0; i < confs.length; i++) {
-                File reportFile = getReportFile(confs[i]);
-                File outFile = new File(targetDir, resolveId + "-" + confs[i]
-                        + "." + ext);
-                generatedFiles[i] = outFile;
+            graph.write(writer);
+        } finally {
+            writer.close();
+        }
+    }
 
-                // make sure the output directory exist
-                File outFileDir = outFile.getParentFile();
-                if (!outFileDir.exists()) {
-                    if (!outFileDir.mkdirs()) {
-                        throw new BuildException("Unable to create directory: "
-                                + outFileDir.getAbsolutePath());
-                    }
-                }
+    private File[] genSvgFiles(File[] dotFiles) throws IOException,
+            InterruptedException {
+        return new DotRunner(launcher, settings.getDotExe(),
+                settings.isBatchDot(), settings.getDotProcesses())
+                .render(dotFiles);
+    }
 
-                InputStream inStream = null;
-                OutputStream outStream = null;
-                try {
-                    inStream = new BufferedInputStream(new FileInputStream(
-                            reportFile));
-                    outStream = new BufferedOutputStream(new FileOutputStream(
-                            outFile));
-                    StreamResult res = new StreamResult(outStream);
-                    Source src = new StreamSource(inStream,
-                            JAXPUtils.getSystemId(style));
-                    transformer.transform(src, res);
-                } catch (TransformerException e) {
-                    throw new BuildException(e);
-                } finally {
-                    if (inStream != null) {
-                        try {
-                            inStream.close();
-                        } catch (IOException e) {
-                            // ignore
-                        }
-                    }
-                    if (outStream != null) {
-                        try {
-                            outStream.close();
-                        } catch (IOException e) {
-                            // ignore
-                        }
-                    }
-                }
-            }
-            return generatedFiles;
-        } catch (TransformerConfigurationException e) {
-            throw new BuildException(e);
+    private void renderInJvm(DotGraph graph, File svgFile) throws IOException {
+        Writer writer = new OutputStreamWriter(new BufferedOutputStream(
+                new FileOutputStream(svgFile)), "UTF-8");
+        try {
+            new SvgWriter(writer).write(LayeredLayout.compute(graph));
         } finally {
-            if (xsltStream != null) {
-                try {
-                    xsltStream.close();
-                } catch (IOException e) {
-                    // ignore
-                }
-            }
+            writer.close();
         }
     }
 
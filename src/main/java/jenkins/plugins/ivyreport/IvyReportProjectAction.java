@@ -23,15 +23,21 @@
  */
 package jenkins.plugins.ivyreport;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.servlet.ServletException;
 
 import hudson.ivy.IvyModuleSet;
 import hudson.model.Action;
-import hudson.model.Result;
-import hudson.model.AbstractBuild;
+import hudson.util.Graph;
+import jenkins.plugins.ivyreport.graph.AggregatedGraph;
 
+import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerProxy;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
@@ -43,6 +49,8 @@ import org.kohsuke.stapler.StaplerResponse;
  * 
  */
 public class IvyReportProjectAction implements Action, StaplerProxy {
+    private static final Logger LOGGER = Logger
+            .getLogger(IvyReportProjectAction.class.getName());
     private static final String ICON_FILENAME = "/plugin/ivy-report/ivyReport.png";
 
     public static class Noop {
@@ -80,15 +88,56 @@ public class IvyReportProjectAction implements Action, StaplerProxy {
 
     @Override
     public Object getTarget() {
-        for (AbstractBuild<?, ?> b = project.getLastSuccessfulBuild(); b != null; b = b
-                .getPreviousNotFailedBuild()) {
-            if (b.getResult() == Result.FAILURE)
-                continue;
-            IvyReportBuildAction r = b.getAction(IvyReportBuildAction.class);
-            if (r != null)
-                return r;
+        // the trend belongs to the project, not to the latest report
+        StaplerRequest req = Stapler.getCurrentRequest();
+        if (req != null && req.getRestOfPath().startsWith("/trend")) {
+            return this;
         }
-        return Noop.INSTANCE;
+        IvyReportBuildAction r = LatestReportTracker.getLatestReport(project);
+        return r != null ? r : Noop.INSTANCE;
     }
 
+    /**
+     * @return the dependency graph of the whole module set, as of the latest
+     *         report, or <tt>null</tt> if there is none
+     */
+    public AggregatedGraph getAggregate() {
+        IvyReportBuildAction r = LatestReportTracker.getLatestReport(project);
+        try {
+            return r != null ? r.getAggregate() : null;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING,
+                    "Cannot read the aggregated dependency graph", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return whether there are enough builds with a report to draw a trend
+     */
+    public boolean hasTrend() {
+        try {
+            return ReportTrend.hasTrend(project);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot read the ivy report trend", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return the trend chart of the reports of the project
+     */
+    public Graph getTrend() {
+        File index = new File(project.getRootDir(), ReportTrend.FILE_NAME);
+        return new ReportTrend.TrendGraph(index.lastModified(), readTrend());
+    }
+
+    private List<ReportTrend.Point> readTrend() {
+        try {
+            return ReportTrend.read(project);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot read the ivy report trend", e);
+            return Collections.emptyList();
+        }
+    }
 }
@@ -38,21 +38,41 @@ import hudson.model.Result;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Hudson;
+import hudson.remoting.RemoteOutputStream;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import jenkins.plugins.ivyreport.PublishTimings.Phase;
+import jenkins.plugins.ivyreport.graph.AggregatedGraph;
+import jenkins.plugins.ivyreport.graph.DependencyIndex;
+import jenkins.plugins.ivyreport.graph.GraphReduction;
+import jenkins.plugins.ivyreport.graph.ResolveReport;
 import net.sf.json.JSONObject;
 
+import org.apache.commons.io.FileUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
@@ -64,23 +84,120 @@ import org.kohsuke.stapler.StaplerRequest;
  * 
  */
 public class IvyReportPublisher extends Recorder {
+    private static final Logger LOGGER = Logger
+            .getLogger(IvyReportPublisher.class.getName());
+
+    /**
+     * Part of the fingerprints of the resolve reports; to be changed whenever
+     * the generated reports change, so that reports of previous builds are
+     * not reused.
+     */
+    static final String REPORT_FORMAT = "1";
+
+    /**
+     * Files kept for every configuration of a module, the html and svg ones
+     * being compressed, see {@link ReportFiles}.
+     */
+    private static final String[] REPORT_EXTENSIONS = { ".xml", ".html",
+            ".svg" };
+
+    /**
+     * Number of the slowest modules named in the timings of the build log.
+     */
+    private static final int SLOWEST_MODULES = 3;
+
     @SuppressWarnings("unused")
     @Deprecated
     private transient String resolveId;
 
     private final String ivyReportConfigurations;
 
-    @DataBoundConstructor
+    /**
+     * How the graphs are reduced, <tt>null</tt> for the automatic reduction
+     * of jobs configured by older versions of the plugin.
+     */
+    private final GraphReductionMode graphReduction;
+
+    /**
+     * The reductions of the {@link GraphReductionMode#CUSTOM} mode.
+     */
+    private final boolean dropEvicted;
+    private final boolean transitiveReduction;
+    private final boolean clusterByOrganisation;
+    private final Integer graphMaxDepth;
+
     public IvyReportPublisher(String ivyReportConfigurations) {
+        this(ivyReportConfigurations, null, false, false, false, null);
+    }
+
+    @DataBoundConstructor
+    public IvyReportPublisher(String ivyReportConfigurations,
+            GraphReductionMode graphReduction, boolean dropEvicted,
+            boolean transitiveReduction, boolean clusterByOrganisation,
+            String graphMaxDepth) {
         this.ivyReportConfigurations = ivyReportConfigurations;
+        this.graphReduction = graphReduction;
+        this.dropEvicted = dropEvicted;
+        this.transitiveReduction = transitiveReduction;
+        this.clusterByOrganisation = clusterByOrganisation;
+        this.graphMaxDepth = DescriptorImpl.parseInteger(graphMaxDepth);
     }
 
     public String getIvyReportConfigurations() {
         return ivyReportConfigurations;
     }
 
+    public GraphReductionMode getGraphReduction() {
+        return graphReduction == null ? GraphReductionMode.AUTOMATIC
+                : graphReduction;
+    }
+
+    public boolean isDropEvicted() {
+        return dropEvicted;
+    }
+
+    public boolean isTransitiveReduction() {
+        return transitiveReduction;
+    }
+
+    public boolean isClusterByOrganisation() {
+        return clusterByOrganisation;
+    }
+
+    public Integer getGraphMaxDepth() {
+        return graphMaxDepth;
+    }
+
+    /**
+     * @return the reductions of the graphs of the job, <tt>null</tt> for the
+     *         automatic reduction
+     */
+    GraphReduction getGraphReductionOfJob() {
+        switch (getGraphReduction()) {
+        case NONE:
+            return GraphReduction.NONE;
+        case CUSTOM:
+            return GraphReduction.of(dropEvicted, transitiveReduction,
+                    clusterByOrganisation, graphMaxDepth == null ? 0
+                            : graphMaxDepth);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * @return the global settings, with the graph reductions of the job
+     */
+    private ReportSettings getReportSettings() {
+        return ReportSettings.of(DESCRIPTOR).withGraphReduction(
+                getGraphReductionOfJob());
+    }
+
     public BuildStepMonitor getRequiredMonitorService() {
-        return BuildStepMonitor.BUILD;
+        // rendered in the background, the reports of consecutive builds no
+        // longer need to be published in order
+        return DESCRIPTOR.isAsyncRendering() ? BuildStepMonitor.NONE
+                : BuildStepMonitor.BUILD;
     }
 
     @Override
@@ -99,49 +216,653 @@ public class IvyReportPublisher extends Recorder {
                             "Skipping ivy report as build was not UNSTABLE or better ...");
             return true;
         }
-        try {
-            listener.getLogger().println("Publishing ivy report...");
-            IvyModuleSetBuild ivyModuleSetBuild = (IvyModuleSetBuild) build;
-            FilePath resolutionCacheRoot = getResolutionCacheRoot(
-                    ivyModuleSetBuild, listener);
-            if (resolutionCacheRoot == null) {
-                return true;
-            }
-            final File reportsDir = new File(ivyModuleSetBuild.getRootDir(),
-                    "ivyreport");
-            reportsDir.mkdirs();
-            final List<IvyReport> reports = buildPerModuleReports(
-                    ivyModuleSetBuild, reportsDir, resolutionCacheRoot);
-
-            build.addAction(new IvyReportBuildAction(reportsDir, reports));
+        listener.getLogger().println("Publishing ivy report...");
+        IvyModuleSetBuild ivyModuleSetBuild = (IvyModuleSetBuild) build;
+        PublishTimings timings = new PublishTimings();
+        long started = PublishTimings.start();
+        FilePath resolutionCacheRoot = getResolutionCacheRoot(
+                ivyModuleSetBuild, listener);
+        long start = timings.record(null, Phase.RESOLUTION_CACHE, started);
+        if (resolutionCacheRoot == null) {
             return true;
+        }
+        final File reportsDir = new File(ivyModuleSetBuild.getRootDir(),
+                "ivyreport");
+        reportsDir.mkdirs();
+        List<IvyModule> modules = new ArrayList<IvyModule>(ivyModuleSetBuild
+                .getProject().getModules());
+        File staging = new File(ivyModuleSetBuild.getRootDir(),
+                "ivyreport-transfer");
+        Map<String, String> fingerprints = new ConcurrentHashMap<String, String>();
+        Map<String, String> reusedBlobs = new ConcurrentHashMap<String, String>();
+        ReportSummary summary = new ReportSummary();
+        DependencyIndex dependencies = new DependencyIndex();
+        AggregatedGraph aggregate = new AggregatedGraph();
+        List<IvyReport> reports;
+        try {
+            List<CollectReportFilesCallable.Module> files = collectReportFiles(
+                    ivyModuleSetBuild, modules, resolutionCacheRoot, staging,
+                    listener);
+            timings.record(null, Phase.TRANSFER, start);
+            // failures are isolated per module, see buildPerModuleReports
+            reports = buildPerModuleReports(ivyModuleSetBuild, modules,
+                    files, staging, reportsDir, resolutionCacheRoot,
+                    getPreviousAction(ivyModuleSetBuild), fingerprints,
+                    reusedBlobs, summary, dependencies, aggregate, timings,
+                    listener);
         } catch (IOException e) {
             listener.getLogger().println(
-                    "Could not generate ivy reports : " + e.getMessage());
-            return true;
+                    "Cannot collect the ivy report files : " + e.getMessage());
+            LOGGER.log(Level.FINE, "Cannot collect the ivy report files", e);
+            reports = new ArrayList<IvyReport>();
+        } finally {
+            FileUtils.deleteQuietly(staging);
+        }
+        if (!reports.isEmpty()) {
+            start = PublishTimings.start();
+            try {
+                if (!isGeneratedOnAgent()) {
+                    // otherwise written on the agent, see generateOnAgent
+                    ReportFiles.writeIndexes(reportsDir, summary, dependencies,
+                            aggregate);
+                }
+                long saved = BlobStore.getInstance().store(reportsDir,
+                        reusedBlobs);
+                listener.getLogger().println(
+                        "Ivy report blobs : " + reusedBlobs.size()
+                                + " reused, " + saved
+                                + " bytes already stored");
+            } catch (IOException e) {
+                // the reports of the modules are still published
+                listener.getLogger().println(
+                        "Could not generate ivy reports : " + e.getMessage());
+                LOGGER.log(Level.FINE, "Could not generate ivy reports", e);
+            }
+            try {
+                DependencyUsageIndex.getInstance().update(
+                        ivyModuleSetBuild.getProject().getFullName(),
+                        ivyModuleSetBuild.getNumber(), dependencies);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING,
+                        "Cannot update the dependency usage index", e);
+            }
+            timings.record(null, Phase.INDEX, start);
+        }
+        timings.recordTotal(started);
+        listener.getLogger().println(timings.summarize(SLOWEST_MODULES));
+        PublishMetrics.getInstance().add(timings);
+
+        IvyReportBuildAction action = new IvyReportBuildAction(reportsDir,
+                reports, fingerprints, timings);
+        build.addAction(action);
+        if (DESCRIPTOR.isAsyncRendering() && !DESCRIPTOR.isLazyRendering()) {
+            int queued = BackgroundRenderQueue.getInstance().submit(
+                    ivyModuleSetBuild, action);
+            listener.getLogger().println(
+                    "Ivy report of " + queued
+                            + " module(s) queued for rendering");
         }
+        return true;
     }
 
-    private List<IvyReport> buildPerModuleReports(IvyModuleSetBuild build,
-            File reportsDir, FilePath resolutionCacheRoot) throws IOException,
-            InterruptedException {
+    /**
+     * @return whether the reports are generated on the node holding the
+     *         resolution cache, when published
+     */
+    private static boolean isGeneratedOnAgent() {
+        return DESCRIPTOR.isGenerateOnAgent() && !DESCRIPTOR.isLazyRendering()
+                && !DESCRIPTOR.isAsyncRendering();
+    }
+
+    /**
+     * @return the reports of the last build which published some, if it is
+     *         the last build which was not failed
+     */
+    private IvyReportBuildAction getPreviousAction(IvyModuleSetBuild build) {
+        IvyModuleSetBuild previous = build.getPreviousNotFailedBuild();
+        return previous == null ? null : previous
+                .getAction(IvyReportBuildAction.class);
+    }
+
+    /**
+     * Brings back the resolve reports and the changed ivy files of all the
+     * modules with a single remote call. The ivy files are put in place
+     * right away, the resolve reports are left in the staging directory.
+     * 
+     * @return the files of each module, in the same order as the modules
+     */
+    private List<CollectReportFilesCallable.Module> collectReportFiles(
+            IvyModuleSetBuild build, List<IvyModule> modules,
+            FilePath resolutionCacheRoot, File staging, BuildListener listener)
+            throws IOException, InterruptedException {
+        List<CollectReportFilesCallable.Module> requests = new ArrayList<CollectReportFilesCallable.Module>();
+        for (IvyModule module : modules) {
+            File backup = IvyAccess.getBackupIvyFile(build.getProject(),
+                    module);
+            requests.add(new CollectReportFilesCallable.Module(
+                    getResolveId(module.getModuleName()),
+                    module.getRelativePath(), backup.lastModified()));
+        }
+        FilePath workspace = build.getWorkspace();
+        File transfer = new File(build.getRootDir(), "ivyreport-transfer.tgz");
+        List<CollectReportFilesCallable.Module> files;
+        try {
+            OutputStream out = new FileOutputStream(transfer);
+            try {
+                // reports generated on the agent only need the fingerprints
+                files = resolutionCacheRoot.act(new CollectReportFilesCallable(
+                        workspace == null ? null : workspace.getRemote(),
+                        getConfs(), requests, !isGeneratedOnAgent(),
+                        new RemoteOutputStream(out)));
+            } finally {
+                out.close();
+            }
+            listener.getLogger().println(
+                    "Collected the ivy report files : " + transfer.length()
+                            + " bytes");
+            InputStream in = new FileInputStream(transfer);
+            try {
+                new FilePath(staging).untarFrom(in,
+                        FilePath.TarCompression.GZIP);
+            } finally {
+                in.close();
+            }
+        } finally {
+            transfer.delete();
+        }
+        for (int i = 0; i < files.size(); i++) {
+            CollectReportFilesCallable.Module file = files.get(i);
+            if (file.isIvyFileSent()) {
+                File backup = IvyAccess.getBackupIvyFile(build.getProject(),
+                        modules.get(i));
+                FileUtils.copyFile(new File(staging,
+                        CollectReportFilesCallable.IVY_FILES_DIR + "/" + i),
+                        backup);
+                backup.setLastModified(file.getIvyFileLastModified());
+            }
+        }
+        return files;
+    }
+
+    private List<IvyReport> buildPerModuleReports(
+            final IvyModuleSetBuild build, List<IvyModule> modules,
+            List<CollectReportFilesCallable.Module> files, File staging,
+            final File reportsDir, final FilePath resolutionCacheRoot,
+            IvyReportBuildAction previous, Map<String, String> fingerprints,
+            Map<String, String> reusedBlobs, ReportSummary summary,
+            DependencyIndex dependencies,
+            AggregatedGraph aggregate, PublishTimings timings,
+            BuildListener listener)
+            throws InterruptedException {
+        List<ModuleReportTask> tasks = new ArrayList<ModuleReportTask>();
+        for (int i = 0; i < modules.size(); i++) {
+            tasks.add(new ModuleReportTask(build, modules.get(i),
+                    files.get(i), staging, reportsDir, resolutionCacheRoot,
+                    previous, timings));
+        }
+        List<ModuleExecutor.Outcome<ModuleReport>> outcomes = ModuleExecutor
+                .run(tasks, DESCRIPTOR.getModuleThreadsOrDefault(),
+                        TimeUnit.SECONDS.toMillis(DESCRIPTOR
+                                .getModuleTimeoutOrDefault()));
+        // only the modules which completed are part of the reports of the
+        // build, in module order whatever the completion order
+        List<ModuleReport> completed = new ArrayList<ModuleReport>();
+        List<String> skipped = new ArrayList<String>();
+        for (int i = 0; i < tasks.size(); i++) {
+            ModuleReportTask task = tasks.get(i);
+            ModuleExecutor.Outcome<ModuleReport> outcome = outcomes.get(i);
+            if (outcome.getResult() != null) {
+                completed.add(outcome.getResult());
+            } else if (outcome.isTimedOut()) {
+                skip(task, "timed out after "
+                        + DESCRIPTOR.getModuleTimeoutOrDefault() + " seconds",
+                        skipped, listener);
+            } else {
+                Throwable cause = outcome.getFailure();
+                LOGGER.log(Level.FINE, "Ivy report failed for module "
+                        + task.getModuleName(), cause);
+                skip(task, cause.getMessage(), skipped, listener);
+            }
+        }
+        if (isGeneratedOnAgent() && !completed.isEmpty()) {
+            long start = PublishTimings.start();
+            List<String> failures;
+            try {
+                failures = generateOnAgent(build, completed, reportsDir,
+                        resolutionCacheRoot, dependencies, listener);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE,
+                        "Cannot generate the ivy reports on the agent", e);
+                failures = Collections.nCopies(completed.size(),
+                        "cannot generate the reports on the agent : "
+                                + e.getMessage());
+            }
+            timings.record(null, Phase.AGENT, start);
+            List<ModuleReport> generated = new ArrayList<ModuleReport>();
+            for (int i = 0; i < completed.size(); i++) {
+                if (failures.get(i) == null) {
+                    generated.add(completed.get(i));
+                } else {
+                    skip(completed.get(i).task, failures.get(i), skipped,
+                            listener);
+                }
+            }
+            completed = generated;
+        }
         List<IvyReport> result = new ArrayList<IvyReport>();
-        for (IvyModule module : build.getProject().getModules()) {
+        int reused = 0;
+        for (ModuleReport report : completed) {
+            result.add(report.report);
+            if (report.reused) {
+                reused++;
+            }
+            fingerprints.putAll(report.fingerprints);
+            reusedBlobs.putAll(report.reusedBlobs);
+            report.figures.addTo(summary, dependencies, aggregate);
+        }
+        if (!skipped.isEmpty()) {
+            listener.getLogger().println(
+                    "Ivy report skipped for " + skipped.size()
+                            + " module(s) : " + skipped);
+        }
+        listener.getLogger().println(
+                "Ivy report cache : " + reused + " hit(s), "
+                        + (result.size() - reused) + " miss(es)");
+        return result;
+    }
+
+    private void skip(ModuleReportTask task, String failure,
+            List<String> skipped, BuildListener listener) {
+        String moduleName = task.getModuleName().toString();
+        listener.getLogger().println(
+                "Skipping ivy report for module " + moduleName + " : "
+                        + failure);
+        task.discard();
+        skipped.add(moduleName);
+    }
+
+    /**
+     * Generates the reports of the modules next to the resolution cache, in
+     * a single remote call, see {@link GenerateReportsCallable}. The reports
+     * and the summary, the dependency index and the aggregated graph of the
+     * build are brought back as a single compressed tar stream.
+     * 
+     * @param dependencies
+     *            where the dependency index computed on the agent is added
+     * @return the failure of each module, <tt>null</tt> for the modules
+     *         whose reports were generated
+     */
+    private List<String> generateOnAgent(IvyModuleSetBuild build,
+            List<ModuleReport> reports, File reportsDir,
+            FilePath resolutionCacheRoot, DependencyIndex dependencies,
+            BuildListener listener) throws IOException, InterruptedException {
+        List<GenerateReportsCallable.Module> modules = new ArrayList<GenerateReportsCallable.Module>();
+        for (ModuleReport report : reports) {
+            modules.add(report.remote);
+        }
+        File transfer = new File(build.getRootDir(), "ivyreport-transfer.tgz");
+        List<String> failures;
+        try {
+            OutputStream out = new FileOutputStream(transfer);
+            try {
+                failures = resolutionCacheRoot.act(new GenerateReportsCallable(
+                        modules, getReportSettings(),
+                        DESCRIPTOR.getModuleThreadsOrDefault(),
+                        DESCRIPTOR.getModuleTimeoutOrDefault(),
+                        new RemoteOutputStream(out)));
+            } finally {
+                out.close();
+            }
+            listener.getLogger().println(
+                    "Generated the ivy reports on the agent : "
+                            + transfer.length() + " bytes");
+            InputStream in = new FileInputStream(transfer);
+            try {
+                new FilePath(reportsDir).untarFrom(in,
+                        FilePath.TarCompression.GZIP);
+            } finally {
+                in.close();
+            }
+        } finally {
+            transfer.delete();
+        }
+        IvyReportGenerator.copyCss(reportsDir);
+        InputStream in = new BufferedInputStream(new FileInputStream(new File(
+                reportsDir, IvyReportBuildAction.DEPENDENCIES_FILE)));
+        try {
+            dependencies.add(DependencyIndex.read(in));
+        } finally {
+            in.close();
+        }
+        return failures;
+    }
+
+    /**
+     * The reports of a module, and what they add to the summary, the
+     * dependency index and the aggregated graph of the build. Merged into
+     * the build once the module completed.
+     */
+    private static final class ModuleReport {
+        private final ModuleReportTask task;
+        private IvyReport report;
+        private boolean reused;
+        /**
+         * The fingerprints of the resolve reports, by resolve report file
+         * name.
+         */
+        private final Map<String, String> fingerprints = new HashMap<String, String>();
+        /**
+         * The blobs of the reports reused from the previous build, by report
+         * name.
+         */
+        private final Map<String, String> reusedBlobs = new HashMap<String, String>();
+        private final ModuleFigures figures = new ModuleFigures();
+        /**
+         * What is left to the agent, when the reports are generated there.
+         */
+        private GenerateReportsCallable.Module remote;
+
+        ModuleReport(ModuleReportTask task) {
+            this.task = task;
+        }
+    }
+
+    /**
+     * Generates the report of a single module.
+     */
+    private final class ModuleReportTask extends
+            ModuleExecutor.Task<ModuleReport> {
+        private final IvyModuleSetBuild build;
+        private final IvyModule module;
+        private final CollectReportFilesCallable.Module files;
+        private final File staging;
+        private final File reportsDir;
+        private final FilePath resolutionCacheRoot;
+        private final IvyReportBuildAction previous;
+        private final PublishTimings timings;
+        private volatile String[] confs;
+
+        /**
+         * @param files
+         *            the files collected for the module
+         * @param staging
+         *            where the collected files were extracted
+         * @param previous
+         *            reports of the previous build, reused when the resolve
+         *            reports did not change, may be <tt>null</tt>
+         * @param timings
+         *            where the time spent on each phase of the module is
+         *            recorded
+         */
+        ModuleReportTask(IvyModuleSetBuild build, IvyModule module,
+                CollectReportFilesCallable.Module files, File staging,
+                File reportsDir, FilePath resolutionCacheRoot,
+                IvyReportBuildAction previous, PublishTimings timings) {
+            this.build = build;
+            this.module = module;
+            this.files = files;
+            this.staging = staging;
+            this.reportsDir = reportsDir;
+            this.resolutionCacheRoot = resolutionCacheRoot;
+            this.previous = previous;
+            this.timings = timings;
+        }
+
+        ModuleName getModuleName() {
+            return module.getModuleName();
+        }
+
+        @Override
+        protected ModuleReport run() throws IOException, InterruptedException {
+            long start = PublishTimings.start();
             ModuleName moduleName = module.getModuleName();
-            String resolveId = moduleName.organisation + "-" + moduleName.name;
+            String name = moduleName.toString();
+            String resolveId = getResolveId(moduleName);
+            ModuleReport result = new ModuleReport(this);
 
-            String[] confs = new IvyAccess(build, module)
+            // the backup ivy file was refreshed by collectReportFiles
+            String[] confs = new IvyAccess(build, module, true)
                     .expandConfs(getConfs());
-            copyIvyReportFilesToMaster(resolutionCacheRoot, resolveId, confs,
-                    reportsDir);
-            IvyReportGenerator ivyReportGenerator = new IvyReportGenerator(
-                    Hudson.getInstance(), resolveId, confs, reportsDir,
-                    reportsDir);
-            File htmlReport = ivyReportGenerator.generateReports();
-            result.add(new IvyReport(module.getModuleName(), new FilePath(
-                    htmlReport)));
+            this.confs = confs;
+            start = timings.record(name, Phase.IVY_FILE, start);
+            checkReportsExist(resolveId, confs);
+            result.fingerprints.putAll(fingerprint(resolveId, confs));
+            checkInterrupted();
+            if (DESCRIPTOR.isLazyRendering()) {
+                result.report = keepForLazyRendering(moduleName, resolveId,
+                        confs, result.fingerprints);
+                start = timings.record(name, Phase.COMPRESS, start);
+                summarize(resolveId, confs, result);
+                timings.record(name, Phase.INDEX, start);
+                return result;
+            }
+            File htmlReport = reuse(resolveId, confs, result);
+            start = timings.record(name, Phase.REUSE, start);
+            result.reused = htmlReport != null;
+            boolean parsed = false;
+            checkInterrupted();
+            if (htmlReport == null && DESCRIPTOR.isAsyncRendering()) {
+                // rendered later on, see BackgroundRenderQueue
+                result.report = keepForLazyRendering(moduleName, resolveId,
+                        confs, result.fingerprints);
+                start = timings.record(name, Phase.COMPRESS, start);
+                summarize(resolveId, confs, result);
+                timings.record(name, Phase.INDEX, start);
+                return result;
+            }
+            if (isGeneratedOnAgent()) {
+                // generated, or only summarized, with all the other modules
+                // in a single remote call, see generateOnAgent
+                result.remote = new GenerateReportsCallable.Module(resolveId,
+                        confs, htmlReport == null);
+                result.report = new IvyReport(moduleName, new FilePath(
+                        new File(reportsDir, resolveId + "-" + confs[0]
+                                + ".html")));
+                return result;
+            }
+            if (htmlReport == null) {
+                moveCollectedReports(resolveId, confs);
+                IvyReportGenerator ivyReportGenerator = new IvyReportGenerator(
+                        Hudson.getInstance(), getReportSettings(), resolveId,
+                        confs, reportsDir, reportsDir);
+                ivyReportGenerator.setTimings(timings, name);
+                // the statistics, the dependencies and the graph come from
+                // the parse the reports are generated from
+                ivyReportGenerator.setListener(result.figures);
+                htmlReport = ivyReportGenerator.generateReports();
+                parsed = true;
+                start = PublishTimings.start();
+            }
+            checkInterrupted();
+            for (String conf : confs) {
+                ReportFiles.compress(reportsDir, resolveId + "-" + conf);
+            }
+            start = timings.record(name, Phase.COMPRESS, start);
+            checkInterrupted();
+            if (!parsed) {
+                summarize(resolveId, confs, result);
+                timings.record(name, Phase.INDEX, start);
+            }
+            result.report = new IvyReport(moduleName, new FilePath(htmlReport));
+            return result;
+        }
+
+        /**
+         * Deletes what the module wrote to the reports directory, once it
+         * failed or timed out.
+         */
+        void discard() {
+            String[] confs = this.confs;
+            if (confs == null) {
+                return;
+            }
+            String resolveId = getResolveId(module.getModuleName());
+            for (String conf : confs) {
+                String name = resolveId + "-" + conf;
+                for (String ext : REPORT_EXTENSIONS) {
+                    new File(reportsDir, name + ext).delete();
+                    new File(reportsDir, name + ext
+                            + ReportFiles.GZIP_EXTENSION).delete();
+                }
+                new File(reportsDir, name + ".dot").delete();
+            }
+        }
+
+        /**
+         * Fails with all the configurations whose resolve report is missing.
+         */
+        private void checkReportsExist(String resolveId, String[] confs)
+                throws IOException {
+            List<String> missing = new ArrayList<String>();
+            for (String conf : confs) {
+                if (!files.getReports().containsKey(conf)) {
+                    missing.add(getConfigurationResolveReportInCache(
+                            resolutionCacheRoot, resolveId, conf).getRemote());
+                }
+            }
+            if (!missing.isEmpty()) {
+                throw new IOException("Report file does not exist : "
+                        + Util.join(missing, ", "));
+            }
+        }
+
+        /**
+         * Only keeps the compressed resolve reports, the other reports being
+         * rendered when first viewed.
+         * 
+         * @param current
+         *            the fingerprints of the resolve reports
+         */
+        private IvyReport keepForLazyRendering(ModuleName moduleName,
+                String resolveId, String[] confs, Map<String, String> current)
+                throws IOException {
+            moveCollectedReports(resolveId, confs);
+            for (String conf : confs) {
+                ReportFiles.compress(new File(reportsDir, resolveId + "-"
+                        + conf + ".xml"));
+            }
+            IvyReportGenerator.copyCss(reportsDir);
+            File htmlReport = new File(reportsDir, resolveId + "-" + confs[0]
+                    + ".html");
+            StringBuilder fingerprint = new StringBuilder();
+            for (String conf : confs) {
+                fingerprint.append(current.get(resolveId + "-" + conf + ".xml"))
+                        .append(';');
+            }
+            return new IvyReport(moduleName, new FilePath(htmlReport),
+                    resolveId, confs, getGraphReductionOfJob(),
+                    Util.getDigestOf(fingerprint.toString()));
+        }
+
+        /**
+         * Adds the figures, the dependencies and the graphs of the resolve
+         * reports, now in the reports directory, to the result of the module.
+         * Only for the reports which are not generated now, the others are
+         * handed over by the generator.
+         */
+        private void summarize(String resolveId, String[] confs,
+                ModuleReport result) throws IOException {
+            for (String conf : confs) {
+                File file = ReportFiles.resolve(reportsDir, resolveId + "-"
+                        + conf + ".xml");
+                if (file == null) {
+                    continue;
+                }
+                InputStream in = ReportFiles.open(file);
+                try {
+                    result.figures.parsed(ResolveReport.parse(in));
+                } finally {
+                    in.close();
+                }
+            }
+        }
+
+        /**
+         * Fingerprints the resolve reports, from the fingerprints of their
+         * content computed where they were collected. Besides the content of
+         * a resolve report, the fingerprint covers what else the generated
+         * reports depend on.
+         */
+        private Map<String, String> fingerprint(String resolveId,
+                String[] confs) {
+            String settings = REPORT_FORMAT + ";"
+                    + DESCRIPTOR.getGraphRendererOrDefault() + ";"
+                    + getReportSettings().getGraphReduction() + ";"
+                    + Arrays.asList(confs);
+            Map<String, String> result = new HashMap<String, String>();
+            for (String conf : confs) {
+                result.put(resolveId + "-" + conf + ".xml",
+                        Util.getDigestOf(settings + ";"
+                                + files.getReports().get(conf)));
+            }
+            return result;
+        }
+
+        /**
+         * Moves the collected resolve reports of the module to the reports
+         * directory.
+         */
+        private void moveCollectedReports(String resolveId, String[] confs)
+                throws IOException {
+            for (String conf : confs) {
+                String name = resolveId + "-" + conf + ".xml";
+                File collected = new File(staging,
+                        CollectReportFilesCallable.REPORTS_DIR + "/" + name);
+                File target = new File(reportsDir, name);
+                target.delete();
+                if (!collected.renameTo(target)) {
+                    FileUtils.copyFile(collected, target);
+                }
+            }
+        }
+
+        /**
+         * Copies the reports of the previous build if none of the resolve
+         * reports changed since.
+         * 
+         * @return the main html report, or <tt>null</tt> if the reports need
+         *         to be generated
+         */
+        private File reuse(String resolveId, String[] confs,
+                ModuleReport result) throws IOException {
+            if (previous == null || previous.getDir() == null) {
+                return null;
+            }
+            Map<String, File> files = new HashMap<String, File>();
+            for (String conf : confs) {
+                String name = resolveId + "-" + conf;
+                String fingerprint = result.fingerprints.get(name + ".xml");
+                if (fingerprint == null
+                        || !fingerprint.equals(previous
+                                .getFingerprint(name + ".xml"))) {
+                    return null;
+                }
+                for (String ext : REPORT_EXTENSIONS) {
+                    File file = ReportFiles.resolve(previous.getDir(), name
+                            + ext);
+                    if (file == null) {
+                        return null;
+                    }
+                    files.put(name + ext
+                            + (ReportFiles.isCompressed(file) ? ReportFiles.GZIP_EXTENSION
+                                    : ""), file);
+                }
+            }
+            BlobStore blobs = BlobStore.getInstance();
+            for (Map.Entry<String, File> file : files.entrySet()) {
+                String blob = blobs.getBlobName(file.getValue());
+                if (blob != null) {
+                    // only the reference is copied
+                    blobs.touch(file.getValue());
+                    result.reusedBlobs.put(file.getKey(), blob);
+                } else {
+                    FileUtils.copyFile(file.getValue(), new File(reportsDir,
+                            file.getKey()));
+                }
+            }
+            IvyReportGenerator.copyCss(reportsDir);
+            return new File(reportsDir, resolveId + "-" + confs[0] + ".html");
         }
-        return result;
     }
 
     private String[] getConfs() {
@@ -170,18 +891,8 @@ public class IvyReportPublisher extends Recorder {
         }
     }
 
-    private void copyIvyReportFilesToMaster(FilePath resolutionCacheRoot,
-            String resolveId, String[] confs, File targetDir)
-            throws IOException, InterruptedException {
-        for (String conf : confs) {
-            FilePath report = getConfigurationResolveReportInCache(
-                    resolutionCacheRoot, resolveId, conf);
-            if (!report.exists()) {
-                throw new IOException("Report file does not exist : "
-                        + report.getRemote());
-            }
-            report.copyTo(new FilePath(new File(targetDir, report.getName())));
-        }
+    private static String getResolveId(ModuleName moduleName) {
+        return moduleName.organisation + "-" + moduleName.name;
     }
 
     @Override
@@ -205,6 +916,66 @@ public class IvyReportPublisher extends Recorder {
 
         private String dotExe;
 
+        private GraphRenderer graphRenderer;
+
+        /**
+         * Whether all the graphs of a module are rendered by a single dot
+         * process.
+         */
+        private boolean batchDot;
+
+        /**
+         * Maximum number of dot processes running at the same time.
+         */
+        private Integer dotProcesses;
+
+        /**
+         * Number of modules whose report is generated concurrently.
+         */
+        private Integer moduleThreads;
+
+        /**
+         * Maximum time, in seconds, spent on the report of a single module. 0
+         * means no limit.
+         */
+        private Integer moduleTimeout;
+
+        /**
+         * Whether the reports are generated on the node which built the
+         * project rather than on the controller.
+         */
+        private boolean generateOnAgent;
+
+        /**
+         * Whether the html and svg reports are only rendered when first
+         * viewed.
+         */
+        private boolean lazyRendering;
+
+        /**
+         * Whether the html and svg reports are rendered in the background,
+         * after the build.
+         */
+        private boolean asyncRendering;
+
+        /**
+         * Number of modules rendered at the same time in the background, for
+         * all the builds.
+         */
+        private Integer renderThreads;
+
+        /**
+         * Maximum size, in megabytes, of the reports rendered on demand.
+         */
+        private Integer renderCacheSize;
+
+        /**
+         * Number of nodes and edges above which the graphs are reduced, for
+         * the jobs using the automatic reduction.
+         */
+        private Integer graphMaxNodes;
+        private Integer graphMaxEdges;
+
         public DescriptorImpl() {
             super(IvyReportPublisher.class);
             load();
@@ -214,6 +985,18 @@ public class IvyReportPublisher extends Recorder {
         public boolean configure(StaplerRequest req, JSONObject json)
                 throws hudson.model.Descriptor.FormException {
             dotExe = Util.fixEmptyAndTrim(json.getString("dotExe"));
+            graphRenderer = parseGraphRenderer(json.optString("graphRenderer"));
+            batchDot = json.optBoolean("batchDot");
+            dotProcesses = parseInteger(json.optString("dotProcesses"));
+            moduleThreads = parseInteger(json.optString("moduleThreads"));
+            moduleTimeout = parseInteger(json.optString("moduleTimeout"));
+            generateOnAgent = json.optBoolean("generateOnAgent");
+            lazyRendering = json.optBoolean("lazyRendering");
+            asyncRendering = json.optBoolean("asyncRendering");
+            renderThreads = parseInteger(json.optString("renderThreads"));
+            renderCacheSize = parseInteger(json.optString("renderCacheSize"));
+            graphMaxNodes = parseInteger(json.optString("graphMaxNodes"));
+            graphMaxEdges = parseInteger(json.optString("graphMaxEdges"));
             save();
 
             return true;
@@ -252,6 +1035,260 @@ public class IvyReportPublisher extends Recorder {
             return FormValidation.validateExecutable(value);
         }
 
+        public GraphRenderer getGraphRenderer() {
+            return graphRenderer;
+        }
+
+        /**
+         * @return configured graph renderer, the dot executable by default
+         */
+        public GraphRenderer getGraphRendererOrDefault() {
+            return graphRenderer == null ? GraphRenderer.DOT : graphRenderer;
+        }
+
+        public ListBoxModel doFillGraphRendererItems() {
+            ListBoxModel items = new ListBoxModel();
+            for (GraphRenderer renderer : GraphRenderer.values()) {
+                items.add(new ListBoxModel.Option(renderer.getDisplayName(),
+                        renderer.name(),
+                        renderer == getGraphRendererOrDefault()));
+            }
+            return items;
+        }
+
+        private static GraphRenderer parseGraphRenderer(String value) {
+            value = Util.fixEmptyAndTrim(value);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return GraphRenderer.valueOf(value);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        public boolean isBatchDot() {
+            return batchDot;
+        }
+
+        public Integer getDotProcesses() {
+            return dotProcesses;
+        }
+
+        /**
+         * @return configured maximum number of dot processes, 0 (no limit) by
+         *         default
+         */
+        public int getDotProcessesOrDefault() {
+            if (dotProcesses == null || dotProcesses < 0) {
+                return 0;
+            }
+            return dotProcesses;
+        }
+
+        public FormValidation doCheckDotProcesses(
+                @QueryParameter final String value) {
+            if (Util.fixEmptyAndTrim(value) == null) {
+                return FormValidation.ok();
+            }
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public Integer getModuleThreads() {
+            return moduleThreads;
+        }
+
+        public void setModuleThreads(Integer moduleThreads) {
+            this.moduleThreads = moduleThreads;
+        }
+
+        /**
+         * @return configured number of modules processed in parallel, 1 (no
+         *         parallelism) by default
+         */
+        public int getModuleThreadsOrDefault() {
+            if (moduleThreads == null || moduleThreads < 1) {
+                return 1;
+            }
+            return moduleThreads;
+        }
+
+        public FormValidation doCheckModuleThreads(
+                @QueryParameter final String value) {
+            if (Util.fixEmptyAndTrim(value) == null) {
+                return FormValidation.ok();
+            }
+            return FormValidation.validatePositiveInteger(value);
+        }
+
+        public Integer getModuleTimeout() {
+            return moduleTimeout;
+        }
+
+        /**
+         * @return configured per module timeout in seconds, 0 (no timeout) by
+         *         default
+         */
+        public int getModuleTimeoutOrDefault() {
+            if (moduleTimeout == null || moduleTimeout < 0) {
+                return 0;
+            }
+            return moduleTimeout;
+        }
+
+        public FormValidation doCheckModuleTimeout(
+                @QueryParameter final String value) {
+            if (Util.fixEmptyAndTrim(value) == null) {
+                return FormValidation.ok();
+            }
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public boolean isGenerateOnAgent() {
+            return generateOnAgent;
+        }
+
+        public void setGenerateOnAgent(boolean generateOnAgent) {
+            this.generateOnAgent = generateOnAgent;
+        }
+
+        public boolean isLazyRendering() {
+            return lazyRendering;
+        }
+
+        public void setLazyRendering(boolean lazyRendering) {
+            this.lazyRendering = lazyRendering;
+        }
+
+        public boolean isAsyncRendering() {
+            return asyncRendering;
+        }
+
+        public void setAsyncRendering(boolean asyncRendering) {
+            this.asyncRendering = asyncRendering;
+        }
+
+        public Integer getRenderThreads() {
+            return renderThreads;
+        }
+
+        /**
+         * @return configured number of modules rendered at the same time in
+         *         the background, 2 by default
+         */
+        public int getRenderThreadsOrDefault() {
+            if (renderThreads == null || renderThreads < 1) {
+                return 2;
+            }
+            return renderThreads;
+        }
+
+        public FormValidation doCheckRenderThreads(
+                @QueryParameter final String value) {
+            if (Util.fixEmptyAndTrim(value) == null) {
+                return FormValidation.ok();
+            }
+            return FormValidation.validatePositiveInteger(value);
+        }
+
+        public Integer getRenderCacheSize() {
+            return renderCacheSize;
+        }
+
+        /**
+         * @return configured maximum size of the reports rendered on demand,
+         *         in megabytes, 512 by default
+         */
+        public int getRenderCacheSizeOrDefault() {
+            if (renderCacheSize == null || renderCacheSize < 1) {
+                return 512;
+            }
+            return renderCacheSize;
+        }
+
+        public FormValidation doCheckRenderCacheSize(
+                @QueryParameter final String value) {
+            if (Util.fixEmptyAndTrim(value) == null) {
+                return FormValidation.ok();
+            }
+            return FormValidation.validatePositiveInteger(value);
+        }
+
+        public Integer getGraphMaxNodes() {
+            return graphMaxNodes;
+        }
+
+        /**
+         * @return configured number of nodes above which the graphs are
+         *         reduced, {@link GraphReduction#DEFAULT_MAX_NODES} by default
+         */
+        public int getGraphMaxNodesOrDefault() {
+            if (graphMaxNodes == null || graphMaxNodes < 1) {
+                return GraphReduction.DEFAULT_MAX_NODES;
+            }
+            return graphMaxNodes;
+        }
+
+        public FormValidation doCheckGraphMaxNodes(
+                @QueryParameter final String value) {
+            if (Util.fixEmptyAndTrim(value) == null) {
+                return FormValidation.ok();
+            }
+            return FormValidation.validatePositiveInteger(value);
+        }
+
+        public Integer getGraphMaxEdges() {
+            return graphMaxEdges;
+        }
+
+        /**
+         * @return configured number of edges above which the graphs are
+         *         reduced, {@link GraphReduction#DEFAULT_MAX_EDGES} by default
+         */
+        public int getGraphMaxEdgesOrDefault() {
+            if (graphMaxEdges == null || graphMaxEdges < 1) {
+                return GraphReduction.DEFAULT_MAX_EDGES;
+            }
+            return graphMaxEdges;
+        }
+
+        public FormValidation doCheckGraphMaxEdges(
+                @QueryParameter final String value) {
+            if (Util.fixEmptyAndTrim(value) == null) {
+                return FormValidation.ok();
+            }
+            return FormValidation.validatePositiveInteger(value);
+        }
+
+        public ListBoxModel doFillGraphReductionItems() {
+            ListBoxModel items = new ListBoxModel();
+            for (GraphReductionMode mode : GraphReductionMode.values()) {
+                items.add(mode.getDisplayName(), mode.name());
+            }
+            return items;
+        }
+
+        public FormValidation doCheckGraphMaxDepth(
+                @QueryParameter final String value) {
+            if (Util.fixEmptyAndTrim(value) == null) {
+                return FormValidation.ok();
+            }
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        private static Integer parseInteger(String value) {
+            value = Util.fixEmptyAndTrim(value);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return Integer.valueOf(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
     }
 
 }
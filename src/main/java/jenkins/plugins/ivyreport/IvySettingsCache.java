@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.EnvVars;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ivy.Ivy;
+import org.apache.ivy.core.settings.IvySettings;
+
+/**
+ * A bounded cache of loaded ivy settings, shared by all the builds of a JVM:
+ * the controller uses it to parse the module descriptors and the nodes to
+ * find the resolution cache root.
+ * <p>
+ * Settings are keyed by the canonical paths of the settings file and of the
+ * property files, and by the default branch. A cached entry is only reused
+ * while these files keep their size and modification time, and while the
+ * environment variables read when loading them keep their values. Files
+ * included by the settings file are not tracked.
+ */
+final class IvySettingsCache {
+    static final IvySettingsCache INSTANCE = new IvySettingsCache(16);
+
+    private static final class CachedSettings {
+        private long[] stamps;
+        private Map<String, String> variables;
+        private IvySettings settings;
+        private Ivy ivy;
+
+        boolean isValid(long[] stamps, EnvVars envVars) {
+            if (settings == null || !Arrays.equals(this.stamps, stamps)) {
+                return false;
+            }
+            if (variables != null) {
+                synchronized (variables) {
+                    for (Map.Entry<String, String> variable : variables
+                            .entrySet()) {
+                        if (!equal(variable.getValue(),
+                                envVars.get(variable.getKey()))) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    private final Map<String, CachedSettings> entries;
+
+    IvySettingsCache(final int size) {
+        entries = new LinkedHashMap<String, CachedSettings>(size, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, CachedSettings> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    /**
+     * @param settingsFile
+     *            the settings file, <tt>null</tt> for the default settings
+     * @param propertyFiles
+     *            property files loaded before the settings
+     * @param branch
+     *            the default branch, may be <tt>null</tt>
+     * @param envVars
+     *            the environment variables seen by the settings,
+     *            <tt>null</tt> for the ones of this process
+     */
+    IvySettings getSettings(File settingsFile, List<File> propertyFiles,
+            String branch, EnvVars envVars) throws IOException,
+            ParseException {
+        return getEntry(settingsFile, propertyFiles, branch, envVars).settings;
+    }
+
+    /**
+     * @return an ivy instance for the settings, see
+     *         {@link #getSettings(File, List, String, EnvVars)}
+     */
+    Ivy getIvy(File settingsFile, List<File> propertyFiles, String branch,
+            EnvVars envVars) throws IOException, ParseException {
+        CachedSettings entry = getEntry(settingsFile, propertyFiles, branch, envVars);
+        synchronized (entry) {
+            if (entry.ivy == null) {
+                entry.ivy = Ivy.newInstance(entry.settings);
+            }
+            return entry.ivy;
+        }
+    }
+
+    private CachedSettings getEntry(File settingsFile, List<File> propertyFiles,
+            String branch, EnvVars envVars) throws IOException,
+            ParseException {
+        List<File> files = new ArrayList<File>(propertyFiles);
+        if (settingsFile != null) {
+            files.add(settingsFile);
+        }
+        StringBuilder key = new StringBuilder();
+        long[] stamps = new long[files.size() * 2];
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            key.append(file.getCanonicalPath()).append('\u0000');
+            stamps[2 * i] = file.lastModified();
+            stamps[2 * i + 1] = file.length();
+        }
+        key.append(settingsFile != null).append('\u0000').append(branch)
+                .append('\u0000').append(envVars != null);
+
+        CachedSettings entry;
+        synchronized (entries) {
+            entry = entries.get(key.toString());
+            if (entry == null) {
+                entry = new CachedSettings();
+                entries.put(key.toString(), entry);
+            }
+        }
+        // settings are loaded once, even when asked for by several modules
+        // at the same time
+        synchronized (entry) {
+            if (!entry.isValid(stamps, envVars)) {
+                entry.ivy = null;
+                entry.settings = null;
+                load(entry, settingsFile, propertyFiles, branch, envVars);
+                entry.stamps = stamps;
+            }
+            return entry;
+        }
+    }
+
+    private static void load(CachedSettings entry, File settingsFile,
+            List<File> propertyFiles, String branch, EnvVars envVars)
+            throws IOException, ParseException {
+        IvySettings settings;
+        if (envVars != null) {
+            EnvVarsVariableContainer container = new EnvVarsVariableContainer(
+                    envVars);
+            settings = new IvySettings(container);
+            entry.variables = container.getReadVariables();
+        } else {
+            settings = new IvySettings();
+            entry.variables = null;
+        }
+        for (File file : propertyFiles) {
+            settings.loadProperties(file);
+        }
+        if (settingsFile != null) {
+            settings.load(settingsFile);
+        } else {
+            settings.loadDefault();
+        }
+        if (branch != null) {
+            settings.setDefaultBranch(branch);
+        }
+        entry.settings = settings;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Extension;
+import hudson.ivy.IvyModuleSet;
+import hudson.ivy.IvyModuleSetBuild;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Keeps track of the newest build of every ivy project with an ivy report, so
+ * that the project page does not need to look through the build history.
+ * <p>
+ * The number of that build is kept in memory and in the project directory;
+ * the history is only looked through for projects built by older versions of
+ * the plugin, and when the tracked build is deleted.
+ */
+@Extension
+public class LatestReportTracker extends RunListener<IvyModuleSetBuild> {
+    private static final Logger LOGGER = Logger
+            .getLogger(LatestReportTracker.class.getName());
+
+    private static final String FILE_NAME = "ivyreport-latest";
+
+    /**
+     * Stands for projects without any build with an ivy report.
+     */
+    private static final int NONE = 0;
+
+    private static final Map<IvyModuleSet, Integer> LATEST = Collections
+            .synchronizedMap(new WeakHashMap<IvyModuleSet, Integer>());
+
+    public LatestReportTracker() {
+        super(IvyModuleSetBuild.class);
+    }
+
+    @Override
+    public void onCompleted(IvyModuleSetBuild build, TaskListener listener) {
+        IvyModuleSet project = build.getProject();
+        synchronized (LATEST) {
+            if (hasReport(build)
+                    && build.getNumber() > getLatestNumber(project)) {
+                setLatestNumber(project, build.getNumber());
+            }
+        }
+    }
+
+    @Override
+    public void onDeleted(IvyModuleSetBuild build) {
+        IvyModuleSet project = build.getProject();
+        synchronized (LATEST) {
+            if (build.getNumber() == getLatestNumber(project)) {
+                setLatestNumber(project, find(build.getPreviousBuild()));
+            }
+        }
+    }
+
+    /**
+     * @return the ivy report of the newest build which has one, or
+     *         <tt>null</tt> if there is none
+     */
+    public static IvyReportBuildAction getLatestReport(IvyModuleSet project) {
+        IvyReportBuildAction report = getReport(project,
+                getLatestNumber(project));
+        if (report == null && getLatestNumber(project) != NONE) {
+            // e.g. the build was deleted while the plugin was not running
+            synchronized (LATEST) {
+                setLatestNumber(project, find(project.getLastBuild()));
+            }
+            report = getReport(project, getLatestNumber(project));
+        }
+        return report;
+    }
+
+    private static IvyReportBuildAction getReport(IvyModuleSet project,
+            int number) {
+        if (number == NONE) {
+            return null;
+        }
+        IvyModuleSetBuild build = project.getBuildByNumber(number);
+        return build != null && hasReport(build) ? build
+                .getAction(IvyReportBuildAction.class) : null;
+    }
+
+    private static boolean hasReport(IvyModuleSetBuild build) {
+        return build.getResult() != Result.FAILURE
+                && build.getAction(IvyReportBuildAction.class) != null;
+    }
+
+    private static int find(IvyModuleSetBuild from) {
+        for (IvyModuleSetBuild b = from; b != null; b = b.getPreviousBuild()) {
+            if (hasReport(b)) {
+                return b.getNumber();
+            }
+        }
+        return NONE;
+    }
+
+    private static int getLatestNumber(IvyModuleSet project) {
+        synchronized (LATEST) {
+            Integer number = LATEST.get(project);
+            if (number == null) {
+                number = load(project);
+                if (number == null) {
+                    number = find(project.getLastBuild());
+                    save(project, number);
+                }
+                LATEST.put(project, number);
+            }
+            return number;
+        }
+    }
+
+    private static void setLatestNumber(IvyModuleSet project, int number) {
+        LATEST.put(project, number);
+        save(project, number);
+    }
+
+    private static Integer load(IvyModuleSet project) {
+        File file = new File(project.getRootDir(), FILE_NAME);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            Reader reader = new FileReader(file);
+            try {
+                return Integer.valueOf(IOUtils.toString(reader).trim());
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot read " + file, e);
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Invalid content in " + file, e);
+        }
+        return null;
+    }
+
+    private static void save(IvyModuleSet project, int number) {
+        File file = new File(project.getRootDir(), FILE_NAME);
+        try {
+            Writer writer = new FileWriter(file);
+            try {
+                writer.write(String.valueOf(number));
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot write " + file, e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ivy.Ivy;
+import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
+
+/**
+ * A bounded cache of parsed module descriptors, keyed by the backup copy of
+ * the ivy file of a module. A descriptor is reused while the backup keeps
+ * its size and modification time and the ivy instance which parsed it is
+ * still the current one; descriptors are softly referenced, so that they
+ * can be dropped under memory pressure.
+ */
+final class ModuleDescriptorCache {
+    static final ModuleDescriptorCache INSTANCE = new ModuleDescriptorCache(
+            256);
+
+    private static final class CachedDescriptor {
+        private final ModuleDescriptor descriptor;
+        private final Ivy ivy;
+        private final long lastModified;
+        private final long length;
+
+        CachedDescriptor(ModuleDescriptor descriptor, Ivy ivy,
+                long lastModified, long length) {
+            this.descriptor = descriptor;
+            this.ivy = ivy;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+    private final Map<String, SoftReference<CachedDescriptor>> entries;
+
+    ModuleDescriptorCache(final int size) {
+        entries = new LinkedHashMap<String, SoftReference<CachedDescriptor>>(
+                size, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, SoftReference<CachedDescriptor>> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    /**
+     * @return the descriptor parsed from the ivy file, <tt>null</tt> if it
+     *         is not cached or changed since
+     */
+    synchronized ModuleDescriptor get(File ivyFile, Ivy ivy) {
+        SoftReference<CachedDescriptor> reference = entries.get(ivyFile
+                .getPath());
+        CachedDescriptor cached = reference == null ? null : reference.get();
+        if (cached == null || cached.ivy != ivy
+                || cached.lastModified != ivyFile.lastModified()
+                || cached.length != ivyFile.length()) {
+            return null;
+        }
+        return cached.descriptor;
+    }
+
+    /**
+     * @param lastModified
+     *            modification time of the ivy file before it was parsed
+     * @param length
+     *            size of the ivy file before it was parsed
+     */
+    synchronized void put(File ivyFile, Ivy ivy, long lastModified,
+            long length, ModuleDescriptor descriptor) {
+        entries.put(ivyFile.getPath(), new SoftReference<CachedDescriptor>(
+                new CachedDescriptor(descriptor, ivy, lastModified, length)));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.util.DaemonThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+/**
+ * Runs the work of each module of a build on a bounded pool of threads, each
+ * module with a timeout of its own.
+ * <p>
+ * Only the results of the modules which completed are handed back: the tasks
+ * of the modules which timed out are interrupted, and waited for a while, so
+ * that they don't outlive the work of the build. Tasks are expected to check
+ * for interruption between their phases, see {@link Task#checkInterrupted()}.
+ */
+final class ModuleExecutor {
+    private static final Logger LOGGER = Logger.getLogger(ModuleExecutor.class
+            .getName());
+
+    /**
+     * How long the interrupted tasks are waited for.
+     */
+    private static final long TERMINATION_TIMEOUT = TimeUnit.SECONDS
+            .toMillis(30);
+
+    /**
+     * The work of a module.
+     */
+    abstract static class Task<T> implements Callable<T> {
+        private volatile long startedAt;
+
+        public final T call() throws Exception {
+            startedAt = System.currentTimeMillis();
+            return run();
+        }
+
+        protected abstract T run() throws Exception;
+
+        /**
+         * @return when the task started, 0 while queued
+         */
+        final long getStartedAt() {
+            return startedAt;
+        }
+
+        /**
+         * Stops a task which timed out.
+         */
+        static void checkInterrupted() throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * What became of a module: its result, or why there is none.
+     */
+    static final class Outcome<T> {
+        private final T result;
+        private final Throwable failure;
+
+        private Outcome(T result, Throwable failure) {
+            this.result = result;
+            this.failure = failure;
+        }
+
+        /**
+         * @return the result, <tt>null</tt> if the module failed or timed out
+         */
+        T getResult() {
+            return result;
+        }
+
+        /**
+         * @return why the module has no result, a {@link TimeoutException}
+         *         if it timed out
+         */
+        Throwable getFailure() {
+            return failure;
+        }
+
+        boolean isTimedOut() {
+            return failure instanceof TimeoutException;
+        }
+    }
+
+    private ModuleExecutor() {
+    }
+
+    /**
+     * @param threads
+     *            maximum number of modules processed at the same time
+     * @param timeout
+     *            time in milliseconds given to each module once started, 0
+     *            for no timeout
+     * @return the outcomes, in the order of the tasks
+     */
+    static <T> List<Outcome<T>> run(List<? extends Task<T>> tasks,
+            int threads, long timeout) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(threads, tasks.size())),
+                new DaemonThreadFactory());
+        try {
+            List<Future<T>> futures = new ArrayList<Future<T>>();
+            for (Task<T> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            // collected in order so that the outcomes are stable whatever the
+            // completion order
+            List<Outcome<T>> outcomes = new ArrayList<Outcome<T>>();
+            for (int i = 0; i < tasks.size(); i++) {
+                Future<T> future = futures.get(i);
+                try {
+                    outcomes.add(new Outcome<T>(await(tasks.get(i), future,
+                            timeout), null));
+                } catch (ExecutionException e) {
+                    outcomes.add(new Outcome<T>(null,
+                            e.getCause() != null ? e.getCause() : e));
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                    outcomes.add(new Outcome<T>(null, e));
+                }
+            }
+            return outcomes;
+        } finally {
+            executor.shutdownNow();
+            if (!executor.awaitTermination(TERMINATION_TIMEOUT,
+                    TimeUnit.MILLISECONDS)) {
+                LOGGER.warning("Ivy report tasks still running after "
+                        + TERMINATION_TIMEOUT + " ms");
+            }
+        }
+    }
+
+    /**
+     * Waits for a module. The timeout only starts once the module is
+     * actually being processed, so that modules queued behind slow ones are
+     * not penalized.
+     */
+    private static <T> T await(Task<T> task, Future<T> future, long timeout)
+            throws InterruptedException, ExecutionException,
+            TimeoutException {
+        if (timeout <= 0) {
+            return future.get();
+        }
+        while (true) {
+            long startedAt = task.getStartedAt();
+            long wait = startedAt == 0 ? timeout : startedAt + timeout
+                    - System.currentTimeMillis();
+            try {
+                return future.get(Math.max(1, wait), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                startedAt = task.getStartedAt();
+                if (startedAt != 0
+                        && System.currentTimeMillis() - startedAt >= timeout) {
+                    throw e;
+                }
+            }
+        }
+    }
+}
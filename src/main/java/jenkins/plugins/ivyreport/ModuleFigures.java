@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jenkins.plugins.ivyreport.graph.AggregatedGraph;
+import jenkins.plugins.ivyreport.graph.DependencyIndex;
+import jenkins.plugins.ivyreport.graph.ReportStatistics;
+import jenkins.plugins.ivyreport.graph.ResolveReport;
+
+/**
+ * What the resolve reports of a module add to the summary, the dependency
+ * index and the aggregated graph of the build. Kept apart until the module
+ * completed, so that the modules which fail or time out add nothing.
+ */
+final class ModuleFigures implements IvyReportGenerator.ReportListener {
+    private final List<ReportStatistics> statistics = new ArrayList<ReportStatistics>();
+    private final DependencyIndex dependencies = new DependencyIndex();
+    private final AggregatedGraph aggregate = new AggregatedGraph();
+
+    /**
+     * Adds the figures, the dependencies and the graph of a resolve report.
+     */
+    public void parsed(ResolveReport report) {
+        statistics.add(new ReportStatistics(report));
+        dependencies.add(report);
+        aggregate.add(report);
+    }
+
+    void addTo(ReportSummary summary, DependencyIndex dependencies,
+            AggregatedGraph aggregate) {
+        for (ReportStatistics statistics : this.statistics) {
+            summary.add(statistics);
+        }
+        dependencies.add(this.dependencies);
+        aggregate.add(this.aggregate);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counter and histogram of the time spent on a phase of the report
+ * publishing.
+ */
+public final class PhaseStats implements PhaseStatsMBean {
+    private static final long[] BOUNDS = { 1, 10, 100, 1000, 10000, 60000,
+            600000 };
+
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+    private final long[] buckets = new long[BOUNDS.length + 1];
+
+    public synchronized void add(long nanos) {
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int i = 0;
+        while (i < BOUNDS.length && millis > BOUNDS[i]) {
+            i++;
+        }
+        buckets[i]++;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    public synchronized long getMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos);
+    }
+
+    public synchronized double getMeanMillis() {
+        return count == 0 ? 0 : totalNanos / 1e6 / count;
+    }
+
+    public long[] getBucketBounds() {
+        return BOUNDS.clone();
+    }
+
+    public synchronized long[] getBucketCounts() {
+        return buckets.clone();
+    }
+
+    public synchronized long get95thPercentileMillis() {
+        long rank = (long) Math.ceil(count * 0.95);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(BOUNDS[i], getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    public synchronized void reset() {
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+        Arrays.fill(buckets, 0);
+    }
+}
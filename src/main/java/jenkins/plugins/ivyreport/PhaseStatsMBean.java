@@ -0,0 +1,59 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+/**
+ * JMX view of the time spent on a phase of the report publishing, across
+ * all the builds since Jenkins started.
+ */
+public interface PhaseStatsMBean {
+
+    long getCount();
+
+    long getTotalMillis();
+
+    long getMaxMillis();
+
+    double getMeanMillis();
+
+    /**
+     * @return the upper bounds, in milliseconds, of the histogram buckets;
+     *         the last bucket has no upper bound
+     */
+    long[] getBucketBounds();
+
+    /**
+     * @return the number of samples in each histogram bucket, one more than
+     *         the bounds
+     */
+    long[] getBucketCounts();
+
+    /**
+     * @return the upper bound of the bucket holding the 95th percentile, or
+     *         the maximum if it is in the last bucket
+     */
+    long get95thPercentileMillis();
+
+    void reset();
+}
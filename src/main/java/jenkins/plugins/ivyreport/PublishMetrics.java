@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jenkins.plugins.ivyreport.PublishTimings.Phase;
+
+/**
+ * Aggregates the {@link PublishTimings} of all the builds, exposed through
+ * JMX as <tt>jenkins.plugins.ivyreport:type=PublishTimings,phase=*</tt>:
+ * one {@link PhaseStats} by phase, with a sample by module for the phases of
+ * the modules, and <tt>phase=TOTAL</tt> with a sample by build.
+ */
+final class PublishMetrics {
+    private static final Logger LOGGER = Logger.getLogger(PublishMetrics.class
+            .getName());
+    private static final String DOMAIN = "jenkins.plugins.ivyreport";
+
+    private static PublishMetrics instance;
+
+    private final PhaseStats total = new PhaseStats();
+    private final Map<Phase, PhaseStats> phases = new EnumMap<Phase, PhaseStats>(
+            Phase.class);
+
+    PublishMetrics() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new PhaseStats());
+        }
+    }
+
+    /**
+     * @return the metrics of this JVM, registered with the platform MBean
+     *         server on first use
+     */
+    static synchronized PublishMetrics getInstance() {
+        if (instance == null) {
+            instance = new PublishMetrics();
+            instance.register(ManagementFactory.getPlatformMBeanServer());
+        }
+        return instance;
+    }
+
+    private void register(MBeanServer server) {
+        try {
+            server.registerMBean(total, getName("TOTAL"));
+            for (Map.Entry<Phase, PhaseStats> entry : phases.entrySet()) {
+                server.registerMBean(entry.getValue(),
+                        getName(entry.getKey().name()));
+            }
+        } catch (JMException e) {
+            // e.g. the plugin was reloaded: the metrics are still collected
+            LOGGER.log(Level.WARNING,
+                    "Cannot register the ivy report publishing metrics", e);
+        }
+    }
+
+    private static ObjectName getName(String phase) throws JMException {
+        return new ObjectName(DOMAIN + ":type=PublishTimings,phase=" + phase);
+    }
+
+    void add(PublishTimings timings) {
+        if (timings.getTotalNanos() >= 0) {
+            total.add(timings.getTotalNanos());
+        }
+        for (Map<Phase, Long> nanos : timings.getSamples()) {
+            for (Map.Entry<Phase, Long> phase : nanos.entrySet()) {
+                phases.get(phase.getKey()).add(phase.getValue());
+            }
+        }
+    }
+
+    PhaseStats getTotal() {
+        return total;
+    }
+
+    PhaseStats get(Phase phase) {
+        return phases.get(phase);
+    }
+}
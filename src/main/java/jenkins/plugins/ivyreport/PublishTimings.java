@@ -0,0 +1,266 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent publishing the reports of a build, by phase, for the whole
+ * build and for each module. Modules may record their phases concurrently.
+ * <p>
+ * Times are kept by phase name, so that the timings saved with a build are
+ * still read back when phases are added or reordered.
+ */
+public final class PublishTimings {
+
+    public enum Phase {
+        RESOLUTION_CACHE("Ivy settings and resolution cache lookup"),
+        TRANSFER("Report files transfer"),
+        IVY_FILE("Ivy file parsing"),
+        REUSE("Reuse of the previous reports"),
+        AGENT("Generation on the agent"),
+        PARSE("Resolve report parsing"),
+        HTML("Html reports"),
+        GRAPH("Graphs"),
+        DOT("dot"),
+        COMPRESS("Compression"),
+        INDEX("Summary and indexes");
+
+        private final String displayName;
+
+        private Phase(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    /**
+     * Time spent by a module, in nanoseconds by phase; the phases the module
+     * did not go through are left out.
+     */
+    public static final class Module {
+        private final String name;
+        private final Map<Phase, Long> nanos;
+
+        private Module(String name, Map<Phase, Long> nanos) {
+            this.name = name;
+            this.nanos = nanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getMillis(Phase phase) {
+            return toMillis(get(nanos, phase));
+        }
+
+        public long getTotalMillis() {
+            return toMillis(sum(nanos));
+        }
+    }
+
+    private final EnumMap<Phase, Long> build = newNanos();
+    private final Map<String, EnumMap<Phase, Long>> modules = new TreeMap<String, EnumMap<Phase, Long>>();
+    private long total = -1;
+
+    /**
+     * @return the start of a phase, to give to
+     *         {@link #record(String, Phase, long)}
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Adds the time elapsed since <tt>start</tt> to a phase.
+     * 
+     * @param module
+     *            the module, <tt>null</tt> for the phases of the whole build
+     * @return the current time, as the start of the next phase
+     */
+    public long record(String module, Phase phase, long start) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            EnumMap<Phase, Long> nanos = build;
+            if (module != null) {
+                nanos = modules.get(module);
+                if (nanos == null) {
+                    nanos = newNanos();
+                    modules.put(module, nanos);
+                }
+            }
+            nanos.put(phase, Math.max(0, get(nanos, phase)) + now - start);
+        }
+        return now;
+    }
+
+    /**
+     * Sets the time elapsed since <tt>start</tt> as the time spent on the
+     * whole build.
+     */
+    public synchronized void recordTotal(long start) {
+        total = System.nanoTime() - start;
+    }
+
+    public synchronized long getTotalMillis() {
+        return toMillis(total);
+    }
+
+    /**
+     * @return the time spent on a phase by the whole build and all the
+     *         modules, -1 if no module went through it
+     */
+    public synchronized long getMillis(Phase phase) {
+        return toMillis(getNanos(phase));
+    }
+
+    private long getNanos(Phase phase) {
+        long result = get(build, phase);
+        for (Map<Phase, Long> nanos : modules.values()) {
+            if (nanos.containsKey(phase)) {
+                result = Math.max(0, result) + nanos.get(phase);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the phases the build or any module went through
+     */
+    public synchronized List<Phase> getPhases() {
+        List<Phase> result = new ArrayList<Phase>();
+        for (Phase phase : Phase.values()) {
+            if (getNanos(phase) >= 0) {
+                result.add(phase);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the phases any module went through
+     */
+    public synchronized List<Phase> getModulePhases() {
+        List<Phase> result = new ArrayList<Phase>();
+        for (Phase phase : Phase.values()) {
+            for (Map<Phase, Long> nanos : modules.values()) {
+                if (nanos.containsKey(phase)) {
+                    result.add(phase);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the modules, the slowest first
+     */
+    public synchronized List<Module> getModules() {
+        List<Module> result = new ArrayList<Module>();
+        for (Map.Entry<String, EnumMap<Phase, Long>> entry : modules
+                .entrySet()) {
+            result.add(new Module(entry.getKey(), entry.getValue().clone()));
+        }
+        Collections.sort(result, new Comparator<Module>() {
+            public int compare(Module a, Module b) {
+                long x = sum(a.nanos);
+                long y = sum(b.nanos);
+                return x < y ? 1 : x == y ? 0 : -1;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return nanoseconds by phase spent by the whole build, and by each
+     *         module
+     */
+    synchronized List<Map<Phase, Long>> getSamples() {
+        List<Map<Phase, Long>> result = new ArrayList<Map<Phase, Long>>();
+        result.add(build.clone());
+        for (EnumMap<Phase, Long> nanos : modules.values()) {
+            result.add(nanos.clone());
+        }
+        return result;
+    }
+
+    synchronized long getTotalNanos() {
+        return total;
+    }
+
+    /**
+     * @return a one line summary for the build log, with the slowest modules
+     */
+    public String summarize(int slowest) {
+        StringBuilder sb = new StringBuilder("Ivy report timings : ");
+        sb.append(getTotalMillis()).append(" ms");
+        for (Phase phase : getPhases()) {
+            sb.append(", ").append(phase.getDisplayName()).append(' ')
+                    .append(getMillis(phase)).append(" ms");
+        }
+        List<Module> byTime = getModules();
+        if (!byTime.isEmpty() && slowest > 0) {
+            sb.append(" ; slowest module(s) :");
+            for (Module module : byTime.subList(0,
+                    Math.min(slowest, byTime.size()))) {
+                sb.append(' ').append(module.getName()).append(' ')
+                        .append(module.getTotalMillis()).append(" ms");
+            }
+        }
+        return sb.toString();
+    }
+
+    private static EnumMap<Phase, Long> newNanos() {
+        return new EnumMap<Phase, Long>(Phase.class);
+    }
+
+    private static long get(Map<Phase, Long> nanos, Phase phase) {
+        Long value = nanos.get(phase);
+        return value == null ? -1 : value;
+    }
+
+    private static long sum(Map<Phase, Long> nanos) {
+        long result = 0;
+        for (long value : nanos.values()) {
+            result += value;
+        }
+        return result;
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Util;
+import hudson.model.Hudson;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Logger;
+
+import jenkins.plugins.ivyreport.graph.GraphReduction;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Reports of the builds published in lazy mode, rendered when first viewed.
+ * <p>
+ * The reports of a module are rendered from the compressed resolve reports
+ * kept with the build, into a directory of the cache. Viewers asking for the
+ * same reports while they are being rendered wait for that single rendering.
+ * The cache is bounded in size: the least recently viewed reports are
+ * deleted first, and rendered again if viewed again.
+ */
+final class RenderedReportCache {
+    private static final Logger LOGGER = Logger
+            .getLogger(RenderedReportCache.class.getName());
+
+    private static RenderedReportCache instance;
+
+    private final File root;
+
+    private final ConcurrentMap<String, FutureTask<File>> renderings = new ConcurrentHashMap<String, FutureTask<File>>();
+
+    /**
+     * Size of the rendered reports in the cache, least recently used first.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(
+            16, 0.75f, true);
+    /**
+     * Number of viewers of each entry, which is not deleted while viewed.
+     */
+    private final Map<String, Integer> uses = new HashMap<String, Integer>();
+    private long size;
+    private boolean scanned;
+
+    RenderedReportCache(File root) {
+        this.root = root;
+    }
+
+    /**
+     * @return the cache of the current Jenkins home, a new one if Jenkins was
+     *         started again on another home in the same JVM
+     */
+    static synchronized RenderedReportCache getInstance() {
+        File root = new File(Hudson.getInstance().getRootDir(),
+                "ivy-report-cache");
+        if (instance == null || !instance.root.equals(root)) {
+            instance = new RenderedReportCache(root);
+        }
+        return instance;
+    }
+
+    /**
+     * Renders the reports of a module unless they are in the cache already.
+     * The returned directory is not deleted until {@link #release(File)}.
+     * 
+     * @param reportsDir
+     *            where the resolve reports of the build are kept
+     * @param graphReduction
+     *            how the graphs of the job are reduced, <tt>null</tt> for
+     *            the automatic reduction
+     * @param resolveReports
+     *            identifies the content of the resolve reports, e.g. their
+     *            fingerprints, so that the reports of another build which
+     *            used the same directory are not served
+     * @return the directory holding the rendered reports of the module
+     */
+    File acquire(final File reportsDir, final String resolveId,
+            final String[] confs, GraphReduction graphReduction,
+            String resolveReports) throws IOException, InterruptedException {
+        final ReportSettings settings = ReportSettings.of(
+                IvyReportPublisher.DESCRIPTOR).withGraphReduction(
+                graphReduction);
+        // the reports change with the settings they are rendered with
+        final String key = Util.getDigestOf(reportsDir.getAbsolutePath()
+                + File.separator + resolveId + ";" + resolveReports + ";"
+                + IvyReportPublisher.REPORT_FORMAT + ";"
+                + settings.getGraphRenderer() + ";" + settings.getDotExe()
+                + ";" + settings.getGraphReduction());
+        while (true) {
+            File dir = lookup(key, true);
+            if (dir != null) {
+                return dir;
+            }
+            FutureTask<File> rendering = new FutureTask<File>(
+                    new Callable<File>() {
+                        public File call() throws Exception {
+                            File dir = lookup(key, false);
+                            return dir != null ? dir : render(key, reportsDir,
+                                    resolveId, confs, settings);
+                        }
+                    });
+            FutureTask<File> pending = renderings.putIfAbsent(key, rendering);
+            if (pending == null) {
+                pending = rendering;
+                try {
+                    rendering.run();
+                } finally {
+                    renderings.remove(key, rendering);
+                }
+            }
+            try {
+                // acquired by the next lookup, unless deleted in between
+                pending.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Allows a directory returned by
+     * {@link #acquire(File, String, String[], GraphReduction, String)} to be
+     * deleted again.
+     */
+    synchronized void release(File dir) {
+        String key = dir.getName();
+        Integer count = uses.remove(key);
+        if (count != null && count > 1) {
+            uses.put(key, count - 1);
+        }
+        trim(null);
+    }
+
+    private synchronized File lookup(String key, boolean acquire) {
+        scan();
+        File dir = new File(root, key);
+        if (entries.get(key) == null) {
+            return null;
+        }
+        if (!dir.isDirectory()) {
+            size -= entries.remove(key);
+            return null;
+        }
+        if (acquire) {
+            Integer count = uses.get(key);
+            uses.put(key, count == null ? 1 : count + 1);
+        }
+        // keeps the order of use across restarts
+        dir.setLastModified(System.currentTimeMillis());
+        return dir;
+    }
+
+    private File render(String key, File reportsDir, String resolveId,
+            String[] confs, ReportSettings settings) throws IOException,
+            InterruptedException {
+        File tmp = new File(root, key + ".tmp");
+        FileUtils.deleteQuietly(tmp);
+        tmp.mkdirs();
+        try {
+            renderInto(tmp, reportsDir, resolveId, confs, settings);
+            File dir = new File(root, key);
+            FileUtils.deleteQuietly(dir);
+            if (!tmp.renameTo(dir)) {
+                throw new IOException("Unable to rename " + tmp + " to "
+                        + dir);
+            }
+            add(key, FileUtils.sizeOfDirectory(dir));
+            LOGGER.fine("Rendered the ivy reports of " + resolveId + " from "
+                    + reportsDir);
+            return dir;
+        } finally {
+            FileUtils.deleteQuietly(tmp);
+        }
+    }
+
+    /**
+     * Renders the compressed html and svg reports of a module from the
+     * resolve reports kept in a reports directory.
+     * 
+     * @param target
+     *            empty directory where the reports are rendered
+     */
+    static void renderInto(File target, File reportsDir, String resolveId,
+            String[] confs, ReportSettings settings) throws IOException,
+            InterruptedException {
+        for (String conf : confs) {
+            String name = resolveId + "-" + conf + ".xml";
+            File report = ReportFiles.resolve(reportsDir, name);
+            if (report == null) {
+                throw new IOException("Report file does not exist : "
+                        + new File(reportsDir, name));
+            }
+            copy(report, new File(target, name));
+        }
+        new IvyReportGenerator(Hudson.getInstance(), settings, resolveId,
+                confs, target, target).generateReports();
+        for (String conf : confs) {
+            new File(target, resolveId + "-" + conf + ".xml").delete();
+            ReportFiles.compress(target, resolveId + "-" + conf);
+        }
+    }
+
+    private static void copy(File report, File target) throws IOException {
+        InputStream in = ReportFiles.open(report);
+        try {
+            OutputStream out = new FileOutputStream(target);
+            try {
+                IOUtils.copy(in, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private synchronized void add(String key, long entrySize) {
+        Long previous = entries.put(key, entrySize);
+        size += entrySize - (previous == null ? 0 : previous);
+        trim(key);
+    }
+
+    /**
+     * Deletes the least recently viewed reports until the cache fits its
+     * maximum size, except the given ones and the ones being viewed.
+     */
+    private synchronized void trim(String kept) {
+        long maxSize = IvyReportPublisher.DESCRIPTOR
+                .getRenderCacheSizeOrDefault() * 1024L * 1024L;
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet()
+                .iterator();
+        while (size > maxSize && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            // the reports just rendered are about to be viewed, the others
+            // are being sent
+            if (entry.getKey().equals(kept)
+                    || uses.containsKey(entry.getKey())) {
+                continue;
+            }
+            FileUtils.deleteQuietly(new File(root, entry.getKey()));
+            size -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Registers the reports left in the cache by a previous run, least
+     * recently used first.
+     */
+    private void scan() {
+        if (scanned) {
+            return;
+        }
+        scanned = true;
+        File[] dirs = root.listFiles();
+        if (dirs == null) {
+            return;
+        }
+        Arrays.sort(dirs, new Comparator<File>() {
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+            }
+        });
+        for (File dir : dirs) {
+            if (dir.getName().endsWith(".tmp") || !dir.isDirectory()) {
+                FileUtils.deleteQuietly(dir);
+            } else {
+                long entrySize = FileUtils.sizeOfDirectory(dir);
+                entries.put(dir.getName(), entrySize);
+                size += entrySize;
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import jenkins.plugins.ivyreport.graph.AggregatedGraph;
+import jenkins.plugins.ivyreport.graph.DependencyIndex;
+
+import org.apache.commons.io.IOUtils;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Storage and serving of the generated reports.
+ * <p>
+ * The html and svg reports are compressed once, when published, and stored
+ * as <tt>name.gz</tt> next to where <tt>name</tt> used to be. They are sent
+ * as they are to the clients accepting gzip, and decompressed on the fly
+ * for the others. Reports of older builds are still stored uncompressed. In
+ * lazy mode, only the resolve reports are kept with the build, compressed as
+ * well, see {@link RenderedReportCache}. Once published, the rendered
+ * reports are moved to the {@link BlobStore}, shared by all the builds.
+ * Since a blob never changes, blobs are served with a strong ETag derived
+ * from their content and may be cached for a year. Other files, which may be
+ * rewritten in place, are revalidated on every use.
+ */
+final class ReportFiles {
+    static final String GZIP_EXTENSION = ".gz";
+
+    /**
+     * Reports compressed when published.
+     */
+    private static final String[] COMPRESSED_EXTENSIONS = { ".html", ".svg" };
+
+    private static final long MAX_AGE = TimeUnit.DAYS.toSeconds(365);
+
+    private ReportFiles() {
+    }
+
+    /**
+     * @return the stored file of a report, compressed or not, in the
+     *         directory or in the {@link BlobStore}, or <tt>null</tt> if
+     *         there is none
+     */
+    static File resolve(File dir, String name) {
+        File file = new File(dir, name);
+        if (file.isFile()) {
+            return file;
+        }
+        file = new File(dir, name + GZIP_EXTENSION);
+        if (file.isFile()) {
+            return file;
+        }
+        file = BlobStore.resolve(dir, name);
+        return file != null && file.isFile() ? file : null;
+    }
+
+    static boolean isCompressed(File file) {
+        return file.getName().endsWith(GZIP_EXTENSION);
+    }
+
+    /**
+     * @return the content of a stored report, decompressed if needed
+     */
+    static InputStream open(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        return isCompressed(file) ? new GZIPInputStream(in, 8192) : in;
+    }
+
+    /**
+     * Compresses the html and svg reports of a configuration; reports which
+     * are already compressed are left alone.
+     * 
+     * @param name
+     *            name of the reports without extension, e.g.
+     *            <tt>org-module-compile</tt>
+     */
+    static void compress(File dir, String name) throws IOException {
+        for (String extension : COMPRESSED_EXTENSIONS) {
+            File file = new File(dir, name + extension);
+            if (file.isFile()) {
+                compress(file);
+            }
+        }
+    }
+
+    /**
+     * Replaces a file by its compressed version.
+     */
+    static void compress(File file) throws IOException {
+        File compressed = new File(file.getPath() + GZIP_EXTENSION);
+        File tmp = new File(compressed.getPath() + ".tmp");
+        InputStream in = new FileInputStream(file);
+        try {
+            OutputStream out = new GZIPOutputStream(new FileOutputStream(tmp),
+                    8192);
+            try {
+                IOUtils.copy(in, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        compressed.delete();
+        if (!tmp.renameTo(compressed)) {
+            tmp.delete();
+            throw new IOException("Unable to rename " + tmp + " to "
+                    + compressed);
+        }
+        file.delete();
+    }
+
+    /**
+     * Writes the summary, the dependency index and the aggregated graph of a
+     * build.
+     */
+    static void writeIndexes(File dir, ReportSummary summary,
+            DependencyIndex dependencies, AggregatedGraph aggregate)
+            throws IOException {
+        summary.write(new File(dir, ReportSummary.FILE_NAME));
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(
+                new File(dir, IvyReportBuildAction.DEPENDENCIES_FILE)));
+        try {
+            dependencies.write(out);
+        } finally {
+            out.close();
+        }
+        out = new BufferedOutputStream(new FileOutputStream(new File(dir,
+                IvyReportBuildAction.AGGREGATE_FILE)));
+        try {
+            aggregate.write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Serves a stored report, see {@link #resolve(File, String)}.
+     */
+    static void serve(StaplerRequest req, StaplerResponse rsp, File file)
+            throws IOException {
+        boolean compressed = isCompressed(file);
+        boolean encoded = compressed && acceptsGzip(req);
+        // blobs are named after their content, and touched when reused;
+        // other files may be rewritten in place, e.g. once rendered in the
+        // background, so they are revalidated against a weak validator
+        String blob = BlobStore.getInstance().getBlobName(file);
+        String etag;
+        if (blob != null) {
+            etag = "\"" + blob + (encoded ? "-gzip" : "") + "\"";
+            rsp.setHeader("Cache-Control", "private, max-age=" + MAX_AGE
+                    + ", immutable");
+        } else {
+            etag = "W/\"" + Long.toHexString(file.lastModified()) + "-"
+                    + Long.toHexString(file.length())
+                    + (encoded ? "-gzip" : "") + "\"";
+            rsp.setHeader("Cache-Control", "private, no-cache");
+        }
+        rsp.setHeader("ETag", etag);
+        rsp.setHeader("Vary", "Accept-Encoding");
+        rsp.setDateHeader("Last-Modified", file.lastModified());
+        if (matches(req.getHeader("If-None-Match"), etag)) {
+            rsp.setStatus(StaplerResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        String name = file.getName();
+        if (compressed) {
+            name = name.substring(0, name.length() - GZIP_EXTENSION.length());
+        }
+        rsp.setContentType(getContentType(name));
+        InputStream in;
+        if (encoded) {
+            rsp.setHeader("Content-Encoding", "gzip");
+            rsp.setContentLength((int) file.length());
+            in = new FileInputStream(file);
+        } else {
+            if (!compressed) {
+                rsp.setContentLength((int) file.length());
+            }
+            in = open(file);
+        }
+        try {
+            if (!"HEAD".equals(req.getMethod())) {
+                IOUtils.copy(in, rsp.getOutputStream());
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    static boolean acceptsGzip(StaplerRequest req) {
+        String accepted = req.getHeader("Accept-Encoding");
+        if (accepted == null) {
+            return false;
+        }
+        for (String coding : accepted.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if ("gzip".equalsIgnoreCase(parts[0].trim())
+                    || "*".equals(parts[0].trim())) {
+                return parts.length < 2
+                        || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals(etag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getContentType(String name) {
+        if (name.endsWith(".html")) {
+            return "text/html;charset=UTF-8";
+        } else if (name.endsWith(".svg")) {
+            return "image/svg+xml";
+        } else if (name.endsWith(".css")) {
+            return "text/css";
+        } else if (name.endsWith(".xml")) {
+            return "application/xml";
+        } else if (name.endsWith(".png")) {
+            return "image/png";
+        }
+        return "application/octet-stream";
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+
+import jenkins.plugins.ivyreport.graph.GraphExplorer;
+import jenkins.plugins.ivyreport.graph.ResolveReport;
+
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Serves a page of the callers or of the dependencies of a node of the graph
+ * of a report as JSON; see {@link GraphExplorer} for the format.
+ * <p>
+ * The query parameters are the configuration <tt>conf</tt>, the node
+ * <tt>id</tt> (the resolved module if none), the <tt>direction</tt>,
+ * <tt>callers</tt> or <tt>dependencies</tt>, and <tt>start</tt> and
+ * <tt>count</tt> to select the page. The parsed resolve reports of the
+ * graphs being explored are kept in a small cache, softly referenced.
+ */
+final class ReportGraphExplorer implements HttpResponse {
+    /**
+     * Number of neighbours of a page when no count is requested.
+     */
+    static final int DEFAULT_COUNT = 50;
+
+    private static final int MAX_COUNT = 1000;
+
+    private static final Map<String, SoftReference<CachedExplorer>> CACHE = new LinkedHashMap<String, SoftReference<CachedExplorer>>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<String, SoftReference<CachedExplorer>> eldest) {
+            return size() > 16;
+        }
+    };
+
+    private static final class CachedExplorer {
+        private final GraphExplorer explorer;
+        private final long lastModified;
+        private final long length;
+
+        CachedExplorer(GraphExplorer explorer, long lastModified, long length) {
+            this.explorer = explorer;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+    private final File dir;
+    private final IvyReport report;
+
+    ReportGraphExplorer(File dir, IvyReport report) {
+        this.dir = dir;
+        this.report = report;
+    }
+
+    public void generateResponse(StaplerRequest req, StaplerResponse rsp,
+            Object node) throws IOException, ServletException {
+        String conf = req.getParameter("conf");
+        File file = !report.getConfigurations().contains(conf) ? null
+                : ReportFiles.resolve(dir, report.getResolveId() + "-" + conf
+                        + ".xml");
+        if (file == null) {
+            rsp.sendError(StaplerResponse.SC_NOT_FOUND,
+                    "No resolve report for configuration " + conf);
+            return;
+        }
+        GraphExplorer explorer = getExplorer(file);
+        String id = req.getParameter("id");
+        if (id == null || id.length() == 0) {
+            id = explorer.getRootId();
+        }
+        if (!explorer.hasNode(id)) {
+            rsp.sendError(StaplerResponse.SC_NOT_FOUND, "No module " + id);
+            return;
+        }
+        int count = Math.min(MAX_COUNT, ReportGraphExport.parseInt(
+                req.getParameter("count"), DEFAULT_COUNT));
+        rsp.setContentType("application/json;charset=UTF-8");
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+                rsp.getOutputStream(), "UTF-8"));
+        try {
+            explorer.write(out, id,
+                    "callers".equals(req.getParameter("direction")),
+                    ReportGraphExport.parseInt(req.getParameter("start"), 0),
+                    count);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the explorer of the resolve report, parsed again if it is not
+     *         cached or changed since
+     */
+    static GraphExplorer getExplorer(File file) throws IOException {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        synchronized (CACHE) {
+            SoftReference<CachedExplorer> reference = CACHE.get(file
+                    .getPath());
+            CachedExplorer cached = reference == null ? null : reference
+                    .get();
+            if (cached != null && cached.lastModified == lastModified
+                    && cached.length == length) {
+                return cached.explorer;
+            }
+        }
+        InputStream in = ReportFiles.open(file);
+        GraphExplorer explorer;
+        try {
+            explorer = new GraphExplorer(ResolveReport.parse(in));
+        } finally {
+            in.close();
+        }
+        synchronized (CACHE) {
+            CACHE.put(file.getPath(), new SoftReference<CachedExplorer>(
+                    new CachedExplorer(explorer, lastModified, length)));
+        }
+        return explorer;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.ServletException;
+
+import jenkins.plugins.ivyreport.graph.GraphJsonWriter;
+
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Streams the resolved dependency graph of some reports as JSON, straight
+ * from the stored resolve reports; see {@link GraphJsonWriter} for the
+ * format.
+ * <p>
+ * The query parameters <tt>conf</tt> and <tt>organisation</tt> restrict the
+ * configurations and the organisations of the modules, <tt>start</tt> and
+ * <tt>count</tt> select a page of the modules.
+ */
+final class ReportGraphExport implements HttpResponse {
+    /**
+     * Number of modules of a page when no count is requested.
+     */
+    static final int DEFAULT_COUNT = 1000;
+
+    private final File dir;
+    private final List<IvyReport> reports;
+
+    ReportGraphExport(File dir, List<IvyReport> reports) {
+        this.dir = dir;
+        this.reports = reports;
+    }
+
+    public void generateResponse(StaplerRequest req, StaplerResponse rsp,
+            Object node) throws IOException, ServletException {
+        String conf = emptyToNull(req.getParameter("conf"));
+        rsp.setContentType("application/json;charset=UTF-8");
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+                rsp.getOutputStream(), "UTF-8"));
+        try {
+            GraphJsonWriter writer = new GraphJsonWriter(out,
+                    emptyToNull(req.getParameter("organisation")), parseInt(
+                            req.getParameter("start"), 0), parseInt(
+                            req.getParameter("count"), DEFAULT_COUNT));
+            writer.start();
+            for (IvyReport report : reports) {
+                for (File file : getResolveReports(report, conf)) {
+                    if (writer.isDone()) {
+                        break;
+                    }
+                    InputStream in = ReportFiles.open(file);
+                    try {
+                        writer.write(in, getModule(report));
+                    } finally {
+                        in.close();
+                    }
+                }
+            }
+            writer.finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the resolve reports of the report, by configuration, leaving
+     *         out the reports of other modules sharing the prefix of their
+     *         name
+     */
+    private List<File> getResolveReports(IvyReport report, String conf) {
+        List<File> files = new ArrayList<File>();
+        if (conf != null) {
+            File file = ReportFiles.resolve(dir, report.getResolveId() + "-"
+                    + conf + ".xml");
+            if (file != null && report.isReportOf(file, conf)) {
+                files.add(file);
+            }
+            return files;
+        }
+        for (String configuration : report.getConfigurations()) {
+            File file = ReportFiles.resolve(dir, report.getResolveId() + "-"
+                    + configuration + ".xml");
+            if (file != null) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * @return the module of the report as <tt>organisation#name</tt>, or
+     *         <tt>null</tt> if unknown
+     */
+    private static String getModule(IvyReport report) {
+        if (report.getName().organisation == null) {
+            return null;
+        }
+        return report.getName().organisation + "#" + report.getName().name;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.length() == 0 ? null : value;
+    }
+
+    /**
+     * @return the value of a request parameter, or the default value if it
+     *         is missing or not a number; the graph explorer reads its paging
+     *         parameters the same way
+     */
+    static int parseInt(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
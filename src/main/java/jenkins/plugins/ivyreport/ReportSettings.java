@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.Serializable;
+
+import jenkins.plugins.ivyreport.graph.GraphReduction;
+
+/**
+ * The global settings used to generate the reports, captured so that the
+ * reports can be generated where the descriptor is not available, e.g. on a
+ * build agent.
+ */
+public final class ReportSettings implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final GraphRenderer graphRenderer;
+    private final String dotExe;
+    private final boolean batchDot;
+    private final int dotProcesses;
+    private final GraphReduction graphReduction;
+
+    public ReportSettings(GraphRenderer graphRenderer, String dotExe,
+            boolean batchDot, int dotProcesses) {
+        this(graphRenderer, dotExe, batchDot, dotProcesses, GraphReduction
+                .automatic(GraphReduction.DEFAULT_MAX_NODES,
+                        GraphReduction.DEFAULT_MAX_EDGES));
+    }
+
+    public ReportSettings(GraphRenderer graphRenderer, String dotExe,
+            boolean batchDot, int dotProcesses, GraphReduction graphReduction) {
+        this.graphRenderer = graphRenderer;
+        this.dotExe = dotExe;
+        this.batchDot = batchDot;
+        this.dotProcesses = dotProcesses;
+        this.graphReduction = graphReduction;
+    }
+
+    /**
+     * @return the settings of the plugin, or the defaults if the descriptor
+     *         is not known
+     */
+    public static ReportSettings of(IvyReportPublisher.DescriptorImpl descriptor) {
+        if (descriptor == null) {
+            return new ReportSettings(GraphRenderer.DOT,
+                    IvyReportPublisher.DescriptorImpl.getDefaultDotExe(),
+                    false, 0);
+        }
+        return new ReportSettings(descriptor.getGraphRendererOrDefault(),
+                descriptor.getDotExeOrDefault(), descriptor.isBatchDot(),
+                descriptor.getDotProcessesOrDefault(), GraphReduction
+                        .automatic(descriptor.getGraphMaxNodesOrDefault(),
+                                descriptor.getGraphMaxEdgesOrDefault()));
+    }
+
+    /**
+     * @param graphReduction
+     *            how the graphs are reduced, <tt>null</tt> to keep the
+     *            automatic reduction
+     * @return these settings, with the graphs reduced as given
+     */
+    public ReportSettings withGraphReduction(GraphReduction graphReduction) {
+        if (graphReduction == null) {
+            return this;
+        }
+        return new ReportSettings(graphRenderer, dotExe, batchDot,
+                dotProcesses, graphReduction);
+    }
+
+    public GraphRenderer getGraphRenderer() {
+        return graphRenderer;
+    }
+
+    public String getDotExe() {
+        return dotExe;
+    }
+
+    public boolean isBatchDot() {
+        return batchDot;
+    }
+
+    /**
+     * @return maximum number of dot processes running at the same time, 0 for
+     *         no limit
+     */
+    public int getDotProcesses() {
+        return dotProcesses;
+    }
+
+    /**
+     * @return how the graphs are reduced before being laid out
+     */
+    public GraphReduction getGraphReduction() {
+        return graphReduction;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import jenkins.plugins.ivyreport.graph.ReportStatistics;
+
+/**
+ * The figures of the ivy reports of a build, summed over all the resolve
+ * reports of the build.
+ * <p>
+ * A summary is stored with the build in a small fixed layout binary file, so
+ * that trends can be computed without parsing any resolve report.
+ */
+public final class ReportSummary {
+    /**
+     * The figures, in their order in the files.
+     */
+    public static enum Value {
+        MODULES("Modules", true),
+        CONFLICTS("Conflicts", false),
+        REVISIONS("Revisions", true),
+        SEARCHED("Searched", false),
+        DOWNLOADED("Downloaded", false),
+        EVICTED("Evicted", true),
+        ERRORS("Errors", true),
+        ARTIFACTS("Artifacts", true),
+        DOWNLOADED_ARTIFACTS("Downloaded artifacts", true),
+        FAILED_ARTIFACTS("Failed artifacts", true),
+        ARTIFACTS_SIZE("Artifacts size", false),
+        DOWNLOADED_SIZE("Downloaded size", false),
+        CACHED_SIZE("Cached size", false);
+
+        private final String displayName;
+        private final boolean charted;
+
+        private Value(String displayName, boolean charted) {
+            this.displayName = displayName;
+            this.charted = charted;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * @return whether the figure is shown in the trend chart
+         */
+        public boolean isCharted() {
+            return charted;
+        }
+    }
+
+    /**
+     * Name of the summary file in the reports directory of a build.
+     */
+    static final String FILE_NAME = "summary.bin";
+
+    /**
+     * Size in bytes of the figures.
+     */
+    static final int SIZE = Value.values().length * 8;
+
+    private static final int MAGIC = 0x49565253; // IVRS
+    private static final int VERSION = 1;
+
+    private final long[] values = new long[Value.values().length];
+
+    public long get(Value value) {
+        return values[value.ordinal()];
+    }
+
+    /**
+     * Adds the figures of a resolve report.
+     */
+    synchronized void add(ReportStatistics statistics) {
+        values[Value.MODULES.ordinal()] += statistics.getModules();
+        values[Value.CONFLICTS.ordinal()] += statistics.getConflicts();
+        values[Value.REVISIONS.ordinal()] += statistics.getRevisions();
+        values[Value.SEARCHED.ordinal()] += statistics.getSearched();
+        values[Value.DOWNLOADED.ordinal()] += statistics.getDownloaded();
+        values[Value.EVICTED.ordinal()] += statistics.getEvicted();
+        values[Value.ERRORS.ordinal()] += statistics.getErrors();
+        values[Value.ARTIFACTS.ordinal()] += statistics.getArtifacts();
+        values[Value.DOWNLOADED_ARTIFACTS.ordinal()] += statistics
+                .getDownloadedArtifacts();
+        values[Value.FAILED_ARTIFACTS.ordinal()] += statistics
+                .getFailedArtifacts();
+        values[Value.ARTIFACTS_SIZE.ordinal()] += statistics
+                .getArtifactsSize();
+        values[Value.DOWNLOADED_SIZE.ordinal()] += statistics
+                .getDownloadedSize();
+        values[Value.CACHED_SIZE.ordinal()] += statistics.getCachedSize();
+    }
+
+    /**
+     * Writes the figures, {@link #SIZE} bytes.
+     */
+    void writeTo(ByteBuffer buffer) {
+        for (long value : values) {
+            buffer.putLong(value);
+        }
+    }
+
+    static ReportSummary readFrom(ByteBuffer buffer) {
+        ReportSummary summary = new ReportSummary();
+        for (int i = 0; i < summary.values.length; i++) {
+            summary.values[i] = buffer.getLong();
+        }
+        return summary;
+    }
+
+    synchronized void write(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        writeTo(buffer);
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(
+                file));
+        try {
+            out.write(buffer.array());
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the summary stored in the file, or <tt>null</tt> if there is
+     *         no valid summary
+     */
+    static ReportSummary read(File file) throws IOException {
+        if (file.length() != 8 + SIZE) {
+            return null;
+        }
+        byte[] bytes = new byte[8 + SIZE];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        return readFrom(buffer);
+    }
+}
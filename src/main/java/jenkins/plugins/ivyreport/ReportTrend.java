@@ -0,0 +1,394 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import hudson.Extension;
+import hudson.ivy.IvyModuleSet;
+import hudson.ivy.IvyModuleSetBuild;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.util.ColorPalette;
+import hudson.util.DataSetBuilder;
+import hudson.util.Graph;
+import hudson.util.ShiftedCategoryAxis;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.CategoryAxis;
+import org.jfree.chart.axis.CategoryLabelPositions;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.title.LegendTitle;
+import org.jfree.ui.RectangleEdge;
+import org.jfree.ui.RectangleInsets;
+
+/**
+ * The trend of the ivy reports of a project, drawn from an index of the
+ * summaries of its builds, so that no build nor resolve report is loaded.
+ * <p>
+ * The index is a file of the project directory made of fixed size records,
+ * one per build with a {@link ReportSummary}. It is appended to when a build
+ * completes and read in a single pass; when missing, e.g. for projects built
+ * by older versions of the plugin, it is rebuilt from the summaries stored in
+ * the build directories. Each index has its own lock, so projects don't wait
+ * for each other, and its number of records is kept in memory, so that the
+ * project page knows whether there is a trend without reading the index.
+ */
+public final class ReportTrend {
+    private static final Logger LOGGER = Logger.getLogger(ReportTrend.class
+            .getName());
+
+    static final String FILE_NAME = "ivyreport-trend.bin";
+
+    private static final int MAGIC = 0x49565254; // IVRT
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int RECORD_SIZE = 4 + ReportSummary.SIZE;
+
+    /**
+     * The state of each index, by path, also its lock.
+     */
+    private static final ConcurrentMap<String, Index> INDEXES = new ConcurrentHashMap<String, Index>();
+
+    private static final class Index {
+        /**
+         * Number of records of the index, -1 until known.
+         */
+        private long records = -1;
+    }
+
+    /**
+     * The summary of a build.
+     */
+    public static final class Point {
+        private final int number;
+        private final ReportSummary summary;
+
+        Point(int number, ReportSummary summary) {
+            this.number = number;
+            this.summary = summary;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public ReportSummary getSummary() {
+            return summary;
+        }
+    }
+
+    /**
+     * Updates the index when builds complete or are deleted.
+     */
+    @Extension
+    public static final class Updater extends RunListener<IvyModuleSetBuild> {
+        public Updater() {
+            super(IvyModuleSetBuild.class);
+        }
+
+        @Override
+        public void onCompleted(IvyModuleSetBuild build, TaskListener listener) {
+            try {
+                ReportSummary summary = ReportSummary.read(getSummaryFile(build));
+                if (summary != null) {
+                    append(build.getProject(), build.getNumber(), summary);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot update the ivy report trend",
+                        e);
+            }
+        }
+
+        @Override
+        public void onDeleted(IvyModuleSetBuild build) {
+            try {
+                remove(build.getProject(), build.getNumber());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot update the ivy report trend",
+                        e);
+            }
+        }
+    }
+
+    private ReportTrend() {
+    }
+
+    static File getSummaryFile(IvyModuleSetBuild build) {
+        return new File(new File(build.getRootDir(), "ivyreport"),
+                ReportSummary.FILE_NAME);
+    }
+
+    private static File getFile(IvyModuleSet project) {
+        return new File(project.getRootDir(), FILE_NAME);
+    }
+
+    private static Index getIndex(File file) {
+        String path = file.getAbsolutePath();
+        Index index = INDEXES.get(path);
+        if (index == null) {
+            Index created = new Index();
+            index = INDEXES.putIfAbsent(path, created);
+            if (index == null) {
+                index = created;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return whether enough builds have a summary to draw a trend; the
+     *         index is only read the first time
+     */
+    static boolean hasTrend(IvyModuleSet project) throws IOException {
+        File file = getFile(project);
+        Index index = getIndex(file);
+        synchronized (index) {
+            if (index.records < 0) {
+                if (isValid(file)) {
+                    index.records = (file.length() - HEADER_SIZE)
+                            / RECORD_SIZE;
+                } else {
+                    rebuild(project);
+                }
+            }
+            return index.records > 1;
+        }
+    }
+
+    /**
+     * @return the summaries of the builds, by increasing build number
+     */
+    public static List<Point> read(IvyModuleSet project) throws IOException {
+        File file = getFile(project);
+        List<Point> points = new ArrayList<Point>();
+        synchronized (getIndex(file)) {
+            if (!isValid(file)) {
+                rebuild(project);
+            }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            try {
+                in.skipBytes(HEADER_SIZE);
+                byte[] record = new byte[RECORD_SIZE];
+                long records = (file.length() - HEADER_SIZE) / RECORD_SIZE;
+                for (long i = 0; i < records; i++) {
+                    in.readFully(record);
+                    ByteBuffer buffer = ByteBuffer.wrap(record);
+                    int number = buffer.getInt();
+                    points.add(new Point(number, ReportSummary
+                            .readFrom(buffer)));
+                }
+            } finally {
+                in.close();
+            }
+        }
+        // builds may complete out of order
+        Collections.sort(points, new Comparator<Point>() {
+            public int compare(Point a, Point b) {
+                return a.number < b.number ? -1 : a.number > b.number ? 1 : 0;
+            }
+        });
+        return points;
+    }
+
+    static void append(IvyModuleSet project, int number,
+            ReportSummary summary) throws IOException {
+        File file = getFile(project);
+        Index state = getIndex(file);
+        synchronized (state) {
+            if (!isValid(file)) {
+                // the summary of the build is part of the rebuilt index
+                rebuild(project);
+                return;
+            }
+            RandomAccessFile index = new RandomAccessFile(file, "rw");
+            try {
+                // drops a record partly written by a crash
+                long end = HEADER_SIZE + (index.length() - HEADER_SIZE)
+                        / RECORD_SIZE * RECORD_SIZE;
+                index.setLength(end);
+                index.seek(end);
+                index.write(toRecord(number, summary));
+                state.records = (end - HEADER_SIZE) / RECORD_SIZE + 1;
+            } finally {
+                index.close();
+            }
+        }
+    }
+
+    static void remove(IvyModuleSet project, int number) throws IOException {
+        File file = getFile(project);
+        synchronized (getIndex(file)) {
+            if (!isValid(file)) {
+                return;
+            }
+            List<Point> points = read(project);
+            List<Point> kept = new ArrayList<Point>(points.size());
+            for (Point point : points) {
+                if (point.number != number) {
+                    kept.add(point);
+                }
+            }
+            if (kept.size() != points.size()) {
+                write(file, kept);
+            }
+        }
+    }
+
+    private static boolean isValid(File file) throws IOException {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+        RandomAccessFile index = new RandomAccessFile(file, "r");
+        try {
+            return index.readInt() == MAGIC && index.readInt() == VERSION
+                    && index.readInt() == RECORD_SIZE;
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the summaries stored in the build directories,
+     * without loading the builds.
+     */
+    private static void rebuild(IvyModuleSet project) throws IOException {
+        List<Point> points = new ArrayList<Point>();
+        for (Map.Entry<Integer, File> dir : BuildDirs.list(project)
+                .entrySet()) {
+            ReportSummary summary = ReportSummary.read(new File(new File(dir
+                    .getValue(), "ivyreport"), ReportSummary.FILE_NAME));
+            if (summary != null) {
+                points.add(new Point(dir.getKey(), summary));
+            }
+        }
+        write(getFile(project), points);
+    }
+
+    /**
+     * Writes an index; the caller holds its lock.
+     */
+    private static void write(File file, List<Point> points)
+            throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        RandomAccessFile index = new RandomAccessFile(tmp, "rw");
+        try {
+            index.setLength(0);
+            index.writeInt(MAGIC);
+            index.writeInt(VERSION);
+            index.writeInt(RECORD_SIZE);
+            for (Point point : points) {
+                index.write(toRecord(point.number, point.summary));
+            }
+        } finally {
+            index.close();
+        }
+        file.delete();
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Unable to rename " + tmp + " to " + file);
+        }
+        getIndex(file).records = points.size();
+    }
+
+    private static byte[] toRecord(int number, ReportSummary summary) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        buffer.putInt(number);
+        summary.writeTo(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * The trend chart of the charted figures of the summaries.
+     */
+    static final class TrendGraph extends Graph {
+        private final List<Point> points;
+
+        TrendGraph(long timestamp, List<Point> points) {
+            super(timestamp, 500, 200);
+            this.points = points;
+        }
+
+        @Override
+        protected JFreeChart createGraph() {
+            DataSetBuilder<String, Integer> dataset = new DataSetBuilder<String, Integer>();
+            for (Point point : points) {
+                for (ReportSummary.Value value : ReportSummary.Value.values()) {
+                    if (value.isCharted()) {
+                        dataset.add(point.summary.get(value),
+                                value.getDisplayName(), point.number);
+                    }
+                }
+            }
+            JFreeChart chart = ChartFactory.createLineChart(null, null, null,
+                    dataset.build(), PlotOrientation.VERTICAL, true, true,
+                    false);
+            chart.setBackgroundPaint(Color.white);
+            LegendTitle legend = chart.getLegend();
+            legend.setPosition(RectangleEdge.RIGHT);
+
+            CategoryPlot plot = chart.getCategoryPlot();
+            plot.setBackgroundPaint(Color.WHITE);
+            plot.setOutlinePaint(null);
+            plot.setRangeGridlinesVisible(true);
+            plot.setRangeGridlinePaint(Color.black);
+
+            CategoryAxis domainAxis = new ShiftedCategoryAxis(null);
+            plot.setDomainAxis(domainAxis);
+            domainAxis.setCategoryLabelPositions(CategoryLabelPositions.UP_90);
+            domainAxis.setLowerMargin(0.0);
+            domainAxis.setUpperMargin(0.0);
+            domainAxis.setCategoryMargin(0.0);
+
+            NumberAxis rangeAxis = (NumberAxis) plot.getRangeAxis();
+            rangeAxis.setStandardTickUnits(NumberAxis.createIntegerTickUnits());
+
+            List<Color> colors = ColorPalette.LINE_GRAPH;
+            for (int i = 0; i < colors.size(); i++) {
+                plot.getRenderer().setSeriesPaint(i, colors.get(i));
+            }
+            plot.setInsets(new RectangleInsets(5.0, 0, 0, 5.0));
+            return chart;
+        }
+    }
+}
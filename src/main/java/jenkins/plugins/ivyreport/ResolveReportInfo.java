@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport;
+
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Tells which module and configuration a resolve report is about, from its
+ * <tt>info</tt> element.
+ * <p>
+ * Resolve reports are named <tt>organisation-module-conf.xml</tt>, so their
+ * name is ambiguous when the name of a module starts with the name of
+ * another module of the same organisation followed by a dash: the reports of
+ * <tt>org-mod-extra</tt> also look like reports of <tt>org-mod</tt>.
+ */
+final class ResolveReportInfo {
+    private ResolveReportInfo() {
+    }
+
+    /**
+     * Only reads the beginning of the report.
+     * 
+     * @return whether the report is the one of the configuration of the
+     *         module with the given resolve id; <tt>false</tt> if the report
+     *         cannot be read
+     */
+    static boolean isReportOf(InputStream in, String resolveId, String conf) {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT
+                            || "ivy-report".equals(reader.getLocalName())) {
+                        continue;
+                    }
+                    if (!"info".equals(reader.getLocalName())) {
+                        return false;
+                    }
+                    String organisation = reader.getAttributeValue(null,
+                            "organisation");
+                    String module = reader.getAttributeValue(null, "module");
+                    return resolveId.equals(organisation + "-" + module)
+                            && conf.equals(reader.getAttributeValue(null,
+                                    "conf"));
+                }
+                return false;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            return false;
+        }
+    }
+}
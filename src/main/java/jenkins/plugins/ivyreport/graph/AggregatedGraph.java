@@ -0,0 +1,406 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The dependency graph of a whole module set, merged from the resolve
+ * reports of its modules.
+ * <p>
+ * The reports are merged one at a time, as they are read, so only the
+ * merged graph and the report being added are held in memory. Each module
+ * (<tt>organisation#name</tt>) is a single node, whatever the number of
+ * reports it appears in, and each edge from a caller to a module it calls
+ * is kept once; edges to evicted revisions are left out, as in the graphs of
+ * the reports. The modules of the set are the resolved modules of the
+ * reports, and an edge between two of them is an inter-module edge.
+ */
+public final class AggregatedGraph {
+    private static final int MAGIC = 0x49564147; // IVAG
+    private static final int VERSION = 1;
+
+    static final byte EVICTED = 1;
+    static final byte ERROR = 2;
+    /**
+     * Set on the revisions which were not evicted in at least one report.
+     */
+    static final byte SELECTED = 4;
+
+    /**
+     * A module of the merged graph.
+     */
+    public static final class Module {
+        private final int index;
+        private final String id;
+        private final SortedMap<String, Byte> revisions = new TreeMap<String, Byte>();
+        private boolean internal;
+        // the modules of the set depending on this one, while merging
+        private BitSet users = new BitSet();
+        private int userCount;
+        private int callers;
+        private int dependencies;
+
+        Module(int index, String id) {
+            this.index = index;
+            this.id = id;
+        }
+
+        /**
+         * @return the module as <tt>organisation#name</tt>
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return whether this is one of the modules of the set
+         */
+        public boolean isInternal() {
+            return internal;
+        }
+
+        /**
+         * @return the revisions, with <tt>(evicted)</tt> or <tt>(error)</tt>
+         *         after the revisions which were never selected or failed
+         */
+        public List<String> getRevisions() {
+            List<String> result = new ArrayList<String>();
+            for (Map.Entry<String, Byte> revision : revisions.entrySet()) {
+                int flags = revision.getValue();
+                result.add(revision.getKey()
+                        + ((flags & SELECTED) == 0 ? " (evicted)" : "")
+                        + ((flags & ERROR) != 0 ? " (error)" : ""));
+            }
+            return result;
+        }
+
+        /**
+         * @return whether more than one revision was selected in the set
+         */
+        public boolean isConflicting() {
+            int selected = 0;
+            for (byte flags : revisions.values()) {
+                if ((flags & SELECTED) != 0) {
+                    selected++;
+                }
+            }
+            return selected > 1;
+        }
+
+        /**
+         * @return the number of modules of the set depending on this one,
+         *         directly or not
+         */
+        public int getUsers() {
+            return users != null ? users.cardinality() : userCount;
+        }
+
+        public int getCallers() {
+            return callers;
+        }
+
+        public int getDependencies() {
+            return dependencies;
+        }
+    }
+
+    /**
+     * An edge of the merged graph.
+     */
+    public static final class Edge {
+        private final Module from;
+        private final Module to;
+
+        Edge(Module from, Module to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public String getFrom() {
+            return from.id;
+        }
+
+        public String getTo() {
+            return to.id;
+        }
+
+        /**
+         * @return whether the edge is between two modules of the set
+         */
+        public boolean isInterModule() {
+            return from.internal && to.internal;
+        }
+    }
+
+    private final Map<String, Module> modules = new HashMap<String, Module>();
+    private final List<Module> nodes = new ArrayList<Module>();
+    private final Set<Long> edgeKeys = new HashSet<Long>();
+    private final List<Edge> edges = new ArrayList<Edge>();
+    // indices of the modules of the set, for the users of the modules
+    private final Map<String, Integer> roots = new HashMap<String, Integer>();
+
+    /**
+     * Merges the graph of a resolve report, in time linear in its size.
+     */
+    public synchronized void add(ResolveReport report) {
+        String rootId = report.getOrganisation() + "#" + report.getModule();
+        Module root = getModule(rootId);
+        root.internal = true;
+        Integer user = roots.get(rootId);
+        if (user == null) {
+            user = roots.size();
+            roots.put(rootId, user);
+        }
+        Module[] local = new Module[report.getModuleCount()];
+        for (int m = 0; m < local.length; m++) {
+            Module module = getModule(report.getModuleOrganisation(m) + "#"
+                    + report.getModuleName(m));
+            local[m] = module;
+            module.users.set(user);
+            for (int r = report.getRevisionStart(m); r < report
+                    .getRevisionEnd(m); r++) {
+                String name = report.getRevisionName(r);
+                int flags = (report.isEvicted(r) ? EVICTED : SELECTED)
+                        | (report.hasError(r) ? ERROR : 0);
+                Byte previous = module.revisions.get(name);
+                module.revisions.put(name, (byte) ((previous == null ? 0
+                        : previous) | flags));
+            }
+        }
+        for (int c = 0; c < report.getCallerCount(); c++) {
+            int r = report.getCallerRevision(c);
+            if (report.isEvicted(r)) {
+                continue;
+            }
+            Module from;
+            switch (report.getCallerModule(c)) {
+            case ResolveReport.ROOT:
+                from = root;
+                break;
+            case ResolveReport.UNKNOWN:
+                from = getModule(report.getCallerOrganisation(c) + "#"
+                        + report.getCallerName(c));
+                break;
+            default:
+                from = local[report.getCallerModule(c)];
+            }
+            addEdge(from, local[report.getRevisionModule(r)]);
+        }
+    }
+
+    /**
+     * Merges a graph being merged as well, e.g. the graph of the reports of a
+     * single module, as if its reports were merged into this graph.
+     * 
+     * @throws IllegalStateException
+     *             if either graph was read, see {@link #read(InputStream)}
+     */
+    public void add(AggregatedGraph graph) {
+        // in a fixed order, as both graphs are locked
+        AggregatedGraph first = System.identityHashCode(this) < System
+                .identityHashCode(graph) ? this : graph;
+        synchronized (first) {
+            synchronized (first == this ? graph : this) {
+                merge(graph);
+            }
+        }
+    }
+
+    private void merge(AggregatedGraph graph) {
+        int[] users = new int[graph.roots.size()];
+        for (Map.Entry<String, Integer> root : graph.roots.entrySet()) {
+            Integer user = roots.get(root.getKey());
+            if (user == null) {
+                user = roots.size();
+                roots.put(root.getKey(), user);
+            }
+            users[root.getValue()] = user;
+        }
+        Module[] local = new Module[graph.nodes.size()];
+        for (Module other : graph.nodes) {
+            Module module = getModule(other.id);
+            if (module.users == null || other.users == null) {
+                throw new IllegalStateException("Read graphs cannot be merged");
+            }
+            local[other.index] = module;
+            module.internal |= other.internal;
+            for (int u = other.users.nextSetBit(0); u >= 0; u = other.users
+                    .nextSetBit(u + 1)) {
+                module.users.set(users[u]);
+            }
+            for (Map.Entry<String, Byte> revision : other.revisions
+                    .entrySet()) {
+                Byte previous = module.revisions.get(revision.getKey());
+                module.revisions.put(revision.getKey(),
+                        (byte) ((previous == null ? 0 : previous) | revision
+                                .getValue()));
+            }
+        }
+        for (Edge edge : graph.edges) {
+            addEdge(local[edge.from.index], local[edge.to.index]);
+        }
+    }
+
+    private Module getModule(String id) {
+        Module module = modules.get(id);
+        if (module == null) {
+            module = new Module(nodes.size(), id);
+            modules.put(id, module);
+            nodes.add(module);
+        }
+        return module;
+    }
+
+    private void addEdge(Module from, Module to) {
+        if (edgeKeys.add(((long) from.index << 32) | to.index)) {
+            edges.add(new Edge(from, to));
+            from.dependencies++;
+            to.callers++;
+        }
+    }
+
+    /**
+     * @return the modules of the set, sorted
+     */
+    public synchronized List<Module> getInternalModules() {
+        return getModules(true);
+    }
+
+    /**
+     * @return the modules the set depends on, sorted
+     */
+    public synchronized List<Module> getExternalModules() {
+        return getModules(false);
+    }
+
+    private List<Module> getModules(boolean internal) {
+        List<Module> result = new ArrayList<Module>();
+        for (Module module : nodes) {
+            if (module.internal == internal) {
+                result.add(module);
+            }
+        }
+        Collections.sort(result, new Comparator<Module>() {
+            public int compare(Module a, Module b) {
+                return a.id.compareTo(b.id);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return the edges, in the order they were merged
+     */
+    public synchronized List<Edge> getEdges() {
+        return new ArrayList<Edge>(edges);
+    }
+
+    /**
+     * @return the edges between two modules of the set
+     */
+    public synchronized List<Edge> getInterModuleEdges() {
+        List<Edge> result = new ArrayList<Edge>();
+        for (Edge edge : edges) {
+            if (edge.isInterModule()) {
+                result.add(edge);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the graph. The stream is not closed.
+     */
+    public synchronized void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(nodes.size());
+        for (Module module : nodes) {
+            data.writeUTF(module.id);
+            data.writeBoolean(module.internal);
+            data.writeInt(module.getUsers());
+            data.writeInt(module.revisions.size());
+            for (Map.Entry<String, Byte> revision : module.revisions
+                    .entrySet()) {
+                data.writeUTF(revision.getKey());
+                data.writeByte(revision.getValue());
+            }
+        }
+        data.writeInt(edges.size());
+        for (Edge edge : edges) {
+            data.writeInt(edge.from.index);
+            data.writeInt(edge.to.index);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a graph. The stream is not closed; no more report can be merged
+     * into the graph.
+     * 
+     * @throws IOException
+     *             if the stream does not hold a graph
+     */
+    public static AggregatedGraph read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Not an aggregated dependency graph");
+        }
+        AggregatedGraph graph = new AggregatedGraph();
+        int count = data.readInt();
+        for (int i = 0; i < count; i++) {
+            Module module = graph.getModule(data.readUTF());
+            module.internal = data.readBoolean();
+            module.users = null;
+            module.userCount = data.readInt();
+            int revisions = data.readInt();
+            for (int r = 0; r < revisions; r++) {
+                module.revisions.put(data.readUTF(), data.readByte());
+            }
+        }
+        int edges = data.readInt();
+        for (int i = 0; i < edges; i++) {
+            graph.addEdge(graph.nodes.get(data.readInt()),
+                    graph.nodes.get(data.readInt()));
+        }
+        return graph;
+    }
+}
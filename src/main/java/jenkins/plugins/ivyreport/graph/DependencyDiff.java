@@ -0,0 +1,276 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What changed in the resolved dependencies of the resolve reports of a
+ * build since another build.
+ */
+public final class DependencyDiff {
+
+    /**
+     * The changes of the dependencies of one module in one configuration.
+     */
+    public static final class ReportDiff {
+        private final String module;
+        private final String conf;
+        private final boolean added;
+        private final boolean removed;
+        private final List<String> addedModules = new ArrayList<String>();
+        private final List<String> removedModules = new ArrayList<String>();
+        private final List<RevisionChange> revisionChanges = new ArrayList<RevisionChange>();
+        private final List<String> newEvictions = new ArrayList<String>();
+        private final List<String> newErrors = new ArrayList<String>();
+
+        ReportDiff(String module, String conf, boolean added, boolean removed) {
+            this.module = module;
+            this.conf = conf;
+            this.added = added;
+            this.removed = removed;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        public String getConf() {
+            return conf;
+        }
+
+        /**
+         * @return whether the configuration was not resolved by the other
+         *         build
+         */
+        public boolean isAdded() {
+            return added;
+        }
+
+        /**
+         * @return whether the configuration is no longer resolved
+         */
+        public boolean isRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return the new dependencies, as <tt>org#name;revisions</tt>
+         */
+        public List<String> getAddedModules() {
+            return addedModules;
+        }
+
+        /**
+         * @return the dependencies which are gone, as
+         *         <tt>org#name;revisions</tt>
+         */
+        public List<String> getRemovedModules() {
+            return removedModules;
+        }
+
+        public List<RevisionChange> getRevisionChanges() {
+            return revisionChanges;
+        }
+
+        /**
+         * @return the revisions evicted now but not before, as
+         *         <tt>org#name;revision</tt>
+         */
+        public List<String> getNewEvictions() {
+            return newEvictions;
+        }
+
+        /**
+         * @return the revisions in error now but not before, as
+         *         <tt>org#name;revision</tt>
+         */
+        public List<String> getNewErrors() {
+            return newErrors;
+        }
+
+        public boolean isEmpty() {
+            return !added && !removed && addedModules.isEmpty()
+                    && removedModules.isEmpty() && revisionChanges.isEmpty()
+                    && newEvictions.isEmpty() && newErrors.isEmpty();
+        }
+    }
+
+    /**
+     * A dependency whose selected (not evicted) revisions changed.
+     */
+    public static final class RevisionChange {
+        private final String module;
+        private final String from;
+        private final String to;
+
+        RevisionChange(String module, String from, String to) {
+            this.module = module;
+            this.from = from;
+            this.to = to;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+    }
+
+    private final List<ReportDiff> reports;
+
+    private DependencyDiff(List<ReportDiff> reports) {
+        this.reports = reports;
+    }
+
+    /**
+     * @return the changes of the resolve reports which changed, by module
+     *         then configuration
+     */
+    public List<ReportDiff> getReports() {
+        return Collections.unmodifiableList(reports);
+    }
+
+    public boolean isEmpty() {
+        return reports.isEmpty();
+    }
+
+    /**
+     * Merges the two lists of reports, both sorted by key, then the sorted
+     * dependencies of the reports found in both.
+     */
+    static DependencyDiff compute(List<DependencyIndex.Report> before,
+            List<DependencyIndex.Report> after) {
+        List<ReportDiff> diffs = new ArrayList<ReportDiff>();
+        int i = 0;
+        int j = 0;
+        while (i < before.size() || j < after.size()) {
+            int cmp = i == before.size() ? 1 : j == after.size() ? -1
+                    : before.get(i).getKey().compareTo(after.get(j).getKey());
+            ReportDiff diff;
+            if (cmp < 0) {
+                DependencyIndex.Report report = before.get(i++);
+                diff = new ReportDiff(report.module, report.conf, false, true);
+            } else if (cmp > 0) {
+                DependencyIndex.Report report = after.get(j++);
+                diff = new ReportDiff(report.module, report.conf, true, false);
+                for (int m = 0; m < report.modules.length; m++) {
+                    diff.addedModules.add(report.modules[m] + ";"
+                            + selected(report, m));
+                    newFlags(null, 0, report, m, diff);
+                }
+            } else {
+                DependencyIndex.Report report = after.get(j++);
+                diff = new ReportDiff(report.module, report.conf, false, false);
+                compare(before.get(i++), report, diff);
+            }
+            if (!diff.isEmpty()) {
+                diffs.add(diff);
+            }
+        }
+        return new DependencyDiff(diffs);
+    }
+
+    private static void compare(DependencyIndex.Report before,
+            DependencyIndex.Report after, ReportDiff diff) {
+        int i = 0;
+        int j = 0;
+        while (i < before.modules.length || j < after.modules.length) {
+            int cmp = i == before.modules.length ? 1
+                    : j == after.modules.length ? -1 : before.modules[i]
+                            .compareTo(after.modules[j]);
+            if (cmp < 0) {
+                diff.removedModules.add(before.modules[i] + ";"
+                        + selected(before, i));
+                i++;
+            } else if (cmp > 0) {
+                diff.addedModules.add(after.modules[j] + ";"
+                        + selected(after, j));
+                newFlags(null, 0, after, j, diff);
+                j++;
+            } else {
+                String from = selected(before, i);
+                String to = selected(after, j);
+                if (!from.equals(to)) {
+                    diff.revisionChanges.add(new RevisionChange(
+                            after.modules[j], from, to));
+                }
+                newFlags(before, i, after, j, diff);
+                i++;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Records the revisions of a module evicted or in error after but not
+     * before; both revision ranges are sorted.
+     */
+    private static void newFlags(DependencyIndex.Report before, int m,
+            DependencyIndex.Report after, int n, ReportDiff diff) {
+        int i = before == null ? 0 : before.moduleRevisions[m];
+        int end = before == null ? 0 : before.moduleRevisions[m + 1];
+        for (int r = after.moduleRevisions[n]; r < after.moduleRevisions[n + 1]; r++) {
+            while (i < end && before.revisions[i].compareTo(after.revisions[r]) < 0) {
+                i++;
+            }
+            byte previous = i < end
+                    && before.revisions[i].equals(after.revisions[r]) ? before.flags[i]
+                    : 0;
+            byte added = (byte) (after.flags[r] & ~previous);
+            String revision = after.modules[n] + ";" + after.revisions[r];
+            if ((added & DependencyIndex.EVICTED) != 0) {
+                diff.newEvictions.add(revision);
+            }
+            if ((added & DependencyIndex.ERROR) != 0) {
+                diff.newErrors.add(revision);
+            }
+        }
+    }
+
+    /**
+     * @return the revisions of a module which were not evicted, comma
+     *         separated
+     */
+    private static String selected(DependencyIndex.Report report, int m) {
+        StringBuilder sb = new StringBuilder();
+        for (int r = report.moduleRevisions[m]; r < report.moduleRevisions[m + 1]; r++) {
+            if ((report.flags[r] & DependencyIndex.EVICTED) == 0) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(report.revisions[r]);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The resolved dependencies of the resolve reports of a build, in a compact
+ * form meant to be compared with the dependencies of another build.
+ * <p>
+ * For every resolve report, the dependencies are sorted by module
+ * (<tt>organisation#name</tt>) then by revision, so that two reports are
+ * compared by a single merge. Strings are stored once, in a pool written
+ * ahead of the reports.
+ */
+public final class DependencyIndex {
+    private static final int MAGIC = 0x49565249; // IVRI
+    private static final int VERSION = 1;
+
+    static final byte EVICTED = 1;
+    static final byte ERROR = 2;
+
+    /**
+     * The dependencies of a resolve report.
+     */
+    static final class Report {
+        final String module;
+        final String conf;
+        // sorted module ids, and the range of their revisions
+        final String[] modules;
+        final int[] moduleRevisions;
+        final String[] revisions;
+        final byte[] flags;
+
+        Report(String module, String conf, String[] modules,
+                int[] moduleRevisions, String[] revisions, byte[] flags) {
+            this.module = module;
+            this.conf = conf;
+            this.modules = modules;
+            this.moduleRevisions = moduleRevisions;
+            this.revisions = revisions;
+            this.flags = flags;
+        }
+
+        String getKey() {
+            return module + "/" + conf;
+        }
+    }
+
+    private final List<Report> reports = new ArrayList<Report>();
+
+    /**
+     * Adds the dependencies of a resolve report.
+     */
+    public synchronized void add(final ResolveReport report) {
+        Integer[] order = new Integer[report.getModuleCount()];
+        for (int m = 0; m < order.length; m++) {
+            order[m] = m;
+        }
+        final String[] ids = new String[order.length];
+        for (int m = 0; m < ids.length; m++) {
+            ids[m] = report.getModuleOrganisation(m) + "#"
+                    + report.getModuleName(m);
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return ids[a].compareTo(ids[b]);
+            }
+        });
+        String[] modules = new String[order.length];
+        int[] moduleRevisions = new int[order.length + 1];
+        String[] revisions = new String[report.getRevisionCount()];
+        byte[] flags = new byte[revisions.length];
+        int next = 0;
+        for (int i = 0; i < order.length; i++) {
+            int m = order[i];
+            modules[i] = ids[m];
+            moduleRevisions[i] = next;
+            int start = next;
+            for (int r = report.getRevisionStart(m); r < report
+                    .getRevisionEnd(m); r++) {
+                revisions[next] = report.getRevisionName(r);
+                flags[next] = (byte) ((report.isEvicted(r) ? EVICTED : 0) | (report
+                        .hasError(r) ? ERROR : 0));
+                next++;
+            }
+            sortRevisions(revisions, flags, start, next);
+        }
+        moduleRevisions[order.length] = next;
+        reports.add(new Report(report.getOrganisation() + "#"
+                + report.getModule(), report.getConf(), modules,
+                moduleRevisions, revisions, flags));
+    }
+
+    /**
+     * Adds the dependencies of the resolve reports of another index.
+     */
+    public void add(DependencyIndex index) {
+        List<Report> added;
+        synchronized (index) {
+            added = new ArrayList<Report>(index.reports);
+        }
+        synchronized (this) {
+            reports.addAll(added);
+        }
+    }
+
+    /**
+     * Insertion sort, modules seldom have more than a few revisions.
+     */
+    private static void sortRevisions(String[] revisions, byte[] flags,
+            int start, int end) {
+        for (int i = start + 1; i < end; i++) {
+            String revision = revisions[i];
+            byte flag = flags[i];
+            int j = i - 1;
+            while (j >= start && revisions[j].compareTo(revision) > 0) {
+                revisions[j + 1] = revisions[j];
+                flags[j + 1] = flags[j];
+                j--;
+            }
+            revisions[j + 1] = revision;
+            flags[j + 1] = flag;
+        }
+    }
+
+    /**
+     * @return the reports, by module then configuration
+     */
+    synchronized List<Report> getReports() {
+        List<Report> sorted = new ArrayList<Report>(reports);
+        Collections.sort(sorted, new Comparator<Report>() {
+            public int compare(Report a, Report b) {
+                return a.getKey().compareTo(b.getKey());
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * @return the revisions which were not evicted in any of the reports, by
+     *         module id (<tt>organisation#name</tt>)
+     */
+    public synchronized SortedMap<String, SortedSet<String>> getSelectedRevisions() {
+        SortedMap<String, SortedSet<String>> selected = new TreeMap<String, SortedSet<String>>();
+        for (Report report : reports) {
+            for (int m = 0; m < report.modules.length; m++) {
+                for (int r = report.moduleRevisions[m]; r < report.moduleRevisions[m + 1]; r++) {
+                    if ((report.flags[r] & EVICTED) != 0) {
+                        continue;
+                    }
+                    SortedSet<String> revisions = selected
+                            .get(report.modules[m]);
+                    if (revisions == null) {
+                        revisions = new TreeSet<String>();
+                        selected.put(report.modules[m], revisions);
+                    }
+                    revisions.add(report.revisions[r]);
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @return what changed in this index since the given one
+     */
+    public DependencyDiff diff(DependencyIndex since) {
+        return DependencyDiff.compute(since.getReports(), getReports());
+    }
+
+    /**
+     * Writes the index. The stream is not closed.
+     */
+    public synchronized void write(OutputStream out) throws IOException {
+        Map<String, Integer> pool = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        for (Report report : reports) {
+            intern(report.module, pool, strings);
+            intern(report.conf, pool, strings);
+            for (String module : report.modules) {
+                intern(module, pool, strings);
+            }
+            for (String revision : report.revisions) {
+                intern(revision, pool, strings);
+            }
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(strings.size());
+        for (String string : strings) {
+            data.writeUTF(string);
+        }
+        data.writeInt(reports.size());
+        for (Report report : reports) {
+            data.writeInt(pool.get(report.module));
+            data.writeInt(pool.get(report.conf));
+            data.writeInt(report.modules.length);
+            for (int m = 0; m < report.modules.length; m++) {
+                data.writeInt(pool.get(report.modules[m]));
+                data.writeInt(report.moduleRevisions[m + 1]
+                        - report.moduleRevisions[m]);
+                for (int r = report.moduleRevisions[m]; r < report.moduleRevisions[m + 1]; r++) {
+                    data.writeInt(pool.get(report.revisions[r]));
+                    data.writeByte(report.flags[r]);
+                }
+            }
+        }
+        data.flush();
+    }
+
+    private static void intern(String string, Map<String, Integer> pool,
+            List<String> strings) {
+        String value = string == null ? "" : string;
+        if (!pool.containsKey(value)) {
+            pool.put(value, strings.size());
+            strings.add(value);
+        }
+    }
+
+    /**
+     * Reads an index. The stream is not closed.
+     * 
+     * @throws IOException
+     *             if the stream does not hold an index
+     */
+    public static DependencyIndex read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Not a dependency index");
+        }
+        String[] strings = new String[data.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = data.readUTF();
+        }
+        DependencyIndex index = new DependencyIndex();
+        int count = data.readInt();
+        for (int i = 0; i < count; i++) {
+            String module = strings[data.readInt()];
+            String conf = strings[data.readInt()];
+            String[] modules = new String[data.readInt()];
+            int[] moduleRevisions = new int[modules.length + 1];
+            List<String> revisions = new ArrayList<String>();
+            List<Byte> flags = new ArrayList<Byte>();
+            for (int m = 0; m < modules.length; m++) {
+                modules[m] = strings[data.readInt()];
+                moduleRevisions[m] = revisions.size();
+                int revisionCount = data.readInt();
+                for (int r = 0; r < revisionCount; r++) {
+                    revisions.add(strings[data.readInt()]);
+                    flags.add(data.readByte());
+                }
+            }
+            moduleRevisions[modules.length] = revisions.size();
+            byte[] flagArray = new byte[flags.size()];
+            for (int r = 0; r < flagArray.length; r++) {
+                flagArray[r] = flags.get(r);
+            }
+            index.reports.add(new Report(module, conf, modules,
+                    moduleRevisions, revisions.toArray(new String[revisions
+                            .size()]), flagArray));
+        }
+        return index;
+    }
+}
@@ -0,0 +1,449 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A directed graph, as described by a Graphviz dot file.
+ * <p>
+ * Only the subset of the dot language used by the ivy report is understood:
+ * node and edge statements with their attribute lists. Graph, node and edge
+ * default attributes as well as subgraph boundaries are ignored.
+ */
+public final class DotGraph {
+
+    public static final class Node {
+        private final String id;
+        private final int index;
+        private final Map<String, String> attributes = new LinkedHashMap<String, String>();
+
+        private Node(String id, int index) {
+            this.id = id;
+            this.index = index;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return position of the node in the graph, starting at 0
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public String getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        public void setAttribute(String name, String value) {
+            attributes.put(name, value);
+        }
+
+        /**
+         * @return the label, or the id if the node has no label
+         */
+        public String getLabel() {
+            String label = attributes.get("label");
+            return label == null ? id : label;
+        }
+    }
+
+    public static final class Edge {
+        private final Node from;
+        private final Node to;
+        private final Map<String, String> attributes = new LinkedHashMap<String, String>();
+
+        private Edge(Node from, Node to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public Node getFrom() {
+            return from;
+        }
+
+        public Node getTo() {
+            return to;
+        }
+
+        public String getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        public void setAttribute(String name, String value) {
+            attributes.put(name, value);
+        }
+    }
+
+    private final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+    private final List<Edge> edges = new ArrayList<Edge>();
+
+    /**
+     * @return the node with the given id, created if needed
+     */
+    public Node addNode(String id) {
+        Node node = nodes.get(id);
+        if (node == null) {
+            node = new Node(id, nodes.size());
+            nodes.put(id, node);
+        }
+        return node;
+    }
+
+    public Edge addEdge(Node from, Node to) {
+        Edge edge = new Edge(from, to);
+        edges.add(edge);
+        return edge;
+    }
+
+    /**
+     * @return the nodes, in the order of their index
+     */
+    public Collection<Node> getNodes() {
+        return Collections.unmodifiableCollection(nodes.values());
+    }
+
+    public List<Edge> getEdges() {
+        return Collections.unmodifiableList(edges);
+    }
+
+    public static DotGraph parse(Reader reader) throws IOException {
+        return new Parser(reader).parse();
+    }
+
+    /**
+     * Writes the graph in the dot language, with the fonts of the ivy report.
+     */
+    public void write(Writer out) throws IOException {
+        out.write("/* generated by ivy report */\n");
+        out.write("digraph G {\n");
+        out.write(" graph [fontname=helvetica fontsize=11];\n");
+        out.write(" edge [fontname=helvetica fontsize=11];\n");
+        out.write(" node [fontname=helvetica fontsize=11];\n");
+        for (Node node : nodes.values()) {
+            out.write(" " + quote(node.id));
+            writeAttributes(out, node.attributes);
+            out.write(";\n");
+        }
+        for (Edge edge : edges) {
+            out.write(" " + quote(edge.from.id) + " -> " + quote(edge.to.id));
+            writeAttributes(out, edge.attributes);
+            out.write(";\n");
+        }
+        out.write("}\n");
+        out.flush();
+    }
+
+    private static void writeAttributes(Writer out,
+            Map<String, String> attributes) throws IOException {
+        if (attributes.isEmpty()) {
+            return;
+        }
+        out.write(" [");
+        boolean first = true;
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            if (!first) {
+                out.write(' ');
+            }
+            first = false;
+            out.write(attribute.getKey() + "=" + quote(attribute.getValue()));
+        }
+        out.write(']');
+    }
+
+    /**
+     * Quotes an id; the escapes of labels such as <tt>\n</tt> are kept.
+     */
+    private static String quote(String id) {
+        StringBuilder sb = new StringBuilder(id.length() + 2).append('"');
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c == '"') {
+                sb.append("\\\"");
+            } else if (c == '\\' && i == id.length() - 1) {
+                // would escape the closing quote
+                sb.append("\\\\");
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Recursive descent parser for the supported subset of the dot language.
+     */
+    private static final class Parser {
+        private static final String EOF = "";
+
+        private final Reader reader;
+        private final DotGraph graph = new DotGraph();
+        private final int[] pushedBack = new int[2];
+        private int pushedBackCount;
+        private String token;
+        private boolean quoted;
+
+        Parser(Reader reader) {
+            this.reader = reader;
+        }
+
+        DotGraph parse() throws IOException {
+            advance();
+            // [strict] (graph | digraph) [ID] '{'
+            while (token != EOF && !"{".equals(token)) {
+                advance();
+            }
+            advance();
+            parseStatements();
+            return graph;
+        }
+
+        private void parseStatements() throws IOException {
+            while (token != EOF && (quoted || !"}".equals(token))) {
+                if (!quoted && "{".equals(token)) {
+                    advance();
+                    parseStatements();
+                    advance();
+                } else if (!quoted && (";".equals(token) || ",".equals(token))) {
+                    advance();
+                } else if (!quoted
+                        && ("graph".equals(token) || "node".equals(token)
+                                || "edge".equals(token) || "subgraph"
+                                    .equals(token))) {
+                    boolean subgraph = "subgraph".equals(token);
+                    advance();
+                    if (subgraph) {
+                        if (quoted || !"{".equals(token)) {
+                            advance();
+                        }
+                    } else {
+                        parseAttributes(null);
+                    }
+                } else {
+                    parseNodeOrEdge();
+                }
+            }
+        }
+
+        private void parseNodeOrEdge() throws IOException {
+            String id = token;
+            advance();
+            if (!quoted && "=".equals(token)) {
+                // graph attribute
+                advance();
+                advance();
+                return;
+            }
+            List<Node> chain = new ArrayList<Node>();
+            chain.add(graph.addNode(id));
+            while (!quoted && ("->".equals(token) || "--".equals(token))) {
+                advance();
+                chain.add(graph.addNode(token));
+                advance();
+            }
+            Map<String, String> attributes = new LinkedHashMap<String, String>();
+            parseAttributes(attributes);
+            if (chain.size() == 1) {
+                chain.get(0).attributes.putAll(attributes);
+            } else {
+                for (int i = 1; i < chain.size(); i++) {
+                    graph.addEdge(chain.get(i - 1), chain.get(i)).attributes
+                            .putAll(attributes);
+                }
+            }
+        }
+
+        private void parseAttributes(Map<String, String> attributes)
+                throws IOException {
+            while (!quoted && "[".equals(token)) {
+                advance();
+                while (token != EOF && (quoted || !"]".equals(token))) {
+                    if (!quoted && (",".equals(token) || ";".equals(token))) {
+                        advance();
+                        continue;
+                    }
+                    String name = token;
+                    advance();
+                    String value = "true";
+                    if (!quoted && "=".equals(token)) {
+                        advance();
+                        value = token;
+                        advance();
+                    }
+                    if (attributes != null) {
+                        attributes.put(name, value);
+                    }
+                }
+                advance();
+            }
+        }
+
+        private int read() throws IOException {
+            if (pushedBackCount > 0) {
+                return pushedBack[--pushedBackCount];
+            }
+            return reader.read();
+        }
+
+        private void unread(int c) {
+            pushedBack[pushedBackCount++] = c;
+        }
+
+        private void advance() throws IOException {
+            quoted = false;
+            int c = read();
+            while (true) {
+                while (c != -1 && Character.isWhitespace(c)) {
+                    c = read();
+                }
+                if (c == '#') {
+                    c = skipLine();
+                } else if (c == '/') {
+                    int d = read();
+                    if (d == '/') {
+                        c = skipLine();
+                    } else if (d == '*') {
+                        c = skipComment();
+                    } else {
+                        unread(d);
+                        break;
+                    }
+                } else {
+                    break;
+                }
+            }
+            if (c == -1) {
+                token = EOF;
+            } else if (c == '"') {
+                token = readQuoted();
+                quoted = true;
+            } else if (c == '-') {
+                int d = read();
+                if (d == '>' || d == '-') {
+                    token = new String(new char[] { (char) c, (char) d });
+                } else {
+                    unread(d);
+                    token = readId(c);
+                }
+            } else if ("{}[]=;,".indexOf(c) >= 0) {
+                token = String.valueOf((char) c);
+            } else if (c == '<') {
+                token = readHtml();
+                quoted = true;
+            } else {
+                token = readId(c);
+            }
+        }
+
+        private int skipLine() throws IOException {
+            int c = read();
+            while (c != -1 && c != '\n') {
+                c = read();
+            }
+            return c;
+        }
+
+        private int skipComment() throws IOException {
+            int previous = 0;
+            int c = read();
+            while (c != -1 && !(previous == '*' && c == '/')) {
+                previous = c;
+                c = read();
+            }
+            return c == -1 ? -1 : read();
+        }
+
+        private String readId(int first) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c = first;
+            while (c != -1 && !Character.isWhitespace(c)
+                    && "{}[]=;,\"".indexOf(c) < 0
+                    && !(c == '-' && sb.length() > 0 && isEdgeOp())) {
+                sb.append((char) c);
+                c = read();
+            }
+            unread(c);
+            return sb.toString();
+        }
+
+        /**
+         * Called after a '-' inside an identifier: tells whether it starts
+         * an edge operator.
+         */
+        private boolean isEdgeOp() throws IOException {
+            int d = read();
+            unread(d);
+            return d == '>' || d == '-';
+        }
+
+        private String readQuoted() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c = read();
+            while (c != -1 && c != '"') {
+                if (c == '\\') {
+                    int d = read();
+                    if (d == '"') {
+                        sb.append('"');
+                    } else if (d == '\n') {
+                        // line continuation
+                    } else if (d != -1) {
+                        // keep the other escapes (\n, \l, ...) for the label
+                        sb.append('\\').append((char) d);
+                    }
+                } else {
+                    sb.append((char) c);
+                }
+                c = read();
+            }
+            return sb.toString();
+        }
+
+        private String readHtml() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int depth = 1;
+            int c = read();
+            while (c != -1) {
+                if (c == '<') {
+                    depth++;
+                } else if (c == '>' && --depth == 0) {
+                    break;
+                }
+                sb.append((char) c);
+                c = read();
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the neighbours of a node of the dependency graph of a resolve
+ * report as JSON, a page at a time, so that a browser can draw the graph
+ * from its root and expand it on demand.
+ * <p>
+ * The nodes are the modules, identified as <tt>organisation#name</tt>, the
+ * resolved module and the callers which are not modules of the report. An
+ * edge goes from a caller to the module it calls, whatever the called
+ * revision; it is evicted when all the called revisions are. The output is:
+ * 
+ * <pre>
+ * {"node":{"id":..,"organisation":..,"name":..,"revisions":[{"name":..,
+ *   "evicted":..,"error":..}],"callers":2,"dependencies":5},
+ *  "direction":"dependencies","start":0,"total":5,"more":false,
+ *  "nodes":[{"id":..,..,"edge":{"evicted":false,"rev":..}}]}
+ * </pre>
+ * 
+ * The <tt>callers</tt> and <tt>dependencies</tt> of a node are the number of
+ * its neighbours, <tt>rev</tt> the revision asked by the first caller when
+ * another one was resolved.
+ */
+public final class GraphExplorer {
+    private final ResolveReport report;
+    private final String rootId;
+
+    /**
+     * Nodes by id: {@link ResolveReport#ROOT}, a module, or
+     * <tt>-3 - index</tt> of the callers which are not modules.
+     */
+    private final Map<String, Integer> nodes = new HashMap<String, Integer>();
+    private final List<String> unknownIds = new ArrayList<String>();
+    private final List<IntList> unknownDependencies = new ArrayList<IntList>();
+
+    public GraphExplorer(ResolveReport report) {
+        this.report = report;
+        this.rootId = report.getOrganisation() + "#" + report.getModule();
+        nodes.put(rootId, ResolveReport.ROOT);
+        for (int m = 0; m < report.getModuleCount(); m++) {
+            nodes.put(getId(m), m);
+        }
+        for (int c = 0; c < report.getCallerCount(); c++) {
+            if (report.getCallerModule(c) != ResolveReport.UNKNOWN) {
+                continue;
+            }
+            String id = report.getCallerOrganisation(c) + "#"
+                    + report.getCallerName(c);
+            Integer node = nodes.get(id);
+            if (node == null) {
+                node = -3 - unknownIds.size();
+                nodes.put(id, node);
+                unknownIds.add(id);
+                unknownDependencies.add(new IntList());
+            }
+            unknownDependencies.get(-3 - node).add(c);
+        }
+    }
+
+    /**
+     * @return the id of the resolved module
+     */
+    public String getRootId() {
+        return rootId;
+    }
+
+    public boolean hasNode(String id) {
+        return nodes.containsKey(id);
+    }
+
+    /**
+     * Writes a page of the callers or of the dependencies of a node, in the
+     * order of the report.
+     * 
+     * @param id
+     *            an existing node, see {@link #hasNode(String)}
+     */
+    public void write(Writer out, String id, boolean callers, int start,
+            int count) throws IOException {
+        int node = nodes.get(id);
+        Map<Integer, Edge> neighbours = callers ? getCallers(node)
+                : getDependencies(node);
+        // clamped so that start + count cannot overflow
+        start = Math.min(Math.max(0, start), neighbours.size());
+        count = Math.min(Math.max(0, count), neighbours.size() - start);
+        out.write("{\"node\":");
+        writeNode(out, node);
+        out.write("}");
+        out.write(",\"direction\":\""
+                + (callers ? "callers" : "dependencies") + "\",\"start\":"
+                + start + ",\"total\":" + neighbours.size() + ",\"more\":"
+                + (start + count < neighbours.size()) + ",\"nodes\":[");
+        int index = 0;
+        for (Map.Entry<Integer, Edge> neighbour : neighbours.entrySet()) {
+            if (index >= start + count) {
+                break;
+            }
+            if (index++ < start) {
+                continue;
+            }
+            if (index > start + 1) {
+                out.write(',');
+            }
+            writeNode(out, neighbour.getKey());
+            Edge edge = neighbour.getValue();
+            out.write(",\"edge\":{\"evicted\":" + edge.evicted + ",\"rev\":"
+                    + GraphJsonWriter.quote(edge.rev) + "}}");
+        }
+        out.write("]}");
+        out.flush();
+    }
+
+    /**
+     * Writes the node, without its closing brace.
+     */
+    private void writeNode(Writer out, int node) throws IOException {
+        String id = getId(node);
+        int hash = id.indexOf('#');
+        out.write("{\"id\":" + GraphJsonWriter.quote(id)
+                + ",\"organisation\":"
+                + GraphJsonWriter.quote(id.substring(0, hash)) + ",\"name\":"
+                + GraphJsonWriter.quote(id.substring(hash + 1))
+                + ",\"revisions\":[");
+        if (node == ResolveReport.ROOT) {
+            out.write("{\"name\":" + GraphJsonWriter.quote(report.getRevision())
+                    + ",\"evicted\":false,\"error\":false}");
+        } else if (node >= 0) {
+            for (int r = report.getRevisionStart(node); r < report
+                    .getRevisionEnd(node); r++) {
+                if (r > report.getRevisionStart(node)) {
+                    out.write(',');
+                }
+                out.write("{\"name\":"
+                        + GraphJsonWriter.quote(report.getRevisionName(r))
+                        + ",\"evicted\":" + report.isEvicted(r)
+                        + ",\"error\":" + report.hasError(r) + "}");
+            }
+        }
+        out.write("],\"callers\":" + getCallers(node).size()
+                + ",\"dependencies\":" + getDependencies(node).size());
+    }
+
+    private String getId(int node) {
+        if (node == ResolveReport.ROOT) {
+            return rootId;
+        }
+        if (node < 0) {
+            return unknownIds.get(-3 - node);
+        }
+        return report.getModuleOrganisation(node) + "#"
+                + report.getModuleName(node);
+    }
+
+    /**
+     * @return the modules called by the node, with the edges to them
+     */
+    private Map<Integer, Edge> getDependencies(int node) {
+        int[] callers;
+        if (node >= ResolveReport.ROOT) {
+            callers = report.getDependencies(node);
+        } else {
+            callers = unknownDependencies.get(-3 - node).toArray();
+        }
+        Map<Integer, Edge> dependencies = new LinkedHashMap<Integer, Edge>();
+        for (int c : callers) {
+            int revision = report.getCallerRevision(c);
+            add(dependencies, report.getRevisionModule(revision), c, revision);
+        }
+        return dependencies;
+    }
+
+    /**
+     * @return the nodes calling one of the revisions of the node, with the
+     *         edges from them
+     */
+    private Map<Integer, Edge> getCallers(int node) {
+        Map<Integer, Edge> callers = new LinkedHashMap<Integer, Edge>();
+        if (node < 0) {
+            return callers;
+        }
+        for (int r = report.getRevisionStart(node); r < report
+                .getRevisionEnd(node); r++) {
+            for (int c = report.getCallerStart(r); c < report.getCallerEnd(r); c++) {
+                int caller = report.getCallerModule(c);
+                if (caller == ResolveReport.UNKNOWN) {
+                    caller = nodes.get(report.getCallerOrganisation(c) + "#"
+                            + report.getCallerName(c));
+                }
+                add(callers, caller, c, r);
+            }
+        }
+        return callers;
+    }
+
+    private void add(Map<Integer, Edge> edges, int node, int caller,
+            int revision) {
+        Edge edge = edges.get(node);
+        if (edge == null) {
+            edge = new Edge();
+            edges.put(node, edge);
+        }
+        edge.evicted &= report.isEvicted(revision);
+        String rev = report.getCallerRev(caller);
+        if (edge.rev == null && rev != null
+                && !rev.equals(report.getRevisionName(revision))) {
+            edge.rev = rev;
+        }
+    }
+
+    private static final class Edge {
+        private boolean evicted = true;
+        private String rev;
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Writes resolve reports as JSON while reading them, so that neither the
+ * report nor the JSON document is ever held in memory; only the children of
+ * the revision being read are.
+ * <p>
+ * The modules of all the written reports are paged together: the first
+ * <tt>start</tt> modules are skipped and at most <tt>count</tt> are written.
+ * The output is:
+ * 
+ * <pre>
+ * {"reports":[{"organisation":..,"module":..,"revision":..,"conf":..,
+ *   "modules":[{"organisation":..,"name":..,"revisions":[{"name":..,
+ *     "evicted":..,"evictedBy":[..],"error":..,"licenses":[..],
+ *     "callers":[..],"artifacts":[..],..}]}]}],
+ *  "start":0,"count":10,"more":true}
+ * </pre>
+ */
+public final class GraphJsonWriter {
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private static final String[] REVISION_ATTRIBUTES = { "name", "status",
+            "pubdate", "resolver", "homepage", "conf", "evicted",
+            "evicted-reason", "error" };
+    private static final String[] REVISION_FLAGS = { "downloaded",
+            "searched", "default" };
+    private static final String[] CALLER_ATTRIBUTES = { "organisation",
+            "name", "conf", "rev", "callerrev" };
+    private static final String[] ARTIFACT_ATTRIBUTES = { "name", "type",
+            "ext", "status" };
+    private static final String[] LICENSE_ATTRIBUTES = { "name", "url" };
+
+    private final Writer out;
+    private final String organisation;
+    private final int start;
+    private final int count;
+
+    private int matched;
+    private int written;
+    private boolean more;
+    private boolean firstReport = true;
+
+    /**
+     * @param organisation
+     *            only the modules of this organisation are written, all if
+     *            <tt>null</tt>
+     */
+    public GraphJsonWriter(Writer out, String organisation, int start,
+            int count) {
+        this.out = out;
+        this.organisation = organisation;
+        this.start = Math.max(0, start);
+        this.count = Math.max(0, count);
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                Boolean.FALSE);
+        return factory;
+    }
+
+    public void start() throws IOException {
+        out.write("{\"reports\":[");
+    }
+
+    /**
+     * @return whether it is known that there are modules after the page, in
+     *         which case no more report needs to be read
+     */
+    public boolean isDone() {
+        return more;
+    }
+
+    public void finish() throws IOException {
+        out.write("],\"start\":" + start + ",\"count\":" + written
+                + ",\"more\":" + more + "}");
+        out.flush();
+    }
+
+    /**
+     * Writes the modules of a resolve report which belong to the page. The
+     * stream is not closed.
+     * 
+     * @param module
+     *            the report is skipped unless it is the report of this
+     *            module, as <tt>organisation#name</tt>; <tt>null</tt> to
+     *            write any report
+     */
+    public void write(InputStream in, String module) throws IOException {
+        try {
+            XMLStreamReader reader;
+            synchronized (FACTORY) {
+                reader = FACTORY.createXMLStreamReader(in);
+            }
+            try {
+                write(reader, module);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            IOException ioe = new IOException("Invalid resolve report : "
+                    + e.getMessage());
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+
+    private void write(XMLStreamReader reader, String module)
+            throws XMLStreamException, IOException {
+        String header = null;
+        boolean reportWritten = false;
+        boolean inDependencies = false;
+        // the module being written, the revision being read
+        boolean writing = false;
+        boolean firstRevision = true;
+        Revision revision = null;
+        while (reader.hasNext() && !more) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String element = reader.getLocalName();
+                if (revision != null) {
+                    revision.add(element, reader);
+                } else if (inDependencies && "module".equals(element)) {
+                    String org = reader.getAttributeValue(null,
+                            "organisation");
+                    writing = false;
+                    if (organisation != null && !organisation.equals(org)) {
+                        continue;
+                    }
+                    if (matched++ < start) {
+                        continue;
+                    }
+                    if (written == count) {
+                        more = true;
+                        continue;
+                    }
+                    if (!reportWritten) {
+                        if (!firstReport) {
+                            out.write(',');
+                        }
+                        firstReport = false;
+                        out.write(header);
+                        out.write(",\"modules\":[");
+                        reportWritten = true;
+                    } else {
+                        out.write("]},");
+                    }
+                    written++;
+                    writing = true;
+                    firstRevision = true;
+                    out.write("{\"organisation\":" + quote(org)
+                            + ",\"name\":"
+                            + quote(reader.getAttributeValue(null, "name"))
+                            + ",\"revisions\":[");
+                } else if (writing && "revision".equals(element)) {
+                    revision = new Revision(reader);
+                } else if ("info".equals(element)) {
+                    String org = reader.getAttributeValue(null,
+                            "organisation");
+                    String name = reader.getAttributeValue(null, "module");
+                    if (module != null && !module.equals(org + "#" + name)) {
+                        return;
+                    }
+                    header = "{\"organisation\":" + quote(org)
+                            + ",\"module\":" + quote(name) + ",\"revision\":"
+                            + quote(reader.getAttributeValue(null, "revision"))
+                            + ",\"conf\":"
+                            + quote(reader.getAttributeValue(null, "conf"));
+                } else if ("dependencies".equals(element)) {
+                    inDependencies = header != null;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String element = reader.getLocalName();
+                if (revision != null && "revision".equals(element)) {
+                    if (!firstRevision) {
+                        out.write(',');
+                    }
+                    firstRevision = false;
+                    revision.write(out);
+                    revision = null;
+                } else if ("dependencies".equals(element)) {
+                    inDependencies = false;
+                }
+            }
+        }
+        if (reportWritten) {
+            out.write("]}]}");
+        }
+    }
+
+    /**
+     * A revision, with its children once read.
+     */
+    private static final class Revision {
+        private final StringBuilder attributes = new StringBuilder();
+        private final List<String> evictedBy = new ArrayList<String>();
+        private final List<String> licenses = new ArrayList<String>();
+        private final List<String> callers = new ArrayList<String>();
+        private final List<String> artifacts = new ArrayList<String>();
+
+        Revision(XMLStreamReader reader) {
+            for (String name : REVISION_ATTRIBUTES) {
+                appendAttribute(attributes, reader, name);
+            }
+            for (String name : REVISION_FLAGS) {
+                attributes.append(",\"").append(name).append("\":")
+                        .append("true".equals(reader.getAttributeValue(null,
+                                name)));
+            }
+        }
+
+        void add(String element, XMLStreamReader reader) {
+            if ("caller".equals(element)) {
+                callers.add(object(reader, CALLER_ATTRIBUTES, null));
+            } else if ("artifact".equals(element)) {
+                artifacts.add(object(reader, ARTIFACT_ATTRIBUTES, "size"));
+            } else if ("license".equals(element)) {
+                licenses.add(object(reader, LICENSE_ATTRIBUTES, null));
+            } else if ("evicted-by".equals(element)) {
+                evictedBy.add(quote(reader.getAttributeValue(null, "rev")));
+            }
+        }
+
+        void write(Writer out) throws IOException {
+            out.write('{');
+            // skips the leading comma
+            out.write(attributes.substring(1));
+            writeArray(out, "evictedBy", evictedBy);
+            writeArray(out, "licenses", licenses);
+            writeArray(out, "callers", callers);
+            writeArray(out, "artifacts", artifacts);
+            out.write('}');
+        }
+
+        private static void writeArray(Writer out, String name,
+                List<String> values) throws IOException {
+            out.write(",\"" + name + "\":[");
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write(values.get(i));
+            }
+            out.write(']');
+        }
+
+        private static String object(XMLStreamReader reader,
+                String[] names, String numeric) {
+            StringBuilder sb = new StringBuilder();
+            for (String name : names) {
+                appendAttribute(sb, reader, name);
+            }
+            if (numeric != null) {
+                String value = reader.getAttributeValue(null, numeric);
+                sb.append(",\"").append(numeric).append("\":")
+                        .append(parseLong(value));
+            }
+            return sb.length() == 0 ? "{}" : "{" + sb.substring(1) + "}";
+        }
+    }
+
+    /**
+     * Appends <tt>,"name":"value"</tt>, with the attribute names in camel
+     * case; absent attributes are left out.
+     */
+    private static void appendAttribute(StringBuilder sb,
+            XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        if (value != null) {
+            sb.append(",\"").append(camelCase(name)).append("\":")
+                    .append(quote(value));
+        }
+    }
+
+    private static String camelCase(String name) {
+        if ("callerrev".equals(name)) {
+            return "callerRev";
+        }
+        int dash = name.indexOf('-');
+        return dash < 0 ? name : name.substring(0, dash)
+                + Character.toUpperCase(name.charAt(dash + 1))
+                + name.substring(dash + 2);
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            default:
+                if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                    String hex = Integer.toHexString(c);
+                    sb.append("\\u");
+                    for (int j = hex.length(); j < 4; j++) {
+                        sb.append('0');
+                    }
+                    sb.append(hex);
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,766 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reduces the dependency graph of a resolve report before it is laid out,
+ * so that huge resolves still give a graph that can be rendered and read.
+ * The html report is not affected and lists all the dependencies.
+ * <p>
+ * The reductions, applied in this order, are: dropping the modules whose
+ * revisions were all evicted, limiting the depth from the resolved module,
+ * grouping the modules of an organisation into a single node and removing
+ * the edges implied by longer paths (transitive reduction). In automatic
+ * mode they are only applied, one after the other, while the graph exceeds
+ * a number of nodes or edges; the depth is then limited to the modules
+ * closest to the resolved module, so that the size of the graph is bounded.
+ */
+public final class GraphReduction implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_MAX_NODES = 300;
+    public static final int DEFAULT_MAX_EDGES = 1000;
+
+    /**
+     * Maximum number of nodes of a graph whose transitive reduction is
+     * computed; it needs a bit per pair of nodes.
+     */
+    static final int TRANSITIVE_LIMIT = 5000;
+
+    private static final String TRANSITIVE = "transitive edges removed";
+
+    public static final GraphReduction NONE = new GraphReduction(false,
+            false, false, 0, 0, 0);
+
+    private final boolean dropEvicted;
+    private final boolean transitive;
+    private final boolean clusterByOrganisation;
+    private final int maxDepth;
+    private final int maxNodes;
+    private final int maxEdges;
+
+    private GraphReduction(boolean dropEvicted, boolean transitive,
+            boolean clusterByOrganisation, int maxDepth, int maxNodes,
+            int maxEdges) {
+        this.dropEvicted = dropEvicted;
+        this.transitive = transitive;
+        this.clusterByOrganisation = clusterByOrganisation;
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        this.maxEdges = maxEdges;
+    }
+
+    /**
+     * @return the reductions needed to keep the graph within the given size
+     */
+    public static GraphReduction automatic(int maxNodes, int maxEdges) {
+        return new GraphReduction(false, false, false, 0,
+                Math.max(1, maxNodes), Math.max(1, maxEdges));
+    }
+
+    /**
+     * @param maxDepth
+     *            maximum distance from the resolved module, 0 for no limit
+     */
+    public static GraphReduction of(boolean dropEvicted, boolean transitive,
+            boolean clusterByOrganisation, int maxDepth) {
+        return new GraphReduction(dropEvicted, transitive,
+                clusterByOrganisation, Math.max(0, maxDepth), 0, 0);
+    }
+
+    public boolean isAutomatic() {
+        return maxNodes > 0;
+    }
+
+    public boolean isDropEvicted() {
+        return dropEvicted;
+    }
+
+    public boolean isTransitive() {
+        return transitive;
+    }
+
+    public boolean isClusterByOrganisation() {
+        return clusterByOrganisation;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    public int getMaxEdges() {
+        return maxEdges;
+    }
+
+    /**
+     * @return the graph of the report, reduced
+     */
+    public DotGraph apply(ResolveReport report, String resolveId) {
+        if (isAutomatic()) {
+            DotGraph full = report.toDotGraph(resolveId);
+            if (fits(full.getNodes().size(), full.getEdges().size())) {
+                return full;
+            }
+            return reduceToSize(Work.of(report, resolveId));
+        }
+        if (!dropEvicted && !transitive && !clusterByOrganisation
+                && maxDepth == 0) {
+            return report.toDotGraph(resolveId);
+        }
+        Work work = Work.of(report, resolveId);
+        List<String> applied = new ArrayList<String>();
+        if (dropEvicted) {
+            work = dropEvicted(work, applied);
+        }
+        if (maxDepth > 0) {
+            work = limitDepth(work, maxDepth, applied);
+        }
+        if (clusterByOrganisation) {
+            work = cluster(work, applied);
+        }
+        if (transitive) {
+            work = reduceTransitively(work, applied);
+        }
+        return work.toDotGraph(applied);
+    }
+
+    private DotGraph reduceToSize(Work work) {
+        List<String> applied = new ArrayList<String>();
+        work = dropEvicted(work, applied);
+        if (!fits(work)) {
+            work = reduceTransitively(work, applied);
+        }
+        if (!fits(work)) {
+            work = cluster(work, applied);
+        }
+        if (!fits(work)) {
+            work = reduceTransitively(work, applied);
+        }
+        if (work.nodes.size() > maxNodes) {
+            work = limitNodes(work, maxNodes, applied);
+            if (!fits(work)) {
+                work = reduceTransitively(work, applied);
+            }
+        }
+        if (work.from.size() > maxEdges) {
+            work = limitEdges(work, maxEdges, applied);
+        }
+        return work.toDotGraph(applied);
+    }
+
+    private boolean fits(Work work) {
+        return fits(work.nodes.size(), work.from.size());
+    }
+
+    private boolean fits(int nodes, int edges) {
+        return nodes <= maxNodes && edges <= maxEdges;
+    }
+
+    @Override
+    public String toString() {
+        if (isAutomatic()) {
+            return "automatic(" + maxNodes + "," + maxEdges + ")";
+        }
+        return "reduction(" + dropEvicted + "," + transitive + ","
+                + clusterByOrganisation + "," + maxDepth + ")";
+    }
+
+    private static Work dropEvicted(Work work, List<String> applied) {
+        boolean[] kept = new boolean[work.nodes.size()];
+        boolean dropped = false;
+        for (int i = 0; i < kept.length; i++) {
+            kept[i] = !work.nodes.get(i).evicted;
+            dropped |= !kept[i];
+        }
+        Work result = work.keep(kept);
+        for (Node node : result.nodes) {
+            node.label = node.liveLabel;
+        }
+        if (dropped) {
+            applied.add("evicted modules dropped");
+        }
+        return result;
+    }
+
+    private static Work limitDepth(Work work, int maxDepth,
+            List<String> applied) {
+        int[] depths = work.depths();
+        boolean[] kept = new boolean[depths.length];
+        boolean dropped = false;
+        for (int i = 0; i < kept.length; i++) {
+            kept[i] = depths[i] >= 0 && depths[i] <= maxDepth;
+            dropped |= !kept[i];
+        }
+        if (!dropped) {
+            return work;
+        }
+        applied.add("depth limited to " + maxDepth);
+        return work.truncate(kept);
+    }
+
+    /**
+     * Keeps the nodes closest to the root, in breadth first order.
+     */
+    private static Work limitNodes(Work work, int maxNodes,
+            List<String> applied) {
+        int[] order = work.breadthFirstOrder();
+        boolean[] kept = new boolean[work.nodes.size()];
+        for (int i = 0; i < order.length && i < maxNodes; i++) {
+            kept[order[i]] = true;
+        }
+        applied.add("limited to the " + maxNodes
+                + " modules closest to the root");
+        return work.truncate(kept);
+    }
+
+    /**
+     * Keeps the edges through which the nodes were first reached from the
+     * root, then the other ones in order.
+     */
+    private static Work limitEdges(Work work, int maxEdges,
+            List<String> applied) {
+        boolean[] reached = new boolean[work.nodes.size()];
+        boolean[] keptEdges = new boolean[work.from.size()];
+        int kept = 0;
+        for (int node : work.breadthFirstOrder()) {
+            reached[node] = true;
+            for (int e : work.outgoing()[node]) {
+                int to = work.to.get(e);
+                if (!reached[to] && kept < maxEdges) {
+                    reached[to] = true;
+                    keptEdges[e] = true;
+                    kept++;
+                }
+            }
+        }
+        for (int e = 0; e < keptEdges.length && kept < maxEdges; e++) {
+            if (!keptEdges[e]) {
+                keptEdges[e] = true;
+                kept++;
+            }
+        }
+        applied.add("limited to " + maxEdges + " edges");
+        return work.keepEdges(keptEdges);
+    }
+
+    private static Work cluster(Work work, List<String> applied) {
+        Map<String, List<Integer>> groups = new LinkedHashMap<String, List<Integer>>();
+        for (int i = 1; i < work.nodes.size(); i++) {
+            String organisation = work.nodes.get(i).organisation;
+            List<Integer> group = groups.get(organisation);
+            if (group == null) {
+                group = new ArrayList<Integer>();
+                groups.put(organisation, group);
+            }
+            group.add(i);
+        }
+        if (groups.size() == work.nodes.size() - 1) {
+            return work;
+        }
+        Work result = new Work();
+        int[] map = new int[work.nodes.size()];
+        map[0] = result.add(work.nodes.get(0).copy());
+        for (Map.Entry<String, List<Integer>> group : groups.entrySet()) {
+            List<Integer> members = group.getValue();
+            Node node;
+            if (members.size() == 1) {
+                node = work.nodes.get(members.get(0)).copy();
+            } else {
+                node = new Node("org:" + group.getKey(), group.getKey());
+                node.label = group.getKey() + "\\n(" + members.size()
+                        + " modules)";
+                node.liveLabel = node.label;
+                for (int member : members) {
+                    node.truncated |= work.nodes.get(member).truncated;
+                }
+            }
+            int index = result.add(node);
+            for (int member : members) {
+                map[member] = index;
+            }
+        }
+        for (int e = 0; e < work.from.size(); e++) {
+            int from = map[work.from.get(e)];
+            int to = map[work.to.get(e)];
+            if (from != to) {
+                // the revision asked for is meaningless for a group
+                result.addEdge(from, to, result.nodes.get(to).url == null
+                        ? null : work.edgeLabels.get(e));
+            }
+        }
+        applied.add("modules grouped by organisation");
+        return result;
+    }
+
+    /**
+     * Removes the edges from u to v when v can be reached from another
+     * successor of u. Edges within cycles are kept.
+     */
+    private static Work reduceTransitively(Work work, List<String> applied) {
+        int n = work.nodes.size();
+        if (n > TRANSITIVE_LIMIT) {
+            return work;
+        }
+        int[][] outgoing = work.outgoing();
+        int[] component = new StronglyConnectedComponents(work, outgoing)
+                .compute();
+        int components = 0;
+        for (int c : component) {
+            components = Math.max(components, c + 1);
+        }
+        // components are numbered in reverse topological order
+        List<List<Integer>> members = new ArrayList<List<Integer>>();
+        for (int c = 0; c < components; c++) {
+            members.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < n; i++) {
+            members.get(component[i]).add(i);
+        }
+        BitSet[] reach = new BitSet[components];
+        for (int c = 0; c < components; c++) {
+            reach[c] = new BitSet(components);
+            for (int node : members.get(c)) {
+                for (int e : outgoing[node]) {
+                    int d = component[work.to.get(e)];
+                    if (d != c) {
+                        reach[c].set(d);
+                        reach[c].or(reach[d]);
+                    }
+                }
+            }
+        }
+        boolean[] kept = new boolean[work.from.size()];
+        Arrays.fill(kept, true);
+        boolean removed = false;
+        BitSet implied = new BitSet(components);
+        for (int u = 0; u < n; u++) {
+            int cu = component[u];
+            implied.clear();
+            for (int e : outgoing[u]) {
+                int cx = component[work.to.get(e)];
+                if (cx != cu) {
+                    implied.or(reach[cx]);
+                }
+            }
+            for (int e : outgoing[u]) {
+                int cv = component[work.to.get(e)];
+                if (cv != cu && implied.get(cv)) {
+                    kept[e] = false;
+                    removed = true;
+                }
+            }
+        }
+        if (!removed) {
+            return work;
+        }
+        if (!applied.contains(TRANSITIVE)) {
+            applied.add(TRANSITIVE);
+        }
+        return work.keepEdges(kept);
+    }
+
+    /**
+     * Iterative Tarjan algorithm, which completes the components in reverse
+     * topological order.
+     */
+    private static final class StronglyConnectedComponents {
+        private final int[][] outgoing;
+        private final Work work;
+        private final int[] index;
+        private final int[] low;
+        private final int[] component;
+        private final boolean[] onStack;
+        private final int[] stack;
+        private int stackSize;
+        private int next;
+        private int components;
+
+        StronglyConnectedComponents(Work work, int[][] outgoing) {
+            int n = work.nodes.size();
+            this.work = work;
+            this.outgoing = outgoing;
+            index = new int[n];
+            low = new int[n];
+            component = new int[n];
+            onStack = new boolean[n];
+            stack = new int[n];
+            Arrays.fill(index, -1);
+        }
+
+        int[] compute() {
+            int n = index.length;
+            int[] callStack = new int[n];
+            int[] edgePosition = new int[n];
+            for (int start = 0; start < n; start++) {
+                if (index[start] >= 0) {
+                    continue;
+                }
+                int depth = 0;
+                callStack[0] = start;
+                visit(start);
+                edgePosition[start] = 0;
+                while (depth >= 0) {
+                    int v = callStack[depth];
+                    if (edgePosition[v] < outgoing[v].length) {
+                        int w = work.to.get(outgoing[v][edgePosition[v]++]);
+                        if (index[w] < 0) {
+                            visit(w);
+                            edgePosition[w] = 0;
+                            callStack[++depth] = w;
+                        } else if (onStack[w]) {
+                            low[v] = Math.min(low[v], index[w]);
+                        }
+                    } else {
+                        if (low[v] == index[v]) {
+                            int w;
+                            do {
+                                w = stack[--stackSize];
+                                onStack[w] = false;
+                                component[w] = components;
+                            } while (w != v);
+                            components++;
+                        }
+                        depth--;
+                        if (depth >= 0) {
+                            int parent = callStack[depth];
+                            low[parent] = Math.min(low[parent], low[v]);
+                        }
+                    }
+                }
+            }
+            return component;
+        }
+
+        private void visit(int v) {
+            index[v] = next;
+            low[v] = next;
+            next++;
+            stack[stackSize++] = v;
+            onStack[v] = true;
+        }
+    }
+
+    private static final class Node {
+        final String id;
+        final String organisation;
+        String label;
+        /**
+         * The label without the evicted revisions.
+         */
+        String liveLabel;
+        String url;
+        boolean evicted;
+        /**
+         * Whether some successors of the node were dropped.
+         */
+        boolean truncated;
+
+        Node(String id, String organisation) {
+            this.id = id;
+            this.organisation = organisation;
+        }
+
+        Node copy() {
+            Node node = new Node(id, organisation);
+            node.label = label;
+            node.liveLabel = liveLabel;
+            node.url = url;
+            node.evicted = evicted;
+            node.truncated = truncated;
+            return node;
+        }
+    }
+
+    /**
+     * The graph being reduced; node 0 is the resolved module and edges are
+     * unique.
+     */
+    private static final class Work {
+        final List<Node> nodes = new ArrayList<Node>();
+        final Map<String, Integer> ids = new HashMap<String, Integer>();
+        final IntList from = new IntList();
+        final IntList to = new IntList();
+        final List<String> edgeLabels = new ArrayList<String>();
+        private final Set<Long> edges = new HashSet<Long>();
+        private int[][] outgoing;
+
+        /**
+         * Same nodes and edges as {@link ResolveReport#toDotGraph(String)}.
+         */
+        static Work of(ResolveReport report, String resolveId) {
+            Work work = new Work();
+            Node root = new Node(report.organisation + "-" + report.module,
+                    report.organisation);
+            root.label = report.module;
+            root.liveLabel = report.module;
+            work.add(root);
+            int[] nodes = new int[report.getModuleCount()];
+            for (int m = 0; m < nodes.length; m++) {
+                String id = report.moduleOrganisation[m] + "-"
+                        + report.moduleName[m];
+                Node node = new Node(id, report.moduleOrganisation[m]);
+                StringBuilder label = new StringBuilder(report.moduleName[m]);
+                StringBuilder liveLabel = new StringBuilder(
+                        report.moduleName[m]);
+                node.evicted = true;
+                for (int r = report.getRevisionStart(m); r < report
+                        .getRevisionEnd(m); r++) {
+                    String revision = "\\n" + report.revisionName[r]
+                            + (report.hasError(r) ? " (error)" : "");
+                    label.append(revision);
+                    if (report.isEvicted(r)) {
+                        label.append(" (evicted)");
+                    } else {
+                        liveLabel.append(revision);
+                        node.evicted = false;
+                    }
+                }
+                node.label = label.toString();
+                node.liveLabel = liveLabel.toString();
+                node.url = resolveId + "-" + report.conf + ".html#" + id;
+                nodes[m] = work.add(node);
+            }
+            for (int c = 0; c < report.callerModule.length; c++) {
+                int r = report.callerRevision[c];
+                if (report.isEvicted(r)) {
+                    continue;
+                }
+                int from;
+                switch (report.callerModule[c]) {
+                case ResolveReport.ROOT:
+                    from = 0;
+                    break;
+                case ResolveReport.UNKNOWN:
+                    String id = report.callerOrganisation[c] + "-"
+                            + report.callerName[c];
+                    Integer known = work.ids.get(id);
+                    if (known == null) {
+                        Node node = new Node(id, report.callerOrganisation[c]);
+                        node.label = id;
+                        node.liveLabel = id;
+                        known = work.add(node);
+                    }
+                    from = known;
+                    break;
+                default:
+                    from = nodes[report.callerModule[c]];
+                }
+                String rev = report.callerRev[c];
+                work.addEdge(from, nodes[report.revisionModule[r]],
+                        rev != null && !rev.equals(report.revisionName[r])
+                                ? rev : null);
+            }
+            return work;
+        }
+
+        /**
+         * @return the index of the node, or of the node with the same id
+         *         already there
+         */
+        int add(Node node) {
+            Integer known = ids.get(node.id);
+            if (known != null) {
+                return known;
+            }
+            nodes.add(node);
+            ids.put(node.id, nodes.size() - 1);
+            outgoing = null;
+            return nodes.size() - 1;
+        }
+
+        void addEdge(int f, int t, String label) {
+            if (edges.add(((long) f << 32) | t)) {
+                from.add(f);
+                to.add(t);
+                edgeLabels.add(label);
+                outgoing = null;
+            }
+        }
+
+        /**
+         * @return the edges leaving each node
+         */
+        int[][] outgoing() {
+            if (outgoing == null) {
+                int[] counts = new int[nodes.size()];
+                for (int e = 0; e < from.size(); e++) {
+                    counts[from.get(e)]++;
+                }
+                outgoing = new int[nodes.size()][];
+                for (int i = 0; i < counts.length; i++) {
+                    outgoing[i] = new int[counts[i]];
+                    counts[i] = 0;
+                }
+                for (int e = 0; e < from.size(); e++) {
+                    int f = from.get(e);
+                    outgoing[f][counts[f]++] = e;
+                }
+            }
+            return outgoing;
+        }
+
+        /**
+         * @return the nodes reachable from the root, in breadth first order
+         */
+        int[] breadthFirstOrder() {
+            int[][] out = outgoing();
+            boolean[] seen = new boolean[nodes.size()];
+            IntList order = new IntList(nodes.size());
+            order.add(0);
+            seen[0] = true;
+            for (int i = 0; i < order.size(); i++) {
+                for (int e : out[order.get(i)]) {
+                    int t = to.get(e);
+                    if (!seen[t]) {
+                        seen[t] = true;
+                        order.add(t);
+                    }
+                }
+            }
+            return order.toArray();
+        }
+
+        /**
+         * @return the distance of each node from the root, -1 if it cannot
+         *         be reached
+         */
+        int[] depths() {
+            int[][] out = outgoing();
+            int[] depths = new int[nodes.size()];
+            Arrays.fill(depths, -1);
+            depths[0] = 0;
+            for (int node : breadthFirstOrder()) {
+                for (int e : out[node]) {
+                    int t = to.get(e);
+                    if (depths[t] < 0) {
+                        depths[t] = depths[node] + 1;
+                    }
+                }
+            }
+            return depths;
+        }
+
+        Work keep(boolean[] kept) {
+            Work result = new Work();
+            int[] map = new int[nodes.size()];
+            for (int i = 0; i < map.length; i++) {
+                map[i] = kept[i] || i == 0 ? result.add(nodes.get(i).copy())
+                        : -1;
+            }
+            for (int e = 0; e < from.size(); e++) {
+                int f = map[from.get(e)];
+                int t = map[to.get(e)];
+                if (f >= 0 && t >= 0) {
+                    result.addEdge(f, t, edgeLabels.get(e));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Keeps the given nodes, marking the ones which lost successors.
+         */
+        Work truncate(boolean[] kept) {
+            Work result = keep(kept);
+            int[] map = new int[nodes.size()];
+            for (int i = 0, j = 0; i < map.length; i++) {
+                map[i] = kept[i] || i == 0 ? j++ : -1;
+            }
+            for (int e = 0; e < from.size(); e++) {
+                int f = map[from.get(e)];
+                if (f >= 0 && map[to.get(e)] < 0) {
+                    result.nodes.get(f).truncated = true;
+                }
+            }
+            return result;
+        }
+
+        Work keepEdges(boolean[] kept) {
+            Work result = new Work();
+            for (Node node : nodes) {
+                result.add(node.copy());
+            }
+            for (int e = 0; e < from.size(); e++) {
+                if (kept[e]) {
+                    result.addEdge(from.get(e), to.get(e), edgeLabels.get(e));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @param applied
+         *            the reductions applied, noted in the graph
+         */
+        DotGraph toDotGraph(List<String> applied) {
+            DotGraph graph = new DotGraph();
+            DotGraph.Node[] result = new DotGraph.Node[nodes.size()];
+            for (int i = 0; i < result.length; i++) {
+                Node node = nodes.get(i);
+                result[i] = graph.addNode(node.id);
+                result[i].setAttribute("label", node.label);
+                if (node.url != null) {
+                    result[i].setAttribute("URL", node.url);
+                    result[i].setAttribute("target", "_graphviz");
+                }
+                if (node.truncated) {
+                    result[i].setAttribute("style", "dashed");
+                }
+            }
+            for (int e = 0; e < from.size(); e++) {
+                DotGraph.Edge edge = graph.addEdge(result[from.get(e)],
+                        result[to.get(e)]);
+                if (edgeLabels.get(e) != null) {
+                    edge.setAttribute("label", edgeLabels.get(e));
+                }
+            }
+            if (!applied.isEmpty()) {
+                StringBuilder note = new StringBuilder("Reduced graph:");
+                for (String reduction : applied) {
+                    note.append("\\n").append(reduction);
+                }
+                note.append("\\nsee the html report for all the dependencies");
+                DotGraph.Node node = graph.addNode("graph-reduction");
+                node.setAttribute("label", note.toString());
+                node.setAttribute("shape", "note");
+            }
+            return graph;
+        }
+    }
+}
@@ -0,0 +1,500 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the html page of a resolve report, with the same content as the
+ * <tt>ivy-report.xsl</tt> stylesheet of ivy.
+ * <p>
+ * Unlike the stylesheet, the output stays linear in the size of the report:
+ * the dependencies of a revision are looked up in the caller index of the
+ * {@link ResolveReport} instead of being searched among all the callers, the
+ * dependency overview expands every module only once (the stylesheet expanded
+ * every path, which is exponential on dense graphs) and the details of a
+ * revision only list its direct dependencies, each linking to its own
+ * details.
+ */
+public final class HtmlReportWriter {
+    private static final String IMAGES = "http://ant.apache.org/ivy/images/";
+
+    private final Writer out;
+    private final String resolveId;
+    private final String confs;
+    private final String extension;
+    private ResolveReport report;
+    private boolean[] expanded;
+
+    /**
+     * @param resolveId
+     *            prefix of the svg graph file
+     * @param confs
+     *            comma separated configurations linked from the menu, or
+     *            <tt>null</tt> for the configurations of the report
+     * @param extension
+     *            extension of the linked configuration pages
+     */
+    public HtmlReportWriter(Writer out, String resolveId, String confs,
+            String extension) {
+        this.out = out;
+        this.resolveId = resolveId;
+        this.confs = confs;
+        this.extension = extension;
+    }
+
+    public void write(ResolveReport report) throws IOException {
+        this.report = report;
+        String organisation = report.getOrganisation();
+        String module = report.getModule();
+        out.write("<html>\n<head>\n");
+        out.write("<title>Ivy report :: " + escape(module) + " by "
+                + escape(organisation) + " :: " + escape(report.getConf())
+                + "</title>\n");
+        out.write("<meta http-equiv=\"content-type\" content=\"text/html; charset=UTF-8\" />\n");
+        out.write("<meta http-equiv=\"content-language\" content=\"en\" />\n");
+        out.write("<meta name=\"robots\" content=\"index,follow\" />\n");
+        out.write("<link rel=\"stylesheet\" type=\"text/css\" href=\"ivy-report.css\" />\n");
+        out.write("</head>\n<body>\n");
+        out.write("<div id=\"logo\"><a href=\"http://ant.apache.org/ivy/\"><img src=\""
+                + IMAGES + "logo.png\"/></a></div>\n");
+        out.write("<h1><a name=\"" + escape(organisation + "-" + module)
+                + "\"></a><span id=\"module\">"
+                + escape(module + " " + report.getRevision())
+                + "</span> by <span id=\"organisation\">"
+                + escape(organisation) + "</span></h1>\n");
+        out.write("<div id=\"date\">resolved on "
+                + escape(formatDate(report.getDate())) + "</div>\n");
+        writeConfs();
+        out.write("<div id=\"content\">\n");
+
+        out.write("<h2>Dependency graph</h2>\n");
+        out.write("<p><object data=\""
+                + escape(resolveId + "-" + report.getConf() + ".svg")
+                + "\" type=\"image/svg+xml\"></object></p>\n");
+
+        ReportStatistics stats = new ReportStatistics(report);
+        writeStats(stats);
+        if (stats.getErrors() > 0) {
+            writeErrors();
+        }
+        if (stats.getConflicts() > 0) {
+            writeConflicts();
+        }
+
+        out.write("<h2>Dependencies Overview</h2>\n");
+        expanded = new boolean[report.getModuleCount()];
+        writeCalling(ResolveReport.ROOT, report.getRevision(), true);
+
+        out.write("<h2>Details</h2>\n");
+        for (int m = 0; m < report.getModuleCount(); m++) {
+            writeModule(m);
+        }
+        out.write("</div>\n</body>\n</html>\n");
+        out.flush();
+    }
+
+    private void writeConfs() throws IOException {
+        String configurations = confs != null ? confs : report.getConfs();
+        out.write("<ul id=\"confmenu\">\n");
+        if (configurations != null) {
+            for (String conf : configurations.split(",")) {
+                conf = conf.trim();
+                out.write("<li><a");
+                if (conf.equals(report.getConf())) {
+                    out.write(" class=\"active\"");
+                }
+                out.write(" href=\""
+                        + escape(report.getOrganisation() + "-"
+                                + report.getModule() + "-" + conf + "."
+                                + extension) + "\">" + escape(conf)
+                        + "</a></li>\n");
+            }
+        }
+        out.write("</ul>\n");
+    }
+
+    private void writeStats(ReportStatistics stats) throws IOException {
+        out.write("<h2>Dependencies Stats</h2>\n");
+        out.write("<table class=\"header\">\n");
+        out.write("<tr><td class=\"title\">Modules</td><td class=\"value\">"
+                + stats.getModules() + "</td></tr>\n");
+        out.write("<tr><td class=\"title\">Revisions</td><td class=\"value\">"
+                + stats.getRevisions() + " (" + stats.getSearched()
+                + " searched " + icon("searched", "module revisions which required a search with a dependency resolver to be resolved")
+                + ", " + stats.getDownloaded() + " downloaded "
+                + icon("downloaded", "module revisions for which ivy file was downloaded by dependency resolver")
+                + ", " + stats.getEvicted() + " evicted "
+                + icon("evicted", "module revisions which were evicted by others")
+                + ", " + stats.getErrors() + " errors "
+                + icon("error", "module revisions on which error occured")
+                + ")</td></tr>\n");
+        out.write("<tr><td class=\"title\">Artifacts</td><td class=\"value\">"
+                + stats.getArtifacts() + " (" + stats.getDownloadedArtifacts()
+                + " downloaded, " + stats.getFailedArtifacts()
+                + " failed)</td></tr>\n");
+        out.write("<tr><td class=\"title\">Artifacts size</td><td class=\"value\">"
+                + kB(stats.getArtifactsSize()) + " ("
+                + kB(stats.getDownloadedSize()) + " downloaded, "
+                + kB(stats.getCachedSize()) + " in cache)</td></tr>\n");
+        out.write("</table>\n");
+    }
+
+    private void writeErrors() throws IOException {
+        out.write("<h2>Errors</h2>\n");
+        out.write("<table class=\"errors\">\n<thead><tr><th>Module</th><th>Revision</th><th>Error</th></tr></thead>\n<tbody>\n");
+        for (int r = 0; r < report.getRevisionCount(); r++) {
+            if (report.hasError(r)) {
+                int m = report.getRevisionModule(r);
+                out.write("<tr><td>" + moduleLink(m, "") + "</td><td>"
+                        + revisionLink(r, report.getRevisionName(r))
+                        + "</td><td>" + escape(report.getError(r))
+                        + "</td></tr>\n");
+            }
+        }
+        out.write("</tbody>\n</table>\n");
+    }
+
+    private void writeConflicts() throws IOException {
+        out.write("<h2>Conflicts</h2>\n");
+        out.write("<table class=\"conflicts\">\n<thead><tr><th>Module</th><th>Selected</th><th>Evicted</th></tr></thead>\n<tbody>\n");
+        for (int m = 0; m < report.getModuleCount(); m++) {
+            int start = report.getRevisionStart(m);
+            int end = report.getRevisionEnd(m);
+            if (end - start < 2) {
+                continue;
+            }
+            out.write("<tr><td>" + moduleLink(m, "") + "</td><td>");
+            for (int r = start; r < end; r++) {
+                if (!report.isEvicted(r)) {
+                    out.write(revisionLink(r, report.getRevisionName(r)) + " ");
+                }
+            }
+            out.write("</td><td>");
+            for (int r = start; r < end; r++) {
+                if (report.isEvicted(r)) {
+                    out.write(revisionLink(r, report.getRevisionName(r) + " "
+                            + text(report.getEvictedReason(r)))
+                            + " ");
+                }
+            }
+            out.write("</td></tr>\n");
+        }
+        out.write("</tbody>\n</table>\n");
+    }
+
+    /**
+     * Writes the dependencies of a revision of a module, or of the resolved
+     * module.
+     * 
+     * @param transitive
+     *            whether to write the whole dependency tree
+     */
+    private void writeCalling(int module, String revision, boolean transitive)
+            throws IOException {
+        int[] callers = getDependencies(module, revision);
+        if (callers.length == 0) {
+            out.write("<table><tr><td>No dependency</td></tr></table>\n");
+            return;
+        }
+        out.write("<table class=\"deps\">\n<thead><tr><th>Module</th><th>Revision</th><th>Status</th><th>Resolver</th><th>Default</th><th>Licenses</th><th>Size</th><th></th></tr></thead>\n<tbody>\n");
+        for (int caller : callers) {
+            writeCalled(report.getCallerRevision(caller), "", transitive);
+        }
+        out.write("</tbody>\n</table>\n");
+    }
+
+    /**
+     * Writes a row of the dependency tree, followed by the rows of the
+     * dependencies of the revision if the tree is transitive and the module
+     * was not expanded yet.
+     */
+    private void writeCalled(int revision, String indent, boolean transitive)
+            throws IOException {
+        int module = report.getRevisionModule(revision);
+        out.write("<tr><td>" + moduleLink(module, indent + " ") + "</td>");
+        out.write("<td>" + revisionLink(revision, report.getRevisionName(revision)) + "</td>");
+        out.write("<td align=\"center\">"
+                + escape(report.getRevisionStatus(revision)) + "</td>");
+        out.write("<td align=\"center\">"
+                + escape(report.getRevisionResolver(revision)) + "</td>");
+        out.write("<td align=\"center\">" + report.isDefault(revision)
+                + "</td>");
+        out.write("<td align=\"center\">" + licenses(revision) + "</td>");
+        out.write("<td align=\"center\">" + kB(getArtifactsSize(revision, null))
+                + "</td>");
+        out.write("<td align=\"center\">" + icons(revision) + "</td></tr>\n");
+        if (!transitive || report.isEvicted(revision) || expanded[module]) {
+            return;
+        }
+        expanded[module] = true;
+        for (int caller : getDependencies(module,
+                report.getRevisionName(revision))) {
+            writeCalled(report.getCallerRevision(caller), indent + "---", true);
+        }
+    }
+
+    private int[] getDependencies(int module, String revision) {
+        int[] callers = report.getDependencies(module);
+        int count = 0;
+        for (int caller : callers) {
+            if (equal(revision, report.getCallerCallerRev(caller))) {
+                callers[count++] = caller;
+            }
+        }
+        int[] result = new int[count];
+        System.arraycopy(callers, 0, result, 0, count);
+        return result;
+    }
+
+    private void writeModule(int module) throws IOException {
+        out.write("<h3><a name=\"" + escape(anchor(module)) + "\"></a>"
+                + escape(report.getModuleName(module)) + " by "
+                + escape(report.getModuleOrganisation(module)) + "</h3>\n");
+        for (int r = report.getRevisionStart(module); r < report
+                .getRevisionEnd(module); r++) {
+            writeRevision(r);
+        }
+    }
+
+    private void writeRevision(int revision) throws IOException {
+        int module = report.getRevisionModule(revision);
+        String name = report.getRevisionName(revision);
+        out.write("<h4><a name=\"" + escape(anchor(module) + "-" + text(name))
+                + "\"></a> Revision: " + escape(name)
+                + " <span style=\"padding-left:15px;\">" + icons(revision)
+                + "</span></h4>\n");
+        out.write("<table class=\"header\">\n");
+        String homepage = report.getRevisionHomepage(revision);
+        if (homepage != null) {
+            out.write("<tr><td class=\"title\">Home Page</td><td class=\"value\"><a href=\""
+                    + escape(homepage) + "\">" + escape(homepage)
+                    + "</a></td></tr>\n");
+        }
+        writeHeader("Status", report.getRevisionStatus(revision));
+        writeHeader("Publication", report.getRevisionPubdate(revision));
+        writeHeader("Resolver", report.getRevisionResolver(revision));
+        writeHeader("Configurations", report.getRevisionConf(revision));
+        out.write("<tr><td class=\"title\">Artifacts size</td><td class=\"value\">"
+                + kB(getArtifactsSize(revision, null)) + " ("
+                + kB(getArtifactsSize(revision, "successful"))
+                + " downloaded, " + kB(getArtifactsSize(revision, "no"))
+                + " in cache)</td></tr>\n");
+        if (report.getLicenseEnd(revision) > report.getLicenseStart(revision)) {
+            out.write("<tr><td class=\"title\">Licenses</td><td class=\"value\">"
+                    + licenses(revision) + "</td></tr>\n");
+        }
+        if (report.isEvicted(revision)) {
+            out.write("<tr><td class=\"title\">Evicted by</td><td class=\"value\"><b>"
+                    + escape(evictedBy(revision)) + "</b> <b>"
+                    + escape(report.getEvictedReason(revision))
+                    + "</b> in <b>"
+                    + escape(report.getEvictingConflictManager(revision))
+                    + "</b> conflict manager</td></tr>\n");
+        }
+        out.write("</table>\n");
+
+        out.write("<h5>Required by</h5>\n");
+        out.write("<table>\n<thead><tr><th>Organisation</th><th>Name</th><th>Revision</th><th>In Configurations</th><th>Asked Revision</th></tr></thead>\n<tbody>\n");
+        for (int c = report.getCallerStart(revision); c < report
+                .getCallerEnd(revision); c++) {
+            String organisation = text(report.getCallerOrganisation(c));
+            String callerName = text(report.getCallerName(c));
+            out.write("<tr><td>" + escape(organisation) + "</td><td><a href=\"#"
+                    + escape(organisation + "-" + callerName) + "\">"
+                    + escape(callerName) + "</a></td><td>"
+                    + escape(report.getCallerCallerRev(c)) + "</td><td>"
+                    + escape(report.getCallerConf(c)) + "</td><td>"
+                    + escape(report.getCallerRev(c)) + "</td></tr>\n");
+        }
+        out.write("</tbody>\n</table>\n");
+
+        if (report.isEvicted(revision)) {
+            return;
+        }
+        out.write("<h5>Dependencies</h5>\n");
+        writeCalling(module, name, false);
+        out.write("<h5>Artifacts</h5>\n");
+        int start = report.getArtifactStart(revision);
+        int end = report.getArtifactEnd(revision);
+        if (start == end) {
+            out.write("<table><tr><td>No artifact</td></tr></table>\n");
+            return;
+        }
+        out.write("<table>\n<thead><tr><th>Name</th><th>Type</th><th>Ext</th><th>Download</th><th>Size</th></tr></thead>\n<tbody>\n");
+        for (int a = start; a < end; a++) {
+            out.write("<tr><td>" + escape(report.getArtifactName(a))
+                    + "</td><td>" + escape(report.getArtifactType(a))
+                    + "</td><td>" + escape(report.getArtifactExt(a))
+                    + "</td><td align=\"center\">"
+                    + escape(report.getArtifactStatus(a))
+                    + "</td><td align=\"center\">"
+                    + kB(report.getArtifactSize(a)) + "</td></tr>\n");
+        }
+        out.write("</tbody>\n</table>\n");
+    }
+
+    private void writeHeader(String title, String value) throws IOException {
+        out.write("<tr><td class=\"title\">" + title
+                + "</td><td class=\"value\">" + escape(value)
+                + "</td></tr>\n");
+    }
+
+    private String moduleLink(int module, String prefix) {
+        return "<a href=\"#" + escape(anchor(module)) + "\">"
+                + escape(prefix + report.getModuleName(module) + " by "
+                        + report.getModuleOrganisation(module)) + "</a>";
+    }
+
+    private String revisionLink(int revision, String text) {
+        return "<a href=\"#"
+                + escape(anchor(report.getRevisionModule(revision)) + "-"
+                        + text(report.getRevisionName(revision))) + "\">"
+                + escape(text) + "</a>";
+    }
+
+    private String anchor(int module) {
+        return report.getModuleOrganisation(module) + "-"
+                + report.getModuleName(module);
+    }
+
+    private String licenses(int revision) {
+        StringBuilder sb = new StringBuilder();
+        for (int l = report.getLicenseStart(revision); l < report
+                .getLicenseEnd(revision); l++) {
+            String name = escape(report.getLicenseName(l));
+            String url = report.getLicenseUrl(l);
+            sb.append("<span style=\"padding-right:3px;\">");
+            if (url != null) {
+                sb.append("<a href=\"").append(escape(url)).append("\">")
+                        .append(name).append("</a>");
+            } else {
+                sb.append(name);
+            }
+            sb.append("</span>");
+        }
+        return sb.toString();
+    }
+
+    private String icons(int revision) {
+        StringBuilder sb = new StringBuilder();
+        if (report.isSearched(revision)) {
+            sb.append(icon("searched", "required a search in repository"));
+        }
+        if (report.isDownloaded(revision)) {
+            sb.append(icon("downloaded", "downloaded from repository"));
+        }
+        if (report.isEvicted(revision)) {
+            sb.append(icon("evicted", "evicted by " + evictedBy(revision)));
+        }
+        if (report.hasError(revision)) {
+            sb.append(icon("error", "error: " + report.getError(revision)));
+        }
+        return sb.toString();
+    }
+
+    private static String icon(String name, String title) {
+        return "<img src=\"" + IMAGES + name + ".gif\" alt=\"" + name
+                + "\" title=\"" + escape(title) + "\"/>";
+    }
+
+    private String evictedBy(int revision) {
+        StringBuilder sb = new StringBuilder();
+        for (int e = report.getEvictedByStart(revision); e < report
+                .getEvictedByEnd(revision); e++) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(text(report.getEvictedBy(e)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param status
+     *            status of the artifacts to count, <tt>null</tt> for all
+     */
+    private long getArtifactsSize(int revision, String status) {
+        long size = 0;
+        for (int a = report.getArtifactStart(revision); a < report
+                .getArtifactEnd(revision); a++) {
+            if (status == null || status.equals(report.getArtifactStatus(a))) {
+                size += report.getArtifactSize(a);
+            }
+        }
+        return size;
+    }
+
+    private static String kB(long bytes) {
+        return Math.round(bytes / 1024.0) + " kB";
+    }
+
+    /**
+     * Formats a <tt>yyyyMMddHHmmss</tt> date as <tt>yyyy-MM-dd HH:mm:ss</tt>.
+     */
+    static String formatDate(String date) {
+        if (date == null || date.length() < 14) {
+            return text(date);
+        }
+        return date.substring(0, 4) + "-" + date.substring(4, 6) + "-"
+                + date.substring(6, 8) + " " + date.substring(8, 10) + ":"
+                + date.substring(10, 12) + ":" + date.substring(12);
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static String text(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String escape(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '<':
+                sb.append("&lt;");
+                break;
+            case '>':
+                sb.append("&gt;");
+                break;
+            case '&':
+                sb.append("&amp;");
+                break;
+            case '"':
+                sb.append("&quot;");
+                break;
+            default:
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
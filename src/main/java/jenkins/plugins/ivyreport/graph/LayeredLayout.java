@@ -0,0 +1,628 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Layered (Sugiyama style) layout of a {@link DotGraph}, drawn top-down.
+ * <p>
+ * The classic steps are applied: cycles are broken by reversing DFS back
+ * edges, nodes are assigned to layers by longest path, long edges are split
+ * with dummy nodes, crossings are reduced with barycenter sweeps (keeping the
+ * ordering with the fewest crossings) and x coordinates are refined by
+ * averaging over neighbours. Every step is linear or n.log(n) in the size of
+ * the graph including dummy nodes.
+ */
+public final class LayeredLayout {
+    static final double FONT_SIZE = 11;
+    static final double LINE_HEIGHT = 14;
+    private static final double CHAR_WIDTH = 6.2;
+    private static final double NODE_SEP = 18;
+    private static final double RANK_SEP = 50;
+    private static final double MARGIN = 8;
+    private static final double DUMMY_WIDTH = 8;
+    private static final int ORDERING_SWEEPS = 12;
+    private static final int POSITIONING_SWEEPS = 8;
+
+    /**
+     * A real node, laid out as an ellipse centered on (x, y).
+     */
+    public static final class NodeBox {
+        private final DotGraph.Node node;
+        private final String[] lines;
+        private double x;
+        private double y;
+        private final double width;
+        private final double height;
+
+        NodeBox(DotGraph.Node node) {
+            this.node = node;
+            this.lines = splitLabel(node.getLabel());
+            int longest = 0;
+            for (String line : lines) {
+                longest = Math.max(longest, line.length());
+            }
+            this.width = Math.max(54, longest * CHAR_WIDTH * 1.3 + 16);
+            this.height = Math.max(36, lines.length * LINE_HEIGHT * 1.3 + 10);
+        }
+
+        public DotGraph.Node getNode() {
+            return node;
+        }
+
+        public String[] getLines() {
+            return lines;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public double getWidth() {
+            return width;
+        }
+
+        public double getHeight() {
+            return height;
+        }
+    }
+
+    /**
+     * An edge, drawn as a polyline going from its source to its target.
+     */
+    public static final class EdgePath {
+        private final DotGraph.Edge edge;
+        private final double[] xs;
+        private final double[] ys;
+
+        EdgePath(DotGraph.Edge edge, double[] xs, double[] ys) {
+            this.edge = edge;
+            this.xs = xs;
+            this.ys = ys;
+        }
+
+        public DotGraph.Edge getEdge() {
+            return edge;
+        }
+
+        public double[] getXs() {
+            return xs;
+        }
+
+        public double[] getYs() {
+            return ys;
+        }
+    }
+
+    private final List<NodeBox> nodes;
+    private final List<EdgePath> edges;
+    private final double width;
+    private final double height;
+
+    private LayeredLayout(List<NodeBox> nodes, List<EdgePath> edges,
+            double width, double height) {
+        this.nodes = nodes;
+        this.edges = edges;
+        this.width = width;
+        this.height = height;
+    }
+
+    public List<NodeBox> getNodes() {
+        return nodes;
+    }
+
+    public List<EdgePath> getEdges() {
+        return edges;
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    /**
+     * Splits a dot label on its <tt>\n</tt>, <tt>\l</tt> and <tt>\r</tt> line
+     * breaks.
+     */
+    static String[] splitLabel(String label) {
+        List<String> lines = new ArrayList<String>();
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (c == '\\' && i + 1 < label.length()) {
+                char d = label.charAt(++i);
+                if (d == 'n' || d == 'l' || d == 'r') {
+                    lines.add(line.toString().trim());
+                    line.setLength(0);
+                } else {
+                    line.append(d);
+                }
+            } else {
+                line.append(c);
+            }
+        }
+        if (line.length() > 0 || lines.isEmpty()) {
+            lines.add(line.toString().trim());
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    public static LayeredLayout compute(DotGraph graph) {
+        return new Builder(graph).build();
+    }
+
+    /**
+     * Holds the intermediate state of the layout. Vertices 0 to n-1 are the
+     * real nodes, the following ones are dummy nodes.
+     */
+    private static final class Builder {
+        private final DotGraph graph;
+        private final List<NodeBox> boxes = new ArrayList<NodeBox>();
+        private final int n;
+
+        // edges without self loops, oriented so that the graph is acyclic
+        private final List<DotGraph.Edge> edges = new ArrayList<DotGraph.Edge>();
+        private int[] tail;
+        private int[] head;
+        private boolean[] reversed;
+
+        private int[] layer;
+        private int layerCount;
+
+        // all vertices, including dummies
+        private final IntList vertexLayer = new IntList();
+        private final List<IntList> up = new ArrayList<IntList>();
+        private final List<IntList> down = new ArrayList<IntList>();
+        private int[][] chains;
+
+        private int[][] layers;
+        private int[] position;
+        private double[] x;
+
+        Builder(DotGraph graph) {
+            this.graph = graph;
+            for (DotGraph.Node node : graph.getNodes()) {
+                boxes.add(new NodeBox(node));
+            }
+            this.n = boxes.size();
+        }
+
+        LayeredLayout build() {
+            if (n == 0) {
+                return new LayeredLayout(boxes, new ArrayList<EdgePath>(),
+                        2 * MARGIN, 2 * MARGIN);
+            }
+            breakCycles();
+            assignLayers();
+            insertDummies();
+            orderLayers();
+            assignCoordinates();
+            return createLayout();
+        }
+
+        private void breakCycles() {
+            for (DotGraph.Edge edge : graph.getEdges()) {
+                if (edge.getFrom() != edge.getTo()) {
+                    edges.add(edge);
+                }
+            }
+            int m = edges.size();
+            tail = new int[m];
+            head = new int[m];
+            reversed = new boolean[m];
+            IntList[] out = new IntList[n];
+            for (int v = 0; v < n; v++) {
+                out[v] = new IntList();
+            }
+            for (int e = 0; e < m; e++) {
+                out[edges.get(e).getFrom().getIndex()].add(e);
+            }
+            // iterative DFS, edges to a node on the stack are back edges
+            int[] state = new int[n];
+            int[] stack = new int[n];
+            int[] cursor = new int[n];
+            for (int root = 0; root < n; root++) {
+                if (state[root] != 0) {
+                    continue;
+                }
+                int depth = 0;
+                stack[depth++] = root;
+                state[root] = 1;
+                while (depth > 0) {
+                    int v = stack[depth - 1];
+                    if (cursor[v] < out[v].size()) {
+                        int e = out[v].get(cursor[v]++);
+                        int w = edges.get(e).getTo().getIndex();
+                        if (state[w] == 0) {
+                            state[w] = 1;
+                            stack[depth++] = w;
+                        } else if (state[w] == 1) {
+                            reversed[e] = true;
+                        }
+                    } else {
+                        state[v] = 2;
+                        depth--;
+                    }
+                }
+            }
+            for (int e = 0; e < m; e++) {
+                int from = edges.get(e).getFrom().getIndex();
+                int to = edges.get(e).getTo().getIndex();
+                tail[e] = reversed[e] ? to : from;
+                head[e] = reversed[e] ? from : to;
+            }
+        }
+
+        /**
+         * Longest path layering, in topological order.
+         */
+        private void assignLayers() {
+            int m = edges.size();
+            int[] inDegree = new int[n];
+            IntList[] out = new IntList[n];
+            for (int v = 0; v < n; v++) {
+                out[v] = new IntList();
+            }
+            for (int e = 0; e < m; e++) {
+                out[tail[e]].add(e);
+                inDegree[head[e]]++;
+            }
+            layer = new int[n];
+            int[] queue = new int[n];
+            int first = 0;
+            int last = 0;
+            for (int v = 0; v < n; v++) {
+                if (inDegree[v] == 0) {
+                    queue[last++] = v;
+                }
+            }
+            while (first < last) {
+                int v = queue[first++];
+                for (int i = 0; i < out[v].size(); i++) {
+                    int e = out[v].get(i);
+                    int w = head[e];
+                    layer[w] = Math.max(layer[w], layer[v] + 1);
+                    if (--inDegree[w] == 0) {
+                        queue[last++] = w;
+                    }
+                }
+            }
+            layerCount = 0;
+            for (int v = 0; v < n; v++) {
+                layerCount = Math.max(layerCount, layer[v] + 1);
+            }
+        }
+
+        private int addVertex(int vertexLayer) {
+            this.vertexLayer.add(vertexLayer);
+            up.add(new IntList());
+            down.add(new IntList());
+            return up.size() - 1;
+        }
+
+        private void insertDummies() {
+            for (int v = 0; v < n; v++) {
+                addVertex(layer[v]);
+            }
+            chains = new int[edges.size()][];
+            for (int e = 0; e < edges.size(); e++) {
+                int span = layer[head[e]] - layer[tail[e]];
+                int[] chain = new int[span + 1];
+                chain[0] = tail[e];
+                for (int i = 1; i < span; i++) {
+                    chain[i] = addVertex(layer[tail[e]] + i);
+                }
+                chain[span] = head[e];
+                for (int i = 1; i <= span; i++) {
+                    down.get(chain[i - 1]).add(chain[i]);
+                    up.get(chain[i]).add(chain[i - 1]);
+                }
+                chains[e] = chain;
+            }
+        }
+
+        private void orderLayers() {
+            int vertexCount = vertexLayer.size();
+            int[] sizes = new int[layerCount];
+            for (int v = 0; v < vertexCount; v++) {
+                sizes[vertexLayer.get(v)]++;
+            }
+            layers = new int[layerCount][];
+            for (int l = 0; l < layerCount; l++) {
+                layers[l] = new int[sizes[l]];
+                sizes[l] = 0;
+            }
+            position = new int[vertexCount];
+            for (int v = 0; v < vertexCount; v++) {
+                int l = vertexLayer.get(v);
+                position[v] = sizes[l];
+                layers[l][sizes[l]++] = v;
+            }
+
+            int[][] best = copy(layers);
+            long bestCrossings = countCrossings();
+            for (int sweep = 0; sweep < ORDERING_SWEEPS && bestCrossings > 0; sweep++) {
+                if (sweep % 2 == 0) {
+                    for (int l = 1; l < layerCount; l++) {
+                        reorder(layers[l], up);
+                    }
+                } else {
+                    for (int l = layerCount - 2; l >= 0; l--) {
+                        reorder(layers[l], down);
+                    }
+                }
+                long crossings = countCrossings();
+                if (crossings < bestCrossings) {
+                    bestCrossings = crossings;
+                    best = copy(layers);
+                }
+            }
+            layers = best;
+            for (int[] vertices : layers) {
+                for (int i = 0; i < vertices.length; i++) {
+                    position[vertices[i]] = i;
+                }
+            }
+        }
+
+        private static int[][] copy(int[][] layers) {
+            int[][] copy = new int[layers.length][];
+            for (int l = 0; l < layers.length; l++) {
+                copy[l] = layers[l].clone();
+            }
+            return copy;
+        }
+
+        /**
+         * Sorts a layer by the barycenter of the neighbours of its vertices in
+         * the adjacent layer. Vertices without neighbours keep their place.
+         */
+        private void reorder(int[] vertices, List<IntList> neighbours) {
+            final double[] barycenter = new double[vertices.length];
+            Integer[] order = new Integer[vertices.length];
+            for (int i = 0; i < vertices.length; i++) {
+                IntList adjacent = neighbours.get(vertices[i]);
+                if (adjacent.size() == 0) {
+                    barycenter[i] = i;
+                } else {
+                    double sum = 0;
+                    for (int j = 0; j < adjacent.size(); j++) {
+                        sum += position[adjacent.get(j)];
+                    }
+                    barycenter[i] = sum / adjacent.size();
+                }
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    return Double.compare(barycenter[a], barycenter[b]);
+                }
+            });
+            int[] sorted = new int[vertices.length];
+            for (int i = 0; i < vertices.length; i++) {
+                sorted[i] = vertices[order[i]];
+            }
+            for (int i = 0; i < vertices.length; i++) {
+                vertices[i] = sorted[i];
+                position[sorted[i]] = i;
+            }
+        }
+
+        /**
+         * Counts the crossings between every pair of adjacent layers, as the
+         * number of inversions of the lower end positions once the segments
+         * are sorted by upper end position.
+         */
+        private long countCrossings() {
+            long crossings = 0;
+            for (int l = 0; l + 1 < layerCount; l++) {
+                IntList lowerEnds = new IntList();
+                for (int v : layers[l]) {
+                    IntList adjacent = down.get(v);
+                    int[] ends = new int[adjacent.size()];
+                    for (int j = 0; j < ends.length; j++) {
+                        ends[j] = position[adjacent.get(j)];
+                    }
+                    Arrays.sort(ends);
+                    for (int end : ends) {
+                        lowerEnds.add(end);
+                    }
+                }
+                // Fenwick tree over lower layer positions
+                int size = layers[l + 1].length;
+                int[] tree = new int[size + 1];
+                for (int i = 0; i < lowerEnds.size(); i++) {
+                    int end = lowerEnds.get(i);
+                    // segments already seen ending strictly after this one
+                    int notAfter = 0;
+                    for (int k = end + 1; k > 0; k -= k & -k) {
+                        notAfter += tree[k];
+                    }
+                    crossings += i - notAfter;
+                    for (int k = end + 1; k <= size; k += k & -k) {
+                        tree[k]++;
+                    }
+                }
+            }
+            return crossings;
+        }
+
+        private double vertexWidth(int v) {
+            return v < n ? boxes.get(v).getWidth() : DUMMY_WIDTH;
+        }
+
+        private void assignCoordinates() {
+            x = new double[vertexLayer.size()];
+            for (int[] vertices : layers) {
+                double left = 0;
+                for (int v : vertices) {
+                    x[v] = left + vertexWidth(v) / 2;
+                    left += vertexWidth(v) + NODE_SEP;
+                }
+            }
+            for (int sweep = 0; sweep < POSITIONING_SWEEPS; sweep++) {
+                if (sweep % 2 == 0) {
+                    for (int l = 1; l < layerCount; l++) {
+                        place(layers[l], up);
+                    }
+                } else {
+                    for (int l = layerCount - 2; l >= 0; l--) {
+                        place(layers[l], down);
+                    }
+                }
+            }
+            double min = Double.MAX_VALUE;
+            for (int[] vertices : layers) {
+                if (vertices.length > 0) {
+                    min = Math.min(min, x[vertices[0]]
+                            - vertexWidth(vertices[0]) / 2);
+                }
+            }
+            for (int v = 0; v < x.length; v++) {
+                x[v] += MARGIN - min;
+            }
+        }
+
+        /**
+         * Moves the vertices of a layer toward the average position of their
+         * neighbours, keeping their order and the minimum separation.
+         */
+        private void place(int[] vertices, List<IntList> neighbours) {
+            if (vertices.length == 0) {
+                return;
+            }
+            double[] desired = new double[vertices.length];
+            for (int i = 0; i < vertices.length; i++) {
+                IntList adjacent = neighbours.get(vertices[i]);
+                if (adjacent.size() == 0) {
+                    desired[i] = x[vertices[i]];
+                } else {
+                    double sum = 0;
+                    for (int j = 0; j < adjacent.size(); j++) {
+                        sum += x[adjacent.get(j)];
+                    }
+                    desired[i] = sum / adjacent.size();
+                }
+            }
+            double[] placed = new double[vertices.length];
+            double shift = 0;
+            for (int i = 0; i < vertices.length; i++) {
+                placed[i] = desired[i];
+                if (i > 0) {
+                    double min = placed[i - 1] + vertexWidth(vertices[i - 1])
+                            / 2 + NODE_SEP + vertexWidth(vertices[i]) / 2;
+                    placed[i] = Math.max(placed[i], min);
+                }
+                shift += placed[i] - desired[i];
+            }
+            // pushing vertices right drifts the layer, center it back
+            shift /= vertices.length;
+            for (int i = 0; i < vertices.length; i++) {
+                x[vertices[i]] = placed[i] - shift;
+            }
+        }
+
+        private LayeredLayout createLayout() {
+            double[] layerHeight = new double[layerCount];
+            for (int v = 0; v < n; v++) {
+                layerHeight[layer[v]] = Math.max(layerHeight[layer[v]], boxes
+                        .get(v).getHeight());
+            }
+            double[] layerY = new double[layerCount];
+            double top = MARGIN;
+            for (int l = 0; l < layerCount; l++) {
+                layerY[l] = top + layerHeight[l] / 2;
+                top += layerHeight[l] + RANK_SEP;
+            }
+            double width = 0;
+            for (int v = 0; v < x.length; v++) {
+                width = Math.max(width, x[v] + vertexWidth(v) / 2);
+            }
+            for (int v = 0; v < n; v++) {
+                boxes.get(v).x = x[v];
+                boxes.get(v).y = layerY[layer[v]];
+            }
+
+            List<EdgePath> paths = new ArrayList<EdgePath>();
+            for (int e = 0; e < edges.size(); e++) {
+                int[] chain = chains[e];
+                double[] xs = new double[chain.length];
+                double[] ys = new double[chain.length];
+                for (int i = 0; i < chain.length; i++) {
+                    xs[i] = x[chain[i]];
+                    ys[i] = layerY[vertexLayer.get(chain[i])];
+                }
+                if (reversed[e]) {
+                    reverse(xs);
+                    reverse(ys);
+                }
+                clip(xs, ys, 0, 1, boxes.get(edges.get(e).getFrom().getIndex()));
+                clip(xs, ys, xs.length - 1, xs.length - 2,
+                        boxes.get(edges.get(e).getTo().getIndex()));
+                paths.add(new EdgePath(edges.get(e), xs, ys));
+            }
+            return new LayeredLayout(Collections.unmodifiableList(boxes),
+                    Collections.unmodifiableList(paths), width + MARGIN, top
+                            - RANK_SEP + MARGIN);
+        }
+
+        private static void reverse(double[] values) {
+            for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+                double tmp = values[i];
+                values[i] = values[j];
+                values[j] = tmp;
+            }
+        }
+
+        /**
+         * Moves the end point of an edge from the center of the node to the
+         * border of its ellipse, in the direction of the next point.
+         */
+        private static void clip(double[] xs, double[] ys, int end, int next,
+                NodeBox box) {
+            double dx = xs[next] - xs[end];
+            double dy = ys[next] - ys[end];
+            double rx = box.getWidth() / 2;
+            double ry = box.getHeight() / 2;
+            double norm = Math.sqrt((dx / rx) * (dx / rx) + (dy / ry)
+                    * (dy / ry));
+            if (norm > 1) {
+                xs[end] += dx / norm;
+                ys[end] += dy / norm;
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.Serializable;
+
+/**
+ * Counters of a resolve report, as shown in the "Dependencies Stats" section
+ * of the html report.
+ */
+public final class ReportStatistics implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int modules;
+    private final int conflicts;
+    private final int revisions;
+    private final int searched;
+    private final int downloaded;
+    private final int evicted;
+    private final int errors;
+    private final int artifacts;
+    private final int downloadedArtifacts;
+    private final int failedArtifacts;
+    private final long artifactsSize;
+    private final long downloadedSize;
+    private final long cachedSize;
+
+    public ReportStatistics(ResolveReport report) {
+        int conflicts = 0;
+        for (int m = 0; m < report.getModuleCount(); m++) {
+            if (report.getRevisionEnd(m) - report.getRevisionStart(m) > 1) {
+                conflicts++;
+            }
+        }
+        int searched = 0;
+        int downloaded = 0;
+        int evicted = 0;
+        int errors = 0;
+        for (int r = 0; r < report.getRevisionCount(); r++) {
+            if (report.isSearched(r)) {
+                searched++;
+            }
+            if (report.isDownloaded(r)) {
+                downloaded++;
+            }
+            if (report.isEvicted(r)) {
+                evicted++;
+            }
+            if (report.hasError(r)) {
+                errors++;
+            }
+        }
+        int downloadedArtifacts = 0;
+        int failedArtifacts = 0;
+        long artifactsSize = 0;
+        long downloadedSize = 0;
+        long cachedSize = 0;
+        for (int a = 0; a < report.getArtifactCount(); a++) {
+            String status = report.getArtifactStatus(a);
+            long size = report.getArtifactSize(a);
+            artifactsSize += size;
+            if ("successful".equals(status)) {
+                downloadedArtifacts++;
+                downloadedSize += size;
+            } else if ("failed".equals(status)) {
+                failedArtifacts++;
+            } else if ("no".equals(status)) {
+                cachedSize += size;
+            }
+        }
+        this.modules = report.getModuleCount();
+        this.conflicts = conflicts;
+        this.revisions = report.getRevisionCount();
+        this.searched = searched;
+        this.downloaded = downloaded;
+        this.evicted = evicted;
+        this.errors = errors;
+        this.artifacts = report.getArtifactCount();
+        this.downloadedArtifacts = downloadedArtifacts;
+        this.failedArtifacts = failedArtifacts;
+        this.artifactsSize = artifactsSize;
+        this.downloadedSize = downloadedSize;
+        this.cachedSize = cachedSize;
+    }
+
+    public int getModules() {
+        return modules;
+    }
+
+    /**
+     * @return the number of modules with more than one revision
+     */
+    public int getConflicts() {
+        return conflicts;
+    }
+
+    public int getRevisions() {
+        return revisions;
+    }
+
+    public int getSearched() {
+        return searched;
+    }
+
+    public int getDownloaded() {
+        return downloaded;
+    }
+
+    public int getEvicted() {
+        return evicted;
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    public int getArtifacts() {
+        return artifacts;
+    }
+
+    public int getDownloadedArtifacts() {
+        return downloadedArtifacts;
+    }
+
+    public int getFailedArtifacts() {
+        return failedArtifacts;
+    }
+
+    /**
+     * @return the size of all the artifacts, in bytes
+     */
+    public long getArtifactsSize() {
+        return artifactsSize;
+    }
+
+    public long getDownloadedSize() {
+        return downloadedSize;
+    }
+
+    /**
+     * @return the size of the artifacts found in the ivy cache, in bytes
+     */
+    public long getCachedSize() {
+        return cachedSize;
+    }
+}
@@ -0,0 +1,462 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * In-memory model of an ivy resolve report (the
+ * <tt>&lt;resolveId&gt;-&lt;conf&gt;.xml</tt> file written by ivy).
+ * <p>
+ * The model is column oriented: modules, revisions, callers, artifacts,
+ * licenses and evictions are numbered from 0 in document order and every
+ * attribute is held in an array indexed by these numbers. Repeated strings
+ * (organisations, statuses, revisions, ...) are shared, and the children of a
+ * module or a revision are contiguous, so they are described by a range of
+ * indexes. Absent attributes are <tt>null</tt>.
+ */
+public final class ResolveReport {
+    /**
+     * Module index of the callers that are the resolved module itself.
+     */
+    public static final int ROOT = -1;
+
+    /**
+     * Module index of the callers that are neither the resolved module nor a
+     * module of the report.
+     */
+    public static final int UNKNOWN = -2;
+
+    // info
+    String organisation;
+    String module;
+    String revision;
+    String conf;
+    String confs;
+    String date;
+
+    // modules
+    String[] moduleOrganisation;
+    String[] moduleName;
+    int[] moduleRevisions;
+
+    // revisions
+    int[] revisionModule;
+    String[] revisionName;
+    String[] revisionStatus;
+    String[] revisionPubdate;
+    String[] revisionResolver;
+    String[] revisionHomepage;
+    String[] revisionConf;
+    String[] revisionEvicted;
+    String[] revisionEvictedReason;
+    String[] revisionError;
+    byte[] revisionFlags;
+    int[] revisionCallers;
+    int[] revisionArtifacts;
+    int[] revisionLicenses;
+    int[] revisionEvictedBy;
+
+    static final byte DOWNLOADED = 1;
+    static final byte SEARCHED = 2;
+    static final byte DEFAULT = 4;
+
+    // callers
+    int[] callerRevision;
+    int[] callerModule;
+    String[] callerOrganisation;
+    String[] callerName;
+    String[] callerConf;
+    String[] callerRev;
+    String[] callerCallerRev;
+
+    // artifacts
+    String[] artifactName;
+    String[] artifactType;
+    String[] artifactExt;
+    String[] artifactStatus;
+    long[] artifactSize;
+
+    // licenses and evictions
+    String[] licenseName;
+    String[] licenseUrl;
+    String[] evictedBy;
+
+    // callers grouped by calling module, ROOT first
+    private int[] dependencyStarts;
+    private int[] dependencies;
+
+    ResolveReport() {
+    }
+
+    /**
+     * Reads a resolve report. The stream is not closed.
+     */
+    public static ResolveReport parse(InputStream in) throws IOException {
+        return new ResolveReportParser().parse(in);
+    }
+
+    public String getOrganisation() {
+        return organisation;
+    }
+
+    public String getModule() {
+        return module;
+    }
+
+    public String getRevision() {
+        return revision;
+    }
+
+    public String getConf() {
+        return conf;
+    }
+
+    /**
+     * @return the comma separated configurations of the resolved module
+     */
+    public String getConfs() {
+        return confs;
+    }
+
+    /**
+     * @return the resolution date, as <tt>yyyyMMddHHmmss</tt>
+     */
+    public String getDate() {
+        return date;
+    }
+
+    public int getModuleCount() {
+        return moduleName.length;
+    }
+
+    public String getModuleOrganisation(int module) {
+        return moduleOrganisation[module];
+    }
+
+    public String getModuleName(int module) {
+        return moduleName[module];
+    }
+
+    /**
+     * @return the index of the first revision of the module
+     */
+    public int getRevisionStart(int module) {
+        return moduleRevisions[module];
+    }
+
+    /**
+     * @return the index following the last revision of the module
+     */
+    public int getRevisionEnd(int module) {
+        return moduleRevisions[module + 1];
+    }
+
+    public int getRevisionCount() {
+        return revisionName.length;
+    }
+
+    public int getRevisionModule(int revision) {
+        return revisionModule[revision];
+    }
+
+    public String getRevisionName(int revision) {
+        return revisionName[revision];
+    }
+
+    public String getRevisionStatus(int revision) {
+        return revisionStatus[revision];
+    }
+
+    public String getRevisionPubdate(int revision) {
+        return revisionPubdate[revision];
+    }
+
+    public String getRevisionResolver(int revision) {
+        return revisionResolver[revision];
+    }
+
+    public String getRevisionHomepage(int revision) {
+        return revisionHomepage[revision];
+    }
+
+    public String getRevisionConf(int revision) {
+        return revisionConf[revision];
+    }
+
+    public boolean isEvicted(int revision) {
+        return revisionEvicted[revision] != null;
+    }
+
+    /**
+     * @return the name of the conflict manager which evicted the revision, or
+     *         <tt>null</tt> if the revision was not evicted
+     */
+    public String getEvictingConflictManager(int revision) {
+        return revisionEvicted[revision];
+    }
+
+    public String getEvictedReason(int revision) {
+        return revisionEvictedReason[revision];
+    }
+
+    public boolean hasError(int revision) {
+        return revisionError[revision] != null;
+    }
+
+    public String getError(int revision) {
+        return revisionError[revision];
+    }
+
+    public boolean isDownloaded(int revision) {
+        return (revisionFlags[revision] & DOWNLOADED) != 0;
+    }
+
+    public boolean isSearched(int revision) {
+        return (revisionFlags[revision] & SEARCHED) != 0;
+    }
+
+    public boolean isDefault(int revision) {
+        return (revisionFlags[revision] & DEFAULT) != 0;
+    }
+
+    public int getCallerStart(int revision) {
+        return revisionCallers[revision];
+    }
+
+    public int getCallerEnd(int revision) {
+        return revisionCallers[revision + 1];
+    }
+
+    public int getArtifactStart(int revision) {
+        return revisionArtifacts[revision];
+    }
+
+    public int getArtifactEnd(int revision) {
+        return revisionArtifacts[revision + 1];
+    }
+
+    public int getLicenseStart(int revision) {
+        return revisionLicenses[revision];
+    }
+
+    public int getLicenseEnd(int revision) {
+        return revisionLicenses[revision + 1];
+    }
+
+    public int getEvictedByStart(int revision) {
+        return revisionEvictedBy[revision];
+    }
+
+    public int getEvictedByEnd(int revision) {
+        return revisionEvictedBy[revision + 1];
+    }
+
+    public int getCallerCount() {
+        return callerModule.length;
+    }
+
+    /**
+     * @return the revision which is called
+     */
+    public int getCallerRevision(int caller) {
+        return callerRevision[caller];
+    }
+
+    /**
+     * @return the calling module, {@link #ROOT} or {@link #UNKNOWN}
+     */
+    public int getCallerModule(int caller) {
+        return callerModule[caller];
+    }
+
+    public String getCallerOrganisation(int caller) {
+        return callerOrganisation[caller];
+    }
+
+    public String getCallerName(int caller) {
+        return callerName[caller];
+    }
+
+    public String getCallerConf(int caller) {
+        return callerConf[caller];
+    }
+
+    /**
+     * @return the revision asked by the caller
+     */
+    public String getCallerRev(int caller) {
+        return callerRev[caller];
+    }
+
+    /**
+     * @return the revision of the caller
+     */
+    public String getCallerCallerRev(int caller) {
+        return callerCallerRev[caller];
+    }
+
+    public int getArtifactCount() {
+        return artifactName.length;
+    }
+
+    public String getArtifactName(int artifact) {
+        return artifactName[artifact];
+    }
+
+    public String getArtifactType(int artifact) {
+        return artifactType[artifact];
+    }
+
+    public String getArtifactExt(int artifact) {
+        return artifactExt[artifact];
+    }
+
+    /**
+     * @return <tt>no</tt> (found in cache), <tt>successful</tt> (downloaded)
+     *         or <tt>failed</tt>
+     */
+    public String getArtifactStatus(int artifact) {
+        return artifactStatus[artifact];
+    }
+
+    public long getArtifactSize(int artifact) {
+        return artifactSize[artifact];
+    }
+
+    public String getLicenseName(int license) {
+        return licenseName[license];
+    }
+
+    public String getLicenseUrl(int license) {
+        return licenseUrl[license];
+    }
+
+    public String getEvictedBy(int eviction) {
+        return evictedBy[eviction];
+    }
+
+    /**
+     * @param module
+     *            a module index or {@link #ROOT}
+     * @return the callers whose calling module is the given one, in document
+     *         order. The called revisions are the dependencies of the module
+     *         (of any of its revisions, see {@link #getCallerCallerRev(int)}).
+     */
+    public int[] getDependencies(int module) {
+        synchronized (this) {
+            if (dependencies == null) {
+                indexDependencies();
+            }
+        }
+        return Arrays.copyOfRange(dependencies, dependencyStarts[module + 1],
+                dependencyStarts[module + 2]);
+    }
+
+    /**
+     * Counting sort of the callers on their calling module, keeping the
+     * document order within a module.
+     */
+    private void indexDependencies() {
+        int[] starts = new int[getModuleCount() + 2];
+        for (int module : callerModule) {
+            if (module != UNKNOWN) {
+                starts[module + 2]++;
+            }
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] next = Arrays.copyOf(starts, starts.length);
+        int[] sorted = new int[starts[starts.length - 1]];
+        for (int caller = 0; caller < callerModule.length; caller++) {
+            int module = callerModule[caller];
+            if (module != UNKNOWN) {
+                sorted[next[module + 1]++] = caller;
+            }
+        }
+        dependencyStarts = starts;
+        dependencies = sorted;
+    }
+
+    /**
+     * Builds the dependency graph, as described by the dot file of the ivy
+     * report: one node per module, labelled with its revisions, and one edge
+     * per caller of a revision which was not evicted.
+     * 
+     * @param resolveId
+     *            used to link the nodes to the html report
+     */
+    public DotGraph toDotGraph(String resolveId) {
+        DotGraph graph = new DotGraph();
+        DotGraph.Node root = graph.addNode(organisation + "-" + module);
+        root.setAttribute("label", module);
+        DotGraph.Node[] nodes = new DotGraph.Node[getModuleCount()];
+        for (int m = 0; m < nodes.length; m++) {
+            String id = moduleOrganisation[m] + "-" + moduleName[m];
+            StringBuilder label = new StringBuilder(moduleName[m]);
+            for (int r = getRevisionStart(m); r < getRevisionEnd(m); r++) {
+                label.append("\\n").append(revisionName[r]);
+                if (hasError(r)) {
+                    label.append(" (error)");
+                }
+                if (isEvicted(r)) {
+                    label.append(" (evicted)");
+                }
+            }
+            nodes[m] = graph.addNode(id);
+            nodes[m].setAttribute("label", label.toString());
+            nodes[m].setAttribute("URL", resolveId + "-" + conf + ".html#"
+                    + id);
+            nodes[m].setAttribute("target", "_graphviz");
+        }
+        for (int c = 0; c < callerModule.length; c++) {
+            int r = callerRevision[c];
+            if (isEvicted(r)) {
+                continue;
+            }
+            DotGraph.Node from;
+            switch (callerModule[c]) {
+            case ROOT:
+                from = root;
+                break;
+            case UNKNOWN:
+                from = graph.addNode(callerOrganisation[c] + "-"
+                        + callerName[c]);
+                break;
+            default:
+                from = nodes[callerModule[c]];
+            }
+            DotGraph.Edge edge = graph.addEdge(from,
+                    nodes[revisionModule[r]]);
+            // only label the edges asking for another revision
+            if (callerRev[c] != null && !callerRev[c].equals(revisionName[r])) {
+                edge.setAttribute("label", callerRev[c]);
+            }
+        }
+        return graph;
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming reader of resolve reports. Only the attributes and elements used
+ * by the reports are kept; no tree of the document is ever built.
+ */
+final class ResolveReportParser {
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private final Map<String, String> strings = new HashMap<String, String>();
+    private final ResolveReport report = new ResolveReport();
+
+    private final List<String> moduleOrganisation = new ArrayList<String>();
+    private final List<String> moduleName = new ArrayList<String>();
+    private final IntList moduleRevisions = new IntList();
+
+    private final IntList revisionModule = new IntList();
+    private final List<String> revisionName = new ArrayList<String>();
+    private final List<String> revisionStatus = new ArrayList<String>();
+    private final List<String> revisionPubdate = new ArrayList<String>();
+    private final List<String> revisionResolver = new ArrayList<String>();
+    private final List<String> revisionHomepage = new ArrayList<String>();
+    private final List<String> revisionConf = new ArrayList<String>();
+    private final List<String> revisionEvicted = new ArrayList<String>();
+    private final List<String> revisionEvictedReason = new ArrayList<String>();
+    private final List<String> revisionError = new ArrayList<String>();
+    private final IntList revisionFlags = new IntList();
+    private final IntList revisionCallers = new IntList();
+    private final IntList revisionArtifacts = new IntList();
+    private final IntList revisionLicenses = new IntList();
+    private final IntList revisionEvictedBy = new IntList();
+
+    private final IntList callerRevision = new IntList();
+    private final List<String> callerOrganisation = new ArrayList<String>();
+    private final List<String> callerName = new ArrayList<String>();
+    private final List<String> callerConf = new ArrayList<String>();
+    private final List<String> callerRev = new ArrayList<String>();
+    private final List<String> callerCallerRev = new ArrayList<String>();
+
+    private final List<String> artifactName = new ArrayList<String>();
+    private final List<String> artifactType = new ArrayList<String>();
+    private final List<String> artifactExt = new ArrayList<String>();
+    private final List<String> artifactStatus = new ArrayList<String>();
+    private long[] artifactSize = new long[16];
+
+    private final List<String> licenseName = new ArrayList<String>();
+    private final List<String> licenseUrl = new ArrayList<String>();
+    private final List<String> evictedBy = new ArrayList<String>();
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // resolve reports have no DTD, don't let one reach the network
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                Boolean.FALSE);
+        return factory;
+    }
+
+    ResolveReport parse(InputStream in) throws IOException {
+        try {
+            XMLStreamReader reader;
+            synchronized (FACTORY) {
+                reader = FACTORY.createXMLStreamReader(in);
+            }
+            try {
+                read(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            IOException ioe = new IOException("Invalid resolve report : "
+                    + e.getMessage());
+            ioe.initCause(e);
+            throw ioe;
+        }
+        return build();
+    }
+
+    private void read(XMLStreamReader reader) throws XMLStreamException {
+        boolean inDependencies = false;
+        boolean inRevision = false;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String element = reader.getLocalName();
+                if (inRevision) {
+                    if ("caller".equals(element)) {
+                        readCaller(reader);
+                    } else if ("artifact".equals(element)) {
+                        readArtifact(reader);
+                    } else if ("license".equals(element)) {
+                        licenseName.add(attribute(reader, "name"));
+                        licenseUrl.add(attribute(reader, "url"));
+                    } else if ("evicted-by".equals(element)) {
+                        evictedBy.add(attribute(reader, "rev"));
+                    }
+                } else if (inDependencies) {
+                    if ("module".equals(element)) {
+                        moduleOrganisation.add(attribute(reader,
+                                "organisation"));
+                        moduleName.add(attribute(reader, "name"));
+                        moduleRevisions.add(revisionName.size());
+                    } else if ("revision".equals(element)
+                            && !moduleName.isEmpty()) {
+                        readRevision(reader);
+                        inRevision = true;
+                    }
+                } else if ("info".equals(element)) {
+                    report.organisation = attribute(reader, "organisation");
+                    report.module = attribute(reader, "module");
+                    report.revision = attribute(reader, "revision");
+                    report.conf = attribute(reader, "conf");
+                    report.confs = attribute(reader, "confs");
+                    report.date = attribute(reader, "date");
+                } else if ("dependencies".equals(element)) {
+                    inDependencies = true;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String element = reader.getLocalName();
+                if (inRevision && "revision".equals(element)) {
+                    inRevision = false;
+                } else if ("dependencies".equals(element)) {
+                    inDependencies = false;
+                }
+            }
+        }
+    }
+
+    private void readRevision(XMLStreamReader reader) {
+        revisionModule.add(moduleName.size() - 1);
+        revisionName.add(attribute(reader, "name"));
+        revisionStatus.add(attribute(reader, "status"));
+        revisionPubdate.add(attribute(reader, "pubdate"));
+        revisionResolver.add(attribute(reader, "resolver"));
+        revisionHomepage.add(attribute(reader, "homepage"));
+        revisionConf.add(attribute(reader, "conf"));
+        revisionEvicted.add(attribute(reader, "evicted"));
+        revisionEvictedReason.add(attribute(reader, "evicted-reason"));
+        revisionError.add(attribute(reader, "error"));
+        int flags = 0;
+        if ("true".equals(reader.getAttributeValue(null, "downloaded"))) {
+            flags |= ResolveReport.DOWNLOADED;
+        }
+        if ("true".equals(reader.getAttributeValue(null, "searched"))) {
+            flags |= ResolveReport.SEARCHED;
+        }
+        if ("true".equals(reader.getAttributeValue(null, "default"))) {
+            flags |= ResolveReport.DEFAULT;
+        }
+        revisionFlags.add(flags);
+        revisionCallers.add(callerRevision.size());
+        revisionArtifacts.add(artifactName.size());
+        revisionLicenses.add(licenseName.size());
+        revisionEvictedBy.add(evictedBy.size());
+    }
+
+    private void readCaller(XMLStreamReader reader) {
+        callerRevision.add(revisionName.size() - 1);
+        callerOrganisation.add(attribute(reader, "organisation"));
+        callerName.add(attribute(reader, "name"));
+        callerConf.add(attribute(reader, "conf"));
+        callerRev.add(attribute(reader, "rev"));
+        callerCallerRev.add(attribute(reader, "callerrev"));
+    }
+
+    private void readArtifact(XMLStreamReader reader) {
+        int index = artifactName.size();
+        artifactName.add(attribute(reader, "name"));
+        artifactType.add(attribute(reader, "type"));
+        artifactExt.add(attribute(reader, "ext"));
+        artifactStatus.add(attribute(reader, "status"));
+        if (index == artifactSize.length) {
+            artifactSize = Arrays.copyOf(artifactSize, index * 2);
+        }
+        artifactSize[index] = parseSize(reader.getAttributeValue(null, "size"));
+    }
+
+    private static long parseSize(String size) {
+        if (size == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(size.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return the attribute value, shared with the equal values read before
+     */
+    private String attribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        if (value == null) {
+            return null;
+        }
+        String shared = strings.get(value);
+        if (shared == null) {
+            strings.put(value, value);
+            shared = value;
+        }
+        return shared;
+    }
+
+    private ResolveReport build() {
+        ResolveReport r = report;
+        r.moduleOrganisation = toArray(moduleOrganisation);
+        r.moduleName = toArray(moduleName);
+        moduleRevisions.add(revisionName.size());
+        r.moduleRevisions = moduleRevisions.toArray();
+
+        r.revisionModule = revisionModule.toArray();
+        r.revisionName = toArray(revisionName);
+        r.revisionStatus = toArray(revisionStatus);
+        r.revisionPubdate = toArray(revisionPubdate);
+        r.revisionResolver = toArray(revisionResolver);
+        r.revisionHomepage = toArray(revisionHomepage);
+        r.revisionConf = toArray(revisionConf);
+        r.revisionEvicted = toArray(revisionEvicted);
+        r.revisionEvictedReason = toArray(revisionEvictedReason);
+        r.revisionError = toArray(revisionError);
+        r.revisionFlags = new byte[revisionFlags.size()];
+        for (int i = 0; i < r.revisionFlags.length; i++) {
+            r.revisionFlags[i] = (byte) revisionFlags.get(i);
+        }
+        revisionCallers.add(callerRevision.size());
+        r.revisionCallers = revisionCallers.toArray();
+        revisionArtifacts.add(artifactName.size());
+        r.revisionArtifacts = revisionArtifacts.toArray();
+        revisionLicenses.add(licenseName.size());
+        r.revisionLicenses = revisionLicenses.toArray();
+        revisionEvictedBy.add(evictedBy.size());
+        r.revisionEvictedBy = revisionEvictedBy.toArray();
+
+        r.callerRevision = callerRevision.toArray();
+        r.callerOrganisation = toArray(callerOrganisation);
+        r.callerName = toArray(callerName);
+        r.callerConf = toArray(callerConf);
+        r.callerRev = toArray(callerRev);
+        r.callerCallerRev = toArray(callerCallerRev);
+        r.callerModule = resolveCallers();
+
+        r.artifactName = toArray(artifactName);
+        r.artifactType = toArray(artifactType);
+        r.artifactExt = toArray(artifactExt);
+        r.artifactStatus = toArray(artifactStatus);
+        r.artifactSize = Arrays.copyOf(artifactSize, artifactName.size());
+
+        r.licenseName = toArray(licenseName);
+        r.licenseUrl = toArray(licenseUrl);
+        r.evictedBy = toArray(evictedBy);
+        return r;
+    }
+
+    /**
+     * Callers may refer to modules which come later in the report, so they
+     * are only bound to their module once the whole report has been read.
+     */
+    private int[] resolveCallers() {
+        Map<String, Integer> modules = new HashMap<String, Integer>();
+        for (int m = moduleName.size() - 1; m >= 0; m--) {
+            modules.put(key(moduleOrganisation.get(m), moduleName.get(m)), m);
+        }
+        String root = key(report.organisation, report.module);
+        int[] result = new int[callerName.size()];
+        for (int c = 0; c < result.length; c++) {
+            String key = key(callerOrganisation.get(c), callerName.get(c));
+            Integer module = modules.get(key);
+            if (key.equals(root)) {
+                result[c] = ResolveReport.ROOT;
+            } else if (module != null) {
+                result[c] = module;
+            } else {
+                result[c] = ResolveReport.UNKNOWN;
+            }
+        }
+        return result;
+    }
+
+    private static String key(String organisation, String name) {
+        return organisation + '\u0000' + name;
+    }
+
+    private static String[] toArray(List<String> list) {
+        return list.toArray(new String[list.size()]);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, The original author or authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a {@link LayeredLayout} as SVG, in the spirit of the output of
+ * <tt>dot -Tsvg</tt>: nodes are ellipses, and the <tt>URL</tt> and
+ * <tt>target</tt> attributes of the nodes become links.
+ */
+public final class SvgWriter {
+    private final Writer out;
+
+    public SvgWriter(Writer out) {
+        this.out = out;
+    }
+
+    public void write(LayeredLayout layout) throws IOException {
+        String width = format(layout.getWidth());
+        String height = format(layout.getHeight());
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\""
+                + " xmlns:xlink=\"http://www.w3.org/1999/xlink\" width=\""
+                + width + "pt\" height=\"" + height + "pt\" viewBox=\"0 0 "
+                + width + " " + height + "\">\n");
+        out.write("<defs><marker id=\"arrow\" markerWidth=\"10\""
+                + " markerHeight=\"7\" refX=\"10\" refY=\"3.5\""
+                + " orient=\"auto\" markerUnits=\"userSpaceOnUse\">"
+                + "<polygon points=\"0 0, 10 3.5, 0 7\"/></marker></defs>\n");
+        out.write("<g class=\"graph\" font-family=\"Helvetica,sans-Serif\""
+                + " font-size=\"" + format(LayeredLayout.FONT_SIZE) + "\">\n");
+        for (LayeredLayout.EdgePath path : layout.getEdges()) {
+            writeEdge(path);
+        }
+        for (LayeredLayout.NodeBox box : layout.getNodes()) {
+            writeNode(box);
+        }
+        out.write("</g>\n</svg>\n");
+        out.flush();
+    }
+
+    private void writeEdge(LayeredLayout.EdgePath path) throws IOException {
+        double[] xs = path.getXs();
+        double[] ys = path.getYs();
+        out.write("<g class=\"edge\"><polyline fill=\"none\" stroke=\"black\""
+                + " marker-end=\"url(#arrow)\" points=\"");
+        for (int i = 0; i < xs.length; i++) {
+            if (i > 0) {
+                out.write(' ');
+            }
+            out.write(format(xs[i]) + "," + format(ys[i]));
+        }
+        out.write("\"/>");
+        String label = path.getEdge().getAttribute("label");
+        if (label != null) {
+            int middle = xs.length / 2;
+            double x = xs.length % 2 == 1 ? xs[middle]
+                    : (xs[middle - 1] + xs[middle]) / 2;
+            double y = xs.length % 2 == 1 ? ys[middle]
+                    : (ys[middle - 1] + ys[middle]) / 2;
+            out.write("<text x=\"" + format(x + 4) + "\" y=\"" + format(y)
+                    + "\">" + escape(label) + "</text>");
+        }
+        out.write("</g>\n");
+    }
+
+    private void writeNode(LayeredLayout.NodeBox box) throws IOException {
+        DotGraph.Node node = box.getNode();
+        out.write("<g class=\"node\">");
+        String url = node.getAttribute("URL");
+        if (url != null) {
+            out.write("<a xlink:href=\"" + escape(url) + "\"");
+            String target = node.getAttribute("target");
+            if (target != null) {
+                out.write(" target=\"" + escape(target) + "\"");
+            }
+            out.write(" xlink:title=\"" + escape(node.getId()) + "\">");
+        } else {
+            out.write("<title>" + escape(node.getId()) + "</title>");
+        }
+        out.write("<ellipse fill=\"none\" stroke=\"black\" cx=\""
+                + format(box.getX()) + "\" cy=\"" + format(box.getY())
+                + "\" rx=\"" + format(box.getWidth() / 2) + "\" ry=\""
+                + format(box.getHeight() / 2) + "\"/>");
+        String[] lines = box.getLines();
+        double first = box.getY() - (lines.length - 1)
+                * LayeredLayout.LINE_HEIGHT / 2 + LayeredLayout.FONT_SIZE / 3;
+        for (int i = 0; i < lines.length; i++) {
+            out.write("<text text-anchor=\"middle\" x=\"" + format(box.getX())
+                    + "\" y=\""
+                    + format(first + i * LayeredLayout.LINE_HEIGHT) + "\">"
+                    + escape(lines[i]) + "</text>");
+        }
+        if (url != null) {
+            out.write("</a>");
+        }
+        out.write("</g>\n");
+    }
+
+    /**
+     * Formats with two decimals; much cheaper than String.format, which
+     * matters for graphs with thousands of points.
+     */
+    static String format(double value) {
+        long hundredths = Math.round(value * 100);
+        StringBuilder sb = new StringBuilder(12);
+        if (hundredths < 0) {
+            sb.append('-');
+            hundredths = -hundredths;
+        }
+        sb.append(hundredths / 100).append('.');
+        long decimals = hundredths % 100;
+        if (decimals < 10) {
+            sb.append('0');
+        }
+        return sb.append(decimals).toString();
+    }
+
+    private static String escape(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '<':
+                sb.append("&lt;");
+                break;
+            case '>':
+                sb.append("&gt;");
+                break;
+            case '&':
+                sb.append("&amp;");
+                break;
+            case '"':
+                sb.append("&quot;");
+                break;
+            default:
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
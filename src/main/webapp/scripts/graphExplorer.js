@@ -0,0 +1,228 @@
+/*
+ * Draws the dependency graph of an ivy report in the browser, starting from
+ * the resolved module. The callers and the dependencies of a node are fetched
+ * a page at a time when the node is expanded, so the full graph is never
+ * rendered nor transferred.
+ *
+ * Dependencies are drawn in the column right of their caller, callers in the
+ * column left of the module they call. A node is only drawn once, in the
+ * column where it was first shown.
+ */
+var GraphExplorer = function(container, url, pageSize) {
+    this.container = container;
+    this.url = url;
+    this.pageSize = pageSize || 50;
+    this.nodes = {};
+    this.edges = {};
+    this.columns = {};
+    this.pending = {};
+    this.minColumn = 0;
+    this.maxColumn = 0;
+    var explorer = this;
+    this.fetch(null, "dependencies", 0, function(page) {
+        explorer.addNode(page.node, 0).root = true;
+        explorer.addPage(page);
+    });
+};
+
+GraphExplorer.SVG = "http://www.w3.org/2000/svg";
+GraphExplorer.WIDTH = 220;
+GraphExplorer.GAP = 80;
+GraphExplorer.HEIGHT = 40;
+GraphExplorer.VGAP = 12;
+
+GraphExplorer.prototype.fetch = function(id, direction, start, callback) {
+    var key = id + " " + direction + " " + start;
+    if (this.pending[key]) {
+        return;
+    }
+    this.pending[key] = true;
+    var explorer = this;
+    var request = new XMLHttpRequest();
+    request.open("GET", this.url + "&direction=" + direction + "&start="
+            + start + "&count=" + this.pageSize
+            + (id == null ? "" : "&id=" + encodeURIComponent(id)), true);
+    request.onreadystatechange = function() {
+        if (request.readyState != 4) {
+            return;
+        }
+        delete explorer.pending[key];
+        if (request.status == 200) {
+            callback(JSON.parse(request.responseText));
+        } else {
+            explorer.container.appendChild(document.createTextNode(
+                    "Failed to load " + (id || "the graph") + " ("
+                    + request.status + ")"));
+        }
+    };
+    request.send(null);
+};
+
+GraphExplorer.prototype.addNode = function(data, column) {
+    var node = this.nodes[data.id];
+    if (node) {
+        return node;
+    }
+    node = { data: data, column: column, expanded: {}, more: {} };
+    this.nodes[data.id] = node;
+    if (!this.columns[column]) {
+        this.columns[column] = [];
+    }
+    this.columns[column].push(node);
+    this.minColumn = Math.min(this.minColumn, column);
+    this.maxColumn = Math.max(this.maxColumn, column);
+    return node;
+};
+
+GraphExplorer.prototype.addPage = function(page) {
+    var node = this.nodes[page.node.id];
+    var callers = page.direction == "callers";
+    var column = node.column + (callers ? -1 : 1);
+    for (var i = 0; i < page.nodes.length; i++) {
+        var neighbour = this.addNode(page.nodes[i], column);
+        var from = callers ? neighbour : node;
+        var to = callers ? node : neighbour;
+        this.edges[from.data.id + " " + to.data.id] = {
+            from: from, to: to, edge: page.nodes[i].edge };
+    }
+    node.expanded[page.direction] = true;
+    node.more[page.direction] = page.more ? page.start + page.nodes.length
+            : 0;
+    this.draw();
+};
+
+GraphExplorer.prototype.expand = function(node, direction) {
+    var start = node.more[direction] || 0;
+    if (node.expanded[direction] && !start) {
+        return;
+    }
+    var explorer = this;
+    this.fetch(node.data.id, direction, start, function(page) {
+        explorer.addPage(page);
+    });
+};
+
+GraphExplorer.prototype.layout = function() {
+    var height = 0;
+    for (var c = this.minColumn; c <= this.maxColumn; c++) {
+        var column = this.columns[c] || [];
+        for (var i = 0; i < column.length; i++) {
+            column[i].x = (c - this.minColumn)
+                    * (GraphExplorer.WIDTH + GraphExplorer.GAP) + 4;
+            column[i].y = i * (GraphExplorer.HEIGHT + GraphExplorer.VGAP) + 4;
+        }
+        height = Math.max(height, column.length
+                * (GraphExplorer.HEIGHT + GraphExplorer.VGAP));
+    }
+    return height + 8;
+};
+
+GraphExplorer.prototype.element = function(name, attributes, parent) {
+    var element = document.createElementNS(GraphExplorer.SVG, name);
+    for (var attribute in attributes) {
+        element.setAttribute(attribute, attributes[attribute]);
+    }
+    if (parent) {
+        parent.appendChild(element);
+    }
+    return element;
+};
+
+GraphExplorer.prototype.draw = function() {
+    var height = this.layout();
+    var width = (this.maxColumn - this.minColumn + 1)
+            * (GraphExplorer.WIDTH + GraphExplorer.GAP);
+    var svg = this.element("svg", { width: width, height: height,
+            "font-family": "sans-serif", "font-size": 11 });
+    for (var key in this.edges) {
+        this.drawEdge(svg, this.edges[key]);
+    }
+    for (var id in this.nodes) {
+        this.drawNode(svg, this.nodes[id]);
+    }
+    while (this.container.firstChild) {
+        this.container.removeChild(this.container.firstChild);
+    }
+    this.container.appendChild(svg);
+};
+
+GraphExplorer.prototype.drawEdge = function(svg, edge) {
+    var x1 = edge.from.x + GraphExplorer.WIDTH;
+    var y1 = edge.from.y + GraphExplorer.HEIGHT / 2;
+    var x2 = edge.to.x;
+    var y2 = edge.to.y + GraphExplorer.HEIGHT / 2;
+    if (x2 <= x1) {
+        // edge between nodes of the same column, or going back
+        x1 = edge.from.x;
+        x2 = edge.to.x + GraphExplorer.WIDTH;
+    }
+    var middle = (x1 + x2) / 2;
+    this.element("path", { d: "M" + x1 + "," + y1 + " C" + middle + "," + y1
+            + " " + middle + "," + y2 + " " + x2 + "," + y2, fill: "none",
+            stroke: edge.edge.evicted ? "#bbb" : "#666",
+            "stroke-dasharray": edge.edge.evicted ? "4,3" : "none" }, svg);
+    if (edge.edge.rev) {
+        var label = this.element("text", { x: middle, y: (y1 + y2) / 2 - 3,
+                "text-anchor": "middle", fill: "#666" }, svg);
+        label.appendChild(document.createTextNode(edge.edge.rev));
+    }
+};
+
+GraphExplorer.prototype.drawNode = function(svg, node) {
+    var data = node.data;
+    var evicted = data.revisions.length > 0;
+    var error = false;
+    var revisions = [];
+    for (var i = 0; i < data.revisions.length; i++) {
+        evicted = evicted && data.revisions[i].evicted;
+        error = error || data.revisions[i].error;
+        revisions.push(data.revisions[i].name);
+    }
+    var group = this.element("g", {}, svg);
+    var title = this.element("title", {}, group);
+    title.appendChild(document.createTextNode(data.id));
+    this.element("rect", { x: node.x, y: node.y, rx: 4,
+            width: GraphExplorer.WIDTH, height: GraphExplorer.HEIGHT,
+            fill: error ? "#fdd" : evicted ? "#eee" : "#fff",
+            stroke: node.root ? "#000" : "#888" },
+            group);
+    this.text(group, node.x + GraphExplorer.WIDTH / 2, node.y + 16,
+            data.name, "bold");
+    this.text(group, node.x + GraphExplorer.WIDTH / 2, node.y + 31,
+            revisions.join(", "), "normal");
+    this.button(group, node, "callers", node.x - 2, "end", "\u25c0 "
+            + data.callers);
+    this.button(group, node, "dependencies", node.x + GraphExplorer.WIDTH
+            + 2, "start", data.dependencies + " \u25b6");
+};
+
+GraphExplorer.prototype.text = function(parent, x, y, value, weight) {
+    if (value.length > 36) {
+        value = value.substring(0, 35) + "\u2026";
+    }
+    var text = this.element("text", { x: x, y: y, "text-anchor": "middle",
+            "font-weight": weight }, parent);
+    text.appendChild(document.createTextNode(value));
+};
+
+GraphExplorer.prototype.button = function(parent, node, direction, x, anchor,
+        label) {
+    var count = direction == "callers" ? node.data.callers
+            : node.data.dependencies;
+    var more = node.more[direction];
+    if (count == 0 || node.expanded[direction] && !more) {
+        return;
+    }
+    if (more) {
+        label = direction == "callers" ? "\u25c0 " + (count - more) + " more"
+                : (count - more) + " more \u25b6";
+    }
+    var text = this.element("text", { x: x, y: node.y + GraphExplorer.HEIGHT
+            / 2 + 4, "text-anchor": anchor, fill: "#204a87",
+            cursor: "pointer" }, parent);
+    text.appendChild(document.createTextNode(label));
+    var explorer = this;
+    text.onclick = function() {
+        explorer.expand(node, direction);
+    };
+};
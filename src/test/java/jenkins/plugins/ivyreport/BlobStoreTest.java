@@ -0,0 +1,177 @@
+package jenkins.plugins.ivyreport;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import jenkins.plugins.ivyreport.utils.TestAreaUtils;
+
+import junit.framework.TestCase;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class BlobStoreTest extends TestCase {
+    private BlobStore store;
+    private File first;
+    private File second;
+
+    public void setUp() throws Exception {
+        File dir = TestAreaUtils.getNonExistingFileInTestArea("blobs");
+        store = new BlobStore(new File(dir, "store"));
+        first = reports(new File(dir, "first"), "<svg>1</svg>");
+        second = reports(new File(dir, "second"), "<svg>2</svg>");
+    }
+
+    private static File reports(File dir, String svg) throws Exception {
+        dir.mkdirs();
+        Files.write("<html/>", new File(dir, "org-module-compile.html"),
+                Charsets.UTF_8);
+        Files.write(svg, new File(dir, "org-module-compile.svg"),
+                Charsets.UTF_8);
+        Files.write("<ivy-report/>", new File(dir, "org-module-compile.xml"),
+                Charsets.UTF_8);
+        return dir;
+    }
+
+    public void testIdenticalReportsAreStoredOnce() throws Exception {
+        assertEquals(0, store.store(first,
+                Collections.<String, String> emptyMap()));
+        assertEquals(7, store.store(second,
+                Collections.<String, String> emptyMap()));
+
+        Map<String, String> manifest = BlobStore.readManifest(second);
+        assertEquals(BlobStore.readManifest(first).get(
+                "org-module-compile.html"), manifest
+                .get("org-module-compile.html"));
+        assertTrue(manifest.get("org-module-compile.html").endsWith(".html"));
+        assertFalse(manifest.containsKey("org-module-compile.xml"));
+        assertFalse(new File(second, "org-module-compile.html").exists());
+        assertTrue(new File(second, "org-module-compile.xml").exists());
+        assertEquals("<svg>2</svg>", Files.toString(store.getBlob(manifest
+                .get("org-module-compile.svg")), Charsets.UTF_8));
+    }
+
+    public void testReportsAreKeptWhenTheyCannotBeStored() throws Exception {
+        File root = new File(first.getParentFile(), "file");
+        Files.write("", root, Charsets.UTF_8);
+        try {
+            new BlobStore(root).store(first,
+                    Collections.<String, String> emptyMap());
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertTrue(new File(first, "org-module-compile.html").exists());
+        assertTrue(new File(first, "org-module-compile.svg").exists());
+        assertFalse(new File(first, BlobStore.MANIFEST).exists());
+    }
+
+    public void testReusedBlobsAreReferenced() throws Exception {
+        store.store(first, Collections.<String, String> emptyMap());
+        String svg = BlobStore.readManifest(first).get(
+                "org-module-compile.svg");
+        new File(second, "org-module-compile.svg").delete();
+
+        store.store(second,
+                Collections.singletonMap("org-module-compile.svg", svg));
+
+        assertEquals(svg, BlobStore.readManifest(second).get(
+                "org-module-compile.svg"));
+    }
+
+    public void testReportsRenderedLaterAreAddedToTheManifest()
+            throws Exception {
+        new File(first, "org-module-compile.svg").delete();
+        store.store(first, Collections.<String, String> emptyMap());
+        Files.write("<svg>1</svg>", new File(first, "org-module-compile.svg"),
+                Charsets.UTF_8);
+
+        store.store(first, Collections.<String, String> emptyMap());
+
+        Map<String, String> blobs = BlobStore.readManifest(first);
+        assertEquals(2, blobs.size());
+        assertNotNull(blobs.get("org-module-compile.html"));
+        assertNotNull(blobs.get("org-module-compile.svg"));
+    }
+
+    public void testSweepDeletesUnreferencedBlobs() throws Exception {
+        store.store(first, Collections.<String, String> emptyMap());
+        store.store(second, Collections.<String, String> emptyMap());
+        Map<String, String> blobs = BlobStore.readManifest(second);
+        age(blobs);
+
+        assertEquals(0, store.sweep(Arrays.asList(first, second)));
+        new File(second, BlobStore.MANIFEST).delete();
+        assertEquals(1, store.sweep(Arrays.asList(first, second)));
+
+        assertTrue(store.getBlob(blobs.get("org-module-compile.html"))
+                .exists());
+        assertFalse(store.getBlob(blobs.get("org-module-compile.svg"))
+                .exists());
+    }
+
+    public void testSweepKeepsRecentBlobs() throws Exception {
+        store.store(first, Collections.<String, String> emptyMap());
+
+        assertEquals(0, store.sweep(Collections.<File> emptyList()));
+    }
+
+    public void testReleaseDeletesUnreferencedBlobs() throws Exception {
+        store.store(first, Collections.<String, String> emptyMap());
+        store.store(second, Collections.<String, String> emptyMap());
+        Map<String, String> blobs = BlobStore.readManifest(second);
+        age(blobs);
+        store.sweep(Arrays.asList(first, second));
+
+        store.release(blobs.values(), store.getGeneration());
+
+        assertTrue(store.getBlob(blobs.get("org-module-compile.html"))
+                .exists());
+        assertFalse(store.getBlob(blobs.get("org-module-compile.svg"))
+                .exists());
+    }
+
+    public void testReplacedBlobsAreReleased() throws Exception {
+        store.store(first, Collections.<String, String> emptyMap());
+        Map<String, String> blobs = BlobStore.readManifest(first);
+        age(blobs);
+        store.sweep(Collections.singletonList(first));
+        Files.write("<svg>3</svg>", new File(first, "org-module-compile.svg"),
+                Charsets.UTF_8);
+
+        store.store(first, Collections.<String, String> emptyMap());
+
+        assertFalse(store.getBlob(blobs.get("org-module-compile.svg"))
+                .exists());
+        assertTrue(store.getBlob(blobs.get("org-module-compile.html"))
+                .exists());
+        assertTrue(store.getBlob(
+                BlobStore.readManifest(first).get("org-module-compile.svg"))
+                .exists());
+    }
+
+    public void testReleaseIsLeftToTheSweepWhenNotCounted() throws Exception {
+        store.store(first, Collections.<String, String> emptyMap());
+        Map<String, String> blobs = BlobStore.readManifest(first);
+        age(blobs);
+
+        store.release(blobs.values(), store.getGeneration());
+        store.sweep(Collections.singletonList(first));
+        store.release(blobs.values(), store.getGeneration() - 1);
+
+        for (String blob : blobs.values()) {
+            assertTrue(store.getBlob(blob).exists());
+        }
+    }
+
+    private void age(Map<String, String> blobs) {
+        for (String blob : blobs.values()) {
+            store.getBlob(blob).setLastModified(
+                    System.currentTimeMillis() - 2 * 60 * 60 * 1000L);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package jenkins.plugins.ivyreport;
+
+import hudson.FilePath;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+import jenkins.plugins.ivyreport.utils.TestAreaUtils;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class CollectReportFilesCallableTest extends TestCase {
+    private static final File RESOLUTION_CACHE_ROOT = new File(
+            "resources/testResolutionCache");
+    private static final String RESOLVE_ID = "entropysoft-test";
+
+    private File workspace;
+    private File extracted;
+
+    public void setUp() throws Exception {
+        workspace = TestAreaUtils.getNonExistingFileInTestArea("workspace");
+        workspace.mkdirs();
+        Files.write("<ivy-module version=\"2.0\"/>", new File(workspace,
+                "ivy.xml"), Charsets.UTF_8);
+        extracted = TestAreaUtils.getNonExistingFileInTestArea("extracted");
+    }
+
+    public void testCollect() throws Exception {
+        CollectReportFilesCallable.Module module = collect(new String[] {
+                "default", "missing" }, 0, true);
+
+        assertEquals(Collections.singleton("default"), module.getReports()
+                .keySet());
+        assertEquals(fingerprint(new File(RESOLUTION_CACHE_ROOT, RESOLVE_ID
+                + "-default.xml")), module.getReports().get("default"));
+        assertTrue(module.isIvyFileSent());
+        assertEquals(new File(workspace, "ivy.xml").lastModified(),
+                module.getIvyFileLastModified());
+        assertTrue(new File(extracted, "reports/" + RESOLVE_ID
+                + "-default.xml").isFile());
+        assertTrue(new File(extracted, "ivy/0").isFile());
+    }
+
+    public void testWildcardCollectsAllReports() throws Exception {
+        CollectReportFilesCallable.Module module = collect(
+                new String[] { "*" }, 0, true);
+
+        assertEquals(2, module.getReports().size());
+        assertTrue(module.getReports().containsKey("compile"));
+        assertTrue(module.getReports().containsKey("default"));
+        assertTrue(new File(extracted, "reports/" + RESOLVE_ID
+                + "-compile.xml").isFile());
+    }
+
+    public void testReportsOfOtherModulesWithTheSamePrefixAreLeftOut()
+            throws Exception {
+        File cache = TestAreaUtils.getNonExistingFileInTestArea("cache");
+        FileUtils.copyDirectory(RESOLUTION_CACHE_ROOT, cache);
+        // the report of entropysoft-test-extra in its compile configuration
+        String other = Files.toString(new File(cache, RESOLVE_ID
+                + "-compile.xml"), Charsets.UTF_8).replace(
+                "module=\"test\"", "module=\"test-extra\"");
+        Files.write(other, new File(cache, RESOLVE_ID + "-extra-compile.xml"),
+                Charsets.UTF_8);
+
+        CollectReportFilesCallable.Module module = collect(cache,
+                new String[] { "*" }, 0, true);
+
+        assertEquals(2, module.getReports().size());
+        assertFalse(module.getReports().containsKey("extra-compile"));
+        assertFalse(new File(extracted, "reports/" + RESOLVE_ID
+                + "-extra-compile.xml").exists());
+    }
+
+    public void testUnchangedIvyFileAndReportsAreNotSent() throws Exception {
+        long lastModified = new File(workspace, "ivy.xml").lastModified();
+
+        CollectReportFilesCallable.Module module = collect(
+                new String[] { "default" }, lastModified, false);
+
+        assertEquals(1, module.getReports().size());
+        assertFalse(module.isIvyFileSent());
+        assertFalse(new File(extracted, "reports").exists());
+        assertFalse(new File(extracted, "ivy").exists());
+    }
+
+    public void testVolatileAttributesAreNotFingerprinted() throws Exception {
+        String report = Files.toString(new File(RESOLUTION_CACHE_ROOT,
+                RESOLVE_ID + "-default.xml"), Charsets.UTF_8);
+        String other = report.replace("date=\"20120214222320\"",
+                "date=\"20130101000000\"").replace("time=\"0\"",
+                "time=\"1234\"");
+
+        assertFalse(other.equals(report));
+        assertEquals(fingerprint(report), fingerprint(other));
+        assertEquals(fingerprint(report),
+                fingerprint(report.replace("\n\t\t", "\n  ")));
+    }
+
+    public void testDependencyChangesAreFingerprinted() throws Exception {
+        String report = Files.toString(new File(RESOLUTION_CACHE_ROOT,
+                RESOLVE_ID + "-default.xml"), Charsets.UTF_8);
+        String other = report.replace("name=\"1.2.16\"", "name=\"1.2.17\"");
+
+        assertFalse(fingerprint(report).equals(fingerprint(other)));
+    }
+
+    private CollectReportFilesCallable.Module collect(String[] confs,
+            long backupLastModified, boolean includeReports)
+            throws IOException, InterruptedException {
+        return collect(RESOLUTION_CACHE_ROOT, confs, backupLastModified,
+                includeReports);
+    }
+
+    private CollectReportFilesCallable.Module collect(File resolutionCacheRoot,
+            String[] confs, long backupLastModified, boolean includeReports)
+            throws IOException, InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CollectReportFilesCallable callable = new CollectReportFilesCallable(
+                workspace.getPath(), confs,
+                Collections.singletonList(new CollectReportFilesCallable.Module(
+                        RESOLVE_ID, "ivy.xml", backupLastModified)),
+                includeReports, out);
+
+        List<CollectReportFilesCallable.Module> modules = callable.invoke(
+                resolutionCacheRoot, null);
+
+        new FilePath(extracted).untarFrom(
+                new ByteArrayInputStream(out.toByteArray()),
+                FilePath.TarCompression.GZIP);
+        assertEquals(1, modules.size());
+        return modules.get(0);
+    }
+
+    private static String fingerprint(File report) throws IOException {
+        InputStream in = new FileInputStream(report);
+        try {
+            return CollectReportFilesCallable.fingerprint(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String fingerprint(String content) throws IOException {
+        return CollectReportFilesCallable.fingerprint(new ByteArrayInputStream(
+                content.getBytes("UTF-8")));
+    }
+}
@@ -0,0 +1,118 @@
+package jenkins.plugins.ivyreport;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import jenkins.plugins.ivyreport.graph.DependencyIndex;
+import jenkins.plugins.ivyreport.graph.ResolveReport;
+import jenkins.plugins.ivyreport.utils.TestAreaUtils;
+
+import junit.framework.TestCase;
+
+public class DependencyUsageIndexTest extends TestCase {
+    private static final File REPORT = new File(
+            "resources/testResolutionCache/entropysoft-test-default.xml");
+
+    private File file;
+    private DependencyIndex dependencies;
+
+    public void setUp() throws Exception {
+        file = TestAreaUtils.getNonExistingFileInTestArea("usage.bin");
+        dependencies = new DependencyIndex();
+        InputStream in = new FileInputStream(REPORT);
+        try {
+            dependencies.add(ResolveReport.parse(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testFind() throws Exception {
+        DependencyUsageIndex index = new DependencyUsageIndex(file);
+        index.update("folder/b", 3, dependencies);
+        index.update("a", 7, dependencies);
+
+        List<DependencyUsageIndex.Hit> hits = index.find("log4j:log4j");
+        assertEquals(2, hits.size());
+        assertEquals("a", hits.get(0).getJob());
+        assertEquals(7, hits.get(0).getBuild());
+        assertEquals("folder/b", hits.get(1).getJob());
+        // evicted revisions were not resolved
+        assertEquals("[1.2.16]", hits.get(0).getRevisions().toString());
+
+        assertEquals(2, index.find("log4j:log4j:1.2.16").size());
+        assertTrue(index.find("log4j:log4j:1.2.15").isEmpty());
+        assertEquals(4, index.find("log4j").size());
+        assertTrue(index.find("other:log4j").isEmpty());
+    }
+
+    public void testNewestBuildWins() throws Exception {
+        DependencyUsageIndex index = new DependencyUsageIndex(file);
+        index.update("a", 7, dependencies);
+        index.update("a", 5, new DependencyIndex());
+        assertEquals(1, index.find("log4j:log4j").size());
+
+        index.update("a", 8, new DependencyIndex());
+        assertTrue(index.find("log4j:log4j").isEmpty());
+    }
+
+    public void testRemoveAndRename() throws Exception {
+        DependencyUsageIndex index = new DependencyUsageIndex(file);
+        index.update("a", 1, dependencies);
+        index.update("b", 1, dependencies);
+
+        index.remove("a");
+        index.rename("b", "c");
+
+        List<DependencyUsageIndex.Hit> hits = index.find("log4j:log4j");
+        assertEquals(1, hits.size());
+        assertEquals("c", hits.get(0).getJob());
+    }
+
+    public void testReload() throws Exception {
+        DependencyUsageIndex index = new DependencyUsageIndex(file);
+        index.update("a", 1, dependencies);
+        index.update("b", 2, dependencies);
+        index.remove("a");
+
+        List<DependencyUsageIndex.Hit> hits = new DependencyUsageIndex(file)
+                .find("log4j:log4j");
+        assertEquals(1, hits.size());
+        assertEquals("b", hits.get(0).getJob());
+        assertEquals(2, hits.get(0).getBuild());
+    }
+
+    public void testCompaction() throws Exception {
+        DependencyUsageIndex index = new DependencyUsageIndex(file);
+        for (int build = 1; build <= 1000; build++) {
+            index.update("a", build, dependencies);
+        }
+
+        assertTrue(file.length() < 100 * 1024);
+        List<DependencyUsageIndex.Hit> hits = new DependencyUsageIndex(file)
+                .find("log4j:log4j");
+        assertEquals(1000, hits.get(0).getBuild());
+    }
+
+    public void testTruncatedRecordIsDropped() throws Exception {
+        DependencyUsageIndex index = new DependencyUsageIndex(file);
+        index.update("a", 1, dependencies);
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(new byte[] { 0, 0, 1, 0, 1 });
+        } finally {
+            out.close();
+        }
+        long length = file.length();
+
+        DependencyUsageIndex reloaded = new DependencyUsageIndex(file);
+        assertEquals(1, reloaded.find("log4j:log4j").size());
+        assertEquals(length - 5, file.length());
+        reloaded.update("b", 1, dependencies);
+        assertEquals(2, new DependencyUsageIndex(file).find("log4j:log4j")
+                .size());
+    }
+}
@@ -0,0 +1,118 @@
+package jenkins.plugins.ivyreport;
+
+import hudson.FilePath;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import jenkins.plugins.ivyreport.graph.DependencyIndex;
+import jenkins.plugins.ivyreport.graph.ReportStatistics;
+import jenkins.plugins.ivyreport.graph.ResolveReport;
+import jenkins.plugins.ivyreport.utils.TestAreaUtils;
+
+import junit.framework.TestCase;
+
+public class GenerateReportsCallableTest extends TestCase {
+    private static final File RESOLUTION_CACHE_ROOT = new File(
+            "resources/testResolutionCache");
+    private static final String RESOLVE_ID = "entropysoft-test";
+
+    private File extracted;
+
+    public void setUp() throws Exception {
+        extracted = TestAreaUtils.getNonExistingFileInTestArea("extracted");
+    }
+
+    public void testReportsAndIndexesAreSentAtOnce() throws Exception {
+        List<String> failures = generate(
+                new GenerateReportsCallable.Module(RESOLVE_ID,
+                        new String[] { "compile" }, true),
+                new GenerateReportsCallable.Module(RESOLVE_ID,
+                        new String[] { "default" }, false));
+
+        assertEquals(Arrays.asList(null, null), failures);
+        assertTrue(new File(extracted, RESOLVE_ID + "-compile.xml").isFile());
+        assertTrue(new File(extracted, RESOLVE_ID + "-compile.html.gz")
+                .isFile());
+        assertTrue(new File(extracted, RESOLVE_ID + "-compile.svg.gz")
+                .isFile());
+        // reused from the previous build, only summarized
+        assertFalse(new File(extracted, RESOLVE_ID + "-default.xml").exists());
+        assertFalse(new File(extracted, RESOLVE_ID + "-default.html.gz")
+                .exists());
+
+        ResolveReport compile = parse(RESOLVE_ID + "-compile.xml");
+        ResolveReport defaults = parse(RESOLVE_ID + "-default.xml");
+        ReportSummary summary = ReportSummary.read(new File(extracted,
+                ReportSummary.FILE_NAME));
+        assertEquals(new ReportStatistics(compile).getModules()
+                + new ReportStatistics(defaults).getModules(),
+                summary.get(ReportSummary.Value.MODULES));
+        DependencyIndex expected = new DependencyIndex();
+        expected.add(compile);
+        expected.add(defaults);
+        assertEquals(expected.getSelectedRevisions(),
+                readDependencies().getSelectedRevisions());
+        assertTrue(new File(extracted, IvyReportBuildAction.AGGREGATE_FILE)
+                .isFile());
+    }
+
+    public void testFailedModulesAreLeftOut() throws Exception {
+        List<String> failures = generate(
+                new GenerateReportsCallable.Module("missing-module",
+                        new String[] { "default" }, true),
+                new GenerateReportsCallable.Module(RESOLVE_ID,
+                        new String[] { "default" }, true));
+
+        assertTrue(failures.get(0).startsWith("Report file does not exist"));
+        assertNull(failures.get(1));
+        assertFalse(new File(extracted, "missing-module-default.xml")
+                .exists());
+        DependencyIndex expected = new DependencyIndex();
+        expected.add(parse(RESOLVE_ID + "-default.xml"));
+        assertEquals(expected.getSelectedRevisions(),
+                readDependencies().getSelectedRevisions());
+    }
+
+    private List<String> generate(GenerateReportsCallable.Module... modules)
+            throws IOException, InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GenerateReportsCallable callable = new GenerateReportsCallable(
+                Arrays.asList(modules), new ReportSettings(
+                        GraphRenderer.JAVA, "dot", false, 1), 2, 0, out);
+
+        List<String> failures = callable.invoke(RESOLUTION_CACHE_ROOT, null);
+
+        new FilePath(extracted).untarFrom(
+                new ByteArrayInputStream(out.toByteArray()),
+                FilePath.TarCompression.GZIP);
+        assertEquals(modules.length, failures.size());
+        return failures;
+    }
+
+    private DependencyIndex readDependencies() throws IOException {
+        InputStream in = new FileInputStream(new File(extracted,
+                IvyReportBuildAction.DEPENDENCIES_FILE));
+        try {
+            return DependencyIndex.read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static ResolveReport parse(String name) throws IOException {
+        InputStream in = new FileInputStream(new File(RESOLUTION_CACHE_ROOT,
+                name));
+        try {
+            return ResolveReport.parse(in);
+        } finally {
+            in.close();
+        }
+    }
+}
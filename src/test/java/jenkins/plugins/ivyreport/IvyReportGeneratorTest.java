@@ -2,8 +2,11 @@ package jenkins.plugins.ivyreport;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import jenkins.plugins.ivyreport.IvyReportGenerator;
+import jenkins.plugins.ivyreport.graph.ResolveReport;
 import jenkins.plugins.ivyreport.utils.TestAreaUtils;
 
 import org.jvnet.hudson.test.HudsonTestCase;
@@ -54,4 +57,20 @@ public class IvyReportGeneratorTest extends HudsonTestCase {
         assertTrue(new File(targetDir, "entropysoft-test-default.svg").exists());
     }
 
+    public void testParsedReportsAreHandedOver() throws IOException,
+            InterruptedException {
+        final List<String> confs = new ArrayList<String>();
+        generator.setListener(new IvyReportGenerator.ReportListener() {
+            public void parsed(ResolveReport report) {
+                confs.add(report.getConf());
+            }
+        });
+
+        // When
+        generator.generateReports();
+
+        // Then
+        assertEquals("[compile, default]", confs.toString());
+    }
+
 }
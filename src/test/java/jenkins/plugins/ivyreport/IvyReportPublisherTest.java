@@ -1,15 +1,26 @@
 package jenkins.plugins.ivyreport;
 
 import static jenkins.plugins.ivyreport.JenkinsJobProjectBuilder.aJenkinsJobProject;
+import hudson.ivy.IvyModule;
 import hudson.model.Result;
 import hudson.model.Run;
+import hudson.tasks.BuildStepMonitor;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
+import jenkins.plugins.ivyreport.graph.AggregatedGraph;
+
+import org.apache.commons.io.IOUtils;
 import org.jvnet.hudson.test.HudsonTestCase;
 
-import com.google.common.base.Charsets;
-import com.google.common.io.Files;
+import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
+import com.gargoylesoftware.htmlunit.Page;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
 
 /**
  * This test won't work if ant is not installed
@@ -37,16 +48,16 @@ public class IvyReportPublisherTest extends HudsonTestCase {
         assertTrue(run.getLog().contains("Publishing ivy report..."));
         File ivyReportDir = new File(run.getRootDir(), "ivyreport");
 
-        File compileHtmlFile = new File(ivyReportDir,
+        File compileHtmlFile = ReportFiles.resolve(ivyReportDir,
                 "entropysoft-test-compile.html");
-        assertTrue(compileHtmlFile.exists());
-        assertTrue(new File(ivyReportDir, "entropysoft-test-compile.svg")
-                .exists());
-        File defaultHtmlFile = new File(ivyReportDir,
-                "entropysoft-test-default.html");
-        assertTrue(defaultHtmlFile.exists());
-        assertTrue(new File(ivyReportDir, "entropysoft-test-default.svg")
-                .exists());
+        assertNotNull(compileHtmlFile);
+        assertTrue(ReportFiles.isCompressed(compileHtmlFile));
+        assertNotNull(ReportFiles.resolve(ivyReportDir,
+                "entropysoft-test-compile.svg"));
+        assertNotNull(ReportFiles.resolve(ivyReportDir,
+                "entropysoft-test-default.html"));
+        assertNotNull(ReportFiles.resolve(ivyReportDir,
+                "entropysoft-test-default.svg"));
     }
 
     public void testMultiModuleIvyReport() throws Exception {
@@ -70,11 +81,447 @@ public class IvyReportPublisherTest extends HudsonTestCase {
             String module = "entropysoft-module" + i;
             for (String conf : new String[] { "compile", "default" }) {
                 for (String ext : new String[] { ".html", ".svg" }) {
-                    final File file = new File(ivyReportDir, module + '-'
-                            + conf + ext);
-                    assertTrue("missing " + file, file.exists());
+                    String name = module + '-' + conf + ext;
+                    assertNotNull("missing " + name,
+                            ReportFiles.resolve(ivyReportDir, name));
                 }
             }
         }
     }
+
+    public void testAggregatedReportOfTheModuleSet() throws Exception {
+        // Given
+        JenkinsJob job = aJenkinsJobProject("ivyMultiModuleProject")
+                .withProjectZipFile(
+                        new File("resources/ivyMultiModuleProject.zip"))
+                .withIvySettingsFile(IVY_SETTINGS_FILE)
+                .withIvySettingsPropertyFiles(IVY_SETTINGS_PROPERTY_FILES)
+                .create();
+
+        // When
+        Run run = job.run();
+        HtmlPage page = createWebClient().goTo(
+                run.getUrl() + "ivyreport/aggregate");
+
+        // Then
+        IvyReportBuildAction action = (IvyReportBuildAction) run
+                .getAction(IvyReportBuildAction.class);
+        AggregatedGraph aggregate = action.getAggregate();
+        assertEquals(3, aggregate.getInternalModules().size());
+        boolean module2OnModule1 = false;
+        for (AggregatedGraph.Edge edge : aggregate.getInterModuleEdges()) {
+            module2OnModule1 |= edge.getFrom().equals("entropysoft#module2")
+                    && edge.getTo().equals("entropysoft#module1");
+        }
+        assertTrue(module2OnModule1);
+        assertFalse(aggregate.getExternalModules().isEmpty());
+        assertNotNull(page.getElementById("external"));
+        assertNotNull(page.getElementById("interModule"));
+    }
+
+    public void testMultiModuleIvyReportInParallel() throws Exception {
+        // Given
+        IvyReportPublisher.DESCRIPTOR.setModuleThreads(3);
+        JenkinsJob job = aJenkinsJobProject("ivyMultiModuleProject")
+                .withProjectZipFile(
+                        new File("resources/ivyMultiModuleProject.zip"))
+                .withIvySettingsFile(IVY_SETTINGS_FILE)
+                .withIvySettingsPropertyFiles(IVY_SETTINGS_PROPERTY_FILES)
+                .create();
+
+        try {
+            // When
+            Run run = job.run();
+
+            // Then
+            assertEquals(run.getLog(), Result.SUCCESS, run.getResult());
+            IvyReportBuildAction action = (IvyReportBuildAction) run
+                    .getAction(IvyReportBuildAction.class);
+            List<IvyReport> reports = action.getReports();
+            assertEquals(3, reports.size());
+            List<String> expected = new ArrayList<String>();
+            for (IvyModule module : job.getIvyModuleSet().getModules()) {
+                expected.add(module.getModuleName().toFileSystemName());
+            }
+            List<String> actual = new ArrayList<String>();
+            for (IvyReport report : reports) {
+                actual.add(report.getName().toFileSystemName());
+            }
+            assertEquals(expected, actual);
+        } finally {
+            IvyReportPublisher.DESCRIPTOR.setModuleThreads(null);
+        }
+    }
+
+    public void testUnchangedReportsAreReused() throws Exception {
+        // Given
+        JenkinsJob job = aJenkinsJobProject("ivyProject")
+                .withProjectZipFile(new File("resources/ivyProject.zip"))
+                .withIvySettingsFile(IVY_SETTINGS_FILE)
+                .withIvySettingsPropertyFiles(IVY_SETTINGS_PROPERTY_FILES)
+                .create();
+        Run first = job.run();
+
+        // When
+        Run second = job.run();
+
+        // Then
+        assertTrue(first.getLog(),
+                first.getLog().contains("Ivy report cache : 0 hit(s), 1 miss(es)"));
+        assertTrue(second.getLog(),
+                second.getLog().contains("Ivy report cache : 1 hit(s), 0 miss(es)"));
+        File ivyReportDir = new File(second.getRootDir(), "ivyreport");
+        for (String conf : new String[] { "compile", "default" }) {
+            String html = "entropysoft-test-" + conf + ".html";
+            assertEquals(read(new File(first.getRootDir(), "ivyreport"), html),
+                    read(ivyReportDir, html));
+            assertNotNull(ReportFiles.resolve(ivyReportDir,
+                    "entropysoft-test-" + conf + ".svg"));
+            // both builds refer to the same stored report
+            assertEquals(ReportFiles.resolve(new File(first.getRootDir(),
+                    "ivyreport"), html), ReportFiles.resolve(ivyReportDir,
+                    html));
+            assertFalse(new File(ivyReportDir, html
+                    + ReportFiles.GZIP_EXTENSION).exists());
+        }
+        assertNotNull(ReportFiles.resolve(ivyReportDir, "ivy-report.css"));
+        IvyReportBuildAction action = (IvyReportBuildAction) second
+                .getAction(IvyReportBuildAction.class);
+        assertNotNull(action.getFingerprint("entropysoft-test-compile.xml"));
+    }
+
+    public void testIvyReportGeneratedOnAgent() throws Exception {
+        // Given
+        IvyReportPublisher.DESCRIPTOR.setGenerateOnAgent(true);
+        JenkinsJob job = aJenkinsJobProject("ivyProject")
+                .withProjectZipFile(new File("resources/ivyProject.zip"))
+                .withIvySettingsFile(IVY_SETTINGS_FILE)
+                .withIvySettingsPropertyFiles(IVY_SETTINGS_PROPERTY_FILES)
+                .create();
+
+        try {
+            // When
+            Run run = job.run();
+
+            // Then
+            assertEquals(run.getLog(), Result.SUCCESS, run.getResult());
+            File ivyReportDir = new File(run.getRootDir(), "ivyreport");
+            for (String conf : new String[] { "compile", "default" }) {
+                for (String ext : new String[] { ".xml", ".html", ".svg" }) {
+                    String name = "entropysoft-test-" + conf + ext;
+                    assertNotNull("missing " + name,
+                            ReportFiles.resolve(ivyReportDir, name));
+                }
+            }
+            assertNotNull(ReportFiles.resolve(ivyReportDir, "ivy-report.css"));
+        } finally {
+            IvyReportPublisher.DESCRIPTOR.setGenerateOnAgent(false);
+        }
+    }
+
+    public void testReportIsServedCompressed() throws Exception {
+        // Given
+        JenkinsJob job = aJenkinsJobProject("ivyProject")
+                .withProjectZipFile(new File("resources/ivyProject.zip"))
+                .withIvySettingsFile(IVY_SETTINGS_FILE)
+                .withIvySettingsPropertyFiles(IVY_SETTINGS_PROPERTY_FILES)
+                .create();
+        Run run = job.run();
+        IvyReportBuildAction action = (IvyReportBuildAction) run
+                .getAction(IvyReportBuildAction.class);
+        String module = action.getReports().get(0).getName()
+                .toFileSystemName();
+
+        // When
+        HtmlPage page = createWebClient().goTo(
+                run.getUrl() + "ivyreport/report/" + module);
+
+        // Then
+        WebResponse response = page.getWebResponse();
+        assertEquals("gzip", response.getResponseHeaderValue("Content-Encoding"));
+        assertNotNull(response.getResponseHeaderValue("ETag"));
+        assertTrue(response.getResponseHeaderValue("Cache-Control").contains(
+                "immutable"));
+        assertTrue(response.getContentAsString().contains(
+                "entropysoft-test-compile.svg")
+                || response.getContentAsString().contains(
+                        "entropysoft-test-default.svg"));
+    }
+
+    public void testLazyRendering() throws Exception {
+        // Given
+        IvyReportPublisher.DESCRIPTOR.setLazyRendering(true);
+        JenkinsJob job = aJenkinsJobProject("ivyProject")
+                .withProjectZipFile(new File("resources/ivyProject.zip"))
+                .withIvySettingsFile(IVY_SETTINGS_FILE)
+                .withIvySettingsPropertyFiles(IVY_SETTINGS_PROPERTY_FILES)
+                .create();
+
+        try {
+            Run run = job.run();
+            assertEquals(run.getLog(), Result.SUCCESS, run.getResult());
+            File ivyReportDir = new File(run.getRootDir(), "ivyreport");
+            assertTrue(ReportFiles.isCompressed(ReportFiles.resolve(
+                    ivyReportDir, "entropysoft-test-compile.xml")));
+            assertNull(ReportFiles.resolve(ivyReportDir,
+                    "entropysoft-test-compile.html"));
+            IvyReportBuildAction action = (IvyReportBuildAction) run
+                    .getAction(IvyReportBuildAction.class);
+            IvyReport report = action.getReports().get(0);
+            assertTrue(report.isLazy());
+
+            // When
+            HtmlPage page = createWebClient().goTo(
+                    run.getUrl() + "ivyreport/report/"
+                            + report.getName().toFileSystemName());
+
+            // Then
+            assertTrue(page.getWebResponse().getContentAsString()
+                    .contains("<object data=\"entropysoft-test-"));
+            Page svg = createWebClient().goTo(
+                    run.getUrl() + "ivyreport/report/"
+                            + "entropysoft-test-compile.svg", "image/svg+xml");
+            assertTrue(svg.getWebResponse().getContentAsString()
+                    .contains("<svg"));
+            assertNull(ReportFiles.resolve(ivyReportDir,
+                    "entropysoft-test-compile.html"));
+        } finally {
+            IvyReportPublisher.DESCRIPTOR.setLazyRendering(false);
+        }
+    }
+
+    public void testAsyncRendering() throws Exception {
+        // Given
+        IvyReportPublisher.DESCRIPTOR.setAsyncRendering(true);
+        JenkinsJob job = aJenkinsJobProject("ivyProject")
+                .withProjectZipFile(new File("resources/ivyProject.zip"))
+                .withIvySettingsFile(IVY_SETTINGS_FILE)
+                .withIvySettingsPropertyFiles(IVY_SETTINGS_PROPERTY_FILES)
+                .create();
+
+        try {
+            assertEquals(BuildStepMonitor.NONE, job.getIvyModuleSet()
+                    .getPublishers().get(IvyReportPublisher.class)
+                    .getRequiredMonitorService());
+
+            // When
+            Run run = job.run();
+            BackgroundRenderQueue.getInstance().waitForIdle(60000);
+
+            // Then
+            assertEquals(run.getLog(), Result.SUCCESS, run.getResult());
+            assertTrue(run.getLog().contains("queued for rendering"));
+            IvyReportBuildAction action = (IvyReportBuildAction) run
+                    .getAction(IvyReportBuildAction.class);
+            assertFalse(action.isRendering());
+            IvyReport report = action.getReports().get(0);
+            assertFalse(report.isLazy());
+            File ivyReportDir = new File(run.getRootDir(), "ivyreport");
+            assertNotNull(ReportFiles.resolve(ivyReportDir,
+                    "entropysoft-test-compile.html"));
+            assertNotNull(ReportFiles.resolve(ivyReportDir,
+                    "entropysoft-test-compile.svg"));
+            assertFalse(new File(run.getRootDir(), "ivyreport-rendering")
+                    .exists());
+            HtmlPage page = createWebClient().goTo(
+                    run.getUrl() + "ivyreport/report/"
+                            + report.getName().toFileSystemName());
+            assertTrue(page.getWebResponse().getContentAsString()
+                    .contains("<object data=\"entropysoft-test-"));
+        } finally {
+            IvyReportPublisher.DESCRIPTOR.setAsyncRendering(false);
+        }
+    }
+
+    public void testProjectActionTracksLatestReport() throws Exception {
+        // Given
+        JenkinsJob job = aJenkinsJobProject("ivyProject")
+                .withProjectZipFile(new File("resources/ivyProject.zip"))
+                .withIvySettingsFile(IVY_SETTINGS_FILE)
+                .withIvySettingsPropertyFiles(IVY_SETTINGS_PROPERTY_FILES)
+                .create();
+        IvyReportProjectAction projectAction = new IvyReportProjectAction(
+                job.getIvyModuleSet());
+        assertSame(IvyReportProjectAction.Noop.INSTANCE,
+                projectAction.getTarget());
+
+        // When
+        Run first = job.run();
+        Run second = job.run();
+
+        // Then
+        assertSame(second.getAction(IvyReportBuildAction.class),
+                projectAction.getTarget());
+        second.delete();
+        assertSame(first.getAction(IvyReportBuildAction.class),
+                projectAction.getTarget());
+        first.delete();
+        assertSame(IvyReportProjectAction.Noop.INSTANCE,
+                projectAction.getTarget());
+    }
+
+    public void testTrendIsIndexedPerBuild() throws Exception {
+        // Given
+        JenkinsJob job = aJenkinsJobProject("ivyProject")
+                .withProjectZipFile(new File("resources/ivyProject.zip"))
+                .withIvySettingsFile(IVY_SETTINGS_FILE)
+                .withIvySettingsPropertyFiles(IVY_SETTINGS_PROPERTY_FILES)
+                .create();
+        IvyReportProjectAction projectAction = new IvyReportProjectAction(
+                job.getIvyModuleSet());
+
+        // When
+        Run first = job.run();
+        Run second = job.run();
+
+        // Then
+        ReportSummary summary = ReportSummary.read(new File(new File(second
+                .getRootDir(), "ivyreport"), ReportSummary.FILE_NAME));
+        assertTrue(summary.get(ReportSummary.Value.MODULES) > 0);
+        List<ReportTrend.Point> points = ReportTrend.read(job
+                .getIvyModuleSet());
+        assertEquals(2, points.size());
+        assertEquals(first.getNumber(), points.get(0).getNumber());
+        assertEquals(summary.get(ReportSummary.Value.MODULES), points.get(1)
+                .getSummary().get(ReportSummary.Value.MODULES));
+        assertTrue(projectAction.hasTrend());
+
+        // the index is rebuilt from the builds when missing
+        new File(job.getIvyModuleSet().getRootDir(), ReportTrend.FILE_NAME)
+                .delete();
+        assertEquals(2, ReportTrend.read(job.getIvyModuleSet()).size());
+        first.delete();
+        assertEquals(1, ReportTrend.read(job.getIvyModuleSet()).size());
+        assertFalse(projectAction.hasTrend());
+    }
+
+    public void testDiffAgainstPreviousBuild() throws Exception {
+        // Given
+        JenkinsJob job = aJenkinsJobProject("ivyProject")
+                .withProjectZipFile(new File("resources/ivyProject.zip"))
+                .withIvySettingsFile(IVY_SETTINGS_FILE)
+                .withIvySettingsPropertyFiles(IVY_SETTINGS_PROPERTY_FILES)
+                .create();
+        Run first = job.run();
+        Run second = job.run();
+
+        // When
+        HtmlPage page = createWebClient().goTo(
+                second.getUrl() + "ivyreport/diff?against="
+                        + first.getNumber());
+
+        // Then
+        IvyReportBuildAction action = (IvyReportBuildAction) second
+                .getAction(IvyReportBuildAction.class);
+        assertNotNull(action.getDependencies());
+        assertNotNull(page.getElementById("noChanges"));
+    }
+
+    public void testGraphIsExportedAsJson() throws Exception {
+        // Given
+        JenkinsJob job = aJenkinsJobProject("ivyProject")
+                .withProjectZipFile(new File("resources/ivyProject.zip"))
+                .withIvySettingsFile(IVY_SETTINGS_FILE)
+                .withIvySettingsPropertyFiles(IVY_SETTINGS_PROPERTY_FILES)
+                .create();
+        Run run = job.run();
+        IvyReportBuildAction action = (IvyReportBuildAction) run
+                .getAction(IvyReportBuildAction.class);
+        String module = action.getReports().get(0).getName()
+                .toFileSystemName();
+
+        // When
+        Page all = createWebClient().goTo(
+                run.getUrl() + "ivyreport/graph?count=1", "application/json");
+        Page one = createWebClient().goTo(
+                run.getUrl() + "ivyreport/report/" + module
+                        + "/graph?conf=compile", "application/json");
+        Page api = createWebClient().goTo(
+                run.getUrl() + "ivyreport/api/json", "application/json");
+
+        // Then
+        String json = all.getWebResponse().getContentAsString();
+        assertTrue(json, json.startsWith("{\"reports\":[{"));
+        assertTrue(json, json.endsWith("\"count\":1,\"more\":true}"));
+        assertTrue(one.getWebResponse().getContentAsString()
+                .contains("\"conf\":\"compile\""));
+        assertTrue(api.getWebResponse().getContentAsString()
+                .contains("\"module\""));
+    }
+
+    public void testGraphIsExploredNodeByNode() throws Exception {
+        // Given
+        JenkinsJob job = aJenkinsJobProject("ivyProject")
+                .withProjectZipFile(new File("resources/ivyProject.zip"))
+                .withIvySettingsFile(IVY_SETTINGS_FILE)
+                .withIvySettingsPropertyFiles(IVY_SETTINGS_PROPERTY_FILES)
+                .create();
+        Run run = job.run();
+        IvyReportBuildAction action = (IvyReportBuildAction) run
+                .getAction(IvyReportBuildAction.class);
+        IvyReport report = action.getReports().get(0);
+        String nodes = run.getUrl() + "ivyreport/report/"
+                + report.getName().toFileSystemName() + "/nodes?conf=compile";
+
+        // When
+        Page root = createWebClient().goTo(nodes + "&count=1",
+                "application/json");
+        WebClient browser = createWebClient();
+        // the graph itself is drawn by the browser
+        browser.setJavaScriptEnabled(false);
+        HtmlPage page = browser.goTo(
+                run.getUrl() + "ivyreport/explorer?report="
+                        + report.getName().toFileSystemName() + "/compile");
+
+        // Then
+        assertTrue(report.getConfigurations().contains("compile"));
+        String json = root.getWebResponse().getContentAsString();
+        assertTrue(json, json.startsWith("{\"node\":{\"id\":"));
+        assertTrue(json, json.contains("\"direction\":\"dependencies\","
+                + "\"start\":0"));
+        assertNotNull(page.getElementById("graphExplorer"));
+        try {
+            createWebClient().goTo(nodes + "&id=unknown%23module",
+                    "application/json");
+            fail("unknown node served");
+        } catch (FailingHttpStatusCodeException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+    }
+
+    public void testTimingsAreRecorded() throws Exception {
+        // Given
+        JenkinsJob job = aJenkinsJobProject("ivyProject")
+                .withProjectZipFile(new File("resources/ivyProject.zip"))
+                .withIvySettingsFile(IVY_SETTINGS_FILE)
+                .withIvySettingsPropertyFiles(IVY_SETTINGS_PROPERTY_FILES)
+                .create();
+        long publications = PublishMetrics.getInstance().getTotal().getCount();
+
+        // When
+        Run run = job.run();
+        HtmlPage page = createWebClient().goTo(
+                run.getUrl() + "ivyreport/timings");
+
+        // Then
+        assertTrue(run.getLog(), run.getLog().contains("Ivy report timings : "));
+        IvyReportBuildAction action = (IvyReportBuildAction) run
+                .getAction(IvyReportBuildAction.class);
+        PublishTimings timings = action.getTimings();
+        assertEquals(1, timings.getModules().size());
+        assertTrue(timings.getMillis(PublishTimings.Phase.HTML) >= 0);
+        assertTrue(timings.getMillis(PublishTimings.Phase.TRANSFER) >= 0);
+        assertNotNull(page.getElementById("modules"));
+        assertEquals(publications + 1, PublishMetrics.getInstance()
+                .getTotal().getCount());
+    }
+
+    private static String read(File dir, String name) throws IOException {
+        InputStream in = ReportFiles.open(ReportFiles.resolve(dir, name));
+        try {
+            return new String(IOUtils.toByteArray(in), "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
 }
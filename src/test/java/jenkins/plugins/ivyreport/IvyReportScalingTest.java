@@ -0,0 +1,364 @@
+package jenkins.plugins.ivyreport;
+
+import static jenkins.plugins.ivyreport.JenkinsJobProjectBuilder.aJenkinsJobProject;
+import hudson.Launcher;
+import hudson.model.BuildListener;
+import hudson.model.Result;
+import hudson.model.AbstractBuild;
+import hudson.model.Run;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import jenkins.plugins.ivyreport.utils.TestAreaUtils;
+
+import org.apache.commons.io.IOUtils;
+import org.jvnet.hudson.test.HudsonTestCase;
+
+/**
+ * Publishes the reports of generated projects of a growing number of
+ * modules, and fails when the cost of the publisher grows faster than the
+ * number of modules.
+ * <p>
+ * Every module depends on the previous one, by chains of
+ * {@value #CHAIN_LENGTH} modules, and on a graph of third-party modules
+ * {@value #LIBRARY_LAYERS} levels deep in which some revisions are evicted.
+ * All of them are resolved from a file system repository in the workspace,
+ * so no network access is needed.
+ * <p>
+ * Only run with the <tt>scaling</tt> profile:
+ * <tt>mvn test -Pscaling -Dtest=IvyReportScalingTest</tt>. The sizes of the
+ * projects are given by <tt>-Divyreport.scaling.modules=50,100,200</tt> and
+ * the tolerated deviation from linear growth by
+ * <tt>-Divyreport.scaling.tolerance=2</tt>.
+ */
+public class IvyReportScalingTest extends HudsonTestCase {
+    private static final String IVY_SETTINGS_FILE = "ivyconf.xml";
+    private static final String ORGANISATION = "org.example";
+    private static final String LIBRARY_ORGANISATION = "org.example.lib";
+    private static final int CHAIN_LENGTH = 10;
+    private static final int LIBRARY_LAYERS = 8;
+    private static final int LIBRARY_WIDTH = 16;
+    private static final int WARM_UP_MODULES = 10;
+    private static final Pattern TRANSFERRED = Pattern
+            .compile("Collected the ivy report files : (\\d+) bytes");
+
+    public void testPublisherScalesLinearlyWithModules() throws Exception {
+        // Given
+        int[] sizes = getSizes();
+        double tolerance = Double.parseDouble(System.getProperty(
+                "ivyreport.scaling.tolerance", "2"));
+        measure(WARM_UP_MODULES);
+
+        // When
+        List<Sample> samples = new ArrayList<Sample>();
+        for (int modules : sizes) {
+            samples.add(measure(modules));
+        }
+
+        // Then
+        System.out.println("modules\tmillis\tpeak heap\tfiles\tbytes written"
+                + "\tbytes transferred");
+        for (Sample sample : samples) {
+            System.out.println(sample);
+        }
+        Sample first = samples.get(0);
+        Sample last = samples.get(samples.size() - 1);
+        assertLinear("wall time", first.modules, first.millis, last.modules,
+                last.millis, tolerance);
+        assertLinear("peak heap", first.modules, first.peakHeap,
+                last.modules, last.peakHeap, tolerance);
+        assertLinear("files written", first.modules, first.files,
+                last.modules, last.files, tolerance);
+        assertLinear("bytes written", first.modules, first.bytesWritten,
+                last.modules, last.bytesWritten, tolerance);
+        assertLinear("bytes transferred", first.modules,
+                first.bytesTransferred, last.modules, last.bytesTransferred,
+                tolerance);
+    }
+
+    private static int[] getSizes() {
+        String[] values = System.getProperty("ivyreport.scaling.modules",
+                "50,100,200").split(",");
+        int[] sizes = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            sizes[i] = Integer.parseInt(values[i].trim());
+        }
+        return sizes;
+    }
+
+    private static void assertLinear(String what, int firstModules,
+            long firstValue, int lastModules, long lastValue, double tolerance) {
+        double limit = tolerance * firstValue * lastModules / firstModules;
+        assertTrue(what + " grows faster than the number of modules: "
+                + firstValue + " for " + firstModules + " modules, "
+                + lastValue + " for " + lastModules + " modules",
+                lastValue <= limit);
+    }
+
+    private Sample measure(int modules) throws Exception {
+        MeasuredPublisher publisher = new MeasuredPublisher("default,compile");
+        JenkinsJob job = aJenkinsJobProject("ivyScalingProject" + modules)
+                .withProjectZipFile(createProject(modules))
+                .withIvySettingsFile(IVY_SETTINGS_FILE)
+                .withPublisher(publisher).create();
+
+        Run run = job.run();
+
+        assertEquals(run.getLog(), Result.SUCCESS, run.getResult());
+        IvyReportBuildAction action = (IvyReportBuildAction) run
+                .getAction(IvyReportBuildAction.class);
+        assertEquals(run.getLog(), modules, action.getReports().size());
+        Matcher matcher = TRANSFERRED.matcher(run.getLog());
+        assertTrue(run.getLog(), matcher.find());
+
+        Sample sample = new Sample(modules);
+        sample.millis = publisher.millis;
+        sample.peakHeap = publisher.peakHeap;
+        sample.bytesTransferred = Long.parseLong(matcher.group(1));
+        for (File file : new File(run.getRootDir(), "ivyreport").listFiles()) {
+            sample.files++;
+            sample.bytesWritten += file.length();
+        }
+        job.delete();
+        return sample;
+    }
+
+    /**
+     * @return a zip of the workspace of a project of the given number of
+     *         modules
+     */
+    private static File createProject(int modules) throws IOException {
+        File zip = TestAreaUtils.getNonExistingFileInTestArea("ivyScaling"
+                + modules + ".zip");
+        zip.getParentFile().mkdirs();
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+        try {
+            copyIvyJar(out);
+            add(out, IVY_SETTINGS_FILE, getIvySettings());
+            add(out, "build.xml", getBuildFile(modules));
+            for (int layer = 0; layer < LIBRARY_LAYERS; layer++) {
+                for (int i = 0; i < LIBRARY_WIDTH; i++) {
+                    for (String revision : new String[] { "1.0", "1.1" }) {
+                        add(out, "repo/" + LIBRARY_ORGANISATION + "/"
+                                + getLibrary(layer, i) + "/ivys/ivy-"
+                                + revision + ".xml",
+                                getLibraryIvyFile(layer, i, revision));
+                    }
+                }
+            }
+            for (int i = 0; i < modules; i++) {
+                add(out, "modules/" + getModule(i) + "/ivy.xml",
+                        getModuleIvyFile(i));
+            }
+        } finally {
+            out.close();
+        }
+        return zip;
+    }
+
+    private static void copyIvyJar(ZipOutputStream out) throws IOException {
+        ZipFile project = new ZipFile(new File("resources/ivyProject.zip"));
+        try {
+            ZipEntry entry = project.getEntry("lib/ivy-2.2.0.jar");
+            InputStream in = project.getInputStream(entry);
+            try {
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                IOUtils.copy(in, out);
+                out.closeEntry();
+            } finally {
+                in.close();
+            }
+        } finally {
+            project.close();
+        }
+    }
+
+    private static void add(ZipOutputStream out, String name, String content)
+            throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(content.getBytes("UTF-8"));
+        out.closeEntry();
+    }
+
+    private static String getModule(int i) {
+        return String.format("module%05d", i);
+    }
+
+    private static String getLibrary(int layer, int i) {
+        return "lib-" + layer + "-" + i;
+    }
+
+    private static String getIvySettings() {
+        return "<ivysettings>\n"
+                + " <settings defaultResolver=\"local\"/>\n"
+                + " <caches lockStrategy=\"artifact-lock\""
+                + " defaultCacheDir=\"${ivy.settings.dir}/cache\""
+                + " resolutionCacheDir=\"${ivy.settings.dir}/resolution-cache\"/>\n"
+                + " <resolvers>\n"
+                + "  <filesystem name=\"local\">\n"
+                + "   <ivy pattern=\"${ivy.settings.dir}/repo/[organisation]/[module]/ivys/ivy-[revision].xml\"/>\n"
+                + "   <artifact pattern=\"${ivy.settings.dir}/repo/[organisation]/[module]/[type]s/[artifact]-[revision].[ext]\"/>\n"
+                + "  </filesystem>\n" + " </resolvers>\n"
+                + "</ivysettings>\n";
+    }
+
+    /**
+     * Publishes the modules in order, so that each of them can resolve the
+     * previous ones.
+     */
+    private static String getBuildFile(int modules) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<project xmlns:ivy=\"antlib:org.apache.ivy.ant\""
+                + " default=\"publish-all\">\n");
+        sb.append(" <target name=\"load-ivy\">\n"
+                + "  <taskdef resource=\"org/apache/ivy/ant/antlib.xml\""
+                + " uri=\"antlib:org.apache.ivy.ant\""
+                + " classpath=\"${basedir}/lib/ivy-2.2.0.jar\"/>\n"
+                + "  <ivy:configure file=\"${basedir}/ivyconf.xml\"/>\n"
+                + " </target>\n");
+        sb.append(" <macrodef name=\"publish\">\n"
+                + "  <attribute name=\"module\"/>\n" + "  <sequential>\n"
+                + "   <ivy:resolve file=\"modules/@{module}/ivy.xml\"/>\n"
+                + "   <delete dir=\"${ivy.distrib.dir}\"/>\n"
+                + "   <ivy:publish resolver=\"local\" pubrevision=\"1.0\""
+                + " overwrite=\"true\"/>\n" + "  </sequential>\n"
+                + " </macrodef>\n");
+        sb.append(" <target name=\"publish-all\" depends=\"load-ivy\">\n");
+        for (int i = 0; i < modules; i++) {
+            sb.append("  <publish module=\"").append(getModule(i))
+                    .append("\"/>\n");
+        }
+        sb.append(" </target>\n</project>\n");
+        return sb.toString();
+    }
+
+    /**
+     * Each library depends on two libraries of the next layer.
+     */
+    private static String getLibraryIvyFile(int layer, int i, String revision) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<ivy-module version=\"2.0\">\n");
+        sb.append(" <info organisation=\"" + LIBRARY_ORGANISATION
+                + "\" module=\"" + getLibrary(layer, i) + "\" revision=\""
+                + revision + "\"/>\n");
+        sb.append(" <configurations><conf name=\"default\"/></configurations>\n");
+        sb.append(" <publications/>\n <dependencies>\n");
+        if (layer + 1 < LIBRARY_LAYERS) {
+            appendDependency(sb, LIBRARY_ORGANISATION,
+                    getLibrary(layer + 1, i), "1.0", "default->default");
+            appendDependency(sb, LIBRARY_ORGANISATION,
+                    getLibrary(layer + 1, (i + 1) % LIBRARY_WIDTH), "1.0",
+                    "default->default");
+        }
+        sb.append(" </dependencies>\n</ivy-module>\n");
+        return sb.toString();
+    }
+
+    /**
+     * Each module depends on the previous one unless it starts a chain, on
+     * a library of the first layer and, for one module out of three, on a
+     * newer revision of a library further down.
+     */
+    private static String getModuleIvyFile(int i) {
+        String confs = "compile->default;default->default";
+        StringBuilder sb = new StringBuilder();
+        sb.append("<ivy-module version=\"2.0\">\n");
+        sb.append(" <info organisation=\"" + ORGANISATION + "\" module=\""
+                + getModule(i) + "\"/>\n");
+        sb.append(" <configurations><conf name=\"default\"/>"
+                + "<conf name=\"compile\"/></configurations>\n");
+        sb.append(" <publications/>\n <dependencies>\n");
+        if (i % CHAIN_LENGTH != 0) {
+            appendDependency(sb, ORGANISATION, getModule(i - 1), "1.0", confs);
+        }
+        appendDependency(sb, LIBRARY_ORGANISATION,
+                getLibrary(0, i % LIBRARY_WIDTH), "1.0", confs);
+        if (i % 3 == 0) {
+            appendDependency(sb, LIBRARY_ORGANISATION,
+                    getLibrary(LIBRARY_LAYERS / 2, i % LIBRARY_WIDTH), "1.1",
+                    confs);
+        }
+        sb.append(" </dependencies>\n</ivy-module>\n");
+        return sb.toString();
+    }
+
+    private static void appendDependency(StringBuilder sb, String org,
+            String name, String rev, String conf) {
+        sb.append("  <dependency org=\"" + org + "\" name=\"" + name
+                + "\" rev=\"" + rev + "\" conf=\"" + conf + "\"/>\n");
+    }
+
+    private static final class Sample {
+        final int modules;
+        long millis;
+        long peakHeap;
+        long files;
+        long bytesWritten;
+        long bytesTransferred;
+
+        Sample(int modules) {
+            this.modules = modules;
+        }
+
+        @Override
+        public String toString() {
+            return modules + "\t" + millis + "\t" + peakHeap + "\t" + files
+                    + "\t" + bytesWritten + "\t" + bytesTransferred;
+        }
+    }
+
+    /**
+     * Measures the wall time and the peak heap usage of the publisher.
+     */
+    public static final class MeasuredPublisher extends IvyReportPublisher {
+        private transient long millis;
+        private transient long peakHeap;
+
+        public MeasuredPublisher(String ivyReportConfigurations) {
+            super(ivyReportConfigurations);
+        }
+
+        @Override
+        public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
+                BuildListener listener) throws InterruptedException,
+                IOException {
+            List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+            for (MemoryPoolMXBean pool : ManagementFactory
+                    .getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pools.add(pool);
+                }
+            }
+            System.gc();
+            long before = 0;
+            for (MemoryPoolMXBean pool : pools) {
+                before += pool.getUsage().getUsed();
+                pool.resetPeakUsage();
+            }
+            long start = System.nanoTime();
+            try {
+                return super.perform(build, launcher, listener);
+            } finally {
+                millis = (System.nanoTime() - start) / 1000000;
+                long peak = 0;
+                for (MemoryPoolMXBean pool : pools) {
+                    peak += pool.getPeakUsage().getUsed();
+                }
+                peakHeap = Math.max(0, peak - before);
+            }
+        }
+    }
+}
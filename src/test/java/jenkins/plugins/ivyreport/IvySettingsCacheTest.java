@@ -0,0 +1,93 @@
+package jenkins.plugins.ivyreport;
+
+import hudson.EnvVars;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import jenkins.plugins.ivyreport.utils.TestAreaUtils;
+
+import junit.framework.TestCase;
+
+import org.apache.ivy.core.settings.IvySettings;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class IvySettingsCacheTest extends TestCase {
+    private static final List<File> NO_PROPERTY_FILES = Collections
+            .emptyList();
+
+    private File dir;
+    private File settingsFile;
+    private IvySettingsCache cache;
+
+    public void setUp() throws Exception {
+        dir = TestAreaUtils.getNonExistingFileInTestArea("settings");
+        dir.mkdirs();
+        settingsFile = new File(dir, "ivysettings.xml");
+        writeSettings("<ivysettings><properties environment=\"env\"/>"
+                + "<caches resolutionCacheDir=\"${env.IVY_REPORT_CACHE}\"/>"
+                + "</ivysettings>");
+        cache = new IvySettingsCache(2);
+    }
+
+    public void testUnchangedSettingsAreReused() throws Exception {
+        IvySettings settings = get(null, env("a"));
+
+        assertSame(settings, get(null, env("a")));
+        assertSame(cache.getIvy(settingsFile, NO_PROPERTY_FILES, null, null),
+                cache.getIvy(settingsFile, NO_PROPERTY_FILES, null, null));
+    }
+
+    public void testModifiedSettingsAreReloaded() throws Exception {
+        IvySettings settings = get(null, env("a"));
+        writeSettings("<ivysettings><properties environment=\"env\"/>"
+                + "<caches resolutionCacheDir=\"${env.IVY_REPORT_CACHE}/b\"/>"
+                + "</ivysettings>");
+        settingsFile.setLastModified(settingsFile.lastModified() + 2000);
+
+        assertNotSame(settings, get(null, env("a")));
+    }
+
+    public void testBranchIsPartOfTheKey() throws Exception {
+        assertNotSame(get("trunk", env("a")), get("branch", env("a")));
+    }
+
+    public void testOnlyReadEnvironmentVariablesAreChecked() throws Exception {
+        IvySettings settings = get(null, env("a"));
+        EnvVars other = env("a");
+        other.put("UNRELATED", "value");
+
+        assertSame(settings, get(null, other));
+        IvySettings reloaded = get(null, env("b"));
+        assertNotSame(settings, reloaded);
+        assertEquals(new File(dir, "b").getAbsoluteFile(), reloaded
+                .getResolutionCacheManager().getResolutionCacheRoot()
+                .getAbsoluteFile());
+    }
+
+    public void testLeastRecentlyUsedSettingsAreEvicted() throws Exception {
+        IvySettings settings = get("1", env("a"));
+        get("2", env("a"));
+        get("3", env("a"));
+
+        assertNotSame(settings, get("1", env("a")));
+    }
+
+    private IvySettings get(String branch, EnvVars envVars) throws Exception {
+        return cache.getSettings(settingsFile, NO_PROPERTY_FILES, branch,
+                envVars);
+    }
+
+    private EnvVars env(String cacheDir) {
+        EnvVars envVars = new EnvVars();
+        envVars.put("IVY_REPORT_CACHE", new File(dir, cacheDir).getPath());
+        return envVars;
+    }
+
+    private void writeSettings(String content) throws Exception {
+        Files.write(content, settingsFile, Charsets.UTF_8);
+    }
+}
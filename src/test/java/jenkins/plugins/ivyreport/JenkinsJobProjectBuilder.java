@@ -20,6 +20,7 @@ public class JenkinsJobProjectBuilder {
     private File resource;
     private String ivySettingsFile;
     private String ivySettingsPropertyFiles;
+    private IvyReportPublisher publisher;
 
     private JenkinsJobProjectBuilder(String name) {
         this.name = name;
@@ -45,6 +46,11 @@ public class JenkinsJobProjectBuilder {
         return this;
     }
 
+    public JenkinsJobProjectBuilder withPublisher(IvyReportPublisher publisher) {
+        this.publisher = publisher;
+        return this;
+    }
+
     public JenkinsJob create() throws Exception {
         Hudson jenkins = Hudson.getInstance();
         TopLevelItem item = jenkins.getItem(name);
@@ -61,7 +67,9 @@ public class JenkinsJobProjectBuilder {
         } finally {
             field.setAccessible(false);
         }
-        job.getPublishers().add(new IvyReportPublisher("default,compile"));
+        job.getPublishers().add(
+                publisher != null ? publisher : new IvyReportPublisher(
+                        "default,compile"));
         job.setScm(new ExtractResourceSCM(resource.toURI().toURL()));
 
         job.save();
@@ -0,0 +1,68 @@
+package jenkins.plugins.ivyreport;
+
+import java.io.File;
+
+import jenkins.plugins.ivyreport.utils.TestAreaUtils;
+
+import junit.framework.TestCase;
+
+import org.apache.ivy.Ivy;
+import org.apache.ivy.core.module.descriptor.DefaultModuleDescriptor;
+import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class ModuleDescriptorCacheTest extends TestCase {
+    private File ivyFile;
+    private Ivy ivy;
+    private ModuleDescriptor descriptor;
+    private ModuleDescriptorCache cache;
+
+    public void setUp() throws Exception {
+        File dir = TestAreaUtils.getNonExistingFileInTestArea("descriptors");
+        dir.mkdirs();
+        ivyFile = new File(dir, "org$module$ivy.xml");
+        Files.write("<ivy-module version=\"2.0\"/>", ivyFile, Charsets.UTF_8);
+        ivy = Ivy.newInstance();
+        descriptor = DefaultModuleDescriptor
+                .newDefaultInstance(ModuleRevisionId.newInstance("org",
+                        "module", "1.0"));
+        cache = new ModuleDescriptorCache(1);
+    }
+
+    public void testUnchangedDescriptorIsReused() throws Exception {
+        put(ivyFile);
+
+        assertSame(descriptor, cache.get(ivyFile, ivy));
+    }
+
+    public void testModifiedIvyFileIsReparsed() throws Exception {
+        put(ivyFile);
+        Files.write("<ivy-module version=\"2.0\"><info/></ivy-module>",
+                ivyFile, Charsets.UTF_8);
+
+        assertNull(cache.get(ivyFile, ivy));
+    }
+
+    public void testOtherIvyInstanceIsNotServed() throws Exception {
+        put(ivyFile);
+
+        assertNull(cache.get(ivyFile, Ivy.newInstance()));
+    }
+
+    public void testSizeIsBounded() throws Exception {
+        File other = new File(ivyFile.getParentFile(), "org$other$ivy.xml");
+        Files.write("<ivy-module version=\"2.0\"/>", other, Charsets.UTF_8);
+        put(ivyFile);
+        put(other);
+
+        assertNull(cache.get(ivyFile, ivy));
+        assertSame(descriptor, cache.get(other, ivy));
+    }
+
+    private void put(File file) {
+        cache.put(file, ivy, file.lastModified(), file.length(), descriptor);
+    }
+}
@@ -0,0 +1,83 @@
+package jenkins.plugins.ivyreport;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.TestCase;
+
+public class ModuleExecutorTest extends TestCase {
+
+    public void testOnlyCompletedModulesHaveResults() throws Exception {
+        List<ModuleExecutor.Outcome<String>> outcomes = ModuleExecutor.run(
+                Arrays.asList(new Result("a"), new Failure(), new Result("c")),
+                2, 0);
+
+        assertEquals("a", outcomes.get(0).getResult());
+        assertNull(outcomes.get(1).getResult());
+        assertFalse(outcomes.get(1).isTimedOut());
+        assertTrue(outcomes.get(1).getFailure() instanceof IOException);
+        assertEquals("c", outcomes.get(2).getResult());
+    }
+
+    public void testTimedOutModulesAreStoppedBeforeReturning()
+            throws Exception {
+        Stuck stuck = new Stuck();
+        List<ModuleExecutor.Outcome<String>> outcomes = ModuleExecutor.run(
+                Arrays.asList(stuck, new Result("b")), 1, 100);
+
+        assertTrue(outcomes.get(0).isTimedOut());
+        assertNull(outcomes.get(0).getResult());
+        // queued behind the stuck module, but given its own timeout
+        assertEquals("b", outcomes.get(1).getResult());
+        // the stuck module went no further than the phase it timed out in
+        assertTrue(stuck.stopped.await(0, TimeUnit.MILLISECONDS));
+        assertFalse(stuck.finished.get());
+    }
+
+    private static class Result extends ModuleExecutor.Task<String> {
+        private final String result;
+
+        Result(String result) {
+            this.result = result;
+        }
+
+        @Override
+        protected String run() {
+            return result;
+        }
+    }
+
+    private static class Failure extends ModuleExecutor.Task<String> {
+        @Override
+        protected String run() throws IOException {
+            throw new IOException("broken report");
+        }
+    }
+
+    private static class Stuck extends ModuleExecutor.Task<String> {
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final AtomicBoolean finished = new AtomicBoolean();
+
+        @Override
+        protected String run() throws InterruptedException {
+            long end = System.currentTimeMillis() + 5000;
+            // busy with a phase until interrupted
+            while (System.currentTimeMillis() < end
+                    && !Thread.currentThread().isInterrupted()) {
+                Thread.yield();
+            }
+            try {
+                checkInterrupted();
+            } catch (InterruptedException e) {
+                stopped.countDown();
+                throw e;
+            }
+            finished.set(true);
+            return "a";
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package jenkins.plugins.ivyreport;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class PhaseStatsTest extends TestCase {
+    private static final long MILLIS = 1000000;
+
+    public void testHistogram() {
+        PhaseStats stats = new PhaseStats();
+        for (int i = 0; i < 18; i++) {
+            stats.add(5 * MILLIS);
+        }
+        stats.add(500 * MILLIS);
+        stats.add(700000 * MILLIS);
+
+        assertEquals(20, stats.getCount());
+        assertEquals(700000, stats.getMaxMillis());
+        assertEquals(700590, stats.getTotalMillis());
+        assertEquals(
+                Arrays.toString(new long[] { 0, 18, 0, 1, 0, 0, 0, 1 }),
+                Arrays.toString(stats.getBucketCounts()));
+        assertEquals(1000, stats.get95thPercentileMillis());
+    }
+
+    public void testPercentileIsCappedByMaximum() {
+        PhaseStats stats = new PhaseStats();
+        stats.add(2 * MILLIS);
+
+        assertEquals(2, stats.get95thPercentileMillis());
+    }
+
+    public void testReset() {
+        PhaseStats stats = new PhaseStats();
+        stats.add(2 * MILLIS);
+
+        stats.reset();
+
+        assertEquals(0, stats.getCount());
+        assertEquals(0.0, stats.getMeanMillis());
+        assertEquals(0, stats.get95thPercentileMillis());
+    }
+}
@@ -0,0 +1,55 @@
+package jenkins.plugins.ivyreport;
+
+import java.util.Arrays;
+import java.util.List;
+
+import jenkins.plugins.ivyreport.PublishTimings.Phase;
+
+import junit.framework.TestCase;
+
+public class PublishTimingsTest extends TestCase {
+    private static final long MILLIS = 1000000;
+
+    public void testPhasesAreSummedOverModules() {
+        PublishTimings timings = new PublishTimings();
+        long now = System.nanoTime();
+        timings.record(null, Phase.TRANSFER, now - 5 * MILLIS);
+        timings.record("org#a", Phase.HTML, now - 10 * MILLIS);
+        timings.record("org#a", Phase.HTML, now - 10 * MILLIS);
+        timings.record("org#b", Phase.HTML, now - 3 * MILLIS);
+
+        assertTrue(timings.getMillis(Phase.TRANSFER) >= 5);
+        assertTrue(timings.getMillis(Phase.HTML) >= 23);
+        assertEquals(-1, timings.getMillis(Phase.DOT));
+        assertEquals(Arrays.asList(Phase.TRANSFER, Phase.HTML),
+                timings.getPhases());
+        assertEquals(Arrays.asList(Phase.HTML), timings.getModulePhases());
+    }
+
+    public void testModulesAreSortedSlowestFirst() {
+        PublishTimings timings = new PublishTimings();
+        long now = System.nanoTime();
+        timings.record("org#a", Phase.HTML, now - MILLIS);
+        timings.record("org#b", Phase.GRAPH, now - 50 * MILLIS);
+
+        List<PublishTimings.Module> modules = timings.getModules();
+
+        assertEquals("org#b", modules.get(0).getName());
+        assertEquals("org#a", modules.get(1).getName());
+        assertEquals(-1, modules.get(1).getMillis(Phase.GRAPH));
+        assertTrue(modules.get(0).getTotalMillis() >= 50);
+    }
+
+    public void testSummarize() {
+        PublishTimings timings = new PublishTimings();
+        long start = System.nanoTime();
+        timings.record("org#a", Phase.PARSE, start);
+        timings.recordTotal(start);
+
+        String summary = timings.summarize(3);
+
+        assertTrue(summary, summary.startsWith("Ivy report timings : "));
+        assertTrue(summary, summary.contains(", Resolve report parsing "));
+        assertTrue(summary, summary.contains("slowest module(s) : org#a "));
+    }
+}
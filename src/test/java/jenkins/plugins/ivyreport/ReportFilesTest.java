@@ -0,0 +1,63 @@
+package jenkins.plugins.ivyreport;
+
+import java.io.File;
+import java.io.InputStream;
+
+import jenkins.plugins.ivyreport.utils.TestAreaUtils;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class ReportFilesTest extends TestCase {
+    private File dir;
+
+    public void setUp() throws Exception {
+        dir = TestAreaUtils.getNonExistingFileInTestArea("reports");
+        dir.mkdirs();
+        Files.write("<html/>", new File(dir, "org-module-compile.html"),
+                Charsets.UTF_8);
+        Files.write("<svg/>", new File(dir, "org-module-compile.svg"),
+                Charsets.UTF_8);
+        Files.write("<ivy-report/>", new File(dir, "org-module-compile.xml"),
+                Charsets.UTF_8);
+    }
+
+    public void testCompress() throws Exception {
+        ReportFiles.compress(dir, "org-module-compile");
+
+        File html = ReportFiles.resolve(dir, "org-module-compile.html");
+        assertEquals("org-module-compile.html.gz", html.getName());
+        assertFalse(new File(dir, "org-module-compile.html").exists());
+        assertEquals("<html/>", read(html));
+        assertTrue(ReportFiles.isCompressed(ReportFiles.resolve(dir,
+                "org-module-compile.svg")));
+        File xml = ReportFiles.resolve(dir, "org-module-compile.xml");
+        assertFalse(ReportFiles.isCompressed(xml));
+        assertEquals("<ivy-report/>", read(xml));
+    }
+
+    public void testCompressTwice() throws Exception {
+        ReportFiles.compress(dir, "org-module-compile");
+        ReportFiles.compress(dir, "org-module-compile");
+
+        assertEquals("<html/>", read(ReportFiles.resolve(dir,
+                "org-module-compile.html")));
+    }
+
+    public void testResolveMissing() throws Exception {
+        assertNull(ReportFiles.resolve(dir, "org-module-default.html"));
+    }
+
+    private static String read(File file) throws Exception {
+        InputStream in = ReportFiles.open(file);
+        try {
+            return new String(IOUtils.toByteArray(in), "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package jenkins.plugins.ivyreport;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import jenkins.plugins.ivyreport.graph.ReportStatistics;
+import jenkins.plugins.ivyreport.graph.ResolveReport;
+import jenkins.plugins.ivyreport.utils.TestAreaUtils;
+
+import junit.framework.TestCase;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class ReportSummaryTest extends TestCase {
+    private static final File REPORT = new File(
+            "resources/testResolutionCache/entropysoft-test-default.xml");
+
+    private File file;
+
+    public void setUp() throws Exception {
+        file = TestAreaUtils.getNonExistingFileInTestArea("summary.bin");
+    }
+
+    public void testAddSumsReports() throws Exception {
+        ReportSummary summary = new ReportSummary();
+        summary.add(statistics());
+        summary.add(statistics());
+
+        assertEquals(4, summary.get(ReportSummary.Value.MODULES));
+        assertEquals(6, summary.get(ReportSummary.Value.REVISIONS));
+        assertEquals(2, summary.get(ReportSummary.Value.EVICTED));
+        assertEquals(4, summary.get(ReportSummary.Value.ARTIFACTS));
+    }
+
+    public void testWriteRead() throws Exception {
+        ReportSummary summary = new ReportSummary();
+        summary.add(statistics());
+        summary.write(file);
+
+        assertEquals(8 + ReportSummary.SIZE, file.length());
+        ReportSummary read = ReportSummary.read(file);
+        for (ReportSummary.Value value : ReportSummary.Value.values()) {
+            assertEquals(summary.get(value), read.get(value));
+        }
+    }
+
+    public void testReadInvalid() throws Exception {
+        assertNull(ReportSummary.read(file));
+        Files.write("not a summary", file, Charsets.UTF_8);
+        assertNull(ReportSummary.read(file));
+    }
+
+    private static ReportStatistics statistics() throws Exception {
+        InputStream in = new FileInputStream(REPORT);
+        try {
+            return new ReportStatistics(ResolveReport.parse(in));
+        } finally {
+            in.close();
+        }
+    }
+}
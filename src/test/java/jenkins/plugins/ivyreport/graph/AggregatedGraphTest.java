@@ -0,0 +1,181 @@
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class AggregatedGraphTest extends TestCase {
+    private AggregatedGraph graph;
+
+    public void setUp() throws Exception {
+        graph = new AggregatedGraph();
+        // app depends on core, both depend on log4j, in other revisions
+        graph.add(new Report("app").dependency("app", "core", "1.0")
+                .dependency("app", "log4j", "1.2.16")
+                .dependency("core", "log4j", "1.2.15").evicted("log4j",
+                        "1.2.15").parse());
+        graph.add(new Report("core").dependency("core", "log4j", "1.2.15")
+                .parse());
+        // merging a report twice changes nothing
+        graph.add(new Report("core").dependency("core", "log4j", "1.2.15")
+                .parse());
+    }
+
+    public void testModules() throws Exception {
+        assertEquals("[org#app, org#core]", ids(graph.getInternalModules()));
+        assertEquals("[org#log4j]", ids(graph.getExternalModules()));
+        AggregatedGraph.Module log4j = graph.getExternalModules().get(0);
+        assertEquals("[1.2.15, 1.2.16]", log4j.getRevisions().toString());
+        assertTrue(log4j.isConflicting());
+        assertEquals(2, log4j.getUsers());
+        assertEquals(2, log4j.getCallers());
+    }
+
+    public void testEdges() throws Exception {
+        assertEquals("[org#app>org#core*, org#app>org#log4j, "
+                + "org#core>org#log4j]", edges(graph.getEdges()));
+        assertEquals("[org#app>org#core*]", edges(graph
+                .getInterModuleEdges()));
+    }
+
+    public void testEvictedRevision() throws Exception {
+        AggregatedGraph other = new AggregatedGraph();
+        other.add(new Report("app").dependency("app", "log4j", "1.2.16")
+                .dependency("app", "log4j", "1.2.15").evicted("log4j",
+                        "1.2.15").parse());
+
+        AggregatedGraph.Module log4j = other.getExternalModules().get(0);
+        assertEquals("[1.2.15 (evicted), 1.2.16]", log4j.getRevisions()
+                .toString());
+        assertFalse(log4j.isConflicting());
+    }
+
+    public void testMergedGraphs() throws Exception {
+        AggregatedGraph app = new AggregatedGraph();
+        app.add(new Report("app").dependency("app", "core", "1.0")
+                .dependency("app", "log4j", "1.2.16")
+                .dependency("core", "log4j", "1.2.15").evicted("log4j",
+                        "1.2.15").parse());
+        AggregatedGraph core = new AggregatedGraph();
+        core.add(new Report("core").dependency("core", "log4j", "1.2.15")
+                .parse());
+        AggregatedGraph merged = new AggregatedGraph();
+
+        merged.add(app);
+        merged.add(core);
+        merged.add(core);
+
+        assertEquals(ids(graph.getInternalModules()), ids(merged
+                .getInternalModules()));
+        assertEquals(edges(graph.getEdges()), edges(merged.getEdges()));
+        AggregatedGraph.Module log4j = merged.getExternalModules().get(0);
+        assertEquals("[1.2.15, 1.2.16]", log4j.getRevisions().toString());
+        assertEquals(2, log4j.getUsers());
+        assertEquals(2, log4j.getCallers());
+    }
+
+    public void testWriteRead() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        graph.write(out);
+
+        AggregatedGraph read = AggregatedGraph.read(new ByteArrayInputStream(
+                out.toByteArray()));
+        assertEquals(ids(graph.getInternalModules()), ids(read
+                .getInternalModules()));
+        assertEquals(edges(graph.getEdges()), edges(read.getEdges()));
+        AggregatedGraph.Module log4j = read.getExternalModules().get(0);
+        assertEquals("[1.2.15, 1.2.16]", log4j.getRevisions().toString());
+        assertEquals(2, log4j.getUsers());
+        assertEquals(2, log4j.getCallers());
+    }
+
+    private static String ids(List<AggregatedGraph.Module> modules) {
+        List<String> ids = new ArrayList<String>();
+        for (AggregatedGraph.Module module : modules) {
+            ids.add(module.getId());
+        }
+        return ids.toString();
+    }
+
+    private static String edges(List<AggregatedGraph.Edge> edges) {
+        List<String> result = new ArrayList<String>();
+        for (AggregatedGraph.Edge edge : edges) {
+            result.add(edge.getFrom() + ">" + edge.getTo()
+                    + (edge.isInterModule() ? "*" : ""));
+        }
+        return result.toString();
+    }
+
+    /**
+     * A resolve report of the organisation <tt>org</tt>.
+     */
+    private static final class Report {
+        private final String root;
+        // callers by revision, by module
+        private final Map<String, Map<String, List<String>>> modules = new LinkedHashMap<String, Map<String, List<String>>>();
+        private final List<String> evicted = new ArrayList<String>();
+
+        Report(String root) {
+            this.root = root;
+        }
+
+        Report dependency(String from, String to, String revision) {
+            Map<String, List<String>> revisions = modules.get(to);
+            if (revisions == null) {
+                revisions = new LinkedHashMap<String, List<String>>();
+                modules.put(to, revisions);
+            }
+            List<String> callers = revisions.get(revision);
+            if (callers == null) {
+                callers = new ArrayList<String>();
+                revisions.put(revision, callers);
+            }
+            callers.add(from);
+            return this;
+        }
+
+        Report evicted(String module, String revision) {
+            evicted.add(module + ";" + revision);
+            return this;
+        }
+
+        ResolveReport parse() throws Exception {
+            StringBuilder xml = new StringBuilder();
+            xml.append("<ivy-report version=\"1.0\"><info organisation=\"org\""
+                    + " module=\"" + root + "\" revision=\"1\""
+                    + " conf=\"default\" confs=\"default\""
+                    + " date=\"20120101000000\"/><dependencies>");
+            for (Map.Entry<String, Map<String, List<String>>> module : modules
+                    .entrySet()) {
+                xml.append("<module organisation=\"org\" name=\"")
+                        .append(module.getKey()).append("\">");
+                for (Map.Entry<String, List<String>> revision : module
+                        .getValue().entrySet()) {
+                    xml.append("<revision name=\"").append(revision.getKey())
+                            .append("\"");
+                    if (evicted.contains(module.getKey() + ";"
+                            + revision.getKey())) {
+                        xml.append(" evicted=\"latest-revision\"");
+                    }
+                    xml.append(">");
+                    for (String caller : revision.getValue()) {
+                        xml.append("<caller organisation=\"org\" name=\"")
+                                .append(caller).append("\" conf=\"default\"")
+                                .append(" rev=\"").append(revision.getKey())
+                                .append("\" callerrev=\"1\"/>");
+                    }
+                    xml.append("</revision>");
+                }
+                xml.append("</module>");
+            }
+            xml.append("</dependencies></ivy-report>");
+            return ResolveReport.parse(new ByteArrayInputStream(xml
+                    .toString().getBytes("UTF-8")));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.IOUtils;
+
+public class DependencyIndexTest extends TestCase {
+    private static final File REPORT = new File(
+            "resources/testResolutionCache/entropysoft-test-default.xml");
+
+    private String xml;
+
+    public void setUp() throws Exception {
+        InputStream in = new FileInputStream(REPORT);
+        try {
+            xml = IOUtils.toString(in, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testNoChange() throws Exception {
+        assertTrue(index(xml).diff(index(xml)).isEmpty());
+    }
+
+    public void testWriteRead() throws Exception {
+        DependencyIndex index = index(xml);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.write(out);
+
+        DependencyIndex read = DependencyIndex.read(new ByteArrayInputStream(
+                out.toByteArray()));
+        assertTrue(read.diff(index).isEmpty());
+        assertTrue(index.diff(read).isEmpty());
+    }
+
+    public void testDiff() throws Exception {
+        String before = xml.replace("<revision name=\"1.1\"",
+                "<revision name=\"1.0\"").replace(
+                " evicted=\"latest-revision\"", "");
+
+        DependencyDiff diff = index(xml).diff(index(before));
+
+        assertEquals(1, diff.getReports().size());
+        DependencyDiff.ReportDiff report = diff.getReports().get(0);
+        assertEquals("entropysoft#test", report.getModule());
+        assertEquals("default", report.getConf());
+        assertTrue(report.getAddedModules().isEmpty());
+        assertTrue(report.getRemovedModules().isEmpty());
+        assertEquals(2, report.getRevisionChanges().size());
+        DependencyDiff.RevisionChange extras = report.getRevisionChanges()
+                .get(0);
+        assertEquals("log4j#apache-log4j-extras", extras.getModule());
+        assertEquals("1.0", extras.getFrom());
+        assertEquals("1.1", extras.getTo());
+        DependencyDiff.RevisionChange log4j = report.getRevisionChanges()
+                .get(1);
+        assertEquals("1.2.15,1.2.16", log4j.getFrom());
+        assertEquals("1.2.16", log4j.getTo());
+        assertEquals("[log4j#log4j;1.2.15]", report.getNewEvictions()
+                .toString());
+        assertTrue(report.getNewErrors().isEmpty());
+    }
+
+    public void testAddedAndRemovedModules() throws Exception {
+        String before = xml.replace("name=\"apache-log4j-extras\"",
+                "name=\"other\"");
+
+        DependencyDiff.ReportDiff report = index(xml).diff(index(before))
+                .getReports().get(0);
+
+        assertEquals("[log4j#apache-log4j-extras;1.1]", report
+                .getAddedModules().toString());
+        assertEquals("[log4j#other;1.1]", report.getRemovedModules()
+                .toString());
+    }
+
+    public void testAddedConfiguration() throws Exception {
+        String other = xml.replace("conf=\"default\"", "conf=\"test\"");
+
+        DependencyDiff diff = index(xml).diff(index(other));
+
+        assertEquals(2, diff.getReports().size());
+        assertTrue(diff.getReports().get(0).isAdded());
+        assertEquals("default", diff.getReports().get(0).getConf());
+        assertTrue(diff.getReports().get(1).isRemoved());
+    }
+
+    public void testMergedIndexes() throws Exception {
+        String other = xml.replace("conf=\"default\"", "conf=\"test\"");
+        DependencyIndex both = index(xml);
+        both.add(ResolveReport.parse(new ByteArrayInputStream(other
+                .getBytes("UTF-8"))));
+        DependencyIndex merged = new DependencyIndex();
+
+        merged.add(index(xml));
+        merged.add(index(other));
+
+        assertTrue(merged.diff(both).isEmpty());
+        assertTrue(both.diff(merged).isEmpty());
+    }
+
+    private static DependencyIndex index(String xml) throws IOException {
+        DependencyIndex index = new DependencyIndex();
+        index.add(ResolveReport.parse(new ByteArrayInputStream(xml
+                .getBytes("UTF-8"))));
+        return index;
+    }
+}
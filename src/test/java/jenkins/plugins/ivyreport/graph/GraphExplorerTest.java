@@ -0,0 +1,92 @@
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+public class GraphExplorerTest extends TestCase {
+    private static final File REPORT = new File(
+            "resources/testResolutionCache/entropysoft-test-default.xml");
+
+    private GraphExplorer explorer;
+
+    public void setUp() throws Exception {
+        InputStream in = new FileInputStream(REPORT);
+        try {
+            explorer = new GraphExplorer(ResolveReport.parse(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testRoot() throws Exception {
+        assertEquals("entropysoft#test", explorer.getRootId());
+        assertTrue(explorer.hasNode("log4j#log4j"));
+        assertFalse(explorer.hasNode("log4j#other"));
+    }
+
+    public void testDependencies() throws Exception {
+        assertEquals("{\"node\":{\"id\":\"entropysoft#test\","
+                + "\"organisation\":\"entropysoft\",\"name\":\"test\","
+                + "\"revisions\":[{\"name\":\"working@silver\","
+                + "\"evicted\":false,\"error\":false}],"
+                + "\"callers\":0,\"dependencies\":2},"
+                + "\"direction\":\"dependencies\",\"start\":0,\"total\":2,"
+                + "\"more\":false,\"nodes\":["
+                + "{\"id\":\"log4j#apache-log4j-extras\","
+                + "\"organisation\":\"log4j\","
+                + "\"name\":\"apache-log4j-extras\","
+                + "\"revisions\":[{\"name\":\"1.1\",\"evicted\":false,"
+                + "\"error\":false}],\"callers\":1,\"dependencies\":1,"
+                + "\"edge\":{\"evicted\":false,\"rev\":null}},"
+                + "{\"id\":\"log4j#log4j\",\"organisation\":\"log4j\","
+                + "\"name\":\"log4j\",\"revisions\":[{\"name\":\"1.2.16\","
+                + "\"evicted\":false,\"error\":false},{\"name\":\"1.2.15\","
+                + "\"evicted\":true,\"error\":false}],\"callers\":2,"
+                + "\"dependencies\":0,"
+                + "\"edge\":{\"evicted\":false,\"rev\":\"1.2.15\"}}]}",
+                write("entropysoft#test", false, 0, 10));
+    }
+
+    public void testCallers() throws Exception {
+        String json = write("log4j#log4j", true, 0, 10);
+
+        assertTrue(json, json.contains("\"direction\":\"callers\","
+                + "\"start\":0,\"total\":2,\"more\":false"));
+        assertTrue(json.indexOf("\"id\":\"entropysoft#test\"") < json
+                .indexOf("\"id\":\"log4j#apache-log4j-extras\""));
+    }
+
+    public void testPaging() throws Exception {
+        String first = write("log4j#log4j", true, 0, 1);
+        String second = write("log4j#log4j", true, 1, 1);
+
+        assertTrue(first, first.contains("\"total\":2,\"more\":true"));
+        assertTrue(first, first.contains("\"id\":\"entropysoft#test\","));
+        assertTrue(second, second.contains("\"total\":2,\"more\":false"));
+        assertTrue(second, second.endsWith("\"name\":\"apache-log4j-extras\","
+                + "\"revisions\":[{\"name\":\"1.1\",\"evicted\":false,"
+                + "\"error\":false}],\"callers\":1,\"dependencies\":1,"
+                + "\"edge\":{\"evicted\":false,\"rev\":null}}]}"));
+    }
+
+    public void testPagingDoesNotOverflow() throws Exception {
+        String json = write("log4j#log4j", true, 1, Integer.MAX_VALUE);
+
+        assertTrue(json, json.contains("\"start\":1,\"total\":2,"
+                + "\"more\":false"));
+        assertTrue(json, json.contains("\"id\":\"log4j#apache-log4j-extras\""));
+        assertTrue(json, write("log4j#log4j", true, Integer.MAX_VALUE,
+                Integer.MAX_VALUE).endsWith("\"nodes\":[]}"));
+    }
+
+    private String write(String id, boolean callers, int start, int count)
+            throws Exception {
+        StringWriter out = new StringWriter();
+        explorer.write(out, id, callers, start, count);
+        return out.toString();
+    }
+}
@@ -0,0 +1,78 @@
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+public class GraphJsonWriterTest extends TestCase {
+    private static final File DEFAULT_REPORT = new File(
+            "resources/testResolutionCache/entropysoft-test-default.xml");
+    private static final File COMPILE_REPORT = new File(
+            "resources/testResolutionCache/entropysoft-test-compile.xml");
+
+    public void testWrite() throws Exception {
+        String json = write(null, 0, 100, "entropysoft#test", DEFAULT_REPORT);
+
+        assertTrue(json, json.startsWith("{\"reports\":[{\"organisation\":"
+                + "\"entropysoft\",\"module\":\"test\",\"revision\":"
+                + "\"working@silver\",\"conf\":\"default\",\"modules\":["
+                + "{\"organisation\":\"log4j\",\"name\":"
+                + "\"apache-log4j-extras\",\"revisions\":[{\"name\":\"1.1\""));
+        assertTrue(json, json.contains("\"callers\":[{\"organisation\":"
+                + "\"entropysoft\",\"name\":\"test\",\"conf\":\"default, "
+                + "nondistrib, distrib, master\",\"rev\":\"1.1\","
+                + "\"callerRev\":\"working@silver\"}]"));
+        assertTrue(json, json.contains("\"evicted\":\"latest-revision\""));
+        assertTrue(json, json.contains("\"evictedBy\":[\"1.2.16\"]"));
+        assertTrue(json, json.contains("\"size\":346729"));
+        assertTrue(json, json.endsWith("]}]}],\"start\":0,\"count\":2,"
+                + "\"more\":false}"));
+    }
+
+    public void testPagingAcrossReports() throws Exception {
+        String json = write(null, 1, 2, null, DEFAULT_REPORT, COMPILE_REPORT);
+
+        assertTrue(json, json.contains("\"conf\":\"default\",\"modules\":"
+                + "[{\"organisation\":\"log4j\",\"name\":\"log4j\""));
+        assertTrue(json, json.contains("\"conf\":\"compile\""));
+        assertTrue(json, json.endsWith("\"start\":1,\"count\":2,"
+                + "\"more\":true}"));
+    }
+
+    public void testFilters() throws Exception {
+        assertEquals("{\"reports\":[],\"start\":0,\"count\":0,"
+                + "\"more\":false}", write("other", 0, 10, null,
+                DEFAULT_REPORT));
+        assertEquals("{\"reports\":[],\"start\":0,\"count\":0,"
+                + "\"more\":false}", write(null, 0, 10, "other#module",
+                DEFAULT_REPORT));
+    }
+
+    public void testQuote() {
+        assertEquals("\"a\\\"b\\\\c\\n\\u0001\"", GraphJsonWriter
+                .quote("a\"b\\c\n\u0001"));
+        assertEquals("null", GraphJsonWriter.quote(null));
+    }
+
+    private static String write(String organisation, int start, int count,
+            String module, File... reports) throws IOException {
+        StringWriter out = new StringWriter();
+        GraphJsonWriter writer = new GraphJsonWriter(out, organisation,
+                start, count);
+        writer.start();
+        for (File report : reports) {
+            InputStream in = new FileInputStream(report);
+            try {
+                writer.write(in, module);
+            } finally {
+                in.close();
+            }
+        }
+        writer.finish();
+        return out.toString();
+    }
+}
@@ -0,0 +1,193 @@
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class GraphReductionTest extends TestCase {
+
+    public void testNoReduction() throws Exception {
+        ResolveReport report = new Report().dependency("root", "a")
+                .dependency("root", "b").dependency("a", "b").parse();
+
+        DotGraph graph = GraphReduction.NONE.apply(report, "org-root");
+
+        assertEquals(edges(report.toDotGraph("org-root")), edges(graph));
+    }
+
+    public void testSmallGraphIsKeptInAutomaticMode() throws Exception {
+        ResolveReport report = new Report().dependency("root", "a")
+                .dependency("root", "b").dependency("a", "b").parse();
+
+        DotGraph graph = GraphReduction.automatic(10, 10).apply(report,
+                "org-root");
+
+        assertEquals(3, graph.getNodes().size());
+        assertEquals(3, graph.getEdges().size());
+    }
+
+    public void testDropEvicted() throws Exception {
+        ResolveReport report = new Report().dependency("root", "a")
+                .dependency("a", "b").evicted("b").parse();
+
+        DotGraph graph = GraphReduction.of(true, false, false, 0).apply(
+                report, "org-root");
+
+        assertEquals("[org-root->org-a]", edges(graph));
+        assertNull(find(graph, "org-b"));
+        assertNotNull(find(graph, "graph-reduction"));
+    }
+
+    public void testTransitiveReduction() throws Exception {
+        ResolveReport report = new Report().dependency("root", "a")
+                .dependency("root", "b").dependency("root", "c")
+                .dependency("a", "b").dependency("b", "c").parse();
+
+        DotGraph graph = GraphReduction.of(false, true, false, 0).apply(
+                report, "org-root");
+
+        assertEquals("[org-root->org-a, org-a->org-b, org-b->org-c]",
+                edges(graph));
+    }
+
+    public void testTransitiveReductionKeepsCycles() throws Exception {
+        ResolveReport report = new Report().dependency("root", "a")
+                .dependency("a", "b").dependency("b", "a")
+                .dependency("root", "c").dependency("a", "c").parse();
+
+        DotGraph graph = GraphReduction.of(false, true, false, 0).apply(
+                report, "org-root");
+
+        // org-root->org-c is implied through the cycle
+        assertEquals("[org-root->org-a, org-b->org-a, org-a->org-b,"
+                + " org-a->org-c]", edges(graph));
+    }
+
+    public void testMaxDepth() throws Exception {
+        ResolveReport report = new Report().dependency("root", "a")
+                .dependency("a", "b").dependency("b", "c").parse();
+
+        DotGraph graph = GraphReduction.of(false, false, false, 1).apply(
+                report, "org-root");
+
+        assertEquals("[org-root->org-a]", edges(graph));
+        assertEquals("dashed", find(graph, "org-a").getAttribute("style"));
+        assertNull(find(graph, "org-root").getAttribute("style"));
+    }
+
+    public void testClusterByOrganisation() throws Exception {
+        ResolveReport report = new Report().dependency("root", "x:a")
+                .dependency("root", "x:b").dependency("x:a", "y:c")
+                .dependency("x:b", "y:c").dependency("x:a", "x:b").parse();
+
+        DotGraph graph = GraphReduction.of(false, false, true, 0).apply(
+                report, "org-root");
+
+        assertEquals("[org-root->org:x, org:x->y-c]", edges(graph));
+        assertEquals("x\\n(2 modules)", find(graph, "org:x").getLabel());
+        assertNull(find(graph, "org:x").getAttribute("URL"));
+        assertNotNull(find(graph, "y-c").getAttribute("URL"));
+    }
+
+    public void testAutomaticReductionIsBounded() throws Exception {
+        Report builder = new Report();
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 20; j++) {
+                builder.dependency(i == 0 ? "root" : "o" + (i - 1) + ":m"
+                        + j, "o" + i + ":m" + j);
+                builder.dependency(i == 0 ? "root" : "o" + (i - 1) + ":m"
+                        + j, "o" + i + ":m" + ((j + 1) % 20));
+            }
+        }
+        ResolveReport report = builder.parse();
+        assertEquals(1001, report.toDotGraph("org-root").getNodes().size());
+
+        DotGraph graph = GraphReduction.automatic(100, 150).apply(report,
+                "org-root");
+
+        // the note on the reductions is the only extra node
+        assertTrue(graph.getNodes().size() <= 101);
+        assertTrue(graph.getEdges().size() <= 150);
+        assertNotNull(find(graph, "org-root"));
+        assertNotNull(find(graph, "graph-reduction"));
+    }
+
+    private static DotGraph.Node find(DotGraph graph, String id) {
+        for (DotGraph.Node node : graph.getNodes()) {
+            if (node.getId().equals(id)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private static String edges(DotGraph graph) {
+        List<String> edges = new ArrayList<String>();
+        for (DotGraph.Edge edge : graph.getEdges()) {
+            edges.add(edge.getFrom().getId() + "->" + edge.getTo().getId());
+        }
+        return edges.toString();
+    }
+
+    /**
+     * Resolve report of <tt>org#root</tt>; modules are given as
+     * <tt>organisation:name</tt>, or as <tt>name</tt> in <tt>org</tt>.
+     */
+    private static final class Report {
+        private final Map<String, List<String>> callers = new LinkedHashMap<String, List<String>>();
+        private final List<String> evicted = new ArrayList<String>();
+
+        Report dependency(String from, String to) {
+            List<String> list = callers.get(to);
+            if (list == null) {
+                list = new ArrayList<String>();
+                callers.put(to, list);
+            }
+            list.add(from);
+            return this;
+        }
+
+        Report evicted(String module) {
+            evicted.add(module);
+            return this;
+        }
+
+        ResolveReport parse() throws Exception {
+            StringBuilder xml = new StringBuilder();
+            xml.append("<ivy-report version=\"1.0\"><info organisation=\"org\""
+                    + " module=\"root\" revision=\"1\" conf=\"default\""
+                    + " confs=\"default\" date=\"20120101000000\"/>"
+                    + "<dependencies>");
+            for (Map.Entry<String, List<String>> module : callers.entrySet()) {
+                xml.append("<module ").append(attributes(module.getKey()))
+                        .append("><revision name=\"1.0\"");
+                if (evicted.contains(module.getKey())) {
+                    xml.append(" evicted=\"latest-revision\"");
+                }
+                xml.append(">");
+                for (String caller : module.getValue()) {
+                    xml.append("<caller ").append(attributes(caller))
+                            .append(" conf=\"default\" rev=\"1.0\""
+                                    + " callerrev=\"1.0\"/>");
+                }
+                xml.append("</revision></module>");
+            }
+            xml.append("</dependencies></ivy-report>");
+            return ResolveReport.parse(new ByteArrayInputStream(xml
+                    .toString().getBytes("UTF-8")));
+        }
+
+        private static String attributes(String module) {
+            int colon = module.indexOf(':');
+            String organisation = colon < 0 ? "org" : module.substring(0,
+                    colon);
+            String name = module.substring(colon + 1);
+            return "organisation=\"" + organisation + "\" name=\"" + name
+                    + "\"";
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * The expected pages under <tt>resources/htmlReports</tt> are the pages the
+ * <tt>ivy-report.xsl</tt> stylesheet produced for the same resolve reports,
+ * but for the formatting and for the charset, now UTF-8.
+ */
+public class HtmlReportWriterTest extends TestCase {
+    private static final File REPORTS = new File("resources/testResolutionCache");
+    private static final File EXPECTED = new File("resources/htmlReports");
+
+    public void testDefaultConfIsTheStylesheetPage() throws Exception {
+        assertPage("entropysoft-test-default");
+    }
+
+    public void testCompileConfIsTheStylesheetPage() throws Exception {
+        assertPage("entropysoft-test-compile");
+    }
+
+    public void testNamesAreEscaped() throws Exception {
+        String xml = "<ivy-report version=\"1.0\">"
+                + "<info organisation=\"o&amp;rg\" module=\"m&lt;od\""
+                + " revision=\"1&quot;0\" conf=\"default\" confs=\"default\""
+                + " date=\"20120214222320\"/><dependencies>"
+                + "<module organisation=\"x&quot;y\" name=\"&lt;script&gt;\">"
+                + "<revision name=\"2&amp;&lt;&quot;\" status=\"release\""
+                + " resolver=\"r\" conf=\"default\" position=\"0\">"
+                + "<license name=\"&lt;b&gt;\" url=\"http://x/?a=1&amp;b=&quot;2\"/>"
+                + "<caller organisation=\"o&amp;rg\" name=\"m&lt;od\""
+                + " conf=\"default\" rev=\"2\" callerrev=\"1&quot;0\"/>"
+                + "<artifacts><artifact name=\"a&lt;\" type=\"jar\" ext=\"jar\""
+                + " status=\"no\" size=\"1\"/></artifacts>"
+                + "</revision></module></dependencies></ivy-report>";
+        ResolveReport report = ResolveReport.parse(new ByteArrayInputStream(
+                xml.getBytes("UTF-8")));
+
+        String page = write(report, "o&rg-m<od");
+
+        assertFalse(page, page.contains("<script>"));
+        assertFalse(page, page.contains("<b>"));
+        assertFalse(page, page.contains("m<od"));
+        assertFalse(page, page.contains("x\"y"));
+        assertFalse(page, page.contains("2&<\""));
+        assertFalse(page, page.contains("1\"0"));
+        assertTrue(page, page.contains("&lt;script&gt;"));
+        assertTrue(page, page.contains("m&lt;od"));
+        assertTrue(page, page.contains("o&amp;rg"));
+        assertTrue(page, page.contains("x&quot;y"));
+        assertTrue(page, page.contains("2&amp;&lt;&quot;"));
+        assertTrue(page, page.contains("http://x/?a=1&amp;b=&quot;2"));
+    }
+
+    private static void assertPage(String name) throws Exception {
+        InputStream in = new FileInputStream(new File(REPORTS, name + ".xml"));
+        ResolveReport report;
+        try {
+            report = ResolveReport.parse(in);
+        } finally {
+            in.close();
+        }
+
+        assertEquals(Files.toString(new File(EXPECTED, name + ".html"),
+                Charsets.UTF_8), write(report, "entropysoft-test"));
+    }
+
+    private static String write(ResolveReport report, String resolveId)
+            throws Exception {
+        StringWriter html = new StringWriter();
+        new HtmlReportWriter(html, resolveId, "compile,default", "html")
+                .write(report);
+        return html.toString();
+    }
+}
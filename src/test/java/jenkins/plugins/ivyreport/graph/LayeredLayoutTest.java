@@ -0,0 +1,70 @@
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class LayeredLayoutTest extends TestCase {
+    private static final String DOT = "/* generated by ivy report */\n"
+            + "digraph G {\n"
+            + " graph [fontname=helvetica fontsize=11];\n"
+            + " \"org-root\" [label=\"root\"];\n"
+            + " \"org-a\" [label=\"a\\n1.0\" URL=\"root-default.html#org-a\" target=\"_graphviz\"];\n"
+            + " \"org-b\" [label=\"b\\n2.0\\n1.0 (evicted)\" URL=\"root-default.html#org-b\" target=\"_graphviz\"];\n"
+            + " \"org-c\" [label=\"c\\n1.0\" URL=\"root-default.html#org-c\" target=\"_graphviz\"];\n"
+            + "\"org-root\" -> \"org-a\";\n"
+            + "\"org-root\" -> \"org-b\" [label=\"1.0\"];\n"
+            + "\"org-a\" -> \"org-b\";\n"
+            + "\"org-a\" -> \"org-c\";\n"
+            + "\"org-c\" -> \"org-a\";\n" + "}";
+
+    public void testParse() throws Exception {
+        DotGraph graph = DotGraph.parse(new StringReader(DOT));
+
+        assertEquals(4, graph.getNodes().size());
+        assertEquals(5, graph.getEdges().size());
+        DotGraph.Node b = graph.addNode("org-b");
+        assertEquals("b\\n2.0\\n1.0 (evicted)", b.getLabel());
+        assertEquals("root-default.html#org-b", b.getAttribute("URL"));
+        assertEquals("1.0", graph.getEdges().get(1).getAttribute("label"));
+    }
+
+    public void testLayout() throws Exception {
+        LayeredLayout layout = LayeredLayout.compute(DotGraph
+                .parse(new StringReader(DOT)));
+
+        List<LayeredLayout.NodeBox> nodes = layout.getNodes();
+        LayeredLayout.NodeBox root = nodes.get(0);
+        for (LayeredLayout.NodeBox node : nodes.subList(1, nodes.size())) {
+            assertTrue("root should be above " + node.getNode().getId(),
+                    root.getY() < node.getY());
+        }
+        for (LayeredLayout.NodeBox a : nodes) {
+            assertTrue(a.getX() - a.getWidth() / 2 >= 0);
+            assertTrue(a.getX() + a.getWidth() / 2 <= layout.getWidth());
+            for (LayeredLayout.NodeBox b : nodes) {
+                if (a != b && a.getY() == b.getY()) {
+                    assertTrue("overlapping nodes", Math.abs(a.getX()
+                            - b.getX()) >= (a.getWidth() + b.getWidth()) / 2);
+                }
+            }
+        }
+        assertEquals(5, layout.getEdges().size());
+        assertEquals(3, nodes.get(2).getLines().length);
+    }
+
+    public void testSvg() throws Exception {
+        StringWriter svg = new StringWriter();
+        new SvgWriter(svg).write(LayeredLayout.compute(DotGraph
+                .parse(new StringReader(DOT))));
+
+        String content = svg.toString();
+        assertTrue(content.contains("<svg "));
+        assertTrue(content
+                .contains("xlink:href=\"root-default.html#org-a\" target=\"_graphviz\""));
+        assertTrue(content.contains(">1.0 (evicted)</text>"));
+        assertTrue(content.trim().endsWith("</svg>"));
+    }
+}
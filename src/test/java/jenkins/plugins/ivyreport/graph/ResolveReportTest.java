@@ -0,0 +1,120 @@
+package jenkins.plugins.ivyreport.graph;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+public class ResolveReportTest extends TestCase {
+    private static final File REPORT = new File(
+            "resources/testResolutionCache/entropysoft-test-default.xml");
+
+    private ResolveReport report;
+
+    public void setUp() throws Exception {
+        InputStream in = new FileInputStream(REPORT);
+        try {
+            report = ResolveReport.parse(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testParse() {
+        assertEquals("entropysoft", report.getOrganisation());
+        assertEquals("test", report.getModule());
+        assertEquals("default", report.getConf());
+        assertEquals(2, report.getModuleCount());
+        assertEquals(3, report.getRevisionCount());
+        assertEquals(4, report.getCallerCount());
+        assertEquals(2, report.getArtifactCount());
+
+        int log4j = 1;
+        assertEquals("log4j", report.getModuleName(log4j));
+        int evicted = report.getRevisionStart(log4j) + 1;
+        assertEquals(report.getRevisionEnd(log4j), evicted + 1);
+        assertEquals("1.2.15", report.getRevisionName(evicted));
+        assertTrue(report.isEvicted(evicted));
+        assertEquals("latest-revision",
+                report.getEvictingConflictManager(evicted));
+        assertEquals("1.2.16",
+                report.getEvictedBy(report.getEvictedByStart(evicted)));
+        assertFalse(report.isEvicted(evicted - 1));
+
+        // repeated values are shared
+        assertSame(report.getRevisionStatus(0), report.getRevisionStatus(1));
+    }
+
+    public void testDependencies() {
+        int[] direct = report.getDependencies(ResolveReport.ROOT);
+        assertTrue(direct.length > 0);
+        for (int caller : direct) {
+            assertEquals(ResolveReport.ROOT, report.getCallerModule(caller));
+            assertEquals("test", report.getCallerName(caller));
+        }
+        int callers = direct.length;
+        for (int m = 0; m < report.getModuleCount(); m++) {
+            callers += report.getDependencies(m).length;
+        }
+        assertEquals(report.getCallerCount(), callers);
+    }
+
+    public void testStatistics() {
+        ReportStatistics stats = new ReportStatistics(report);
+
+        assertEquals(2, stats.getModules());
+        assertEquals(3, stats.getRevisions());
+        assertEquals(1, stats.getEvicted());
+        assertEquals(1, stats.getConflicts());
+        assertEquals(0, stats.getErrors());
+        assertEquals(2, stats.getArtifacts());
+    }
+
+    public void testDotGraph() throws Exception {
+        DotGraph graph = report.toDotGraph("entropysoft-test");
+
+        DotGraph.Node log4j = graph.addNode("log4j-log4j");
+        assertEquals("log4j\\n1.2.16\\n1.2.15 (evicted)", log4j.getLabel());
+        assertEquals("entropysoft-test-default.html#log4j-log4j",
+                log4j.getAttribute("URL"));
+        // no edge to the evicted revision
+        assertEquals(3, graph.getNodes().size());
+
+        StringWriter dot = new StringWriter();
+        graph.write(dot);
+        DotGraph parsed = DotGraph.parse(new StringReader(dot
+                .toString()));
+        assertEquals(graph.getNodes().size(), parsed.getNodes().size());
+        assertEquals(graph.getEdges().size(), parsed.getEdges().size());
+        assertEquals(log4j.getLabel(), parsed.addNode("log4j-log4j")
+                .getLabel());
+    }
+
+    public void testHtml() throws Exception {
+        StringWriter html = new StringWriter();
+        new HtmlReportWriter(html, "entropysoft-test", "compile,default",
+                "html").write(report);
+
+        String content = html.toString();
+        assertTrue(content.contains("<object data=\"entropysoft-test-default.svg\" type=\"image/svg+xml\">"));
+        assertTrue(content.contains("<h2>Conflicts</h2>"));
+        assertTrue(content.contains("<a class=\"active\" href=\"entropysoft-test-default.html\">default</a>"));
+        assertTrue(content.contains("<a name=\"log4j-log4j-1.2.15\"></a>"));
+        assertTrue(content.contains("resolved on 2012-02-14 22:23:20"));
+    }
+
+    public void testInvalidReport() throws Exception {
+        try {
+            ResolveReport.parse(new ByteArrayInputStream("<ivy-report>"
+                    .getBytes("UTF-8")));
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}